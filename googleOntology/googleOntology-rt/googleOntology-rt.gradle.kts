@@ -46,6 +46,8 @@ dependencies {
   api(":control-rt")
   api(":web-rt")
   api(":box-rt")
+  api(":history-rt")
+  api(":driver-rt")
 
   // Servlet API for HTTP endpoints
   uberjar("javax.servlet:javax.servlet-api:3.0.1")
@@ -54,3 +56,54 @@ dependencies {
   // Pure Java, no native dependencies, perfect for Niagara!
   uberjar("com.github.haifengl:smile-core:3.1.1")
 }
+
+// DBO catalog: compiled by DboCatalogCompiler from the digitalbuildings
+// release pinned by dbo.ref in gradle.properties.  Set dbo.ontology to the
+// ontology/yaml/resources directory of an existing checkout to build offline.
+val dboRepository = providers.gradleProperty("dbo.repository")
+  .orElse("https://github.com/google/digitalbuildings.git")
+val dboRef = providers.gradleProperty("dbo.ref")
+val dboOntology = providers.gradleProperty("dbo.ontology")
+val dboCheckout = layout.buildDirectory.dir("digitalbuildings")
+val dboCatalog = layout.buildDirectory.file("dbo/googleOntology/matcher/dbo.catalog")
+
+val fetchDboOntology by tasks.registering(Exec::class) {
+  description = "Clones the pinned digitalbuildings release"
+  onlyIf { !dboOntology.isPresent }
+  inputs.property("ref", dboRef.orElse(""))
+  outputs.dir(dboCheckout)
+  doFirst {
+    if (!dboRef.isPresent) throw GradleException("Set dbo.ref (digitalbuildings tag or commit) or dbo.ontology")
+    delete(dboCheckout)
+    commandLine("git", "clone", "--depth", "1", "--branch", dboRef.get(), dboRepository.get(),
+      dboCheckout.get().asFile.path)
+  }
+}
+
+val compileDboCatalog by tasks.registering(JavaExec::class) {
+  description = "Compiles the DBO catalog bundled in the module jar"
+  dependsOn(fetchDboOntology)
+  val ontology = dboOntology.map { file(it) }
+    .orElse(dboCheckout.map { it.dir("ontology/yaml/resources").asFile })
+  val version = dboRef.orElse("local")
+  inputs.dir(ontology)
+  inputs.property("version", version)
+  outputs.file(dboCatalog)
+  classpath = sourceSets["main"].runtimeClasspath
+  mainClass.set("googleOntology.matcher.DboCatalogCompiler")
+  argumentProviders.add(CommandLineArgumentProvider {
+    listOf(ontology.get().path, dboCatalog.get().asFile.path, version.get())
+  })
+  doFirst { dboCatalog.get().asFile.parentFile.mkdirs() }
+}
+
+// Bundle the compiled DBO catalog; the module is useless without it
+tasks.named<Jar>("jar") {
+  dependsOn(compileDboCatalog)
+  from(layout.buildDirectory.dir("dbo")) {
+    include("googleOntology/matcher/dbo.catalog")
+  }
+  doFirst {
+    if (!dboCatalog.get().asFile.isFile) throw GradleException("DBO catalog missing: " + dboCatalog.get().asFile)
+  }
+}
@@ -68,7 +68,7 @@ public class KodeLabsClient
       {
         GoogleOntologyEntity entity = (GoogleOntologyEntity)entityIter.next();
 
-        // Skip generic equipment
+        // Skip equipment typed neither by name nor by its point fields
         if ("EQUIPMENT".equals(entity.getEntityType()))
         {
           LOG.trace("Skipping entity: " + entity.getName() + " (EQUIPMENT type)");
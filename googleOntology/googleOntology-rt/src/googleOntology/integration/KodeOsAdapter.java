@@ -76,7 +76,7 @@ public class KodeOsAdapter
         }
 
         // Add facets if present
-        if (point.getMinValue() != null || point.getMaxValue() != null)
+        if (point.getMinValue() != null || point.getMaxValue() != null || point.getPrecision() != null)
         {
           devices.append(",\\\"facets\\\":{");
           boolean addedFacet = false;
@@ -91,6 +91,13 @@ public class KodeOsAdapter
           {
             if (addedFacet) devices.append(',');
             devices.append("\\\"max\\\":").append(point.getMaxValue());
+            addedFacet = true;
+          }
+
+          if (point.getPrecision() != null)
+          {
+            if (addedFacet) devices.append(',');
+            devices.append("\\\"precision\\\":").append(point.getPrecision());
           }
 
           devices.append('}');
@@ -19,6 +19,10 @@ import java.util.*;
  * - K-Nearest Neighbors classifier (finds 5 most similar examples)
  * - Learns from user corrections
  * - Generalizes to new, unseen point names
+ *
+ * Examples are added and the model trained under the learner's lock;
+ * predict() runs on matcher worker threads without it, so a trained
+ * model and its labels are published together as one immutable Model.
  */
 public class MLOntologyLearner
 {
@@ -40,15 +44,30 @@ public class MLOntologyLearner
   }
 
   private final List examples;
+  private final Set exampleKeys;  // exampleKey() of every example, for dedup
+  private final Map learned;  // pointName + equipmentType → most recent dboField
   private final Map dboFieldIndex;  // DBO field → numeric label
   private final Map reverseDboIndex; // numeric label → DBO field
-  private KNN model;  // Using KNN - simpler API, no DataFrame needed!
-  private double[][] trainX;
-  private int[] trainY;
+  private volatile Model model;  // Using KNN - simpler API, no DataFrame needed!
   private int nextLabel = 0;
 
+  /**
+   * Trained classifier with the DBO field of each of its labels
+   */
+  private static final class Model {
+    final KNN knn;
+    final String[] fields;  // label → DBO field
+
+    Model(KNN knn, String[] fields) {
+      this.knn = knn;
+      this.fields = fields;
+    }
+  }
+
   public MLOntologyLearner() {
     this.examples = new ArrayList();
+    this.exampleKeys = new HashSet();
+    this.learned = new HashMap();
     this.dboFieldIndex = new HashMap();
     this.reverseDboIndex = new HashMap();
   }
@@ -56,25 +75,69 @@ public class MLOntologyLearner
   /**
    * Add a training example (correction from user)
    */
-  public void addExample(String pointName, String equipmentType, String correctDboField) {
-    TrainingExample ex = new TrainingExample(pointName, equipmentType, correctDboField);
+  public synchronized void addExample(String pointName, String equipmentType, String correctDboField) {
+    if (!addExampleInternal(new TrainingExample(pointName, equipmentType, correctDboField))) {
+      System.out.println("[MLOntologyLearner] Duplicate training example ignored: '" + pointName + "'");
+      return;
+    }
+
+    System.out.println("[MLOntologyLearner] Added training example: '" + pointName +
+                      "' (" + equipmentType + ") → '" + correctDboField + "'");
+  }
+
+  /**
+   * Add a batch of training examples in one pass.
+   * Examples already known to the learner are skipped.
+   *
+   * @return number of examples actually added
+   */
+  public synchronized int addExamples(List batch) {
+    int added = 0;
+    for (int i = 0; i < batch.size(); i++) {
+      if (addExampleInternal((TrainingExample)batch.get(i))) added++;
+    }
+
+    System.out.println("[MLOntologyLearner] Added " + added + " of " + batch.size() +
+                      " training examples (" + examples.size() + " total)");
+    return added;
+  }
+
+  /**
+   * Add example unless an identical one exists; returns true if added
+   */
+  private boolean addExampleInternal(TrainingExample ex) {
+    if (!exampleKeys.add(exampleKey(ex.pointName, ex.equipmentType, ex.dboField))) return false;
     examples.add(ex);
+    learned.put(exampleKey(ex.pointName, ex.equipmentType, ""), ex.dboField);
 
     // Assign numeric label to DBO field if new
-    if (!dboFieldIndex.containsKey(correctDboField)) {
+    if (!dboFieldIndex.containsKey(ex.dboField)) {
       Integer label = new Integer(nextLabel++);
-      dboFieldIndex.put(correctDboField, label);
-      reverseDboIndex.put(label, correctDboField);
+      dboFieldIndex.put(ex.dboField, label);
+      reverseDboIndex.put(label, ex.dboField);
     }
+    return true;
+  }
 
-    System.out.println("[MLOntologyLearner] Added training example: '" + pointName +
-                      "' (" + equipmentType + ") → '" + correctDboField + "'");
+  /**
+   * Get the field a user explicitly corrected this exact point name to,
+   * or null if there is no such example
+   */
+  public synchronized String learnedField(String pointName, String equipmentType) {
+    return (String)learned.get(exampleKey(pointName, equipmentType, ""));
+  }
+
+  /**
+   * Identity key used to deduplicate examples
+   */
+  public static String exampleKey(String pointName, String equipmentType, String dboField) {
+    return pointName + '\u0000' + (equipmentType != null ? equipmentType : "") + '\u0000' + dboField;
   }
 
   /**
    * Train the model on accumulated examples
    */
-  public boolean train() {
+  public synchronized boolean train() {
     if (examples.size() < 5) {
       System.out.println("[MLOntologyLearner] Need at least 5 examples to train (have " +
                         examples.size() + ")");
@@ -94,11 +157,13 @@ public class MLOntologyLearner
         y[i] = label.intValue();
       }
 
+      String[] fields = new String[nextLabel];
+      for (int i = 0; i < fields.length; i++)
+        fields[i] = (String)reverseDboIndex.get(new Integer(i));
+
       // Train KNN classifier (simpler API, no DataFrame needed!)
       // k=5 means look at 5 nearest neighbors
-      this.trainX = X;
-      this.trainY = y;
-      model = KNN.fit(X, y, 5);
+      model = new Model(KNN.fit(X, y, 5), fields);
 
       System.out.println("[MLOntologyLearner] KNN model trained! " + n + " examples, " +
                         dboFieldIndex.size() + " classes (k=5 neighbors)");
@@ -115,15 +180,16 @@ public class MLOntologyLearner
    * Predict DBO field for a new point
    */
   public Prediction predict(String pointName, String equipmentType) {
-    if (model == null) {
+    Model m = model;
+    if (m == null) {
       return new Prediction(null, 0, "Model not trained");
     }
 
     try {
       double[] features = extractFeatures(pointName, equipmentType);
-      int labelPredicted = model.predict(features);
+      int labelPredicted = m.knn.predict(features);
 
-      String predictedField = (String)reverseDboIndex.get(new Integer(labelPredicted));
+      String predictedField = m.fields[labelPredicted];
 
       // Get confidence (not all classifiers provide this easily, so we'll estimate)
       int confidence = 75; // Base confidence for ML predictions
@@ -231,7 +297,7 @@ public class MLOntologyLearner
   /**
    * Get statistics
    */
-  public String getStats() {
+  public synchronized String getStats() {
     return "ML Model: " + examples.size() + " training examples, " +
            dboFieldIndex.size() + " DBO fields, " +
            (model != null ? "trained" : "not trained");
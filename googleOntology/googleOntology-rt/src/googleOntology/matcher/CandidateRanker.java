@@ -0,0 +1,217 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+
+/**
+ * CandidateRanker generates and ranks the top K DBO field candidates
+ * for a point, with a breakdown of how each score was reached.
+ *
+ * Candidates are the catalog fields sharing at least one word with the
+ * point name (via the catalog's word index), plus the fuzzy match, the
+ * ML vote and any learned override.  Each candidate is scored once and
+ * pushed through a bounded min-heap of size K, so the cost is linear in
+ * the number of candidates and memory is O(K).
+ */
+public final class CandidateRanker
+{
+  /**
+   * A ranked candidate with score breakdown.
+   */
+  public static final class Candidate
+  {
+    Candidate(String dboField) { this.dboField = dboField; }
+
+    /** DBO field name */
+    public final String dboField;
+
+    /** Total score (0-100) */
+    public int score;
+
+    /** Word overlap between point name and field */
+    public int tokenScore;
+
+    /** Agreement between point units and field measurement */
+    public int unitScore;
+
+    /** Fit with the entity type (e.g. zone fields on a VAV) */
+    public int contextScore;
+
+    /** Bonus when the ML model votes for this field */
+    public int mlScore;
+
+    /** Bonus when a learned correction maps this point to this field */
+    public int overrideScore;
+
+    /** True if field is a known catalog field */
+    public boolean inCatalog;
+  }
+
+  /**
+   * Inputs describing the point to rank.
+   */
+  public static final class Input
+  {
+    public String pointName;
+    public String units;
+    public boolean isBoolean;
+    public String entityType;
+
+    /** Field from FuzzyMatcher (may be null) */
+    public String fuzzyField;
+
+    /** Field voted by the ML model (may be null) */
+    public String mlField;
+
+    /** Field from a learned correction (may be null) */
+    public String overrideField;
+  }
+
+  /**
+   * Rank candidates for given input and return at most k, best first.
+   */
+  public static List rank(Input in, int k)
+  {
+    return rank(DboFieldLibrary.get(), in, k);
+  }
+
+  /**
+   * Rank candidates as above with given vocabulary.
+   */
+  public static List rank(Vocabulary vocab, Input in, int k)
+  {
+    FieldCatalog catalog = vocab.getCatalog();
+
+    // point name words (unique)
+    ArrayList wordList = new ArrayList();
+    String expanded = vocab.expandAbbreviation(in.pointName.toLowerCase());
+    if (expanded != null) wordList.addAll(Arrays.asList(expanded.split("_")));
+    else FuzzyMatcher.extractWords(vocab, in.pointName, wordList);
+    HashSet words = new HashSet(wordList);
+
+    String unitMeasurement = in.units != null ? FuzzyMatcher.inferMeasurementFromUnits(in.units) : null;
+    Set context = (Set)contextWords.get(in.entityType);
+
+    // candidate generation: every field sharing a word, plus the votes
+    LinkedHashSet fields = new LinkedHashSet();
+    for (Iterator it = words.iterator(); it.hasNext();)
+      fields.addAll(catalog.fieldsWithWord((String)it.next()));
+    if (in.fuzzyField != null) fields.add(in.fuzzyField);
+    if (in.mlField != null) fields.add(in.mlField);
+    if (in.overrideField != null) fields.add(in.overrideField);
+
+    // score each candidate once through a bounded min-heap
+    PriorityQueue heap = new PriorityQueue(k + 1, ASCENDING);
+    for (Iterator it = fields.iterator(); it.hasNext();)
+    {
+      Candidate c = score(vocab, (String)it.next(), words, unitMeasurement, context, in);
+      if (heap.size() < k) { heap.add(c); continue; }
+      if (ASCENDING.compare(c, heap.peek()) > 0)
+      {
+        heap.poll();
+        heap.add(c);
+      }
+    }
+
+    // drain heap into best-first order
+    Candidate[] acc = new Candidate[heap.size()];
+    for (int i = acc.length - 1; i >= 0; i--) acc[i] = (Candidate)heap.poll();
+    return Arrays.asList(acc);
+  }
+
+////////////////////////////////////////////////////////////////
+// Scoring
+////////////////////////////////////////////////////////////////
+
+  private static Candidate score(Vocabulary vocab, String field, Set words, String unitMeasurement, Set context, Input in)
+  {
+    Candidate c = new Candidate(field);
+    c.inCatalog = vocab.getCatalog().contains(field);
+
+    String[] toks = field.split("_");
+    String pointType = toks[toks.length - 1];
+
+    // token overlap: F1 of field words vs name words, scaled to 60
+    int overlap = 0;
+    String fieldMeasurement = null;
+    for (int i = 0; i < toks.length; i++)
+    {
+      if (words.contains(toks[i])) overlap++;
+      if (fieldMeasurement == null && vocab.is(toks[i], Vocabulary.MEASUREMENT)) fieldMeasurement = toks[i];
+    }
+    if (overlap > 0)
+    {
+      double p = (double)overlap / toks.length;
+      double r = (double)overlap / Math.max(1, words.size());
+      c.tokenScore = (int)Math.round(60 * 2 * p * r / (p + r));
+    }
+
+    // units vs field measurement
+    if (unitMeasurement != null && fieldMeasurement != null)
+      c.unitScore = unitMeasurement.equals(fieldMeasurement) ? 15 : -15;
+
+    // boolean points are not analog sensors or setpoints
+    if (in.isBoolean && fieldMeasurement != null && (pointType.equals("sensor") || pointType.equals("setpoint")))
+      c.unitScore -= 10;
+
+    // entity context
+    if (context != null)
+    {
+      int hits = 0;
+      for (int i = 0; i < toks.length; i++)
+        if (context.contains(toks[i])) hits++;
+      c.contextScore = Math.min(10, hits * 3);
+    }
+
+    if (field.equals(in.mlField)) c.mlScore = 20;
+    if (field.equals(in.overrideField)) c.overrideScore = 40;
+
+    int total = c.tokenScore + c.unitScore + c.contextScore + c.mlScore + c.overrideScore;
+    if (c.inCatalog) total += 5;
+    if (field.equals(in.fuzzyField)) total += 5;
+    c.score = Math.max(0, Math.min(100, total));
+    return c;
+  }
+
+  /** Orders by score, then catalog membership, then reverse name (so ties keep a-z). */
+  private static final Comparator ASCENDING = new Comparator()
+  {
+    public int compare(Object a, Object b)
+    {
+      Candidate x = (Candidate)a;
+      Candidate y = (Candidate)b;
+      if (x.score != y.score) return x.score < y.score ? -1 : 1;
+      if (x.inCatalog != y.inCatalog) return x.inCatalog ? 1 : -1;
+      return y.dboField.compareTo(x.dboField);
+    }
+  };
+
+////////////////////////////////////////////////////////////////
+// Entity context
+////////////////////////////////////////////////////////////////
+
+  private static void context(String entityType, String words)
+  {
+    contextWords.put(entityType, new HashSet(Arrays.asList(words.split(" "))));
+  }
+
+  private static final HashMap contextWords = new HashMap();  // entityType : Set<String>
+  static
+  {
+    context("AHU", "supply return mixed outside discharge exhaust fan damper filter economizer static");
+    context("RTU", "supply return mixed outside discharge exhaust fan damper filter economizer compressor");
+    context("VAV", "zone damper discharge flowrate supply");
+    context("FCU", "zone fan valve discharge");
+    context("CHWS", "chilled water supply return differential");
+    context("CH", "chilled condensing water compressor entering leaving");
+    context("HWS", "hot water supply return differential");
+    context("BLR", "hot water heating entering leaving");
+    context("CT", "condensing water fan entering leaving");
+    context("PMP", "pump water differential speed");
+    context("FAN", "fan speed run");
+  }
+}
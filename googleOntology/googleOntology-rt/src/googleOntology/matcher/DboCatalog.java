@@ -0,0 +1,545 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * DboCatalog is the full Google Digital Buildings ontology (subfields,
+ * fields and entity types) in a compact binary form, produced offline by
+ * DboCatalogCompiler.
+ *
+ * The file is used in place: a catalog file is memory mapped and every
+ * lookup reads the buffer directly, so loading costs no parsing and
+ * almost no heap.  Words, fields and entity types have dense ids; each
+ * has an open addressing hash table in the file, so validating a field
+ * name is a handful of probes with no allocation.
+ *
+ * File layout (big endian ints):
+ *
+ *   header   magic, format, numWords, numFields, numTypes, wordHashSize,
+ *            fieldHashSize, typeHashSize, numInts, numBytes, versionOff,
+ *            versionLen
+ *   words    per word: nameOff, nameLen, categories (Vocabulary bits)
+ *   wordHash word id + 1, or 0 for an empty slot
+ *   fields   per field: wordsOff, numWords (into ints)
+ *   fieldHash
+ *   types    per type: nameOff, nameLen, fieldsOff, numUses, numOptUses, flags
+ *   typeHash
+ *   ints     word ids of fields, field ids of types
+ *   bytes    ASCII names
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+public final class DboCatalog
+{
+////////////////////////////////////////////////////////////////
+// Load
+////////////////////////////////////////////////////////////////
+
+  /** Memory map a catalog file. */
+  public static DboCatalog map(File file) throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try
+    {
+      FileChannel ch = raf.getChannel();
+      return new DboCatalog(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+    }
+    finally
+    {
+      raf.close();
+    }
+  }
+
+  /** Read a catalog from a stream (e.g. a module jar resource, which cannot be mapped). */
+  public static DboCatalog read(InputStream in) throws IOException
+  {
+    ByteArrayOutputStream acc = new ByteArrayOutputStream(1 << 16);
+    byte[] buf = new byte[8192];
+    for (int n; (n = in.read(buf)) > 0;) acc.write(buf, 0, n);
+    return new DboCatalog(ByteBuffer.wrap(acc.toByteArray()).asReadOnlyBuffer());
+  }
+
+  /**
+   * Load the catalog bundled in the module jar, or the file named by the
+   * "googleOntology.dboCatalog" system property.  Returns null if there
+   * is none.
+   */
+  public static DboCatalog loadDefault() throws IOException
+  {
+    String path = System.getProperty("googleOntology.dboCatalog");
+    if (path != null) return map(new File(path));
+
+    InputStream in = DboCatalog.class.getResourceAsStream(RESOURCE);
+    if (in == null) return null;
+    try
+    {
+      return read(in);
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  private DboCatalog(ByteBuffer buf) throws IOException
+  {
+    this.buf = buf;
+    if (buf.capacity() < HEADER_SIZE * 4 || buf.getInt(0) != MAGIC)
+      throw new IOException("Invalid DBO catalog: bad magic");
+    if (buf.getInt(4) != FORMAT)
+      throw new IOException("Invalid DBO catalog: unsupported format " + buf.getInt(4));
+
+    numWords = buf.getInt(8);
+    numFields = buf.getInt(12);
+    numTypes = buf.getInt(16);
+    wordHashSize = buf.getInt(20);
+    fieldHashSize = buf.getInt(24);
+    typeHashSize = buf.getInt(28);
+    int numInts = buf.getInt(32);
+    int numBytes = buf.getInt(36);
+
+    wordsAt = HEADER_SIZE * 4;
+    wordHashAt = wordsAt + numWords * WORD_SIZE * 4;
+    fieldsAt = wordHashAt + wordHashSize * 4;
+    fieldHashAt = fieldsAt + numFields * FIELD_SIZE * 4;
+    typesAt = fieldHashAt + fieldHashSize * 4;
+    typeHashAt = typesAt + numTypes * TYPE_SIZE * 4;
+    intsAt = typeHashAt + typeHashSize * 4;
+    bytesAt = intsAt + numInts * 4;
+    if (bytesAt + numBytes != buf.capacity())
+      throw new IOException("Invalid DBO catalog: size mismatch");
+
+    version = string(buf.getInt(40), buf.getInt(44));
+  }
+
+////////////////////////////////////////////////////////////////
+// Catalog
+////////////////////////////////////////////////////////////////
+
+  /** Get ontology version label given to the compiler. */
+  public String getVersion() { return version; }
+
+  /** Get number of words (subfields). */
+  public int numWords() { return numWords; }
+
+  /** Get number of fields. */
+  public int numFields() { return numFields; }
+
+  /** Get number of entity types. */
+  public int numEntityTypes() { return numTypes; }
+
+////////////////////////////////////////////////////////////////
+// Words
+////////////////////////////////////////////////////////////////
+
+  /** Get id of a lowercase word, or -1. */
+  public int wordId(String word) { return wordId(word, 0, word.length()); }
+
+  /** Get word for id. */
+  public String word(int id) { return string(ints(wordsAt, id, WORD_SIZE, 0), ints(wordsAt, id, WORD_SIZE, 1)); }
+
+  /** Get Vocabulary category bits of word. */
+  public int wordCategories(int id) { return ints(wordsAt, id, WORD_SIZE, 2); }
+
+  private int wordId(String s, int from, int to)
+  {
+    int mask = wordHashSize - 1;
+    for (int slot = hash(s, from, to) & mask;; slot = (slot + 1) & mask)
+    {
+      int v = buf.getInt(wordHashAt + slot * 4);
+      if (v == 0) return -1;
+      int id = v - 1;
+      if (equals(ints(wordsAt, id, WORD_SIZE, 0), ints(wordsAt, id, WORD_SIZE, 1), s, from, to)) return id;
+    }
+  }
+
+////////////////////////////////////////////////////////////////
+// Fields
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Get id of a field name, or -1 if it is not an ontology field.  The
+   * name is split on '_' and looked up word by word; nothing is
+   * allocated.
+   */
+  public int fieldId(String field)
+  {
+    // word ids of the name, hashed as a sequence
+    int h = FNV_BASIS;
+    int n = 0;
+    int start = 0;
+    int len = field.length();
+    for (int i = 0; i <= len; i++)
+    {
+      if (i < len && field.charAt(i) != '_') continue;
+      int w = wordId(field, start, i);
+      if (w < 0) return -1;
+      h = (h ^ w) * FNV_PRIME;
+      n++;
+      start = i + 1;
+    }
+
+    int mask = fieldHashSize - 1;
+    for (int slot = mix(h) & mask;; slot = (slot + 1) & mask)
+    {
+      int v = buf.getInt(fieldHashAt + slot * 4);
+      if (v == 0) return -1;
+      int id = v - 1;
+      if (ints(fieldsAt, id, FIELD_SIZE, 1) == n && sameWords(id, field)) return id;
+    }
+  }
+
+  /** Return true if name is an ontology field. */
+  public boolean isField(String field) { return fieldId(field) >= 0; }
+
+  /** Get field name for id. */
+  public String field(int id)
+  {
+    int[] words = fieldWords(id);
+    StringBuffer sb = new StringBuffer(words.length * 8);
+    for (int i = 0; i < words.length; i++)
+    {
+      if (i > 0) sb.append('_');
+      sb.append(word(words[i]));
+    }
+    return sb.toString();
+  }
+
+  /** Get word ids of field. */
+  public int[] fieldWords(int id)
+  {
+    return intList(ints(fieldsAt, id, FIELD_SIZE, 0), ints(fieldsAt, id, FIELD_SIZE, 1));
+  }
+
+  private boolean sameWords(int id, String field)
+  {
+    int off = ints(fieldsAt, id, FIELD_SIZE, 0);
+    int start = 0;
+    int k = 0;
+    int len = field.length();
+    for (int i = 0; i <= len; i++)
+    {
+      if (i < len && field.charAt(i) != '_') continue;
+      int w = buf.getInt(intsAt + (off + k++) * 4);
+      if (!equals(ints(wordsAt, w, WORD_SIZE, 0), ints(wordsAt, w, WORD_SIZE, 1), field, start, i)) return false;
+      start = i + 1;
+    }
+    return true;
+  }
+
+////////////////////////////////////////////////////////////////
+// Entity types
+////////////////////////////////////////////////////////////////
+
+  /** Get id of an entity type by qualified name ("HVAC/AHU_SFSS"), or -1. */
+  public int entityTypeId(String name)
+  {
+    int mask = typeHashSize - 1;
+    for (int slot = hash(name, 0, name.length()) & mask;; slot = (slot + 1) & mask)
+    {
+      int v = buf.getInt(typeHashAt + slot * 4);
+      if (v == 0) return -1;
+      int id = v - 1;
+      if (equals(ints(typesAt, id, TYPE_SIZE, 0), ints(typesAt, id, TYPE_SIZE, 1), name, 0, name.length())) return id;
+    }
+  }
+
+  /** Get qualified name of entity type. */
+  public String entityTypeName(int id) { return string(ints(typesAt, id, TYPE_SIZE, 0), ints(typesAt, id, TYPE_SIZE, 1)); }
+
+  /** Return true if entity type is abstract. */
+  public boolean isAbstract(int id) { return (ints(typesAt, id, TYPE_SIZE, 5) & TYPE_ABSTRACT) != 0; }
+
+  /** Get field ids required by entity type (including inherited ones). */
+  public int[] entityTypeUses(int id)
+  {
+    return intList(ints(typesAt, id, TYPE_SIZE, 2), ints(typesAt, id, TYPE_SIZE, 3));
+  }
+
+  /** Get field ids optionally used by entity type (including inherited ones). */
+  public int[] entityTypeOptUses(int id)
+  {
+    return intList(ints(typesAt, id, TYPE_SIZE, 2) + ints(typesAt, id, TYPE_SIZE, 3), ints(typesAt, id, TYPE_SIZE, 4));
+  }
+
+////////////////////////////////////////////////////////////////
+// Buffer access
+////////////////////////////////////////////////////////////////
+
+  private int ints(int section, int id, int recordSize, int index)
+  {
+    return buf.getInt(section + (id * recordSize + index) * 4);
+  }
+
+  private int[] intList(int off, int len)
+  {
+    int[] acc = new int[len];
+    for (int i = 0; i < len; i++) acc[i] = buf.getInt(intsAt + (off + i) * 4);
+    return acc;
+  }
+
+  private String string(int off, int len)
+  {
+    char[] acc = new char[len];
+    for (int i = 0; i < len; i++) acc[i] = (char)(buf.get(bytesAt + off + i) & 0xff);
+    return new String(acc);
+  }
+
+  private boolean equals(int off, int len, String s, int from, int to)
+  {
+    if (len != to - from) return false;
+    for (int i = 0; i < len; i++)
+      if ((buf.get(bytesAt + off + i) & 0xff) != s.charAt(from + i)) return false;
+    return true;
+  }
+
+  /** FNV-1a over chars of s[from, to), shared with the Builder. */
+  static int hash(CharSequence s, int from, int to)
+  {
+    int h = FNV_BASIS;
+    for (int i = from; i < to; i++) h = (h ^ s.charAt(i)) * FNV_PRIME;
+    return mix(h);
+  }
+
+  static int mix(int h)
+  {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    return h;
+  }
+
+////////////////////////////////////////////////////////////////
+// Builder
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Builder assembles a catalog file (see DboCatalogCompiler).  Names
+   * must be lowercase ASCII for words and fields.
+   */
+  public static final class Builder
+  {
+    /** Set ontology version label. */
+    public Builder version(String version) { this.version = version; return this; }
+
+    /** Add a word (or add categories to an existing one); returns its id. */
+    public int word(String word, int categories)
+    {
+      Integer id = (Integer)wordIds.get(word);
+      if (id == null)
+      {
+        id = Integer.valueOf(words.size());
+        wordIds.put(word, id);
+        words.add(word);
+        wordMasks.add(Integer.valueOf(categories));
+      }
+      else
+      {
+        int i = id.intValue();
+        wordMasks.set(i, Integer.valueOf(((Integer)wordMasks.get(i)).intValue() | categories));
+      }
+      return id.intValue();
+    }
+
+    /** Add a field, adding unknown words without categories; returns its id. */
+    public int field(String field)
+    {
+      Integer id = (Integer)fieldIds.get(field);
+      if (id != null) return id.intValue();
+
+      String[] toks = field.split("_");
+      int[] ids = new int[toks.length];
+      for (int i = 0; i < toks.length; i++) ids[i] = word(toks[i], 0);
+
+      id = Integer.valueOf(fields.size());
+      fieldIds.put(field, id);
+      fields.add(ids);
+      return id.intValue();
+    }
+
+    /** Return true if field was added. */
+    public boolean hasField(String field) { return fieldIds.containsKey(field); }
+
+    /**
+     * Add an entity type.
+     * @param name     qualified name, e.g. "HVAC/AHU_SFSS"
+     * @param uses     required field names (already flattened)
+     * @param optUses  optional field names (already flattened)
+     */
+    public void entityType(String name, Collection uses, Collection optUses, boolean isAbstract)
+    {
+      types.add(new Object[] { name, fieldIdList(uses), fieldIdList(optUses), Boolean.valueOf(isAbstract) });
+    }
+
+    private int[] fieldIdList(Collection names)
+    {
+      int[] acc = new int[names.size()];
+      int i = 0;
+      for (Iterator it = names.iterator(); it.hasNext();) acc[i++] = field((String)it.next());
+      return acc;
+    }
+
+    /** Write the catalog file. */
+    public void write(OutputStream os) throws IOException
+    {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ArrayList ints = new ArrayList();   // int[] chunks
+
+      int nw = words.size();
+      int[] wordRecs = new int[nw * WORD_SIZE];
+      for (int i = 0; i < nw; i++)
+      {
+        String w = (String)words.get(i);
+        wordRecs[i * WORD_SIZE] = bytes.size();
+        wordRecs[i * WORD_SIZE + 1] = w.length();
+        wordRecs[i * WORD_SIZE + 2] = ((Integer)wordMasks.get(i)).intValue();
+        ascii(bytes, w);
+      }
+      int[] wordHash = new int[tableSize(nw)];
+      for (int i = 0; i < nw; i++)
+      {
+        String w = (String)words.get(i);
+        insert(wordHash, hash(w, 0, w.length()), i);
+      }
+
+      int nf = fields.size();
+      int numInts = 0;
+      int[] fieldRecs = new int[nf * FIELD_SIZE];
+      int[] fieldHash = new int[tableSize(nf)];
+      for (int i = 0; i < nf; i++)
+      {
+        int[] ids = (int[])fields.get(i);
+        fieldRecs[i * FIELD_SIZE] = numInts;
+        fieldRecs[i * FIELD_SIZE + 1] = ids.length;
+        ints.add(ids);
+        numInts += ids.length;
+
+        int h = FNV_BASIS;
+        for (int k = 0; k < ids.length; k++) h = (h ^ ids[k]) * FNV_PRIME;
+        insert(fieldHash, mix(h), i);
+      }
+
+      int nt = types.size();
+      int[] typeRecs = new int[nt * TYPE_SIZE];
+      int[] typeHash = new int[tableSize(nt)];
+      for (int i = 0; i < nt; i++)
+      {
+        Object[] t = (Object[])types.get(i);
+        String name = (String)t[0];
+        int[] uses = (int[])t[1];
+        int[] opt = (int[])t[2];
+        typeRecs[i * TYPE_SIZE] = bytes.size();
+        typeRecs[i * TYPE_SIZE + 1] = name.length();
+        typeRecs[i * TYPE_SIZE + 2] = numInts;
+        typeRecs[i * TYPE_SIZE + 3] = uses.length;
+        typeRecs[i * TYPE_SIZE + 4] = opt.length;
+        typeRecs[i * TYPE_SIZE + 5] = ((Boolean)t[3]).booleanValue() ? TYPE_ABSTRACT : 0;
+        ascii(bytes, name);
+        ints.add(uses);
+        ints.add(opt);
+        numInts += uses.length + opt.length;
+        insert(typeHash, hash(name, 0, name.length()), i);
+      }
+
+      int versionOff = bytes.size();
+      ascii(bytes, version);
+
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+      int[] header = { MAGIC, FORMAT, nw, nf, nt, wordHash.length, fieldHash.length, typeHash.length,
+        numInts, bytes.size(), versionOff, version.length() };
+      writeInts(out, header);
+      writeInts(out, wordRecs);
+      writeInts(out, wordHash);
+      writeInts(out, fieldRecs);
+      writeInts(out, fieldHash);
+      writeInts(out, typeRecs);
+      writeInts(out, typeHash);
+      for (int i = 0; i < ints.size(); i++) writeInts(out, (int[])ints.get(i));
+      bytes.writeTo(out);
+      out.flush();
+    }
+
+    private static void ascii(ByteArrayOutputStream bytes, String s) throws IOException
+    {
+      for (int i = 0; i < s.length(); i++)
+      {
+        char ch = s.charAt(i);
+        if (ch > 0x7f) throw new IOException("Non ASCII name: " + s);
+        bytes.write(ch);
+      }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] a) throws IOException
+    {
+      for (int i = 0; i < a.length; i++) out.writeInt(a[i]);
+    }
+
+    /** Power of two at least twice n, so probes stay short. */
+    private static int tableSize(int n)
+    {
+      int size = 2;
+      while (size < n * 2) size <<= 1;
+      return size;
+    }
+
+    private static void insert(int[] table, int h, int id)
+    {
+      int mask = table.length - 1;
+      int slot = h & mask;
+      while (table[slot] != 0) slot = (slot + 1) & mask;
+      table[slot] = id + 1;
+    }
+
+    private String version = "";
+    private final HashMap wordIds = new HashMap();    // word : Integer id
+    private final ArrayList words = new ArrayList();
+    private final ArrayList wordMasks = new ArrayList();
+    private final HashMap fieldIds = new HashMap();   // field : Integer id
+    private final ArrayList fields = new ArrayList(); // int[] word ids
+    private final ArrayList types = new ArrayList();  // Object[] { name, uses, optUses, abstract }
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  /** Name of catalog resource bundled next to this class */
+  public static final String RESOURCE = "dbo.catalog";
+
+  static final int MAGIC = 0x44424f43;  // "DBOC"
+  static final int FORMAT = 1;
+
+  private static final int HEADER_SIZE = 12;
+  private static final int WORD_SIZE = 3;
+  private static final int FIELD_SIZE = 2;
+  private static final int TYPE_SIZE = 6;
+  private static final int TYPE_ABSTRACT = 0x01;
+
+  private static final int FNV_BASIS = 0x811c9dc5;
+  private static final int FNV_PRIME = 0x01000193;
+
+  private final ByteBuffer buf;
+  private final String version;
+  private final int numWords;
+  private final int numFields;
+  private final int numTypes;
+  private final int wordHashSize;
+  private final int fieldHashSize;
+  private final int typeHashSize;
+  private final int wordsAt;
+  private final int wordHashAt;
+  private final int fieldsAt;
+  private final int fieldHashAt;
+  private final int typesAt;
+  private final int typeHashAt;
+  private final int intsAt;
+  private final int bytesAt;
+}
@@ -0,0 +1,433 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * DboCatalogCompiler converts the Google Digital Buildings ontology YAML
+ * into the binary DboCatalog bundled with the module.
+ *
+ * Usage: DboCatalogCompiler <ontology/yaml/resources> <out file> [version]
+ *
+ * The resources directory is walked for subfields/, fields/ and
+ * entity_types/ directories; the directory holding each of those is its
+ * namespace ("HVAC"), the top level one is the global namespace.  Entity
+ * type uses are flattened through "implements", and namespace prefixes
+ * and "_N" instance suffixes are stripped from field names.
+ *
+ * Run it offline whenever the ontology is updated and commit the output
+ * as src/googleOntology/matcher/dbo.catalog.  No Niagara needed to run
+ * this.
+ */
+public class DboCatalogCompiler
+{
+  public static void main(String[] args) throws Exception
+  {
+    if (args.length < 2)
+    {
+      System.out.println("usage: DboCatalogCompiler <ontology/yaml/resources> <out file> [version]");
+      return;
+    }
+
+    DboCatalogCompiler c = new DboCatalogCompiler();
+    c.scan(new File(args[0]), "");
+    DboCatalog.Builder b = c.compile();
+    b.version(args.length > 2 ? args[2] : "");
+
+    File out = new File(args[1]);
+    OutputStream os = new FileOutputStream(out);
+    try
+    {
+      b.write(os);
+    }
+    finally
+    {
+      os.close();
+    }
+
+    DboCatalog cat = DboCatalog.map(out);
+    System.out.println("words        : " + cat.numWords());
+    System.out.println("fields       : " + cat.numFields());
+    System.out.println("entity types : " + cat.numEntityTypes());
+    System.out.println("bytes        : " + out.length());
+  }
+
+////////////////////////////////////////////////////////////////
+// Scan
+////////////////////////////////////////////////////////////////
+
+  /** Walk dir collecting YAML files by kind; ns is the namespace of dir. */
+  void scan(File dir, String ns) throws IOException
+  {
+    File[] files = dir.listFiles();
+    if (files == null) throw new IOException("Not a directory: " + dir);
+    Arrays.sort(files);
+    for (int i = 0; i < files.length; i++)
+    {
+      File f = files[i];
+      if (!f.isDirectory()) continue;
+      String name = f.getName();
+      if (name.equals("subfields")) readAll(f, ns, subfields);
+      else if (name.equals("fields")) readAll(f, ns, fieldFiles);
+      else if (name.equals("entity_types")) readAll(f, ns, typeFiles);
+      else scan(f, ns.length() == 0 ? name : ns + "/" + name);
+    }
+  }
+
+  private static void readAll(File dir, String ns, List acc) throws IOException
+  {
+    File[] files = dir.listFiles();
+    Arrays.sort(files);
+    for (int i = 0; i < files.length; i++)
+    {
+      String name = files[i].getName();
+      if (!name.endsWith(".yaml") && !name.endsWith(".yml")) continue;
+      Object doc = Yaml.parse(files[i]);
+      if (doc instanceof Map) acc.add(new Object[] { ns, doc });
+    }
+  }
+
+////////////////////////////////////////////////////////////////
+// Compile
+////////////////////////////////////////////////////////////////
+
+  DboCatalog.Builder compile()
+  {
+    DboCatalog.Builder b = new DboCatalog.Builder();
+
+    // subfields: category : { word : description }
+    for (int i = 0; i < subfields.size(); i++)
+    {
+      Map doc = (Map)((Object[])subfields.get(i))[1];
+      for (Iterator it = doc.entrySet().iterator(); it.hasNext();)
+      {
+        Map.Entry e = (Map.Entry)it.next();
+        int mask = category((String)e.getKey());
+        if (!(e.getValue() instanceof Map)) continue;
+        for (Iterator w = ((Map)e.getValue()).keySet().iterator(); w.hasNext();)
+          b.word(((String)w.next()).toLowerCase(), mask);
+      }
+    }
+
+    // fields: literals is a list of names or { name : states }
+    for (int i = 0; i < fieldFiles.size(); i++)
+    {
+      Map doc = (Map)((Object[])fieldFiles.get(i))[1];
+      Object lits = doc.get("literals");
+      if (!(lits instanceof List)) continue;
+      for (Iterator it = ((List)lits).iterator(); it.hasNext();)
+      {
+        Object lit = it.next();
+        if (lit instanceof Map) lit = ((Map)lit).keySet().iterator().next();
+        if (lit instanceof String) b.field(fieldName((String)lit));
+      }
+    }
+
+    // entity types by qualified name
+    LinkedHashMap types = new LinkedHashMap();
+    for (int i = 0; i < typeFiles.size(); i++)
+    {
+      Object[] f = (Object[])typeFiles.get(i);
+      String ns = (String)f[0];
+      for (Iterator it = ((Map)f[1]).entrySet().iterator(); it.hasNext();)
+      {
+        Map.Entry e = (Map.Entry)it.next();
+        if (!(e.getValue() instanceof Map)) continue;
+        String name = (String)e.getKey();
+        types.put(ns.length() == 0 ? name : ns + "/" + name, new Object[] { ns, e.getValue() });
+      }
+    }
+
+    for (Iterator it = types.keySet().iterator(); it.hasNext();)
+    {
+      String name = (String)it.next();
+      Map def = (Map)((Object[])types.get(name))[1];
+      LinkedHashSet uses = new LinkedHashSet();
+      LinkedHashSet opt = new LinkedHashSet();
+      flatten(types, name, uses, opt, new HashSet());
+      opt.removeAll(uses);
+      b.entityType(name, uses, opt, "true".equals(def.get("is_abstract")));
+    }
+    return b;
+  }
+
+  /** Collect uses of a type and the types it implements, depth first. */
+  private static void flatten(Map types, String name, Set uses, Set opt, Set visited)
+  {
+    if (!visited.add(name)) return;
+    Object[] t = (Object[])types.get(name);
+    if (t == null) return;
+    String ns = (String)t[0];
+    Map def = (Map)t[1];
+
+    Object impl = def.get("implements");
+    if (impl instanceof List)
+    {
+      for (Iterator it = ((List)impl).iterator(); it.hasNext();)
+      {
+        String parent = (String)it.next();
+        if (parent.indexOf('/') < 0 && ns.length() > 0 && types.containsKey(ns + "/" + parent))
+          parent = ns + "/" + parent;
+        flatten(types, parent, uses, opt, visited);
+      }
+    }
+
+    addFields(def.get("uses"), uses);
+    addFields(def.get("opt_uses"), opt);
+  }
+
+  private static void addFields(Object list, Set acc)
+  {
+    if (!(list instanceof List)) return;
+    for (Iterator it = ((List)list).iterator(); it.hasNext();)
+      acc.add(fieldName((String)it.next()));
+  }
+
+  /** Strip namespace and instance suffix: "HVAC/zone_air_temperature_sensor_2" */
+  static String fieldName(String s)
+  {
+    s = s.substring(s.lastIndexOf('/') + 1).toLowerCase();
+    int i = s.length();
+    while (i > 0 && Character.isDigit(s.charAt(i - 1))) i--;
+    if (i < s.length() && i > 1 && s.charAt(i - 1) == '_') s = s.substring(0, i - 1);
+    return s;
+  }
+
+  /** Map a subfields.yaml category to Vocabulary category bits. */
+  private static int category(String name)
+  {
+    if (name.equals("point_type")) return Vocabulary.POINT_TYPE;
+    if (name.equals("measurement")) return Vocabulary.MEASUREMENT;
+    if (name.equals("descriptor")) return Vocabulary.DESCRIPTOR;
+    if (name.equals("component")) return Vocabulary.COMPONENT;
+    if (name.equals("measurement_descriptor")) return Vocabulary.MEASUREMENT_DESCRIPTOR;
+    if (name.startsWith("aggregation")) return Vocabulary.AGGREGATION;
+    return 0;
+  }
+
+////////////////////////////////////////////////////////////////
+// Yaml
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Yaml parses the subset of YAML used by the ontology files: block
+   * maps and lists, "- key: value" items, quoted and block scalars,
+   * comments and flow lists.  Scalars are left as strings.  A plain or
+   * quoted scalar may continue on more deeply indented lines, which are
+   * folded into it.  Any other line that does not fit the block it is in
+   * is an IOException naming the file and line, rather than the end of
+   * the document.
+   */
+  static final class Yaml
+  {
+    static Object parse(File f) throws IOException
+    {
+      ArrayList raw = new ArrayList();
+      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8"));
+      try
+      {
+        for (String line; (line = in.readLine()) != null;) raw.add(line);
+      }
+      finally
+      {
+        in.close();
+      }
+      Yaml y = new Yaml(f.getPath(), raw);
+      if (y.pos == y.n) return null;
+      Object doc = y.block(y.indent[y.pos]);
+      if (y.pos < y.n) throw y.err("unexpected indentation");
+      return doc;
+    }
+
+    private Yaml(String name, List raw)
+    {
+      this.name = name;
+      n = raw.size();
+      indent = new int[n];
+      text = new String[n];
+      lines = new int[n];
+      int k = 0;
+      for (int i = 0; i < n; i++)
+      {
+        String line = (String)raw.get(i);
+        int ind = 0;
+        while (ind < line.length() && line.charAt(ind) == ' ') ind++;
+        String s = stripComment(line.substring(ind)).trim();
+        if (s.length() == 0 || s.equals("---")) continue;
+        indent[k] = ind;
+        text[k] = s;
+        lines[k] = i + 1;
+        k++;
+      }
+      n = k;
+    }
+
+    private Object block(int ind) throws IOException
+    {
+      return text[pos].startsWith("-") && (text[pos].length() == 1 || text[pos].charAt(1) == ' ') ? list(ind) : map(ind);
+    }
+
+    private List list(int ind) throws IOException
+    {
+      ArrayList acc = new ArrayList();
+      while (pos < n && indent[pos] == ind && text[pos].startsWith("-"))
+      {
+        String rest = text[pos].substring(1).trim();
+        if (rest.length() == 0)
+        {
+          pos++;
+          acc.add(pos < n && indent[pos] > ind ? block(indent[pos]) : null);
+        }
+        else if (colon(rest) > 0)
+        {
+          // "- key: value" starts a map indented past the dash
+          int inner = ind + 1;
+          while (text[pos].charAt(inner - ind) == ' ') inner++;
+          text[pos] = rest;
+          indent[pos] = inner;
+          acc.add(map(inner));
+        }
+        else
+        {
+          pos++;
+          acc.add(scalar(continued(rest, ind)));
+        }
+      }
+      if (pos < n && indent[pos] > ind) throw err("unexpected indentation");
+      return acc;
+    }
+
+    private Map map(int ind) throws IOException
+    {
+      LinkedHashMap acc = new LinkedHashMap();
+      while (pos < n && indent[pos] == ind)
+      {
+        String s = text[pos];
+        int c = colon(s);
+        if (c <= 0) throw err("expected key: value");
+        String key = unquote(s.substring(0, c).trim());
+        String val = s.substring(c + 1).trim();
+        pos++;
+
+        if (val.length() == 0)
+        {
+          // nested block, or a list at the same indent as the key
+          if (pos < n && (indent[pos] > ind || (indent[pos] == ind && text[pos].startsWith("- "))))
+            acc.put(key, block(indent[pos]));
+          else
+            acc.put(key, null);
+        }
+        else if (val.startsWith("|") || val.startsWith(">"))
+        {
+          StringBuffer sb = new StringBuffer();
+          while (pos < n && indent[pos] > ind)
+          {
+            if (sb.length() > 0) sb.append(val.startsWith("|") ? '\n' : ' ');
+            sb.append(text[pos++]);
+          }
+          acc.put(key, sb.toString());
+        }
+        else acc.put(key, scalar(continued(val, ind)));
+      }
+      if (pos < n && indent[pos] > ind) throw err("unexpected indentation");
+      return acc;
+    }
+
+    /**
+     * Fold the lines indented past ind that continue the scalar s: the
+     * rest of an open quoted string, or plain text that is neither a
+     * key nor a list item.
+     */
+    private String continued(String s, int ind) throws IOException
+    {
+      if (pos == n || indent[pos] <= ind) return s;
+      char quote = s.charAt(0) == '"' || s.charAt(0) == '\'' ? s.charAt(0) : 0;
+      boolean open = quote != 0 && (s.length() == 1 || s.charAt(s.length() - 1) != quote);
+      StringBuffer sb = new StringBuffer(s);
+      while (pos < n && indent[pos] > ind)
+      {
+        String t = text[pos];
+        if (quote != 0 ? !open : colon(t) >= 0 || t.startsWith("- ")) throw err("unexpected indentation");
+        if (quote != 0) open = t.charAt(t.length() - 1) != quote;
+        sb.append(' ').append(t);
+        pos++;
+      }
+      return sb.toString();
+    }
+
+    private IOException err(String msg)
+    {
+      return new IOException(name + ":" + lines[pos] + ": " + msg);
+    }
+
+    private static Object scalar(String s)
+    {
+      if (s.startsWith("[") && s.endsWith("]"))
+      {
+        ArrayList acc = new ArrayList();
+        StringTokenizer st = new StringTokenizer(s.substring(1, s.length() - 1), ",");
+        while (st.hasMoreTokens())
+        {
+          String tok = st.nextToken().trim();
+          if (tok.length() > 0) acc.add(unquote(tok));
+        }
+        return acc;
+      }
+      return unquote(s);
+    }
+
+    private static String unquote(String s)
+    {
+      if (s.length() >= 2 && (s.charAt(0) == '"' || s.charAt(0) == '\'') && s.charAt(s.length() - 1) == s.charAt(0))
+        return s.substring(1, s.length() - 1);
+      return s;
+    }
+
+    /** Index of the key separator colon outside quotes, or -1. */
+    private static int colon(String s)
+    {
+      char quote = 0;
+      for (int i = 0; i < s.length(); i++)
+      {
+        char ch = s.charAt(i);
+        if (quote != 0) { if (ch == quote) quote = 0; continue; }
+        if (ch == '"' || ch == '\'') quote = ch;
+        else if (ch == ':' && (i + 1 == s.length() || s.charAt(i + 1) == ' ')) return i;
+      }
+      return -1;
+    }
+
+    private static String stripComment(String s)
+    {
+      char quote = 0;
+      for (int i = 0; i < s.length(); i++)
+      {
+        char ch = s.charAt(i);
+        if (quote != 0) { if (ch == quote) quote = 0; continue; }
+        if (ch == '"' || ch == '\'') quote = ch;
+        else if (ch == '#' && (i == 0 || s.charAt(i - 1) == ' ')) return s.substring(0, i);
+      }
+      return s;
+    }
+
+    private final String name;
+    private int n;
+    private int pos;
+    private final int[] indent;
+    private final String[] text;
+    private final int[] lines;    // line number of each entry, from 1
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private final ArrayList subfields = new ArrayList();   // Object[] { ns, Map }
+  private final ArrayList fieldFiles = new ArrayList();
+  private final ArrayList typeFiles = new ArrayList();
+}
@@ -0,0 +1,135 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * DboCatalogCompilerCheck compiles the fixture ontology in testdata/dbo
+ * and checks the word, field and entity type counts of the catalog, the
+ * flattened uses of an entity type, and that YAML with a line indented
+ * where no block expects it is rejected instead of cut short.
+ *
+ * Usage: DboCatalogCompilerCheck [testdata/dbo]
+ *
+ * Run from googleOntology-rt, or pass the fixture directory.  No Niagara
+ * needed to run this.  Exits with status 1 on a failure.
+ */
+public class DboCatalogCompilerCheck
+{
+  /** Malformed documents, each must fail to parse */
+  static final String[] MALFORMED =
+  {
+    // nested key indented past its siblings
+    "a:\n  b: 1\n    c: 2\nd: 3\n",
+    // key between two levels after a nested block
+    "a:\n    b: 1\n  c: 2\nd: 3\n",
+    // list item deeper than the list
+    "uses:\n- a\n  - b\n- c\n",
+    // text after a closed quoted scalar
+    "a: \"x\"\n  y\nb: 1\n",
+    // line with no key
+    "a: 1\nb\nc: 2\n",
+    // top level line dedented below the document
+    "  a: 1\nb: 2\n",
+  };
+
+  public static void main(String[] args) throws Exception
+  {
+    File dir = new File(args.length > 0 ? args[0] : "testdata/dbo");
+    System.out.println("=== DboCatalogCompiler Check (" + dir + ") ===\n");
+
+    DboCatalogCompiler c = new DboCatalogCompiler();
+    c.scan(dir, "");
+    File out = File.createTempFile("dbo", ".catalog");
+    out.deleteOnExit();
+    OutputStream os = new FileOutputStream(out);
+    try
+    {
+      c.compile().version("check").write(os);
+    }
+    finally
+    {
+      os.close();
+    }
+    DboCatalog cat = DboCatalog.map(out);
+
+    check("words", cat.numWords(), 13);
+    check("fields", cat.numFields(), 8);
+    check("entity types", cat.numEntityTypes(), 4);
+
+    int vav = cat.entityTypeId("HVAC/VAV_SD");
+    check("HVAC/VAV_SD", vav >= 0 ? 1 : 0, 1);
+    if (vav >= 0)
+    {
+      check("HVAC/VAV_SD uses", cat.entityTypeUses(vav).length, 4);
+      check("HVAC/VAV_SD opt uses", cat.entityTypeOptUses(vav).length, 2);
+      check("HVAC/VAV_SD abstract", cat.isAbstract(vav) ? 1 : 0, 0);
+    }
+    int ztm = cat.entityTypeId("HVAC/ZTM");
+    check("HVAC/ZTM abstract", ztm >= 0 && cat.isAbstract(ztm) ? 1 : 0, 1);
+    check("fan_run_status", cat.isField("fan_run_status") ? 1 : 0, 1);
+
+    // continuation lines are folded into their scalar
+    Map doc = (Map)parse("a: \"one\n  two\"\nb: three\n  four\nc: 5\n");
+    check("folded quoted scalar", "one two".equals(doc.get("a")) ? 1 : 0, 1);
+    check("folded plain scalar", "three four".equals(doc.get("b")) ? 1 : 0, 1);
+    check("key after continuation", "5".equals(doc.get("c")) ? 1 : 0, 1);
+
+    for (int i = 0; i < MALFORMED.length; i++)
+    {
+      try
+      {
+        parse(MALFORMED[i]);
+        fail("malformed #" + i + " parsed");
+      }
+      catch (IOException e)
+      {
+        System.out.println("ok   malformed #" + i + ": " + e.getMessage());
+      }
+    }
+
+    System.out.println("\n" + numFailed + " failed");
+    if (numFailed > 0) System.exit(1);
+  }
+
+  private static Object parse(String yaml) throws IOException
+  {
+    File f = File.createTempFile("dbo", ".yaml");
+    try
+    {
+      Writer w = new OutputStreamWriter(new FileOutputStream(f), "UTF-8");
+      try
+      {
+        w.write(yaml);
+      }
+      finally
+      {
+        w.close();
+      }
+      return DboCatalogCompiler.Yaml.parse(f);
+    }
+    finally
+    {
+      f.delete();
+    }
+  }
+
+  private static void check(String what, int actual, int expected)
+  {
+    if (actual == expected) System.out.println("ok   " + what + ": " + actual);
+    else fail(what + ": " + actual + ", expected " + expected);
+  }
+
+  private static void fail(String msg)
+  {
+    numFailed++;
+    System.out.println("FAIL " + msg);
+  }
+
+  private static int numFailed;
+}
@@ -5,191 +5,425 @@
 
 package googleOntology.matcher;
 
+import java.io.*;
 import java.util.*;
 
 /**
- * DboFieldLibrary contains common DBO subfields and entity types.
+ * DboFieldLibrary holds the vocabulary used for matching: DBO subfields,
+ * entity types, abbreviations and known fields.
+ *
+ * The vocabulary is compiled into an immutable Vocabulary, so it is
+ * safely published to every matching thread without locking.  The
+ * standard vocabulary is built when the class is loaded; a site
+ * vocabulary file compiled with compile(File) can be swapped in at
+ * runtime with install().  The static methods below read whichever
+ * instance is current; a batch match takes get() once and uses that.
  */
 public final class DboFieldLibrary
 {
-  /** Initialize library */
+  /**
+   * Make sure the library is loaded.  The vocabulary is built when the
+   * class is initialized, so this only forces that to happen early.
+   */
   public static void init()
   {
-    if (initialized) return;
-
-    // Point types (required suffix)
-    pointTypes.add("sensor");
-    pointTypes.add("setpoint");
-    pointTypes.add("command");
-    pointTypes.add("status");
-    pointTypes.add("alarm");
-    pointTypes.add("count");
-    pointTypes.add("accumulator");
-    pointTypes.add("mode");
-    pointTypes.add("enable");
-
-    // Measurements
-    measurements.add("temperature");
-    measurements.add("pressure");
-    measurements.add("flowrate");
-    measurements.add("flowvolume");
-    measurements.add("power");
-    measurements.add("current");
-    measurements.add("voltage");
-    measurements.add("speed");
-    measurements.add("frequency");
-    measurements.add("percentage");
-    measurements.add("concentration");
-
-    // Measurement descriptors
-    measurementDescriptors.add("differential");
-    measurementDescriptors.add("relative");
-    measurementDescriptors.add("static");
-    measurementDescriptors.add("total");
-    measurementDescriptors.add("effective");
-
-    // Descriptors (location/function)
-    descriptors.add("discharge");
-    descriptors.add("supply");
-    descriptors.add("return");
-    descriptors.add("exhaust");
-    descriptors.add("outside");
-    descriptors.add("zone");
-    descriptors.add("mixed");
-    descriptors.add("entering");
-    descriptors.add("leaving");
-    descriptors.add("primary");
-    descriptors.add("secondary");
-    descriptors.add("chilled");
-    descriptors.add("hot");
-    descriptors.add("condensing");
-    descriptors.add("evaporator");
-    descriptors.add("cooling");
-    descriptors.add("heating");
-    descriptors.add("building");
-    descriptors.add("space");
-
-    // Components
-    components.add("air");
-    components.add("water");
-    components.add("fan");
-    components.add("pump");
-    components.add("valve");
-    components.add("damper");
-    components.add("filter");
-    components.add("coil");
-    components.add("compressor");
-    components.add("economizer");
-
-    // Aggregations
-    aggregations.add("min");
-    aggregations.add("max");
-    aggregations.add("average");
-    aggregations.add("mean");
-
-    // Entity types
-    entityTypes.put("ahu", "AHU");
-    entityTypes.put("rtu", "RTU");
-    entityTypes.put("vav", "VAV");
-    entityTypes.put("fcu", "FCU");
-    entityTypes.put("chws", "CHWS");
-    entityTypes.put("hws", "HWS");
-    entityTypes.put("boiler", "BLR");
-    entityTypes.put("chiller", "CH");
-    entityTypes.put("cooling", "CT");
-    entityTypes.put("tower", "CT");
-    entityTypes.put("fan", "FAN");
-    entityTypes.put("pump", "PMP");
-
-    // Common HVAC abbreviations
-    abbreviations.put("dat", "discharge_air_temperature");
-    abbreviations.put("rat", "return_air_temperature");
-    abbreviations.put("mat", "mixed_air_temperature");
-    abbreviations.put("oat", "outside_air_temperature");
-    abbreviations.put("sat", "supply_air_temperature");
-    abbreviations.put("chwst", "chilled_water_supply_temperature");
-    abbreviations.put("chwrt", "chilled_water_return_temperature");
-    abbreviations.put("hwst", "hot_water_supply_temperature");
-    abbreviations.put("hwrt", "hot_water_return_temperature");
-    abbreviations.put("znt", "zone_air_temperature");
-    abbreviations.put("sp", "setpoint");
-    abbreviations.put("cmd", "command");
-    abbreviations.put("sts", "status");
-    abbreviations.put("dpr", "damper");
-    abbreviations.put("vlv", "valve");
-    abbreviations.put("sf", "supply_fan");
-    abbreviations.put("rf", "return_fan");
-    abbreviations.put("ef", "exhaust_fan");
-
-    initialized = true;
+  }
+
+  /** Get the compiled vocabulary. */
+  public static Vocabulary get() { return vocabulary; }
+
+  /** Get the standard vocabulary (built in words plus the bundled catalog). */
+  public static Vocabulary getStandard() { return STANDARD; }
+
+  /**
+   * Get why the bundled DBO catalog could not be loaded, or null if it
+   * was.  Without it only the built in fields are known.
+   */
+  public static String getLoadError() { return loadError; }
+
+  /**
+   * Get version of the current vocabulary: 1 for the standard one,
+   * incremented by every install().
+   */
+  public static int getVersion() { return version; }
+
+  /**
+   * Make the given vocabulary current; returns its version.  A batch
+   * match reads the vocabulary once when it starts, so matches already
+   * in progress finish with the vocabulary they started with.
+   */
+  public static synchronized int install(Vocabulary v)
+  {
+    vocabulary = v;
+    return ++version;
+  }
+
+  /**
+   * Compile a site vocabulary file on top of the standard vocabulary.
+   * A file ending in ".catalog" is a compiled DboCatalog, anything else
+   * is vocabulary text (see Vocabulary.Builder.parse).  The file is
+   * read into memory rather than mapped, so it may be replaced while
+   * in use.
+   * @throws IllegalArgumentException if the file content is invalid
+   */
+  public static Vocabulary compile(File file) throws IOException
+  {
+    Vocabulary.Builder b = standardBuilder();
+    InputStream in = new FileInputStream(file);
+    try
+    {
+      if (file.getName().endsWith(".catalog"))
+      {
+        b.catalog(DboCatalog.read(in));
+      }
+      else
+      {
+        ByteArrayOutputStream acc = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        for (int n; (n = in.read(buf)) > 0;) acc.write(buf, 0, n);
+        b.parse(new String(acc.toByteArray(), "UTF-8"));
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+    return b.build();
+  }
+
+  /** Make a builder holding the standard vocabulary. */
+  private static Vocabulary.Builder standardBuilder()
+  {
+    Vocabulary.Builder b = new Vocabulary.Builder()
+      // point types (required suffix)
+      .words(Vocabulary.POINT_TYPE, "sensor setpoint command status alarm count accumulator mode enable")
+
+      // measurements
+      .words(Vocabulary.MEASUREMENT, "temperature pressure flowrate flowvolume power current voltage")
+      .words(Vocabulary.MEASUREMENT, "speed frequency percentage concentration")
+
+      // measurement descriptors
+      .words(Vocabulary.MEASUREMENT_DESCRIPTOR, "differential relative static total effective")
+
+      // descriptors (location/function)
+      .words(Vocabulary.DESCRIPTOR, "discharge supply return exhaust outside zone mixed entering leaving")
+      .words(Vocabulary.DESCRIPTOR, "primary secondary chilled hot condensing evaporator cooling heating")
+      .words(Vocabulary.DESCRIPTOR, "building space")
+
+      // components
+      .words(Vocabulary.COMPONENT, "air water fan pump valve damper filter coil compressor economizer")
+
+      // aggregations
+      .words(Vocabulary.AGGREGATION, "min max average mean")
+
+      // entity types
+      .entityType("ahu", "AHU")
+      .entityType("rtu", "RTU")
+      .entityType("vav", "VAV")
+      .entityType("fcu", "FCU")
+      .entityType("chws", "CHWS")
+      .entityType("hws", "HWS")
+      .entityType("boiler", "BLR")
+      .entityType("chiller", "CH")
+      .entityType("cooling", "CT")
+      .entityType("tower", "CT")
+      .entityType("fan", "FAN")
+      .entityType("pump", "PMP")
+
+      // common HVAC abbreviations
+      .abbreviation("dat", "discharge_air_temperature")
+      .abbreviation("rat", "return_air_temperature")
+      .abbreviation("mat", "mixed_air_temperature")
+      .abbreviation("oat", "outside_air_temperature")
+      .abbreviation("sat", "supply_air_temperature")
+      .abbreviation("chwst", "chilled_water_supply_temperature")
+      .abbreviation("chwrt", "chilled_water_return_temperature")
+      .abbreviation("hwst", "hot_water_supply_temperature")
+      .abbreviation("hwrt", "hot_water_return_temperature")
+      .abbreviation("znt", "zone_air_temperature")
+      .abbreviation("sp", "setpoint")
+      .abbreviation("cmd", "command")
+      .abbreviation("sts", "status")
+      .abbreviation("dpr", "damper")
+      .abbreviation("vlv", "valve")
+      .abbreviation("sf", "supply_fan")
+      .abbreviation("rf", "return_fan")
+      .abbreviation("ef", "exhaust_fan")
+
+      // short forms found inside concatenated names ("ZnTmpSp", "CHWSTemp");
+      // unlike abbreviations these never match a whole name on their own
+      .shortForm("temp", "temperature")
+      .shortForm("tmp", "temperature")
+      .shortForm("press", "pressure")
+      .shortForm("pres", "pressure")
+      .shortForm("flw", "flowrate")
+      .shortForm("spd", "speed")
+      .shortForm("freq", "frequency")
+      .shortForm("pct", "percentage")
+      .shortForm("stpt", "setpoint")
+      .shortForm("spt", "setpoint")
+      .shortForm("alm", "alarm")
+      .shortForm("ena", "enable")
+      .shortForm("zn", "zone")
+      .shortForm("sa", "supply_air")
+      .shortForm("ra", "return_air")
+      .shortForm("oa", "outside_air")
+      .shortForm("ma", "mixed_air")
+      .shortForm("da", "discharge_air")
+      .shortForm("ea", "exhaust_air")
+      .shortForm("chw", "chilled_water")
+      .shortForm("chws", "chilled_water_supply")
+      .shortForm("chwr", "chilled_water_return")
+      .shortForm("hw", "hot_water")
+      .shortForm("hws", "hot_water_supply")
+      .shortForm("hwr", "hot_water_return")
+      .shortForm("disch", "discharge")
+      .shortForm("dischg", "discharge")
+      .shortForm("sup", "supply")
+      .shortForm("sply", "supply")
+      .shortForm("ret", "return")
+      .shortForm("rtn", "return")
+      .shortForm("exh", "exhaust")
+      .shortForm("outdoor", "outside")
+      .shortForm("mix", "mixed")
+      .shortForm("clg", "cooling")
+      .shortForm("htg", "heating")
+      .shortForm("bldg", "building")
+      .shortForm("comp", "compressor")
+      .shortForm("econ", "economizer")
+      .shortForm("filt", "filter");
+
+    // known DBO fields (subset of the Digital Buildings telemetry fields)
+    String[] fields = { "supply_air_temperature_sensor", "supply_air_temperature_setpoint",
+      "discharge_air_temperature_sensor", "discharge_air_temperature_setpoint",
+      "return_air_temperature_sensor", "mixed_air_temperature_sensor",
+      "outside_air_temperature_sensor", "exhaust_air_temperature_sensor",
+      "zone_air_temperature_sensor", "zone_air_temperature_setpoint",
+      "zone_air_cooling_temperature_setpoint", "zone_air_heating_temperature_setpoint",
+      "zone_air_relative_humidity_sensor", "return_air_relative_humidity_sensor",
+      "outside_air_relative_humidity_sensor", "chilled_water_supply_temperature_sensor",
+      "chilled_water_supply_temperature_setpoint", "chilled_water_return_temperature_sensor",
+      "chilled_water_differential_pressure_sensor",
+      "chilled_water_differential_pressure_setpoint", "chilled_water_flowrate_sensor",
+      "chilled_water_valve_percentage_command", "hot_water_supply_temperature_sensor",
+      "hot_water_supply_temperature_setpoint", "hot_water_return_temperature_sensor",
+      "hot_water_differential_pressure_sensor", "hot_water_differential_pressure_setpoint",
+      "hot_water_flowrate_sensor", "heating_water_valve_percentage_command",
+      "condensing_water_supply_temperature_sensor",
+      "condensing_water_return_temperature_sensor",
+      "condensing_water_supply_temperature_setpoint", "entering_water_temperature_sensor",
+      "leaving_water_temperature_sensor", "supply_fan_run_command", "supply_fan_run_status",
+      "supply_fan_speed_command", "supply_fan_speed_percentage_command",
+      "supply_fan_speed_frequency_sensor", "supply_fan_current_sensor",
+      "supply_fan_power_sensor", "return_fan_run_command", "return_fan_run_status",
+      "return_fan_speed_percentage_command", "exhaust_fan_run_command",
+      "exhaust_fan_run_status", "exhaust_fan_speed_percentage_command",
+      "discharge_fan_run_command", "discharge_fan_run_status",
+      "discharge_fan_speed_percentage_command", "supply_air_static_pressure_sensor",
+      "supply_air_static_pressure_setpoint", "discharge_air_static_pressure_sensor",
+      "discharge_air_static_pressure_setpoint", "building_air_static_pressure_sensor",
+      "building_air_static_pressure_setpoint", "supply_air_flowrate_sensor",
+      "supply_air_flowrate_setpoint", "discharge_air_flowrate_sensor",
+      "discharge_air_flowrate_setpoint", "outside_air_flowrate_sensor",
+      "outside_air_flowrate_setpoint", "supply_air_damper_percentage_command",
+      "outside_air_damper_percentage_command", "return_air_damper_percentage_command",
+      "exhaust_air_damper_percentage_command", "zone_air_co2_concentration_sensor",
+      "return_air_co2_concentration_sensor", "filter_differential_pressure_sensor",
+      "filter_alarm", "cooling_valve_percentage_command", "heating_valve_percentage_command",
+      "cooling_percentage_command", "heating_percentage_command", "compressor_run_command",
+      "compressor_run_status", "economizer_mode", "pump_run_command", "pump_run_status",
+      "pump_speed_percentage_command", "pump_speed_frequency_sensor", "chiller_run_command",
+      "chiller_run_status", "boiler_run_command", "boiler_run_status", "power_sensor",
+      "current_sensor", "voltage_sensor" };
+    for (int i = 0; i < fields.length; i++) b.field(fields[i]);
+
+    // entity prototypes: fields typical for each entity type
+    b.prototype("AHU", "supply_air_temperature_sensor supply_air_temperature_setpoint " +
+        "return_air_temperature_sensor mixed_air_temperature_sensor outside_air_temperature_sensor " +
+        "supply_fan_run_command supply_fan_run_status supply_fan_speed_percentage_command " +
+        "supply_air_static_pressure_sensor supply_air_static_pressure_setpoint " +
+        "outside_air_damper_percentage_command return_air_damper_percentage_command " +
+        "filter_differential_pressure_sensor cooling_valve_percentage_command " +
+        "heating_valve_percentage_command economizer_mode")
+      .prototype("RTU", "discharge_air_temperature_sensor discharge_air_temperature_setpoint " +
+        "return_air_temperature_sensor outside_air_temperature_sensor zone_air_temperature_sensor " +
+        "supply_fan_run_command supply_fan_run_status compressor_run_command compressor_run_status " +
+        "outside_air_damper_percentage_command cooling_percentage_command heating_percentage_command")
+      .prototype("VAV", "zone_air_temperature_sensor zone_air_temperature_setpoint " +
+        "zone_air_cooling_temperature_setpoint zone_air_heating_temperature_setpoint " +
+        "supply_air_flowrate_sensor supply_air_flowrate_setpoint supply_air_damper_percentage_command " +
+        "discharge_air_temperature_sensor heating_water_valve_percentage_command zone_air_co2_concentration_sensor")
+      .prototype("FCU", "zone_air_temperature_sensor zone_air_temperature_setpoint " +
+        "discharge_fan_run_command discharge_fan_run_status discharge_fan_speed_percentage_command " +
+        "discharge_air_temperature_sensor cooling_valve_percentage_command heating_valve_percentage_command")
+      .prototype("CH", "chilled_water_supply_temperature_sensor chilled_water_supply_temperature_setpoint " +
+        "chilled_water_return_temperature_sensor condensing_water_supply_temperature_sensor " +
+        "condensing_water_return_temperature_sensor chiller_run_command chiller_run_status " +
+        "chilled_water_flowrate_sensor power_sensor")
+      .prototype("BLR", "hot_water_supply_temperature_sensor hot_water_supply_temperature_setpoint " +
+        "hot_water_return_temperature_sensor boiler_run_command boiler_run_status hot_water_flowrate_sensor")
+      .prototype("CT", "condensing_water_supply_temperature_sensor condensing_water_return_temperature_sensor " +
+        "condensing_water_supply_temperature_setpoint supply_fan_run_command supply_fan_speed_percentage_command")
+      .prototype("PMP", "pump_run_command pump_run_status pump_speed_percentage_command pump_speed_frequency_sensor")
+      .prototype("FAN", "exhaust_fan_run_command exhaust_fan_run_status exhaust_fan_speed_percentage_command")
+      .prototype("CHWS", "chilled_water_supply_temperature_sensor chilled_water_return_temperature_sensor " +
+        "chilled_water_differential_pressure_sensor chilled_water_differential_pressure_setpoint " +
+        "chilled_water_flowrate_sensor")
+      .prototype("HWS", "hot_water_supply_temperature_sensor hot_water_return_temperature_sensor " +
+        "hot_water_differential_pressure_sensor hot_water_differential_pressure_setpoint " +
+        "hot_water_flowrate_sensor");
+
+    // full ontology from the compiled catalog bundled in the jar
+    try
+    {
+      DboCatalog dbo = DboCatalog.loadDefault();
+      if (dbo != null) b.catalog(dbo);
+      loadError = dbo != null ? null : "no " + DboCatalog.RESOURCE + " bundled";
+    }
+    catch (IOException e)
+    {
+      loadError = e.getMessage();
+    }
+
+    return b;
   }
 
   /** Check if word is a known point type */
   public static boolean isPointType(String word)
   {
-    return pointTypes.contains(word.toLowerCase());
+    return vocabulary.is(word.toLowerCase(), Vocabulary.POINT_TYPE);
   }
 
   /** Check if word is a known measurement */
   public static boolean isMeasurement(String word)
   {
-    return measurements.contains(word.toLowerCase());
+    return vocabulary.is(word.toLowerCase(), Vocabulary.MEASUREMENT);
   }
 
   /** Check if word is a known descriptor */
   public static boolean isDescriptor(String word)
   {
-    return descriptors.contains(word.toLowerCase());
+    return vocabulary.is(word.toLowerCase(), Vocabulary.DESCRIPTOR);
   }
 
   /** Check if word is a known component */
   public static boolean isComponent(String word)
   {
-    return components.contains(word.toLowerCase());
+    return vocabulary.is(word.toLowerCase(), Vocabulary.COMPONENT);
+  }
+
+  /**
+   * Check if field is a DBO field the matcher could map a point to: a
+   * catalog field, or a field made of vocabulary words ending in a point
+   * type, optionally with a duplicate number ("zone_air_temperature_sensor_2").
+   */
+  public static boolean isValidField(String field)
+  {
+    if (field == null || field.length() == 0) return false;
+
+    // strip duplicate number
+    int us = field.lastIndexOf('_');
+    if (us > 0 && us < field.length() - 1)
+    {
+      boolean digits = true;
+      for (int i = us + 1; i < field.length() && digits; i++)
+        digits = Character.isDigit(field.charAt(i));
+      if (digits) field = field.substring(0, us);
+    }
+
+    if (getCatalog().contains(field)) return true;
+
+    String[] words = field.split("_");
+    for (int i = 0; i < words.length; i++)
+      if (classify(words[i]) == 0) return false;
+    return isPointType(words[words.length - 1]);
+  }
+
+  /**
+   * Classify an already lowercase token.  Returns a bitmask of the
+   * POINT_TYPE, MEASUREMENT, DESCRIPTOR and COMPONENT categories the
+   * token belongs to (0 if none).
+   */
+  static int classify(String lower)
+  {
+    return classify(vocabulary, lower);
+  }
+
+  /** Classify an already lowercase token with given vocabulary. */
+  static int classify(Vocabulary v, String lower)
+  {
+    return v.classify(lower) & (POINT_TYPE | MEASUREMENT | DESCRIPTOR | COMPONENT);
   }
 
   /** Get all point types */
-  public static Set getPointTypes() { return pointTypes; }
+  public static Set getPointTypes() { return vocabulary.words(Vocabulary.POINT_TYPE); }
 
   /** Get all measurements */
-  public static Set getMeasurements() { return measurements; }
+  public static Set getMeasurements() { return vocabulary.words(Vocabulary.MEASUREMENT); }
 
   /** Get all descriptors */
-  public static Set getDescriptors() { return descriptors; }
+  public static Set getDescriptors() { return vocabulary.words(Vocabulary.DESCRIPTOR); }
 
   /** Expand abbreviation if known */
   public static String expandAbbreviation(String word)
   {
-    String lower = word.toLowerCase();
-    if (abbreviations.containsKey(lower))
-      return (String)abbreviations.get(lower);
-    return null;
+    return vocabulary.expandAbbreviation(word.toLowerCase());
   }
 
+  /**
+   * Segment a lowercase word that is not itself a vocabulary word into
+   * the expanded vocabulary words it contains, e.g. "satsp" to
+   * [supply, air, temperature, setpoint].  Empty list if none.
+   */
+  public static List segment(String lower)
+  {
+    return vocabulary.getSegmenter().segment(lower);
+  }
+
+  /**
+   * Segment lower appending expanded words to acc; returns number of
+   * chars covered (see VocabularyMatcher.segment).
+   */
+  public static int segment(String lower, List acc)
+  {
+    return vocabulary.getSegmenter().segment(lower, acc);
+  }
+
+  /** Get catalog of known DBO fields */
+  public static FieldCatalog getCatalog() { return vocabulary.getCatalog(); }
+
   /** Infer entity type from name */
   public static String inferEntityType(String name)
   {
-    String lower = name.toLowerCase();
-    for (Iterator it = entityTypes.keySet().iterator(); it.hasNext();)
-    {
-      String key = (String)it.next();
-      if (lower.contains(key))
-        return (String)entityTypes.get(key);
-    }
-    return "EQUIPMENT";  // default
+    String type = vocabulary.inferEntityType(name);
+    return type != null ? type : EntityTypeMatcher.EQUIPMENT;  // default
+  }
+
+  /**
+   * Infer ranked entity type from name, and from the entity's point
+   * names if the name is ambiguous (see EntityTypeMatcher).
+   */
+  public static EntityTypeMatcher.Result inferEntityType(String name, List pointNames)
+  {
+    return vocabulary.getEntityTypeMatcher().infer(name, pointNames);
   }
 
 ////////////////////////////////////////////////////////////////
 // Attributes
 ////////////////////////////////////////////////////////////////
 
-  private static boolean initialized = false;
-  private static final HashSet pointTypes = new HashSet();
-  private static final HashSet measurements = new HashSet();
-  private static final HashSet measurementDescriptors = new HashSet();
-  private static final HashSet descriptors = new HashSet();
-  private static final HashSet components = new HashSet();
-  private static final HashSet aggregations = new HashSet();
-  private static final HashMap entityTypes = new HashMap();
-  private static final HashMap abbreviations = new HashMap();  // HVAC abbreviations
+  // token categories returned by classify()
+  static final int POINT_TYPE  = Vocabulary.POINT_TYPE;
+  static final int MEASUREMENT = Vocabulary.MEASUREMENT;
+  static final int DESCRIPTOR  = Vocabulary.DESCRIPTOR;
+  static final int COMPONENT   = Vocabulary.COMPONENT;
+
+  /** Set by standardBuilder(), so declared before STANDARD and not initialized */
+  private static volatile String loadError;
+
+  private static final Vocabulary STANDARD = standardBuilder().build();
+
+  /** Current vocabulary; volatile so install() publishes it safely */
+  private static volatile Vocabulary vocabulary = STANDARD;
+  private static volatile int version = 1;
 }
@@ -0,0 +1,233 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+
+/**
+ * EntityClassifier infers the entity type of equipment from the DBO
+ * fields of its matched points, for entities whose names say nothing
+ * ("Unit_12", "Controller_B4").
+ *
+ * The fields of an entity form a fingerprint (the sorted multiset of
+ * field names) which is compared to a library of prototypes, each a set
+ * of fields typical for one entity type.  Similarity is the cosine
+ * between the two, with every field weighted by how few prototypes use
+ * it, so "zone_air_temperature_sensor" counts for less than
+ * "chiller_run_status".  Fields outside every prototype only dilute the
+ * score a little.
+ *
+ * Results are cached by fingerprint, so a site with thousands of
+ * identical controllers classifies them once.  Instances are safe to
+ * share between threads.
+ */
+public final class EntityClassifier
+{
+  /**
+   * Constructor.
+   * @param prototypes  list of Object[] { entity type, String[] fields }
+   */
+  public EntityClassifier(List prototypes)
+  {
+    int n = prototypes.size();
+    this.types = new String[n];
+    this.protoNorms = new double[n];
+
+    // document frequency of each field across prototypes
+    HashMap df = new HashMap();
+    for (int i = 0; i < n; i++)
+    {
+      Object[] p = (Object[])prototypes.get(i);
+      types[i] = (String)p[0];
+      String[] fields = uniq((String[])p[1]);
+      for (int k = 0; k < fields.length; k++)
+      {
+        Integer c = (Integer)df.get(fields[k]);
+        df.put(fields[k], Integer.valueOf(c == null ? 1 : c.intValue() + 1));
+      }
+    }
+
+    // field weights and the inverted index field : prototype ids
+    this.weights = new HashMap();
+    HashMap postings = new HashMap();
+    for (int i = 0; i < n; i++)
+    {
+      String[] fields = uniq((String[])((Object[])prototypes.get(i))[1]);
+      double norm = 0;
+      for (int k = 0; k < fields.length; k++)
+      {
+        double w = Math.log(1 + (double)n / ((Integer)df.get(fields[k])).intValue());
+        weights.put(fields[k], Double.valueOf(w));
+        norm += w * w;
+
+        ArrayList ids = (ArrayList)postings.get(fields[k]);
+        if (ids == null) postings.put(fields[k], ids = new ArrayList());
+        ids.add(Integer.valueOf(i));
+      }
+      protoNorms[i] = Math.sqrt(norm);
+    }
+
+    this.postings = new HashMap();
+    Iterator it = postings.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      ArrayList ids = (ArrayList)e.getValue();
+      int[] acc = new int[ids.size()];
+      for (int i = 0; i < acc.length; i++) acc[i] = ((Integer)ids.get(i)).intValue();
+      this.postings.put(e.getKey(), acc);
+    }
+  }
+
+  private static String[] uniq(String[] fields)
+  {
+    LinkedHashSet acc = new LinkedHashSet(Arrays.asList(fields));
+    return (String[])acc.toArray(new String[acc.size()]);
+  }
+
+  /** Get number of prototypes. */
+  public int size() { return types.length; }
+
+////////////////////////////////////////////////////////////////
+// Result
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Best matching prototype.
+   */
+  public static final class Result
+  {
+    Result(String entityType, double similarity)
+    {
+      this.entityType = entityType;
+      this.similarity = similarity;
+      this.confidence = (int)Math.round(similarity * MAX_CONFIDENCE);
+    }
+
+    public String toString() { return entityType + " " + confidence + "%"; }
+
+    /** Entity type of the prototype */
+    public final String entityType;
+
+    /** Cosine similarity 0..1 */
+    public final double similarity;
+
+    /** Confidence 0..MAX_CONFIDENCE */
+    public final int confidence;
+  }
+
+////////////////////////////////////////////////////////////////
+// Classify
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Get the fingerprint of a list of fields: the fields sorted and
+   * joined, so the same multiset always gives the same key.
+   */
+  public static String fingerprint(List fields)
+  {
+    String[] sorted = (String[])fields.toArray(new String[fields.size()]);
+    Arrays.sort(sorted);
+    StringBuffer sb = new StringBuffer(sorted.length * 32);
+    for (int i = 0; i < sorted.length; i++)
+    {
+      if (i > 0) sb.append(',');
+      sb.append(sorted[i]);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Classify the fields of an entity's points.  Returns the most similar
+   * prototype (the first defined on ties), or null if none reaches
+   * MIN_SIMILARITY.
+   */
+  public Result classify(List fields)
+  {
+    if (fields.isEmpty()) return null;
+    String key = fingerprint(fields);
+    synchronized (cache)
+    {
+      if (cache.containsKey(key)) return (Result)cache.get(key);
+    }
+
+    Result r = compute(fields);
+    synchronized (cache)
+    {
+      if (cache.size() >= MAX_CACHE) cache.clear();
+      cache.put(key, r);
+    }
+    return r;
+  }
+
+  /** Get number of fingerprints classified and cached. */
+  public int cacheSize()
+  {
+    synchronized (cache) { return cache.size(); }
+  }
+
+  private Result compute(List fields)
+  {
+    // multiset counts
+    HashMap counts = new HashMap();
+    for (int i = 0; i < fields.size(); i++)
+    {
+      Object f = fields.get(i);
+      Integer c = (Integer)counts.get(f);
+      counts.put(f, Integer.valueOf(c == null ? 1 : c.intValue() + 1));
+    }
+
+    // entity vector: weight damped by repeat count; dot products via
+    // the inverted index so only prototypes sharing a field are visited
+    double[] dots = new double[types.length];
+    double norm = 0;
+    Iterator it = counts.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      Double w = (Double)weights.get(e.getKey());
+      double wf = w != null ? w.doubleValue() : UNKNOWN_WEIGHT;
+      double v = wf * (1 + Math.log(((Integer)e.getValue()).intValue()));
+      norm += v * v;
+
+      int[] ids = (int[])postings.get(e.getKey());
+      for (int k = 0; ids != null && k < ids.length; k++) dots[ids[k]] += v * wf;
+    }
+    norm = Math.sqrt(norm);
+
+    int best = -1;
+    double bestSim = 0;
+    for (int i = 0; i < types.length; i++)
+    {
+      if (dots[i] == 0) continue;
+      double sim = Math.min(1, dots[i] / (norm * protoNorms[i]));
+      if (sim > bestSim) { best = i; bestSim = sim; }
+    }
+    return best >= 0 && bestSim >= MIN_SIMILARITY ? new Result(types[best], bestSim) : null;
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  /** Lowest similarity accepted as a classification */
+  public static final double MIN_SIMILARITY = 0.5;
+
+  /** Confidence of a perfect match; below a clear name match */
+  public static final int MAX_CONFIDENCE = 90;
+
+  /** Weight of fields used by no prototype */
+  private static final double UNKNOWN_WEIGHT = 0.5;
+
+  /** Max cached fingerprints; the cache is cleared when full */
+  private static final int MAX_CACHE = 4096;
+
+  private final String[] types;        // prototype id : entity type
+  private final double[] protoNorms;   // prototype id : vector length
+  private final HashMap weights;       // field : Double weight
+  private final HashMap postings;      // field : int[] prototype ids
+  private final HashMap cache = new HashMap();  // fingerprint : Result (or null)
+}
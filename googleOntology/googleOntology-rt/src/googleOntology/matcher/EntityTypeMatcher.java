@@ -0,0 +1,298 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+
+/**
+ * EntityTypeMatcher infers the DBO entity type of an equipment name from
+ * the entity type keywords of a Vocabulary.
+ *
+ * The name is tokenized like point names ("AHU1SupplyFan" -> ahu, 1,
+ * supply, fan) and keywords are matched against whole tokens; a keyword
+ * phrase ("cooling tower") matches a run of tokens.  Tokens that are not
+ * keywords are searched for keywords inside them ("chillerplant") with
+ * an automaton, at a lower weight.  Later hits weigh more, since the last
+ * noun names the thing ("Cooling Tower Pump" is a pump), and ties go to
+ * the keyword defined first, so the result never depends on hash order.
+ *
+ * When the name is ambiguous (no hit, or competing types), the names of
+ * the entity's points can be given as a second, weaker signal.
+ *
+ * Cost is linear in the number of tokens.  Instances are immutable and
+ * safe to share between threads.
+ */
+public final class EntityTypeMatcher
+{
+  /**
+   * Compile a matcher.
+   * @param keywords  map of keyword : entity type in priority order; a
+   *                  keyword may be a phrase of words separated by space
+   *                  or "_"
+   */
+  public EntityTypeMatcher(Map keywords)
+  {
+    int n = keywords.size();
+    this.phrases = new String[n][];
+    this.phraseTypes = new String[n];
+
+    HashMap firsts = new HashMap();  // first word : ArrayList<Integer> phrase ids
+    HashMap patterns = new HashMap();
+    ArrayList types = new ArrayList();
+    int id = 0;
+    Iterator it = keywords.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      String kw = ((String)e.getKey()).toLowerCase();
+      String type = (String)e.getValue();
+
+      StringTokenizer st = new StringTokenizer(kw, " _");
+      String[] words = new String[st.countTokens()];
+      for (int i = 0; i < words.length; i++) words[i] = st.nextToken();
+      phrases[id] = words;
+      phraseTypes[id] = type;
+      if (!types.contains(type)) types.add(type);
+
+      if (words.length > 0)
+      {
+        ArrayList ids = (ArrayList)firsts.get(words[0]);
+        if (ids == null) firsts.put(words[0], ids = new ArrayList());
+        ids.add(Integer.valueOf(id));
+
+        // whole phrase inside one token, e.g. "coolingtower"
+        StringBuffer joined = new StringBuffer();
+        for (int i = 0; i < words.length; i++) joined.append(words[i]);
+        if (!patterns.containsKey(joined.toString())) patterns.put(joined.toString(), "k" + id);
+      }
+      id++;
+    }
+
+    this.types = (String[])types.toArray(new String[types.size()]);
+    this.typeIndex = new HashMap();
+    for (int i = 0; i < this.types.length; i++) typeIndex.put(this.types[i], Integer.valueOf(i));
+
+    this.firsts = new HashMap();
+    it = firsts.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      ArrayList ids = (ArrayList)e.getValue();
+      int[] acc = new int[ids.size()];
+      for (int i = 0; i < acc.length; i++) acc[i] = ((Integer)ids.get(i)).intValue();
+      this.firsts.put(e.getKey(), acc);
+    }
+
+    this.inner = VocabularyMatcher.compile(patterns);
+  }
+
+////////////////////////////////////////////////////////////////
+// Result
+////////////////////////////////////////////////////////////////
+
+  /**
+   * One ranked entity type.
+   */
+  public static final class Result
+  {
+    Result(String entityType, int confidence, String source, boolean ambiguous)
+    {
+      this.entityType = entityType;
+      this.confidence = confidence;
+      this.source = source;
+      this.ambiguous = ambiguous;
+    }
+
+    public String toString() { return entityType + " " + confidence + "% (" + source + ")"; }
+
+    /** Entity type */
+    public final String entityType;
+
+    /** Confidence 0..100 */
+    public final int confidence;
+
+    /** What decided the type: NAME, POINTS or DEFAULT */
+    public final String source;
+
+    /** True if the name alone does not settle the type */
+    public final boolean ambiguous;
+  }
+
+////////////////////////////////////////////////////////////////
+// Infer
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Get the best entity type for an entity name, or EQUIPMENT with
+   * confidence 0 if no keyword matches.
+   * @param pointNames  names of the entity's points, used only if the
+   *                    name is ambiguous; may be null
+   */
+  public Result infer(String name, List pointNames)
+  {
+    List ranked = rank(name, pointNames);
+    return ranked.isEmpty() ? new Result(EQUIPMENT, 0, DEFAULT, true) : (Result)ranked.get(0);
+  }
+
+  /**
+   * Rank the entity types matching a name, best first.  Empty if no
+   * keyword matches the name or the point names.
+   * @param pointNames  names of the entity's points, used only if the
+   *                    name is ambiguous; may be null
+   */
+  public List rank(String name, List pointNames)
+  {
+    Tokenizer tokens = new Tokenizer();
+    double[] scores = new double[types.length];
+    boolean[] whole = new boolean[types.length];
+    score(tokens, name, scores, whole, 1.0);
+
+    boolean ambiguous = isAmbiguous(scores);
+    String source = NAME;
+    if (ambiguous && pointNames != null && !pointNames.isEmpty())
+    {
+      // each point votes with its own hits; all points together weigh
+      // as much as one whole name hit
+      double[] pts = new double[types.length];
+      boolean[] unused = new boolean[types.length];
+      for (int i = 0; i < pointNames.size(); i++)
+        score(tokens, (String)pointNames.get(i), pts, unused, 1.0 / pointNames.size());
+      double sum = 0;
+      for (int t = 0; t < types.length; t++) sum += pts[t];
+      if (sum > 0)
+      {
+        for (int t = 0; t < types.length; t++) scores[t] += pts[t];
+        source = POINTS;
+      }
+    }
+
+    double total = 0;
+    for (int t = 0; t < types.length; t++) total += scores[t];
+    if (total == 0) return Collections.EMPTY_LIST;
+
+    // stable sort by score keeps priority order for ties
+    Integer[] order = new Integer[types.length];
+    for (int t = 0; t < types.length; t++) order[t] = Integer.valueOf(t);
+    final double[] s = scores;
+    Arrays.sort(order, new Comparator()
+    {
+      public int compare(Object a, Object b)
+      {
+        return Double.compare(s[((Integer)b).intValue()], s[((Integer)a).intValue()]);
+      }
+    });
+
+    ArrayList acc = new ArrayList();
+    for (int i = 0; i < order.length; i++)
+    {
+      int t = order[i].intValue();
+      if (scores[t] == 0) break;
+
+      // share of all evidence, capped lower for inside-token or point evidence
+      double cap = source == POINTS ? POINTS_CAP : whole[t] ? WHOLE_CAP : INNER_CAP;
+      int conf = (int)Math.round(100 * cap * scores[t] / total);
+      acc.add(new Result(types[t], conf, source, ambiguous));
+    }
+    return acc;
+  }
+
+  /**
+   * Add weight times the keyword hits of a name to scores.  A type
+   * scores its strongest hit, and hit strength grows with position so
+   * the last noun dominates.
+   */
+  private void score(Tokenizer tokens, String name, double[] scores, boolean[] whole, double weight)
+  {
+    double[] hits = new double[types.length];
+    int n = tokens.tokenize(name);
+    String[] toks = new String[n];
+    for (int i = 0; i < n; i++) toks[i] = tokens.token(i);
+
+    ArrayList segs = new ArrayList();
+    for (int i = 0; i < n; )
+    {
+      // longest phrase starting at token i; on equal length the first defined
+      int best = -1;
+      int[] ids = (int[])firsts.get(toks[i]);
+      for (int k = 0; ids != null && k < ids.length; k++)
+      {
+        String[] words = phrases[ids[k]];
+        if (i + words.length > n) continue;
+        boolean match = true;
+        for (int w = 1; w < words.length && match; w++) match = words[w].equals(toks[i + w]);
+        if (match && (best < 0 || words.length > phrases[best].length)) best = ids[k];
+      }
+
+      if (best >= 0)
+      {
+        int len = phrases[best].length;
+        int t = type(phraseTypes[best]);
+        hits[t] = Math.max(hits[t], position(i + len - 1, n));
+        whole[t] = true;
+        i += len;
+        continue;
+      }
+
+      // keywords inside the token
+      segs.clear();
+      inner.segment(toks[i], segs);
+      for (int k = 0; k < segs.size(); k++)
+      {
+        String seg = (String)segs.get(k);
+        int t = type(phraseTypes[Integer.parseInt(seg.substring(1))]);
+        hits[t] = Math.max(hits[t], INNER_WEIGHT * position(i, n));
+      }
+      i++;
+    }
+
+    for (int t = 0; t < types.length; t++) scores[t] += weight * hits[t];
+  }
+
+  /** Weight of a hit ending at token i of n: 1 for the first, 3 for the last. */
+  private static double position(int i, int n)
+  {
+    return n <= 1 ? 1 : 1 + 2.0 * i / (n - 1);
+  }
+
+  /** No hit, or the runner up has at least half the best score. */
+  private static boolean isAmbiguous(double[] scores)
+  {
+    double first = 0;
+    double second = 0;
+    for (int t = 0; t < scores.length; t++)
+    {
+      if (scores[t] > first) { second = first; first = scores[t]; }
+      else if (scores[t] > second) second = scores[t];
+    }
+    return first == 0 || second * 2 >= first;
+  }
+
+  private int type(String type) { return ((Integer)typeIndex.get(type)).intValue(); }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  /** Result sources */
+  public static final String NAME = "name";
+  public static final String POINTS = "points";
+  public static final String DEFAULT = "default";
+
+  /** Entity type when nothing matches */
+  public static final String EQUIPMENT = "EQUIPMENT";
+
+  private static final double INNER_WEIGHT = 0.5;
+  private static final double WHOLE_CAP = 0.95;
+  private static final double INNER_CAP = 0.7;
+  private static final double POINTS_CAP = 0.6;
+
+  private final String[][] phrases;       // phrase id : words
+  private final String[] phraseTypes;     // phrase id : entity type
+  private final HashMap firsts;           // first word : int[] phrase ids in priority order
+  private final String[] types;           // distinct entity types in priority order
+  private final HashMap typeIndex;        // entity type : Integer index into types
+  private final VocabularyMatcher inner;  // joined phrase : "k" + phrase id
+}
@@ -0,0 +1,233 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+
+/**
+ * FieldAssigner picks at most one field per point so that no field is
+ * used twice and the total weight is as large as possible.
+ *
+ * Each point has a short list of options (field + weight) and may also
+ * stay unassigned with weight 0.  Points are split into independent
+ * groups (points connected through a shared option field) and each
+ * group is solved exactly with the Hungarian algorithm.  On a real
+ * entity almost every group is a single point, so an entity with
+ * hundreds of points costs little more than one pass over its options.
+ */
+public final class FieldAssigner
+{
+  /**
+   * Solve the assignment.
+   * @param fields   per point, the option field names
+   * @param weights  per point, the option weights (> 0), same shape as fields
+   * @return per point, the chosen option index or -1 if unassigned
+   */
+  public static int[] assign(String[][] fields, int[][] weights)
+  {
+    int n = fields.length;
+    int[] choice = new int[n];
+    Arrays.fill(choice, -1);
+
+    // union points that share an option field
+    int[] parent = new int[n];
+    for (int i = 0; i < n; i++) parent[i] = i;
+    HashMap firstUser = new HashMap();  // field : Integer point
+    for (int i = 0; i < n; i++)
+    {
+      for (int k = 0; k < fields[i].length; k++)
+      {
+        Integer prev = (Integer)firstUser.get(fields[i][k]);
+        if (prev == null) firstUser.put(fields[i][k], Integer.valueOf(i));
+        else union(parent, prev.intValue(), i);
+      }
+    }
+
+    // collect groups in point order
+    LinkedHashMap groups = new LinkedHashMap();  // Integer root : ArrayList<Integer>
+    for (int i = 0; i < n; i++)
+    {
+      Integer root = Integer.valueOf(find(parent, i));
+      ArrayList g = (ArrayList)groups.get(root);
+      if (g == null) groups.put(root, g = new ArrayList());
+      g.add(Integer.valueOf(i));
+    }
+
+    Iterator it = groups.values().iterator();
+    while (it.hasNext())
+    {
+      ArrayList g = (ArrayList)it.next();
+      if (g.size() == 1)
+      {
+        // lone point: best option wins
+        int i = ((Integer)g.get(0)).intValue();
+        choice[i] = best(weights[i]);
+        continue;
+      }
+      solve(g, fields, weights, choice);
+    }
+    return choice;
+  }
+
+////////////////////////////////////////////////////////////////
+// Implementation
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Solve one group exactly.  Points and fields form a bipartite graph;
+   * the smaller side becomes the Hungarian rows, and each row gets an
+   * extra "leave unassigned" column, so cost is O(small^2 * large).
+   */
+  private static void solve(ArrayList group, String[][] fields, int[][] weights, int[] choice)
+  {
+    int numPoints = group.size();
+
+    // column per distinct field
+    HashMap colIndex = new HashMap();  // field : Integer column
+    ArrayList cols = new ArrayList();
+    for (int r = 0; r < numPoints; r++)
+    {
+      String[] f = fields[((Integer)group.get(r)).intValue()];
+      for (int k = 0; k < f.length; k++)
+      {
+        if (colIndex.containsKey(f[k])) continue;
+        colIndex.put(f[k], Integer.valueOf(cols.size()));
+        cols.add(f[k]);
+      }
+    }
+    int numFields = cols.size();
+
+    // weight[point][field] of the best option, 0 if not an option;
+    // opt[point][field] is that option's index
+    long[][] w = new long[numPoints][numFields];
+    int[][] opt = new int[numPoints][numFields];
+    long maxWeight = 0;
+    for (int r = 0; r < numPoints; r++)
+    {
+      int i = ((Integer)group.get(r)).intValue();
+      for (int k = 0; k < fields[i].length; k++)
+      {
+        int c = ((Integer)colIndex.get(fields[i][k])).intValue();
+        if (weights[i][k] > w[r][c])
+        {
+          w[r][c] = weights[i][k];
+          opt[r][c] = k;
+        }
+        maxWeight = Math.max(maxWeight, weights[i][k]);
+      }
+    }
+
+    // orient so rows are the smaller side
+    boolean byPoint = numPoints <= numFields;
+    int rows = byPoint ? numPoints : numFields;
+    int others = byPoint ? numFields : numPoints;
+    int numCols = others + rows;
+    long big = (maxWeight + 1) * (rows + 1);
+
+    // cost = maxWeight - weight; unassigned = maxWeight; not an option = BIG
+    long[][] cost = new long[rows + 1][numCols + 1];  // 1-based
+    for (int r = 1; r <= rows; r++)
+    {
+      long[] row = cost[r];
+      Arrays.fill(row, others + 1, numCols + 1, maxWeight);
+      for (int c = 1; c <= others; c++)
+      {
+        long weight = byPoint ? w[r - 1][c - 1] : w[c - 1][r - 1];
+        row[c] = weight > 0 ? maxWeight - weight : big;
+      }
+    }
+
+    int[] rowOfCol = hungarian(cost, rows, numCols);
+
+    for (int c = 1; c <= others; c++)
+    {
+      int r = rowOfCol[c];
+      if (r == 0 || cost[r][c] >= big) continue;
+
+      int p = byPoint ? r - 1 : c - 1;
+      int f = byPoint ? c - 1 : r - 1;
+      choice[((Integer)group.get(p)).intValue()] = opt[p][f];
+    }
+  }
+
+  /**
+   * Hungarian algorithm (potentials, O(rows^2 * cols)) minimizing total
+   * cost for rows <= cols.  Matrix is 1-based.  Returns for each column
+   * the row assigned to it, or 0.
+   */
+  private static int[] hungarian(long[][] a, int n, int m)
+  {
+    long[] u = new long[n + 1];
+    long[] v = new long[m + 1];
+    int[] p = new int[m + 1];
+    int[] way = new int[m + 1];
+    long[] minv = new long[m + 1];
+    boolean[] used = new boolean[m + 1];
+
+    for (int i = 1; i <= n; i++)
+    {
+      p[0] = i;
+      int j0 = 0;
+      Arrays.fill(minv, Long.MAX_VALUE);
+      Arrays.fill(used, false);
+      do
+      {
+        used[j0] = true;
+        int i0 = p[j0];
+        long delta = Long.MAX_VALUE;
+        int j1 = 0;
+        for (int j = 1; j <= m; j++)
+        {
+          if (used[j]) continue;
+          long cur = a[i0][j] - u[i0] - v[j];
+          if (cur < minv[j]) { minv[j] = cur; way[j] = j0; }
+          if (minv[j] < delta) { delta = minv[j]; j1 = j; }
+        }
+        for (int j = 0; j <= m; j++)
+        {
+          if (used[j]) { u[p[j]] += delta; v[j] -= delta; }
+          else minv[j] -= delta;
+        }
+        j0 = j1;
+      }
+      while (p[j0] != 0);
+
+      do
+      {
+        int j1 = way[j0];
+        p[j0] = p[j1];
+        j0 = j1;
+      }
+      while (j0 != 0);
+    }
+    return p;
+  }
+
+  private static int best(int[] w)
+  {
+    int b = -1;
+    for (int k = 0; k < w.length; k++)
+      if (w[k] > 0 && (b < 0 || w[k] > w[b])) b = k;
+    return b;
+  }
+
+  private static int find(int[] parent, int i)
+  {
+    while (parent[i] != i)
+    {
+      parent[i] = parent[parent[i]];
+      i = parent[i];
+    }
+    return i;
+  }
+
+  private static void union(int[] parent, int a, int b)
+  {
+    int ra = find(parent, a);
+    int rb = find(parent, b);
+    if (ra != rb) parent[Math.max(ra, rb)] = Math.min(ra, rb);
+  }
+}
@@ -0,0 +1,369 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+
+/**
+ * FieldCatalog indexes the valid DBO field names for approximate lookup.
+ *
+ * Two structures are kept:
+ *   - a SymSpell style delete index over every word used by the
+ *     catalog, to correct misspelled tokens ("temprature", "presure")
+ *   - a BK-tree over whole field names, plus a sorted-token key map,
+ *     to snap a generated field onto the nearest real field
+ *
+ * Delete entries are only generated for the distinct words (not for
+ * whole fields), so memory stays bounded by the word vocabulary even
+ * for catalogs with thousands of fields.  Instances are immutable.
+ */
+public final class FieldCatalog
+{
+  /**
+   * Result of snapping a field name onto the catalog.
+   */
+  public static final class Snap
+  {
+    Snap(String field, int distance)
+    {
+      this.field = field;
+      this.distance = distance;
+    }
+
+    /** Catalog field name */
+    public final String field;
+
+    /** Edit distance from the query (0 = exact or same tokens reordered) */
+    public final int distance;
+  }
+
+  /**
+   * Constructor.
+   * @param fields  valid DBO field names
+   * @param words   extra words to include in token correction
+   */
+  public FieldCatalog(Collection fields, Collection words)
+  {
+    // fields: exact set, token key map and BK-tree
+    Iterator it = fields.iterator();
+    while (it.hasNext())
+    {
+      String f = ((String)it.next()).toLowerCase();
+      if (!fieldSet.add(f)) continue;
+
+      String key = tokenKey(f);
+      if (!tokenKeys.containsKey(key)) tokenKeys.put(key, f);
+      bkAdd(f);
+
+      StringTokenizer st = new StringTokenizer(f, "_");
+      while (st.hasMoreTokens())
+      {
+        String w = st.nextToken();
+        addWord(w);
+
+        ArrayList list = (ArrayList)fieldsByWord.get(w);
+        if (list == null) fieldsByWord.put(w, list = new ArrayList());
+        if (list.isEmpty() || list.get(list.size() - 1) != f) list.add(f);
+      }
+    }
+
+    it = words.iterator();
+    while (it.hasNext()) addWord(((String)it.next()).toLowerCase());
+  }
+
+  /** Get number of fields in catalog. */
+  public int numFields() { return fieldSet.size(); }
+
+  /** Get number of distinct words in catalog. */
+  public int numWords() { return wordSet.size(); }
+
+  /** Get number of entries in the delete index. */
+  public int numDeletes() { return deletes.size(); }
+
+  /** Get catalog fields that contain given word (empty if none). */
+  public List fieldsWithWord(String word)
+  {
+    List list = (List)fieldsByWord.get(word);
+    return list != null ? list : Collections.EMPTY_LIST;
+  }
+
+  /** Return true if field is a valid catalog field. */
+  public boolean contains(String field)
+  {
+    return fieldSet.contains(field);
+  }
+
+////////////////////////////////////////////////////////////////
+// Token correction
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Find the catalog word closest to given lowercase token within the
+   * allowed edit distance (1 for short tokens, 2 for 6+ chars).  Returns
+   * the token itself if it is a catalog word, or null if nothing is
+   * close enough.  Ties are broken by lexical order for determinism.
+   */
+  public String correctWord(String token)
+  {
+    if (wordSet.contains(token)) return token;
+
+    int max = maxDistance(token.length());
+    if (max == 0) return null;
+
+    String best = null;
+    int bestDist = max + 1;
+
+    // candidates share a delete variant with the token
+    HashSet variants = new HashSet();
+    variants.add(token);
+    addDeletes(token, max, variants);
+
+    Iterator it = variants.iterator();
+    while (it.hasNext())
+    {
+      Object hit = deletes.get(it.next());
+      if (hit == null) continue;
+
+      if (hit instanceof String)
+      {
+        String w = (String)hit;
+        int d = distance(token, w, bestDist);
+        if (d < bestDist || (d == bestDist && best != null && w.compareTo(best) < 0)) { best = w; bestDist = d; }
+        continue;
+      }
+
+      ArrayList list = (ArrayList)hit;
+      for (int i = 0; i < list.size(); i++)
+      {
+        String w = (String)list.get(i);
+        int d = distance(token, w, bestDist);
+        if (d < bestDist || (d == bestDist && best != null && w.compareTo(best) < 0)) { best = w; bestDist = d; }
+      }
+    }
+
+    return bestDist <= max ? best : null;
+  }
+
+////////////////////////////////////////////////////////////////
+// Field snapping
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Snap a generated field name onto the nearest catalog field.
+   * Exact matches and fields with the same tokens in another order
+   * return distance 0.  Otherwise the BK-tree is searched within a
+   * radius of a quarter of the field length (max 6), only accepting
+   * fields that contain every token of the query, so a snap can add
+   * words ("zone_temperature_sensor" -> "zone_air_temperature_sensor")
+   * but never drops or replaces a descriptor, measurement or point type.
+   * Returns null if no catalog field qualifies.
+   */
+  public Snap snap(String field)
+  {
+    if (fieldSet.contains(field)) return new Snap(field, 0);
+
+    String reordered = (String)tokenKeys.get(tokenKey(field));
+    if (reordered != null) return new Snap(reordered, 0);
+
+    if (bkRoot == null) return null;
+
+    int radius = Math.min(6, field.length() / 4);
+    if (radius == 0) return null;
+    String[] required = field.split("_");
+
+    // iterative BK-tree search keeping the closest hit
+    String best = null;
+    int bestDist = radius + 1;
+    ArrayList stack = new ArrayList();
+    stack.add(bkRoot);
+    while (stack.size() > 0)
+    {
+      BkNode n = (BkNode)stack.remove(stack.size() - 1);
+      int d = distance(field, n.word, Integer.MAX_VALUE);
+      boolean better = d < bestDist || (d == bestDist && best != null && n.word.compareTo(best) < 0);
+      if (better && hasTokens(n.word, required))
+      {
+        best = n.word;
+        bestDist = d;
+      }
+
+      // only children within [d - r, d + r] can be within radius r
+      int r = Math.min(radius, bestDist);
+      if (n.children == null) continue;
+      Iterator it = n.children.entrySet().iterator();
+      while (it.hasNext())
+      {
+        Map.Entry e = (Map.Entry)it.next();
+        int cd = ((Integer)e.getKey()).intValue();
+        if (cd >= d - r && cd <= d + r) stack.add(e.getValue());
+      }
+    }
+
+    return best != null && bestDist <= radius ? new Snap(best, bestDist) : null;
+  }
+
+////////////////////////////////////////////////////////////////
+// Distance
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Optimal string alignment distance (Levenshtein plus adjacent
+   * transpositions).  Returns a value > limit as soon as the distance
+   * is known to exceed limit.
+   */
+  public static int distance(String a, String b, int limit)
+  {
+    int la = a.length(), lb = b.length();
+    if (Math.abs(la - lb) > limit) return limit + 1;
+    if (la == 0) return lb;
+    if (lb == 0) return la;
+
+    int[] prev2 = new int[lb + 1];
+    int[] prev = new int[lb + 1];
+    int[] cur = new int[lb + 1];
+    for (int j = 0; j <= lb; j++) prev[j] = j;
+
+    for (int i = 1; i <= la; i++)
+    {
+      cur[0] = i;
+      int rowMin = cur[0];
+      char ca = a.charAt(i - 1);
+      for (int j = 1; j <= lb; j++)
+      {
+        char cb = b.charAt(j - 1);
+        int cost = ca == cb ? 0 : 1;
+        int v = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+        if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb)
+          v = Math.min(v, prev2[j - 2] + 1);
+        cur[j] = v;
+        if (v < rowMin) rowMin = v;
+      }
+      if (rowMin > limit) return limit + 1;
+
+      int[] t = prev2; prev2 = prev; prev = cur; cur = t;
+    }
+    return prev[lb];
+  }
+
+////////////////////////////////////////////////////////////////
+// Implementation
+////////////////////////////////////////////////////////////////
+
+  private static int maxDistance(int len)
+  {
+    if (len < 4) return 0;
+    if (len < 6) return 1;
+    return 2;
+  }
+
+  private void addWord(String w)
+  {
+    if (!wordSet.add(w)) return;
+
+    HashSet variants = new HashSet();
+    variants.add(w);
+    addDeletes(w, maxDistance(w.length()), variants);
+
+    Iterator it = variants.iterator();
+    while (it.hasNext())
+    {
+      Object key = it.next();
+      Object cur = deletes.get(key);
+      if (cur == null) { deletes.put(key, w); continue; }
+      if (cur instanceof String)
+      {
+        ArrayList list = new ArrayList(2);
+        list.add(cur);
+        list.add(w);
+        deletes.put(key, list);
+        continue;
+      }
+      ((ArrayList)cur).add(w);
+    }
+  }
+
+  /** Add all strings reachable by deleting 1..depth chars. */
+  private static void addDeletes(String w, int depth, HashSet acc)
+  {
+    if (depth == 0 || w.length() <= 1) return;
+    for (int i = 0; i < w.length(); i++)
+    {
+      String d = w.substring(0, i) + w.substring(i + 1);
+      if (acc.add(d)) addDeletes(d, depth - 1, acc);
+    }
+  }
+
+  /** Return true if field contains every token in required. */
+  private static boolean hasTokens(String field, String[] required)
+  {
+    for (int i = 0; i < required.length; i++)
+    {
+      String t = required[i];
+
+      int idx = field.indexOf(t);
+      boolean found = false;
+      while (idx >= 0 && !found)
+      {
+        int end = idx + t.length();
+        found = (idx == 0 || field.charAt(idx - 1) == '_') &&
+                (end == field.length() || field.charAt(end) == '_');
+        if (!found) idx = field.indexOf(t, idx + 1);
+      }
+      if (!found) return false;
+    }
+    return true;
+  }
+
+  /** Sorted token key so that reordered fields compare equal. */
+  private static String tokenKey(String field)
+  {
+    String[] toks = field.split("_");
+    Arrays.sort(toks);
+    StringBuffer sb = new StringBuffer(field.length());
+    for (int i = 0; i < toks.length; i++)
+    {
+      if (i > 0) sb.append('_');
+      sb.append(toks[i]);
+    }
+    return sb.toString();
+  }
+
+  private void bkAdd(String w)
+  {
+    if (bkRoot == null) { bkRoot = new BkNode(w); return; }
+
+    BkNode n = bkRoot;
+    while (true)
+    {
+      int d = distance(w, n.word, Integer.MAX_VALUE);
+      if (d == 0) return;
+      if (n.children == null) n.children = new HashMap(4);
+
+      Integer key = Integer.valueOf(d);
+      BkNode child = (BkNode)n.children.get(key);
+      if (child == null) { n.children.put(key, new BkNode(w)); return; }
+      n = child;
+    }
+  }
+
+  private static final class BkNode
+  {
+    BkNode(String word) { this.word = word; }
+    final String word;
+    HashMap children;  // Integer distance : BkNode
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private final HashSet fieldSet = new HashSet();
+  private final HashMap tokenKeys = new HashMap();  // sorted token key : field
+  private final HashSet wordSet = new HashSet();
+  private final HashMap fieldsByWord = new HashMap();  // word : ArrayList<String> fields
+  private final HashMap deletes = new HashMap();    // delete variant : String | ArrayList<String>
+  private BkNode bkRoot;
+}
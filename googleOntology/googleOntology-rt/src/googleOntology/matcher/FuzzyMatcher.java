@@ -6,6 +6,7 @@
 package googleOntology.matcher;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * FuzzyMatcher implements fuzzy matching logic for DBO fields.
@@ -22,11 +23,70 @@ public final class FuzzyMatcher
     public String pointType;
     public String measurement;
 
+    /** Edit distance to the catalog field (0 = exact), -1 if not in catalog */
+    public int catalogDistance = -1;
+
+    /** True if the point type was inferred rather than found in the name */
+    public boolean inferred;
+
+    /** True if the field was fixed by the caller (see PointDescriptor.setFixed) */
+    public boolean fixed;
+
+    /** Name of the MatchPipeline stage that produced the field, or null */
+    public String stage;
+
+    /** Field the ML stage voted for, whether or not it won, or null */
+    public String mlField;
+
     public MatchResult(String dboField, int confidence)
     {
       this.dboField = dboField;
       this.confidence = confidence;
     }
+
+    /** Copy this result */
+    public MatchResult copy()
+    {
+      MatchResult r = new MatchResult(dboField, confidence);
+      r.pointType = pointType;
+      r.measurement = measurement;
+      r.catalogDistance = catalogDistance;
+      r.inferred = inferred;
+      r.fixed = fixed;
+      r.stage = stage;
+      r.mlField = mlField;
+      return r;
+    }
+  }
+
+  /**
+   * Field claimed by several points of one entity, as resolved by matchAll
+   */
+  public static class Conflict
+  {
+    public Conflict(String dboField)
+    {
+      this.dboField = dboField;
+    }
+
+    /** Field that was claimed more than once */
+    public final String dboField;
+
+    /** Index of the point that kept the field, -1 if none did */
+    public int winner = -1;
+
+    /** Indexes of the points that claimed the field */
+    public int[] claimants;
+
+    /** Per claimant, the point name */
+    public String[] names;
+
+    /**
+     * Per claimant, the field it ended up with: the field, a more
+     * specific one, or a numbered duplicate ("..._2") if no field of its
+     * own was free
+     */
+    public String[] resolved;
   }
 
   /**
@@ -34,79 +94,126 @@ public final class FuzzyMatcher
    */
   public static MatchResult matchToDboField(String pointName, String units, boolean isBoolean)
   {
-    // Initialize library
-    DboFieldLibrary.init();
+    return matchToDboField(DboFieldLibrary.get(), pointName, units, isBoolean);
+  }
 
-    // Check if entire point name is a known abbreviation (like "DAT", "RAT", etc.)
-    String expanded = DboFieldLibrary.expandAbbreviation(pointName);
-    if (expanded != null)
-    {
-      // Found exact abbreviation match! Use it with high confidence
-      MatchResult result = new MatchResult(expanded + "_sensor", 90);
-      return result;
-    }
+  /**
+   * Match a point name to a DBO field with given vocabulary
+   */
+  static MatchResult matchToDboField(Vocabulary vocab, String pointName, String units, boolean isBoolean)
+  {
+    MatchResult result = matchAbbreviation(vocab, pointName);
+    if (result != null) return result;
 
-    // Tokenize the point name
-    List tokens = tokenize(pointName);
+    return snapToCatalog(vocab, buildField(vocab, pointName, units, isBoolean));
+  }
+
+  /**
+   * Match a point name that is entirely a known abbreviation (like "DAT",
+   * "RAT", etc.), or return null.
+   */
+  static MatchResult matchAbbreviation(Vocabulary vocab, String pointName)
+  {
+    String expanded = vocab.expandAbbreviation(pointName.toLowerCase());
+    if (expanded == null) return null;
+
+    // Found exact abbreviation match! Use it with high confidence
+    return new MatchResult(expanded + "_sensor", 90);
+  }
+
+  /**
+   * Build a field from the vocabulary words of a point name.  The result
+   * is not yet snapped onto the catalog (see snapToCatalog) and its
+   * confidence is not yet capped.
+   */
+  static MatchResult buildField(Vocabulary vocab, String pointName, String units, boolean isBoolean)
+  {
+    // Extract vocabulary words from the point name
+    ArrayList words = new ArrayList();
+    BitSet expanded = new BitSet();
+    int numCorrected = extractWords(vocab, pointName, words, expanded);
 
     // Build DBO field components
     String pointType = null;
     String measurement = null;
     ArrayList descriptorList = new ArrayList();
     String component = null;
+    int componentAt = -1;  // descriptor index of a component from a short form
+    boolean measurementExpanded = false;
 
     int baseConfidence = 50;  // Start with base confidence
+    baseConfidence -= 5 * numCorrected;  // Penalize spelling corrections
 
-    // Classify tokens
-    for (int i = 0; i < tokens.size(); i++)
+    // Classify words.  Words expanded from short forms fill slots but are
+    // not extra evidence: "Temp" scores no more than the units would.
+    for (int i = 0; i < words.size(); i++)
     {
-      String token = (String)tokens.get(i);
-      String lower = token.toLowerCase();
+      String lower = (String)words.get(i);
+      int cls = DboFieldLibrary.classify(vocab, lower);
+      if (cls == 0) continue;
+      boolean spelled = !expanded.get(i);
 
       // Check point type
-      if (pointType == null && DboFieldLibrary.isPointType(lower))
+      if (pointType == null && (cls & DboFieldLibrary.POINT_TYPE) != 0)
       {
         pointType = lower;
-        baseConfidence += 15;
+        if (spelled) baseConfidence += 15;
         continue;
       }
 
       // Check measurement
-      if (measurement == null && DboFieldLibrary.isMeasurement(lower))
+      if (measurement == null && (cls & DboFieldLibrary.MEASUREMENT) != 0)
       {
         measurement = lower;
-        baseConfidence += 15;
+        if (spelled) baseConfidence += 15;
+        else measurementExpanded = true;
         continue;
       }
 
       // Check descriptor
-      if (DboFieldLibrary.isDescriptor(lower))
+      if ((cls & DboFieldLibrary.DESCRIPTOR) != 0)
       {
         descriptorList.add(lower);
-        baseConfidence += 5;
+        if (spelled) baseConfidence += 5;
         continue;
       }
 
-      // Check component
-      if (component == null && DboFieldLibrary.isComponent(lower))
+      // Check component: a component the point spells out wins over one
+      // from a short form ("HW Valve" is a hot water valve, not water),
+      // which is kept as a descriptor where it stood
+      if ((cls & DboFieldLibrary.COMPONENT) != 0)
       {
-        component = lower;
-        baseConfidence += 10;
+        if (component == null)
+        {
+          component = lower;
+          if (spelled) baseConfidence += 10;
+          else componentAt = descriptorList.size();
+        }
+        else if (spelled && componentAt >= 0)
+        {
+          descriptorList.add(componentAt, component);
+          component = lower;
+          componentAt = -1;
+          baseConfidence += 10;
+        }
       }
     }
 
     // Infer point type if not found
-    if (pointType == null)
+    boolean inferred = pointType == null;
+    if (inferred)
     {
       pointType = inferPointType(pointName, isBoolean);
       baseConfidence -= 10;  // Lower confidence for inferred
     }
 
-    // Infer measurement from units if not found
-    if (measurement == null && units != null)
+    // Infer measurement from units if not found, or confirm one that
+    // came from a short form
+    if ((measurement == null || measurementExpanded) && units != null)
     {
-      measurement = inferMeasurementFromUnits(units);
-      if (measurement != null)
+      String fromUnits = inferMeasurementFromUnits(units);
+      if (measurement == null) measurement = fromUnits;
+      if (fromUnits != null && fromUnits.equals(measurement))
         baseConfidence += 10;
     }
 
@@ -147,41 +254,518 @@ public final class FuzzyMatcher
     if (dboField.length() > 0) dboField.append('_');
     dboField.append(pointType);
 
-    // Cap confidence at 100
-    if (baseConfidence > 100) baseConfidence = 100;
-    if (baseConfidence < 0) baseConfidence = 0;
-
     MatchResult result = new MatchResult(dboField.toString(), baseConfidence);
     result.pointType = pointType;
     result.measurement = measurement;
+    result.inferred = inferred;
+    return result;
+  }
+
+  /**
+   * Snap a result from buildField onto a real catalog field, adjust its
+   * confidence for the distance and cap it to 0-100.  Returns result.
+   */
+  static MatchResult snapToCatalog(Vocabulary vocab, MatchResult result)
+  {
+    int confidence = result.confidence;
+    FieldCatalog.Snap snap = vocab.getCatalog().snap(result.dboField);
+    if (snap != null)
+    {
+      result.dboField = snap.field;
+      result.catalogDistance = snap.distance;
+      if (snap.distance == 0) confidence += 5;    // known valid field
+      else confidence -= 3 * snap.distance;       // close to a valid field
+    }
+
+    // Cap confidence at 100
+    if (confidence > 100) confidence = 100;
+    if (confidence < 0) confidence = 0;
+    result.confidence = confidence;
     return result;
   }
 
+////////////////////////////////////////////////////////////////
+// Batch
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Match all points of one entity (list of PointDescriptor).  Returns
+   * results in the same order as points, never null.
+   *
+   * Points with identical signatures are matched once, distinct
+   * signatures are scored in parallel for very large entities (many
+   * entities are better matched with matchEntities), and sibling
+   * context is applied: no two points keep the same field.  Contested
+   * points get their more specific ranked candidates as extra options
+   * and FieldAssigner picks the conflict-free mapping with the highest
+   * total confidence (an explicit point type beats an inferred one on
+   * ties, e.g. "SA Temp SP" vs "SA Temp").  A point left without a field
+   * of its own keeps its match as a numbered duplicate in DBO style
+   * ("zone_air_temperature_sensor_2") at lower confidence, and is
+   * reported in conflicts for review.
+   *
+   * The current vocabulary is read once, so a vocabulary installed
+   * meanwhile never mixes into the batch.
+   */
+  public static MatchResult[] matchAll(String entityType, List points)
+  {
+    return matchAll(entityType, points, null);
+  }
+
+  /**
+   * Match all points as above, appending a Conflict to conflicts (if
+   * not null) for every field that more than one point claimed.
+   */
+  public static MatchResult[] matchAll(String entityType, List points, List conflicts)
+  {
+    return matchAll(defaultPipeline, entityType, points, conflicts);
+  }
+
+  /**
+   * Match all points as above, scoring each distinct point with given
+   * pipeline.
+   */
+  public static MatchResult[] matchAll(MatchPipeline pipeline, String entityType, List points, List conflicts)
+  {
+    return matchAll(DboFieldLibrary.get(), pipeline, entityType, points, conflicts);
+  }
+
+  /**
+   * Match all points as above with given vocabulary.
+   */
+  public static MatchResult[] matchAll(Vocabulary vocab, MatchPipeline pipeline, String entityType, List points, List conflicts)
+  {
+    return matchAll(vocab, pipeline, entityType, points, conflicts, true);
+  }
+
+  /**
+   * Match the points of many entities, in parallel with one task per
+   * entity.  Entity i has type entityTypes[i] and points[i] (list of
+   * PointDescriptor), and its conflicts are appended to conflicts[i] (if
+   * not null).  Returns the results of each entity as from matchAll, or
+   * null for an entity that failed to match, with the failure left in
+   * errors[i].
+   */
+  public static MatchResult[][] matchEntities(final Vocabulary vocab, final MatchPipeline pipeline,
+    final String[] entityTypes, final List[] points, final List[] conflicts, final RuntimeException[] errors)
+  {
+    final MatchResult[][] acc = new MatchResult[points.length][];
+    ArrayList tasks = new ArrayList(points.length);
+    for (int i = 0; i < points.length; i++)
+    {
+      final int k = i;
+      tasks.add(new Callable()
+      {
+        public Object call()
+        {
+          // entities are the unit of work: no nested parallel scoring
+          try
+          {
+            acc[k] = matchAll(vocab, pipeline, entityTypes[k], points[k], conflicts[k], false);
+          }
+          catch (RuntimeException e)
+          {
+            errors[k] = e;
+          }
+          return null;
+        }
+      });
+    }
+    invokeAll(tasks);
+    return acc;
+  }
+
+  /** Match all points as above, scoring in parallel only if parallel. */
+  private static MatchResult[] matchAll(Vocabulary vocab, MatchPipeline pipeline, String entityType, List points, List conflicts, boolean parallel)
+  {
+    int n = points.size();
+
+    // dedupe identical signatures
+    HashMap uniqueIndex = new HashMap();  // signature : Integer
+    ArrayList unique = new ArrayList();
+    int[] slot = new int[n];
+    for (int i = 0; i < n; i++)
+    {
+      PointDescriptor d = (PointDescriptor)points.get(i);
+      String sig = d.signature();
+      Integer idx = (Integer)uniqueIndex.get(sig);
+      if (idx == null)
+      {
+        idx = Integer.valueOf(unique.size());
+        uniqueIndex.put(sig, idx);
+        unique.add(d);
+      }
+      slot[i] = idx.intValue();
+    }
+
+    // score each distinct signature once
+    MatchResult[] scored = score(vocab, pipeline, entityType, unique, parallel);
+
+    MatchResult[] results = new MatchResult[n];
+    for (int i = 0; i < n; i++) results[i] = scored[slot[i]].copy();
+
+    assignFields(vocab, entityType, points, results, conflicts);
+    return results;
+  }
+
+  /** Score descriptors, in parallel when allowed and there are enough of them. */
+  private static MatchResult[] score(final Vocabulary vocab, final MatchPipeline pipeline, final String entityType,
+    final List descs, boolean parallel)
+  {
+    final MatchResult[] acc = new MatchResult[descs.size()];
+    int threads = parallel ? Math.min(PARALLELISM, descs.size() / PARALLEL_MIN) : 1;
+    if (threads <= 1)
+    {
+      for (int i = 0; i < acc.length; i++) acc[i] = score(vocab, pipeline, entityType, (PointDescriptor)descs.get(i));
+      return acc;
+    }
+
+    // split into contiguous chunks, one task each
+    ArrayList tasks = new ArrayList(threads);
+    int chunk = (acc.length + threads - 1) / threads;
+    for (int start = 0; start < acc.length; start += chunk)
+    {
+      final int from = start;
+      final int to = Math.min(acc.length, start + chunk);
+      tasks.add(new Callable()
+      {
+        public Object call()
+        {
+          for (int i = from; i < to; i++) acc[i] = score(vocab, pipeline, entityType, (PointDescriptor)descs.get(i));
+          return null;
+        }
+      });
+    }
+    invokeAll(tasks);
+    return acc;
+  }
+
+  /** Match one descriptor through the pipeline. */
+  private static MatchResult score(Vocabulary vocab, MatchPipeline pipeline, String entityType, PointDescriptor d)
+  {
+    MatchResult r = pipeline.match(vocab, entityType, d);
+    if (r == null) r = matchToDboField(vocab, d.getPointName(), d.getUnits(), d.isBoolean());
+
+    // abbreviation, fixed and ML results only carry the field name
+    if (r.pointType == null)
+    {
+      String[] toks = r.dboField.split("_");
+      r.pointType = toks[toks.length - 1];
+      for (int i = 0; i < toks.length - 1 && r.measurement == null; i++)
+        if (vocab.is(toks[i], Vocabulary.MEASUREMENT)) r.measurement = toks[i];
+    }
+    return r;
+  }
+
   /**
-   * Tokenize a point name into words
+   * Make sure no two points keep the same field.  Each point's own match
+   * is an option weighted by its confidence; points whose field is
+   * contested also get their more specific ranked candidates.  The
+   * assignment with the highest total weight is applied; points left
+   * without a field get a numbered duplicate of their own match.
    */
-  private static List tokenize(String name)
+  private static void assignFields(Vocabulary vocab, String entityType, List points, MatchResult[] results, List conflicts)
   {
-    ArrayList tokens = new ArrayList();
+    int n = results.length;
+
+    // claimants per field, in point order
+    LinkedHashMap claims = new LinkedHashMap();  // field : ArrayList<Integer>
+    for (int i = 0; i < n; i++)
+    {
+      ArrayList list = (ArrayList)claims.get(results[i].dboField);
+      if (list == null) claims.put(results[i].dboField, list = new ArrayList(1));
+      list.add(Integer.valueOf(i));
+    }
+    if (claims.size() == n) return;  // nothing contested
+
+    String[][] fields = new String[n][];
+    int[][] weights = new int[n][];
+    MatchResult[][] options = new MatchResult[n][];
+    HashMap alternates = new HashMap();  // signature : List<MatchResult>
+    for (int i = 0; i < n; i++)
+    {
+      MatchResult r = results[i];
+      ArrayList opts = new ArrayList();
+      opts.add(r);
+      if (((ArrayList)claims.get(r.dboField)).size() > 1)
+      {
+        // identical signatures share their alternates
+        PointDescriptor d = (PointDescriptor)points.get(i);
+        List alts = (List)alternates.get(d.signature());
+        if (alts == null) alternates.put(d.signature(), alts = alternates(vocab, entityType, d, r));
+        for (int k = 0; k < alts.size(); k++) opts.add(((MatchResult)alts.get(k)).copy());
+      }
+
+      int size = opts.size();
+      fields[i] = new String[size];
+      weights[i] = new int[size];
+      options[i] = (MatchResult[])opts.toArray(new MatchResult[size]);
+      for (int k = 0; k < size; k++)
+      {
+        MatchResult o = options[i][k];
+        fields[i][k] = o.dboField;
 
-    // Split by common delimiters
-    String[] parts = name.split("[\\s_\\-\\.]+");
+        // fixed fields always win; then confidence; explicit point type
+        // and own match break ties
+        weights[i][k] = 1 + o.confidence * 4 + (k == 0 ? 1 : 0) + (k == 0 && !o.inferred ? 2 : 0) +
+          (o.fixed ? FIXED_WEIGHT : 0);
+      }
+    }
 
-    for (int i = 0; i < parts.length; i++)
+    int[] choice = FieldAssigner.assign(fields, weights);
+
+    MatchResult[] primary = (MatchResult[])results.clone();
+    HashSet used = new HashSet();
+    for (int i = 0; i < n; i++)
     {
-      String part = parts[i];
-      if (part.length() == 0) continue;
+      results[i] = choice[i] >= 0 ? options[i][choice[i]] : null;
+      if (results[i] != null) used.add(results[i].dboField);
+    }
+
+    // losers stay mapped as the next free numbered duplicate
+    for (int i = 0; i < n; i++)
+    {
+      if (results[i] != null) continue;
+      MatchResult r = primary[i].copy();
+      int k = 2;
+      while (used.contains(r.dboField + "_" + k)) k++;
+      r.dboField = r.dboField + "_" + k;
+      r.confidence = Math.max(0, r.confidence - DUPLICATE_PENALTY);
+      used.add(r.dboField);
+      results[i] = r;
+    }
 
-      // Split camelCase
-      String[] camelTokens = part.split("(?<=[a-z])(?=[A-Z])");
-      for (int j = 0; j < camelTokens.length; j++)
+    if (conflicts == null) return;
+
+    // report every contested field and how it was resolved
+    Iterator it = claims.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      ArrayList list = (ArrayList)e.getValue();
+      if (list.size() < 2) continue;
+
+      Conflict c = new Conflict((String)e.getKey());
+      c.claimants = new int[list.size()];
+      c.names = new String[list.size()];
+      c.resolved = new String[list.size()];
+      for (int k = 0; k < list.size(); k++)
       {
-        String token = camelTokens[j];
-        if (token.length() > 0)
-          tokens.add(token);
+        int i = ((Integer)list.get(k)).intValue();
+        c.claimants[k] = i;
+        c.names[k] = ((PointDescriptor)points.get(i)).getPointName();
+        c.resolved[k] = results[i].dboField;
+        if (primary[i].dboField.equals(c.resolved[k])) c.winner = i;
       }
+      conflicts.add(c);
+    }
+  }
+
+  /** Get the more specific ranked candidates of a contested point. */
+  private static List alternates(Vocabulary vocab, String entityType, PointDescriptor d, MatchResult r)
+  {
+    ArrayList opts = new ArrayList();
+    CandidateRanker.Input in = new CandidateRanker.Input();
+    in.pointName = d.getPointName();
+    in.units = d.getUnits();
+    in.isBoolean = d.isBoolean();
+    in.entityType = entityType;
+    in.fuzzyField = r.dboField;
+    in.mlField = r.mlField;
+
+    // words the point itself provides: its name and its units
+    HashSet own = new HashSet();
+    ArrayList words = new ArrayList();
+    extractWords(vocab, d.getPointName(), words);
+    own.addAll(words);
+    if (d.getUnits() != null)
+    {
+      String m = inferMeasurementFromUnits(d.getUnits());
+      if (m != null) own.add(m);
+    }
+
+    List cands = CandidateRanker.rank(vocab, in, MAX_ALTERNATES);
+    for (int j = 0; j < cands.size(); j++)
+    {
+      CandidateRanker.Candidate c = (CandidateRanker.Candidate)cands.get(j);
+      if (c.score < MIN_ALTERNATE_SCORE) break;
+      if (c.dboField.equals(r.dboField) || !isAlternate(r, c.dboField, own)) continue;
+
+      MatchResult alt = new MatchResult(c.dboField, Math.min(r.confidence, c.score));
+      alt.catalogDistance = c.inCatalog ? 0 : -1;
+      alt.pointType = r.pointType;
+      alt.measurement = r.measurement;
+      alt.inferred = r.inferred;
+      opts.add(alt);
+    }
+    return opts;
+  }
+
+  /**
+   * Return true if field can stand in for a match: it has the same
+   * point type and every other word of the matched field, i.e. it is a
+   * more specific variant ("zone_air_temperature_sensor" ->
+   * "zone_air_cooling_temperature_sensor"), and every word it adds is
+   * one of own, the words of the point's name and units.  Losing a
+   * field never turns a sensor into a setpoint or a supply temperature
+   * into an exhaust one, and never invents a "cooling" the name lacks.
+   */
+  static boolean isAlternate(MatchResult r, String field, Set own)
+  {
+    String[] toks = r.dboField.split("_");
+    if (!field.endsWith("_" + toks[toks.length - 1])) return false;
+    for (int i = 0; i < toks.length - 1; i++)
+      if (!hasWord(field, toks[i])) return false;
+
+    String[] extra = field.split("_");
+    for (int i = 0; i < extra.length; i++)
+      if (!hasWord(r.dboField, extra[i]) && !own.contains(extra[i])) return false;
+    return true;
+  }
+
+  /** Return true if underscore separated field contains word. */
+  private static boolean hasWord(String field, String word)
+  {
+    for (int idx = field.indexOf(word); idx >= 0; idx = field.indexOf(word, idx + 1))
+    {
+      int end = idx + word.length();
+      if ((idx == 0 || field.charAt(idx - 1) == '_') && (end == field.length() || field.charAt(end) == '_'))
+        return true;
+    }
+    return false;
+  }
+
+  /** Run tasks (list of Callable) on the worker pool and wait for all of them. */
+  private static void invokeAll(List tasks)
+  {
+    try
+    {
+      if (PARALLELISM == 1 || tasks.size() < 2)
+      {
+        for (int i = 0; i < tasks.size(); i++) ((Callable)tasks.get(i)).call();
+        return;
+      }
+
+      List futures = pool().invokeAll(tasks);
+      for (int i = 0; i < futures.size(); i++) ((Future)futures.get(i)).get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Batch match interrupted");
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      throw new RuntimeException(cause.toString());
+    }
+    catch (RuntimeException e)
+    {
+      throw e;
+    }
+    catch (Exception e)
+    {
+      throw new RuntimeException(e.toString());
+    }
+  }
+
+  /**
+   * Stop the worker threads once queued batches finish.  A later batch
+   * starts a new pool.
+   */
+  public static synchronized void shutdown()
+  {
+    if (pool == null) return;
+    pool.shutdown();
+    pool = null;
+  }
+
+  /** Shared worker pool for batch scoring */
+  private static synchronized ExecutorService pool()
+  {
+    if (pool == null)
+    {
+      pool = Executors.newFixedThreadPool(PARALLELISM, new ThreadFactory()
+      {
+        public Thread newThread(Runnable r)
+        {
+          Thread t = new Thread(r, "GoogleOntology:Matcher");
+          t.setDaemon(true);
+          return t;
+        }
+      });
     }
+    return pool;
+  }
 
+  /**
+   * Extract the lowercase vocabulary words of a point name into acc.
+   * Tokens that are not vocabulary words are segmented into the words
+   * they contain ("ZnTmpSp", "SATSP", "chwstemp") or spell corrected
+   * ("Temprature").  Returns number of spelling corrections made.
+   */
+  static int extractWords(Vocabulary vocab, String pointName, List acc)
+  {
+    return extractWords(vocab, pointName, acc, null);
+  }
+
+  /**
+   * Extract words as above, setting the bit in expanded (if not null)
+   * of every word that was expanded from a short form ("hw" gives "hot"
+   * and "water", "sp" gives "setpoint") rather than spelled out in the
+   * point name.
+   */
+  static int extractWords(Vocabulary vocab, String pointName, List acc, BitSet expanded)
+  {
+    // tokenize into lowercase slices (reused per thread)
+    Tokenizer tokens = (Tokenizer)tokenizers.get();
+    int numTokens = tokens.tokenize(pointName);
+    ArrayList segments = new ArrayList();
+    int numCorrected = 0;
+    for (int i = 0; i < numTokens; i++)
+    {
+      String lower = tokens.token(i);
+      if (DboFieldLibrary.classify(vocab, lower) != 0) { acc.add(lower); continue; }
+
+      // fully segmented concatenation ("satsp")
+      segments.clear();
+      int covered = vocab.getSegmenter().segment(lower, segments);
+      if (covered == lower.length()) { addSegments(lower, segments, acc, expanded); continue; }
+
+      // misspelled word ("Temprature", "Presure"), else partial segments
+      String corrected = vocab.getCatalog().correctWord(lower);
+      if (corrected != null) { acc.add(corrected); numCorrected++; }
+      else addSegments(lower, segments, acc, expanded);
+    }
+    return numCorrected;
+  }
+
+  /**
+   * Add the segments of a token to acc, marking in expanded those that
+   * are not spelled out in the token itself.
+   */
+  private static void addSegments(String token, List segments, List acc, BitSet expanded)
+  {
+    for (int i = 0; i < segments.size(); i++)
+    {
+      String word = (String)segments.get(i);
+      if (expanded != null && token.indexOf(word) < 0) expanded.set(acc.size());
+      acc.add(word);
+    }
+  }
+
+  /**
+   * Tokenize a point name into lowercase words
+   */
+  static List tokenize(String name)
+  {
+    Tokenizer t = (Tokenizer)tokenizers.get();
+    int n = t.tokenize(name);
+
+    ArrayList tokens = new ArrayList(n);
+    for (int i = 0; i < n; i++)
+      tokens.add(t.token(i));
     return tokens;
   }
 
@@ -212,34 +796,11 @@ public final class FuzzyMatcher
   }
 
   /**
-   * Infer measurement from units
+   * Infer measurement from units (table lookup, see UnitTable)
    */
-  private static String inferMeasurementFromUnits(String units)
+  static String inferMeasurementFromUnits(String units)
   {
-    String lower = units.toLowerCase();
-
-    if (lower.contains("f") || lower.contains("c") || lower.contains("k"))
-      return "temperature";
-    if (lower.contains("psi") || lower.contains("pa") || lower.contains("bar"))
-      return "pressure";
-    if (lower.contains("cfm") || lower.contains("l/s") || lower.contains("m3/h"))
-      return "flowrate";
-    if (lower.contains("gal") || lower.contains("liter"))
-      return "flowvolume";
-    if (lower.contains("w") || lower.contains("kw") || lower.contains("mw"))
-      return "power";
-    if (lower.contains("amp") || lower.contains("ma"))
-      return "current";
-    if (lower.contains("volt") || lower.contains("v"))
-      return "voltage";
-    if (lower.contains("rpm"))
-      return "speed";
-    if (lower.contains("hz"))
-      return "frequency";
-    if (lower.contains("%") || lower.contains("percent"))
-      return "percentage";
-
-    return null;
+    return UnitTable.name(UnitTable.measurementOf(units));
   }
 
   /**
@@ -247,20 +808,39 @@ public final class FuzzyMatcher
    */
   private static boolean validateUnitsForMeasurement(String units, String measurement)
   {
-    String lower = units.toLowerCase();
-
-    if (measurement.equals("temperature"))
-      return lower.contains("f") || lower.contains("c") || lower.contains("k");
-    if (measurement.equals("pressure"))
-      return lower.contains("psi") || lower.contains("pa") || lower.contains("bar");
-    if (measurement.equals("flowrate"))
-      return lower.contains("cfm") || lower.contains("l/s") || lower.contains("m3");
-    if (measurement.equals("power"))
-      return lower.contains("w") || lower.contains("kw");
-    if (measurement.equals("percentage"))
-      return lower.contains("%") || lower.contains("percent");
-
-    // Add more as needed
-    return true;  // default to true if not validated
+    return UnitTable.isCompatible(units, measurement);
   }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  /** Max worker threads used by matchAll and matchEntities */
+  private static final int PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+  /** Min distinct signatures per worker before one entity is scored in parallel */
+  private static final int PARALLEL_MIN = 64;
+
+  /** Ranked candidates considered when a point loses its field */
+  private static final int MAX_ALTERNATES = 5;
+
+  /** Weight added to fixed fields so they beat any number of fuzzy claims */
+  private static final int FIXED_WEIGHT = 1 << 20;
+
+  /** Confidence taken off a point kept as a numbered duplicate */
+  private static final int DUPLICATE_PENALTY = 5;
+
+  /** Lowest candidate score accepted as an alternate field */
+  private static final int MIN_ALTERNATE_SCORE = 30;
+
+  /** Pipeline used by matchAll when none is given (no ML stage) */
+  private static final MatchPipeline defaultPipeline = MatchPipeline.makeDefault(null, 100);
+
+  private static ExecutorService pool;
+
+  /** One reusable Tokenizer per matching thread */
+  private static final ThreadLocal tokenizers = new ThreadLocal()
+  {
+    protected Object initialValue() { return new Tokenizer(); }
+  };
 }
@@ -0,0 +1,241 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+
+/**
+ * MappingOverrides holds operator fixed DBO fields for points.
+ *
+ * An override is keyed either by the point component handle (one point)
+ * or by entity type and normalized point name (every point of that name
+ * on entities of that type).  Handle overrides win.  Both are plain hash
+ * lookups, so checking a point costs two map gets.
+ *
+ * Instances are not synchronized: build or copy() one, edit it, then
+ * publish it and never mutate it again.
+ *
+ * Overrides are persisted as text, one per line:
+ *
+ *   h  TAB handle  TAB dboField
+ *   n  TAB entityType  TAB normalizedName  TAB dboField
+ */
+public final class MappingOverrides
+{
+  /**
+   * One override, as listed by entries().
+   */
+  public static final class Entry
+  {
+    Entry(String handle, String entityType, String name, String dboField)
+    {
+      this.handle = handle;
+      this.entityType = entityType;
+      this.name = name;
+      this.dboField = dboField;
+    }
+
+    /** Point handle, or null for a name override */
+    public final String handle;
+
+    /** Entity type of a name override */
+    public final String entityType;
+
+    /** Normalized point name of a name override */
+    public final String name;
+
+    /** DBO field */
+    public final String dboField;
+  }
+
+  /** Constructor for empty overrides. */
+  public MappingOverrides()
+  {
+    this.byHandle = new LinkedHashMap();
+    this.byName = new LinkedHashMap();
+  }
+
+  private MappingOverrides(MappingOverrides src)
+  {
+    this.byHandle = new LinkedHashMap(src.byHandle);
+    this.byName = new LinkedHashMap(src.byName);
+  }
+
+  /** Return a copy which may be edited. */
+  public MappingOverrides copy() { return new MappingOverrides(this); }
+
+////////////////////////////////////////////////////////////////
+// Lookup
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Get the overridden field for a point or null if not overridden.
+   * A handle override is checked before a name override.
+   */
+  public String lookup(String handle, String entityType, String pointName)
+  {
+    if (handle != null && !byHandle.isEmpty())
+    {
+      String f = (String)byHandle.get(handle);
+      if (f != null) return f;
+    }
+    if (byName.isEmpty() || pointName == null) return null;
+    return (String)byName.get(nameKey(entityType, normalize(pointName)));
+  }
+
+  /** Get number of overrides. */
+  public int size() { return byHandle.size() + byName.size(); }
+
+  /** Get all overrides as a list of Entry: handle overrides first. */
+  public List entries()
+  {
+    ArrayList acc = new ArrayList(size());
+    Iterator it = byHandle.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      acc.add(new Entry((String)e.getKey(), null, null, (String)e.getValue()));
+    }
+    it = byName.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      String key = (String)e.getKey();
+      int tab = key.indexOf('\t');
+      acc.add(new Entry(null, key.substring(0, tab), key.substring(tab + 1), (String)e.getValue()));
+    }
+    return acc;
+  }
+
+////////////////////////////////////////////////////////////////
+// Edit
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Set the field for a point handle; a null field removes the override.
+   * Returns true if the overrides changed.
+   */
+  public boolean setByHandle(String handle, String dboField)
+  {
+    if (handle.startsWith("h:")) handle = handle.substring(2);
+    return set(byHandle, handle, dboField);
+  }
+
+  /**
+   * Set the field for a point name on entities of a type; a null field
+   * removes the override.  Returns true if the overrides changed.
+   */
+  public boolean setByName(String entityType, String pointName, String dboField)
+  {
+    return set(byName, nameKey(entityType, normalize(pointName)), dboField);
+  }
+
+  /** Remove all overrides. */
+  public void clear()
+  {
+    byHandle.clear();
+    byName.clear();
+  }
+
+  private static boolean set(HashMap map, String key, String dboField)
+  {
+    if (dboField == null) return map.remove(key) != null;
+    return !dboField.equals(map.put(key, dboField));
+  }
+
+////////////////////////////////////////////////////////////////
+// Encoding
+////////////////////////////////////////////////////////////////
+
+  /** Encode overrides to their persisted text form. */
+  public String encode()
+  {
+    StringBuffer sb = new StringBuffer(size() * 48);
+    Iterator it = byHandle.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      sb.append("h\t").append(e.getKey()).append('\t').append(e.getValue()).append('\n');
+    }
+    it = byName.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      sb.append("n\t").append(e.getKey()).append('\t').append(e.getValue()).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Decode overrides from their persisted text form.
+   * @throws IllegalArgumentException if a line is invalid
+   */
+  public static MappingOverrides decode(String text)
+  {
+    MappingOverrides acc = new MappingOverrides();
+    if (text == null) return acc;
+
+    int lineNum = 0;
+    StringTokenizer lines = new StringTokenizer(text, "\r\n");
+    while (lines.hasMoreTokens())
+    {
+      String line = lines.nextToken();
+      lineNum++;
+      if (line.trim().length() == 0) continue;
+
+      String[] toks = line.split("\t", -1);
+      if (toks[0].equals("h") && toks.length == 3 && toks[1].length() > 0 && toks[2].length() > 0)
+        acc.byHandle.put(toks[1], toks[2]);
+      else if (toks[0].equals("n") && toks.length == 4 && toks[2].length() > 0 && toks[3].length() > 0)
+        acc.byName.put(nameKey(toks[1], toks[2]), toks[3]);
+      else
+        throw new IllegalArgumentException("Invalid override on line " + lineNum + ": " + line);
+    }
+    return acc;
+  }
+
+////////////////////////////////////////////////////////////////
+// Names
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Normalize a point name so spelling variants share one override:
+   * lower case, with separators and camelCase boundaries folded to a
+   * single space ("ZoneTemp", "zone_temp" and "Zone  Temp" are equal).
+   */
+  public static String normalize(String name)
+  {
+    StringBuffer sb = new StringBuffer(name.length() + 4);
+    boolean space = false;
+    char prev = 0;
+    for (int i = 0; i < name.length(); i++)
+    {
+      char ch = name.charAt(i);
+      if (Character.isLetterOrDigit(ch))
+      {
+        if (Character.isUpperCase(ch) && Character.isLowerCase(prev)) space = true;
+        if (space && sb.length() > 0) sb.append(' ');
+        sb.append(Character.toLowerCase(ch));
+        space = false;
+      }
+      else space = true;
+      prev = ch;
+    }
+    return sb.toString();
+  }
+
+  private static String nameKey(String entityType, String normalizedName)
+  {
+    return (entityType != null ? entityType : "") + '\t' + normalizedName;
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private final LinkedHashMap byHandle;  // handle : dboField
+  private final LinkedHashMap byName;    // entityType \t normalizedName : dboField
+}
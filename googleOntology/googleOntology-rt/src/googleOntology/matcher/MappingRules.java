@@ -0,0 +1,553 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * MappingRules is a compiled table of site specific mapping rules.
+ *
+ * Rules are written one per line:
+ *
+ *   # priority  dboField  conditions...
+ *   100  zone_air_temperature_sensor  name=*ZN*T  type=VAV  units=temperature
+ *   90   supply_fan_run_status  name=/^sf[-_ ]?(sts|status)$/  kind=boolean
+ *   80   zone_air_temperature_setpoint  name="Zone Temp SP*"
+ *
+ * Conditions (all optional, all must hold):
+ *   name=glob       case-insensitive glob (* and ?) or /regex/ on the point name
+ *   type=A,B        entity type is one of the list
+ *   units=u1,u2     units equal one of the list, or resolve to a listed
+ *                   measurement (e.g. units=temperature)
+ *   kind=k          numeric, boolean or enum
+ *
+ * The highest priority matching rule wins; ties go to the earlier line.
+ * All name patterns are compiled into one Aho-Corasick automaton over
+ * their required literal text, so a point name is scanned once and only
+ * the few rules whose literal occurs in it are verified.  Instances are
+ * immutable.
+ */
+public final class MappingRules
+{
+  /**
+   * One compiled rule.
+   */
+  public static final class Rule
+  {
+    Rule(int line, String source, int priority, String dboField)
+    {
+      this.line = line;
+      this.source = source;
+      this.priority = priority;
+      this.dboField = dboField;
+    }
+
+    /** Line number in the rule text (1 based) */
+    public final int line;
+
+    /** Rule text, whitespace normalized; identifies the rule across edits */
+    public final String source;
+
+    /** Priority, higher wins */
+    public final int priority;
+
+    /** Target DBO field */
+    public final String dboField;
+
+    // conditions, only set by parseRule before the rule is published
+    Pattern name;        // null = any
+    String literal;      // required lowercase literal of name, null = none
+    HashSet types;       // null = any
+    HashSet units;       // lowercase units, null = any
+    int[] measurements;  // UnitTable ids, null = any
+    String kind;         // null = any
+
+    /** Check every condition of this rule. */
+    boolean accept(String pointName, String entityType, String pointUnits, String pointKind)
+    {
+      if (kind != null && !kind.equals(pointKind)) return false;
+      if (types != null && (entityType == null || !types.contains(entityType))) return false;
+      if (units != null || measurements != null)
+      {
+        if (pointUnits == null) return false;
+        boolean ok = units != null && units.contains(pointUnits.toLowerCase());
+        if (!ok && measurements != null)
+        {
+          int m = UnitTable.measurementOf(pointUnits);
+          for (int i = 0; i < measurements.length && !ok; i++) ok = measurements[i] == m;
+        }
+        if (!ok) return false;
+      }
+      return name == null || name.matcher(pointName).matches();
+    }
+  }
+
+////////////////////////////////////////////////////////////////
+// Construction
+////////////////////////////////////////////////////////////////
+
+  /** Empty rule table */
+  public static final MappingRules EMPTY = new MappingRules(new ArrayList());
+
+  /**
+   * Parse and compile rule text.  Blank lines and lines starting with
+   * # are ignored.  Throws IllegalArgumentException naming the line of
+   * the first invalid rule.
+   */
+  public static MappingRules parse(String text)
+  {
+    ArrayList rules = new ArrayList();
+    if (text == null) return EMPTY;
+
+    String[] all = text.split("\r?\n", -1);
+    for (int i = 0; i < all.length; i++)
+    {
+      String line = all[i].trim();
+      if (line.length() == 0 || line.startsWith("#")) continue;
+      try
+      {
+        rules.add(parseRule(i + 1, line));
+      }
+      catch (RuntimeException e)
+      {
+        throw new IllegalArgumentException("Invalid rule on line " + (i + 1) + ": " + e.getMessage());
+      }
+    }
+    return rules.isEmpty() ? EMPTY : new MappingRules(rules);
+  }
+
+  /** Compile a table from already parsed rules. */
+  private MappingRules(ArrayList rules)
+  {
+    // order by priority (desc) then line, so lower ids win
+    Collections.sort(rules, new Comparator()
+    {
+      public int compare(Object a, Object b)
+      {
+        Rule x = (Rule)a;
+        Rule y = (Rule)b;
+        if (x.priority != y.priority) return x.priority > y.priority ? -1 : 1;
+        return x.line - y.line;
+      }
+    });
+    this.rules = (Rule[])rules.toArray(new Rule[rules.size()]);
+
+    // rules without a literal are always verified
+    this.always = new BitSet(this.rules.length);
+    for (int i = 0; i < this.rules.length; i++)
+      if (this.rules[i].literal == null) always.set(i);
+
+    compileLiterals();
+  }
+
+  /**
+   * Get a table holding only the rules of this table whose source is in
+   * given set (used to find the points affected by a rule edit).
+   */
+  public MappingRules subset(Set sources)
+  {
+    ArrayList acc = new ArrayList();
+    for (int i = 0; i < rules.length; i++)
+      if (sources.contains(rules[i].source)) acc.add(rules[i]);
+    return acc.isEmpty() ? EMPTY : new MappingRules(acc);
+  }
+
+////////////////////////////////////////////////////////////////
+// Access
+////////////////////////////////////////////////////////////////
+
+  /** Get number of rules. */
+  public int size() { return rules.length; }
+
+  /** Get the set of rule sources (see Rule.source). */
+  public Set sources()
+  {
+    HashSet acc = new HashSet();
+    for (int i = 0; i < rules.length; i++) acc.add(rules[i].source);
+    return acc;
+  }
+
+  /**
+   * Find the highest priority rule matching a point, or null.
+   * @param kind  "numeric", "boolean" or "enum"
+   */
+  public Rule match(String pointName, String entityType, String units, String kind)
+  {
+    if (rules.length == 0) return null;
+
+    // one pass over the name collects candidate rules by literal
+    BitSet cand = (BitSet)always.clone();
+    int s = 0;
+    for (int i = 0; i < pointName.length(); i++)
+    {
+      char ch = Character.toLowerCase(pointName.charAt(i));
+      s = step(s, ch);
+      if (out[s] != null) cand.or(out[s]);
+    }
+
+    // candidates in priority order
+    for (int i = cand.nextSetBit(0); i >= 0; i = cand.nextSetBit(i + 1))
+      if (rules[i].accept(pointName, entityType, units, kind)) return rules[i];
+    return null;
+  }
+
+////////////////////////////////////////////////////////////////
+// Parsing
+////////////////////////////////////////////////////////////////
+
+  private static Rule parseRule(int lineNum, String line)
+  {
+    ArrayList toks = split(line);
+    if (toks.size() < 2) throw new IllegalArgumentException("expected: priority dboField [conditions]");
+
+    StringBuffer source = new StringBuffer();
+    for (int i = 0; i < toks.size(); i++)
+    {
+      if (i > 0) source.append(' ');
+      source.append(toks.get(i));
+    }
+
+    int priority;
+    try
+    {
+      priority = Integer.parseInt((String)toks.get(0));
+    }
+    catch (NumberFormatException e)
+    {
+      throw new IllegalArgumentException("bad priority: " + toks.get(0));
+    }
+    String dboField = ((String)toks.get(1)).toLowerCase();
+    if (dboField.indexOf('=') >= 0) throw new IllegalArgumentException("missing dboField");
+
+    Rule r = new Rule(lineNum, source.toString(), priority, dboField);
+
+    for (int i = 2; i < toks.size(); i++)
+    {
+      String t = (String)toks.get(i);
+      int eq = t.indexOf('=');
+      if (eq <= 0) throw new IllegalArgumentException("expected key=value: " + t);
+      String key = t.substring(0, eq);
+      String val = unquote(t.substring(eq + 1));
+      if (val.length() == 0) throw new IllegalArgumentException("empty value: " + key);
+
+      if (key.equals("name"))
+      {
+        if (val.length() > 1 && val.startsWith("/") && val.endsWith("/"))
+        {
+          String regex = val.substring(1, val.length() - 1);
+          r.name = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+          r.literal = regexLiteral(regex);
+        }
+        else
+        {
+          r.name = Pattern.compile(globToRegex(val), Pattern.CASE_INSENSITIVE);
+          r.literal = globLiteral(val);
+        }
+      }
+      else if (key.equals("type"))
+      {
+        r.types = new HashSet(Arrays.asList(val.split(",")));
+      }
+      else if (key.equals("units"))
+      {
+        String[] list = val.split(",");
+        ArrayList ms = new ArrayList();
+        for (int k = 0; k < list.length; k++)
+        {
+          int m = UnitTable.forName(list[k].toLowerCase());
+          if (m != UnitTable.UNKNOWN) { ms.add(Integer.valueOf(m)); continue; }
+          if (r.units == null) r.units = new HashSet();
+          r.units.add(list[k].toLowerCase());
+        }
+        if (!ms.isEmpty())
+        {
+          r.measurements = new int[ms.size()];
+          for (int k = 0; k < ms.size(); k++) r.measurements[k] = ((Integer)ms.get(k)).intValue();
+        }
+      }
+      else if (key.equals("kind"))
+      {
+        if (!val.equals("numeric") && !val.equals("boolean") && !val.equals("enum"))
+          throw new IllegalArgumentException("kind must be numeric, boolean or enum");
+        r.kind = val;
+      }
+      else
+      {
+        throw new IllegalArgumentException("unknown condition: " + key);
+      }
+    }
+    return r;
+  }
+
+  /** Split on whitespace, keeping double quoted and /regex/ values together. */
+  private static ArrayList split(String line)
+  {
+    ArrayList acc = new ArrayList();
+    StringBuffer cur = new StringBuffer();
+    boolean quoted = false;
+    boolean regex = false;
+    for (int i = 0; i < line.length(); i++)
+    {
+      char ch = line.charAt(i);
+      if (regex)
+      {
+        // regex ends at an unescaped / followed by whitespace or end of line
+        cur.append(ch);
+        if (ch == '\\' && i + 1 < line.length()) cur.append(line.charAt(++i));
+        else if (ch == '/' && (i + 1 == line.length() || Character.isWhitespace(line.charAt(i + 1)))) regex = false;
+        continue;
+      }
+      if (!quoted && ch == '/' && cur.length() > 0 && cur.charAt(cur.length() - 1) == '=') regex = true;
+      if (ch == '"') quoted = !quoted;
+      if (!quoted && Character.isWhitespace(ch))
+      {
+        if (cur.length() > 0) { acc.add(cur.toString()); cur.setLength(0); }
+        continue;
+      }
+      cur.append(ch);
+    }
+    if (quoted) throw new IllegalArgumentException("unterminated quote");
+    if (regex) throw new IllegalArgumentException("unterminated regex");
+    if (cur.length() > 0) acc.add(cur.toString());
+    return acc;
+  }
+
+  private static String unquote(String s)
+  {
+    if (s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"")) return s.substring(1, s.length() - 1);
+    return s;
+  }
+
+  private static String globToRegex(String glob)
+  {
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < glob.length(); i++)
+    {
+      char ch = glob.charAt(i);
+      if (ch == '*') sb.append(".*");
+      else if (ch == '?') sb.append('.');
+      else sb.append(Pattern.quote(String.valueOf(ch)));
+    }
+    return sb.toString();
+  }
+
+  /** Longest literal run of a glob, lowercase, or null. */
+  private static String globLiteral(String glob)
+  {
+    String best = null;
+    StringTokenizer st = new StringTokenizer(glob, "*?");
+    while (st.hasMoreTokens())
+    {
+      String t = st.nextToken();
+      if (best == null || t.length() > best.length()) best = t;
+    }
+    return best != null ? best.toLowerCase() : null;
+  }
+
+  /**
+   * Longest run of plain chars a regex match must contain, lowercase, or
+   * null if none can be proven.  Alternation and the (?x) comments flag
+   * give up; escapes, classes and groups end a run; a char followed by
+   * ?, * or {m,n} is optional.
+   */
+  private static String regexLiteral(String regex)
+  {
+    if (regex.indexOf('|') >= 0) return null;
+    if (COMMENTS_FLAG.matcher(regex).find()) return null;
+
+    String best = null;
+    StringBuffer run = new StringBuffer();
+    int classDepth = 0;
+    int groupDepth = 0;
+    for (int i = 0; i <= regex.length(); i++)
+    {
+      char ch = i < regex.length() ? regex.charAt(i) : 0;
+
+      if (classDepth > 0)
+      {
+        if (ch == '\\') i = skipEscape(regex, i);
+        else if (ch == ']') classDepth--;
+        continue;
+      }
+
+      boolean plain = groupDepth == 0 && (Character.isLetterOrDigit(ch) || ch == ' ' || ch == '_' || ch == '-');
+      if (plain) { run.append(ch); continue; }
+
+      // optional quantifier drops the char before it
+      if ((ch == '?' || ch == '*' || ch == '{') && run.length() > 0) run.setLength(run.length() - 1);
+
+      if (best == null || run.length() > best.length()) best = run.length() > 0 ? run.toString() : best;
+      run.setLength(0);
+
+      if (ch == '\\') i = skipEscape(regex, i);
+      else if (ch == '{') { while (i < regex.length() && regex.charAt(i) != '}') i++; }
+      else if (ch == '[') classDepth++;
+      else if (ch == '(') groupDepth++;
+      else if (ch == ')' && groupDepth > 0) groupDepth--;
+    }
+    return best != null ? best.toLowerCase() : null;
+  }
+
+  /**
+   * Skip an escape sequence starting at the backslash at i.  Returns the
+   * index of its last char: "\\x41", "\\u0041", "\\0101", "\\p{Alpha}",
+   * "\\cX", "\\k<name>" and "\\Q...\\E" span more than one char.
+   */
+  private static int skipEscape(String regex, int i)
+  {
+    int n = regex.length();
+    if (i + 1 >= n) return i;
+    char ch = regex.charAt(++i);
+    switch (ch)
+    {
+      case 'x':
+        if (i + 1 < n && regex.charAt(i + 1) == '{') return closing(regex, i + 1, '}');
+        return Math.min(i + 2, n - 1);
+      case 'u':
+        return Math.min(i + 4, n - 1);
+      case '0':
+        for (int k = 0; k < 3 && i + 1 < n && regex.charAt(i + 1) >= '0' && regex.charAt(i + 1) <= '7'; k++) i++;
+        return i;
+      case 'p': case 'P': case 'N':
+        if (i + 1 < n && regex.charAt(i + 1) == '{') return closing(regex, i + 1, '}');
+        return Math.min(i + 1, n - 1);
+      case 'c':
+        return Math.min(i + 1, n - 1);
+      case 'k':
+        if (i + 1 < n && regex.charAt(i + 1) == '<') return closing(regex, i + 1, '>');
+        return i;
+      case 'Q':
+        int end = regex.indexOf("\\E", i + 1);
+        return end < 0 ? n - 1 : end + 1;
+      default:
+        return i;
+    }
+  }
+
+  /** Index of the first close char at or after i, or the last index. */
+  private static int closing(String regex, int i, char close)
+  {
+    int end = regex.indexOf(close, i);
+    return end < 0 ? regex.length() - 1 : end;
+  }
+
+  /** Inline flags turning on COMMENTS, where whitespace is not literal */
+  private static final Pattern COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z]*x[a-zA-Z]*[-:)]");
+
+////////////////////////////////////////////////////////////////
+// Literal automaton
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Build an Aho-Corasick DFA over the rule literals.  The alphabet is
+   * the distinct literal chars plus one class for every other char, so
+   * the transition table stays small and each step is an array lookup.
+   */
+  private void compileLiterals()
+  {
+    // alphabet: class 0 = any char not in a literal
+    charClass = new HashMap();
+    int alpha = 1;
+    int maxStates = 1;
+    for (int id = 0; id < rules.length; id++)
+    {
+      String lit = rules[id].literal;
+      if (lit == null) continue;
+      maxStates += lit.length();
+      for (int i = 0; i < lit.length(); i++)
+      {
+        Character ch = Character.valueOf(lit.charAt(i));
+        if (!charClass.containsKey(ch)) charClass.put(ch, Integer.valueOf(alpha++));
+      }
+    }
+    ascii = new int[128];
+    Iterator it = charClass.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      char ch = ((Character)e.getKey()).charValue();
+      if (ch < 128) ascii[ch] = ((Integer)e.getValue()).intValue();
+    }
+    this.alpha = alpha;
+
+    // trie
+    int[] go = new int[maxStates * alpha];
+    Arrays.fill(go, -1);
+    BitSet[] out = new BitSet[maxStates];
+    int numStates = 1;
+    for (int id = 0; id < rules.length; id++)
+    {
+      String lit = rules[id].literal;
+      if (lit == null) continue;
+
+      int s = 0;
+      for (int i = 0; i < lit.length(); i++)
+      {
+        int c = classOf(lit.charAt(i));
+        if (go[s * alpha + c] < 0) go[s * alpha + c] = numStates++;
+        s = go[s * alpha + c];
+      }
+      if (out[s] == null) out[s] = new BitSet(rules.length);
+      out[s].set(id);
+    }
+
+    // BFS: failure links, complete the DFA, merge outputs along fail links
+    int[] fail = new int[numStates];
+    int[] queue = new int[numStates];
+    int qh = 0, qt = 0;
+    for (int c = 0; c < alpha; c++)
+    {
+      int t = go[c];
+      if (t < 0) { go[c] = 0; continue; }
+      queue[qt++] = t;
+    }
+    while (qh < qt)
+    {
+      int s = queue[qh++];
+      int f = fail[s];
+      if (out[f] != null)
+      {
+        if (out[s] == null) out[s] = new BitSet(rules.length);
+        out[s].or(out[f]);
+      }
+      for (int c = 0; c < alpha; c++)
+      {
+        int t = go[s * alpha + c];
+        if (t < 0) { go[s * alpha + c] = go[f * alpha + c]; continue; }
+        fail[t] = go[f * alpha + c];
+        queue[qt++] = t;
+      }
+    }
+
+    this.go = go;
+    this.out = out;
+  }
+
+  private int classOf(char ch)
+  {
+    if (ch < 128) return ascii[ch];
+    Integer c = (Integer)charClass.get(Character.valueOf(ch));
+    return c != null ? c.intValue() : 0;
+  }
+
+  private int step(int s, char ch)
+  {
+    return go[s * alpha + classOf(ch)];
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private final Rule[] rules;   // priority order
+  private final BitSet always;  // rules with no literal
+  private HashMap charClass;    // Character : Integer alphabet class
+  private int[] ascii;          // ascii char : alphabet class
+  private int alpha;            // alphabet size
+  private int[] go;             // DFA transitions [state * alpha + class]
+  private BitSet[] out;         // state : rules whose literal ends here (incl. suffixes)
+}
@@ -0,0 +1,163 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * MappingRulesCheck verifies the literal prefilter of MappingRules: the
+ * rule MappingRules.match picks through its Aho-Corasick DFA must be the
+ * one a brute force Pattern.matches over every rule picks.  A literal
+ * that regexLiteral or globLiteral wrongly requires makes the DFA skip a
+ * matching rule, which shows up here as a mismatch.
+ *
+ * Usage: MappingRulesCheck [numNames]
+ *
+ * The rule corpus covers globs, anchored regexes, inline flags such as
+ * (?x) and (?i), {m,n} quantifiers, escapes and classes.  Point names
+ * are generated from the rules plus random mutations (default 20000).
+ * No Niagara needed to run this.  Exits with status 1 on a mismatch.
+ */
+public class MappingRulesCheck
+{
+  /** Name conditions of the rule corpus, highest priority first */
+  static final String[] PATTERNS =
+  {
+    "*ZN*T",
+    "Zone Temp SP*",
+    "SA?Temp",
+    "*Fan*Status*",
+    "/^sf[-_ ]?(sts|status)$/",
+    "/(?x) zone \\s* temp/",
+    "/(?xi)^ supply \\s? air $/",
+    "/(?i)damper\\s*pos(ition)?/",
+    "/^ab{2}c$/",
+    "/^vav{1,3}_?\\d{2,4}$/",
+    "/^chw{0,2}s{0}temp$/",
+    "/^x{10,12}y$/",
+    "/^zn\\x54emp$/",
+    "/^z\\u006Ene_t$/",
+    "/^\\p{Alpha}{3}_sp$/",
+    "/^oa[\\]x]dmpr$/",
+    "/^rm\\Q.t\\E(emp)?$/",
+    "/^(?:hw|chw)_vlv_cmd$/",
+    "/^ahu\\d+_sat$/",
+    "/^exh.*fan$/",
+    "/^run\\b.*cmd$/",
+    "/^cool(ing)? valve$/",
+    "/^min oa flow sp$/",
+    "/^pump[0-9]{1,2} status$/",
+    "/^co2$/",
+    "Static*Pressure",
+  };
+
+  /** Names exercising the corner cases directly */
+  static final String[] NAMES =
+  {
+    "ZN-T", "znT", "Zone Temp SP 1", "SA Temp", "SA_Temp", "Supply Fan Status",
+    "sf-sts", "SF status", "zonetemp", "zone   temp", "ZoneTemp", "supplyair",
+    "Supply air", "supply air", "Damper Pos", "damperposition", "abbc", "abc",
+    "vav_12", "vavv1234", "vavvvv12", "chwstemp", "chtemp", "chwwtemp", "znTemp",
+    "ZnTemp", "zone_t", "abc_sp", "xyz_sp", "oa]dmpr", "oaxdmpr", "rm.temp",
+    "rm.t", "rmxt", "hw_vlv_cmd", "chw_vlv_cmd", "ahu12_sat", "exh fan", "exhaust fan",
+    "run cmd", "run_cmd", "cooling valve", "cool valve", "min oa flow sp",
+    "pump1 status", "pump12 status", "CO2", "Static Pressure", "StaticPressure",
+    "xxxxxxxxxxy", "xxxxxxxxxxxxy", "x10y",
+  };
+
+  public static void main(String[] args)
+  {
+    int numNames = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    System.out.println("=== MappingRules Check (" + PATTERNS.length + " rules) ===\n");
+
+    // rule table, and the same patterns compiled on their own
+    StringBuffer text = new StringBuffer();
+    Pattern[] brute = new Pattern[PATTERNS.length];
+    for (int i = 0; i < PATTERNS.length; i++)
+    {
+      String p = PATTERNS[i];
+      text.append(1000 - i).append(" f").append(i).append(" name=").append(quote(p)).append('\n');
+      brute[i] = p.startsWith("/") ?
+        Pattern.compile(p.substring(1, p.length() - 1), Pattern.CASE_INSENSITIVE) :
+        Pattern.compile(globToRegex(p), Pattern.CASE_INSENSITIVE);
+    }
+    MappingRules rules = MappingRules.parse(text.toString());
+
+    ArrayList names = new ArrayList(Arrays.asList(NAMES));
+    names.addAll(generate(numNames, new Random(42)));
+
+    int numMatched = 0;
+    int numFailed = 0;
+    for (int n = 0; n < names.size(); n++)
+    {
+      String name = (String)names.get(n);
+
+      String expected = null;
+      for (int i = 0; i < brute.length && expected == null; i++)
+        if (brute[i].matcher(name).matches()) expected = "f" + i;
+
+      MappingRules.Rule r = rules.match(name, null, null, "numeric");
+      String actual = r != null ? r.dboField : null;
+      if (expected != null) numMatched++;
+      if (expected == null ? actual == null : expected.equals(actual)) continue;
+
+      numFailed++;
+      System.out.println("FAIL \"" + name + "\": " + actual + ", expected " + expected +
+        (expected != null ? " (" + PATTERNS[Integer.parseInt(expected.substring(1))] + ")" : ""));
+    }
+
+    System.out.println("\n" + names.size() + " names, " + numMatched + " matched a rule, " + numFailed + " failed");
+    if (numFailed > 0) System.exit(1);
+  }
+
+  /** Quote a name condition the way the rule syntax needs it. */
+  private static String quote(String p)
+  {
+    if (p.startsWith("/")) return p;
+    return p.indexOf(' ') >= 0 ? '"' + p + '"' : p;
+  }
+
+  /** Brute force glob, independent of MappingRules. */
+  private static String globToRegex(String glob)
+  {
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < glob.length(); i++)
+    {
+      char ch = glob.charAt(i);
+      if (ch == '*') sb.append(".*");
+      else if (ch == '?') sb.append('.');
+      else sb.append(Pattern.quote(String.valueOf(ch)));
+    }
+    return sb.toString();
+  }
+
+  /** Names built from corpus words with random separators and edits. */
+  private static List generate(int n, Random rand)
+  {
+    String[] words = { "zn", "zone", "t", "temp", "sp", "sa", "supply", "air", "fan", "status", "sts",
+      "sf", "damper", "pos", "position", "ab", "b", "c", "vav", "v", "12", "1234", "chw", "w", "s",
+      "oa", "]", "x", "dmpr", "rm", ".", "hw", "vlv", "cmd", "ahu", "sat", "exh", "run", "cool",
+      "ing", "valve", "min", "flow", "pump", "status", "co2", "static", "pressure", "e", "mp" };
+    String[] seps = { "", "", " ", "_", "-", "  " };
+
+    ArrayList acc = new ArrayList(n);
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < n; i++)
+    {
+      sb.setLength(0);
+      int len = 1 + rand.nextInt(4);
+      for (int k = 0; k < len; k++)
+      {
+        if (k > 0) sb.append(seps[rand.nextInt(seps.length)]);
+        String w = words[rand.nextInt(words.length)];
+        sb.append(rand.nextInt(3) == 0 ? w.toUpperCase() : w);
+      }
+      acc.add(sb.toString());
+    }
+    return acc;
+  }
+}
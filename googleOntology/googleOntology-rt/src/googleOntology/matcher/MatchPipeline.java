@@ -0,0 +1,310 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * MatchPipeline matches one point by running an ordered list of stages.
+ *
+ * Each stage sees the best result so far and either keeps it or replaces
+ * it.  The default stages are:
+ *
+ *   override      field fixed by an operator override
+ *   rule          field fixed by a site mapping rule
+ *   abbreviation  whole name is a known abbreviation ("DAT")
+ *   fuzzy         field built from the vocabulary words of the name
+ *   snap          fuzzy field snapped onto the catalog
+ *   ml            ML model vote (optional, supplied by the caller)
+ *
+ * A fixed field ends the pipeline.  Once the best confidence reaches the
+ * short circuit threshold, skippable stages (the ML vote) are not run, so
+ * easy points never pay for the expensive ones.
+ *
+ * Every stage counts its invocations, hits (best result replaced) and
+ * skips, and keeps a latency histogram.  Stages are called concurrently
+ * by FuzzyMatcher.matchAll and must be thread safe.
+ */
+public final class MatchPipeline
+{
+  /**
+   * Constructor.
+   * @param stages        stages in run order
+   * @param shortCircuit  confidence at which skippable stages are skipped
+   */
+  public MatchPipeline(Stage[] stages, int shortCircuit)
+  {
+    this.stages = (Stage[])stages.clone();
+    this.shortCircuit = shortCircuit;
+  }
+
+  /**
+   * Make a pipeline with the default stages, followed by given ML stage
+   * if not null.
+   */
+  public static MatchPipeline makeDefault(Stage ml, int shortCircuit)
+  {
+    ArrayList acc = new ArrayList();
+    acc.add(new FixedStage(OVERRIDE));
+    acc.add(new FixedStage(RULE));
+    acc.add(new AbbreviationStage());
+    acc.add(new FuzzyStage());
+    acc.add(new SnapStage());
+    if (ml != null) acc.add(ml);
+    return new MatchPipeline((Stage[])acc.toArray(new Stage[acc.size()]), shortCircuit);
+  }
+
+  /** Get stages in run order. */
+  public Stage[] getStages() { return (Stage[])stages.clone(); }
+
+  /** Get short circuit confidence. */
+  public int getShortCircuit() { return shortCircuit; }
+
+  /** Get number of points matched. */
+  public long getNumPoints() { return numPoints.get(); }
+
+  /** Get number of points that skipped at least one stage. */
+  public long getNumShortCircuits() { return numShortCircuits.get(); }
+
+  /** Clear statistics of the pipeline and its stages. */
+  public void resetStats()
+  {
+    numPoints.set(0);
+    numShortCircuits.set(0);
+    for (int i = 0; i < stages.length; i++) stages[i].resetStats();
+  }
+
+////////////////////////////////////////////////////////////////
+// Match
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Match one point of an entity.  Returns null only if no stage
+   * produced a result.
+   */
+  public FuzzyMatcher.MatchResult match(String entityType, PointDescriptor d)
+  {
+    return match(DboFieldLibrary.get(), entityType, d);
+  }
+
+  /**
+   * Match one point as above; every stage uses given vocabulary.
+   */
+  public FuzzyMatcher.MatchResult match(Vocabulary vocab, String entityType, PointDescriptor d)
+  {
+    numPoints.incrementAndGet();
+
+    FuzzyMatcher.MatchResult best = null;
+    boolean shorted = false;
+    for (int i = 0; i < stages.length; i++)
+    {
+      Stage stage = stages[i];
+
+      // fixed fields are final
+      if (best != null && best.fixed)
+      {
+        for (; i < stages.length; i++) stages[i].skipped.incrementAndGet();
+        break;
+      }
+
+      if (stage.skippable && best != null && best.confidence >= shortCircuit)
+      {
+        stage.skipped.incrementAndGet();
+        shorted = true;
+        continue;
+      }
+
+      if (!stage.applies(d, best))
+      {
+        stage.skipped.incrementAndGet();
+        continue;
+      }
+
+      long t0 = System.nanoTime();
+      FuzzyMatcher.MatchResult r = stage.apply(vocab, entityType, d, best);
+      stage.record(System.nanoTime() - t0, r != best);
+      if (r != best && r != null && r.stage == null) r.stage = stage.name;
+      best = r;
+    }
+
+    if (shorted) numShortCircuits.incrementAndGet();
+    return best;
+  }
+
+////////////////////////////////////////////////////////////////
+// Stage
+////////////////////////////////////////////////////////////////
+
+  /**
+   * One step of the pipeline.
+   */
+  public static abstract class Stage
+  {
+    /**
+     * Constructor.
+     * @param name       stage name, reported in stats and MatchResult.stage
+     * @param skippable  true if skipped once confidence reaches the short circuit threshold
+     */
+    protected Stage(String name, boolean skippable)
+    {
+      this.name = name;
+      this.skippable = skippable;
+    }
+
+    /**
+     * Return true if the stage has work to do for given point and best
+     * result so far (may be null); else it is counted as skipped.
+     */
+    public boolean applies(PointDescriptor d, FuzzyMatcher.MatchResult best) { return true; }
+
+    /**
+     * Match the point with given vocabulary.  Return best (may be null)
+     * to keep the result so far, or a new result to replace it.
+     */
+    public abstract FuzzyMatcher.MatchResult apply(Vocabulary vocab, String entityType, PointDescriptor d, FuzzyMatcher.MatchResult best);
+
+    /** Get number of times stage was run. */
+    public long getInvocations() { return invocations.get(); }
+
+    /** Get number of times stage replaced the best result. */
+    public long getHits() { return hits.get(); }
+
+    /** Get number of times stage was skipped. */
+    public long getSkipped() { return skipped.get(); }
+
+    /** Get total time spent in stage in nanoseconds. */
+    public long getTotalNanos() { return nanos.get(); }
+
+    /**
+     * Get latency histogram: bucket 0 counts calls under 1us, bucket i
+     * calls from 2^(i-1)us up to 2^i us, and the last bucket everything
+     * slower.
+     */
+    public long[] getHistogram()
+    {
+      long[] acc = new long[HISTOGRAM_SIZE];
+      for (int i = 0; i < acc.length; i++) acc[i] = histogram.get(i);
+      return acc;
+    }
+
+    void record(long elapsed, boolean hit)
+    {
+      invocations.incrementAndGet();
+      if (hit) hits.incrementAndGet();
+      nanos.addAndGet(elapsed);
+
+      long micros = elapsed / 1000L;
+      int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+      histogram.incrementAndGet(Math.min(bucket, HISTOGRAM_SIZE - 1));
+    }
+
+    void resetStats()
+    {
+      invocations.set(0);
+      hits.set(0);
+      skipped.set(0);
+      nanos.set(0);
+      for (int i = 0; i < HISTOGRAM_SIZE; i++) histogram.set(i, 0);
+    }
+
+    public final String name;
+    public final boolean skippable;
+
+    private final AtomicLong invocations = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_SIZE);
+    final AtomicLong skipped = new AtomicLong();
+  }
+
+////////////////////////////////////////////////////////////////
+// Default stages
+////////////////////////////////////////////////////////////////
+
+  /** Field fixed on the descriptor by given source (see PointDescriptor.setFixed). */
+  static final class FixedStage extends Stage
+  {
+    FixedStage(String source) { super(source, false); }
+
+    public boolean applies(PointDescriptor d, FuzzyMatcher.MatchResult best)
+    {
+      return d.getFixedField() != null && name.equals(d.getFixedSource());
+    }
+
+    public FuzzyMatcher.MatchResult apply(Vocabulary vocab, String entityType, PointDescriptor d, FuzzyMatcher.MatchResult best)
+    {
+      FuzzyMatcher.MatchResult r = new FuzzyMatcher.MatchResult(d.getFixedField(), d.getFixedConfidence());
+      r.catalogDistance = vocab.getCatalog().contains(r.dboField) ? 0 : -1;
+      r.fixed = true;
+      return r;
+    }
+  }
+
+  /** Whole name is a known abbreviation. */
+  static final class AbbreviationStage extends Stage
+  {
+    AbbreviationStage() { super("abbreviation", false); }
+
+    public boolean applies(PointDescriptor d, FuzzyMatcher.MatchResult best) { return best == null; }
+
+    public FuzzyMatcher.MatchResult apply(Vocabulary vocab, String entityType, PointDescriptor d, FuzzyMatcher.MatchResult best)
+    {
+      FuzzyMatcher.MatchResult r = FuzzyMatcher.matchAbbreviation(vocab, d.getPointName());
+      return r != null ? r : best;
+    }
+  }
+
+  /** Field built from the vocabulary words of the name. */
+  static final class FuzzyStage extends Stage
+  {
+    FuzzyStage() { super("fuzzy", false); }
+
+    public boolean applies(PointDescriptor d, FuzzyMatcher.MatchResult best) { return best == null; }
+
+    public FuzzyMatcher.MatchResult apply(Vocabulary vocab, String entityType, PointDescriptor d, FuzzyMatcher.MatchResult best)
+    {
+      return FuzzyMatcher.buildField(vocab, d.getPointName(), d.getUnits(), d.isBoolean());
+    }
+  }
+
+  /** Fuzzy field snapped onto the catalog; keeps the fuzzy stage as source. */
+  static final class SnapStage extends Stage
+  {
+    SnapStage() { super("snap", false); }
+
+    public boolean applies(PointDescriptor d, FuzzyMatcher.MatchResult best)
+    {
+      return best != null && "fuzzy".equals(best.stage);
+    }
+
+    /** Counts as a hit only if the field moved onto a different catalog field. */
+    public FuzzyMatcher.MatchResult apply(Vocabulary vocab, String entityType, PointDescriptor d, FuzzyMatcher.MatchResult best)
+    {
+      String field = best.dboField;
+      FuzzyMatcher.snapToCatalog(vocab, best);
+      return best.dboField.equals(field) ? best : best.copy();
+    }
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  /** Fixed source and stage name of operator overrides */
+  public static final String OVERRIDE = "override";
+
+  /** Fixed source and stage name of site mapping rules */
+  public static final String RULE = "rule";
+
+  /** Number of latency histogram buckets (under 1us .. 2^15us, and slower) */
+  public static final int HISTOGRAM_SIZE = 17;
+
+  private final Stage[] stages;
+  private final int shortCircuit;
+  private final AtomicLong numPoints = new AtomicLong();
+  private final AtomicLong numShortCircuits = new AtomicLong();
+}
@@ -0,0 +1,76 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+/**
+ * PointDescriptor describes one point of an entity for batch matching
+ * with FuzzyMatcher.matchAll.
+ */
+public final class PointDescriptor
+{
+  /**
+   * Constructor
+   */
+  public PointDescriptor(String pointName, String units, boolean isBoolean)
+  {
+    this.pointName = pointName;
+    this.units = units;
+    this.isBoolean = isBoolean;
+  }
+
+  /** Get point name */
+  public String getPointName() { return pointName; }
+
+  /** Get units (may be null) */
+  public String getUnits() { return units; }
+
+  /** Return true if point is boolean */
+  public boolean isBoolean() { return isBoolean; }
+
+  /**
+   * Fix the field of this point (e.g. from a mapping rule).  The fuzzy
+   * matcher is skipped and the point always keeps the field unless a
+   * sibling with a stronger fixed claim takes it.
+   * @param source  MatchPipeline stage that reports the field, e.g.
+   *                MatchPipeline.RULE
+   */
+  public void setFixed(String dboField, int confidence, String source)
+  {
+    this.fixedField = dboField;
+    this.fixedConfidence = confidence;
+    this.fixedSource = source;
+  }
+
+  /** Get fixed field (may be null) */
+  public String getFixedField() { return fixedField; }
+
+  /** Get confidence of fixed field */
+  public int getFixedConfidence() { return fixedConfidence; }
+
+  /** Get source of fixed field */
+  public String getFixedSource() { return fixedSource; }
+
+  /**
+   * Key identifying points that always match the same way: name, units,
+   * boolean flag and fixed field and source.
+   */
+  public String signature()
+  {
+    return pointName + '\u0000' + (units != null ? units : "") + '\u0000' + (isBoolean ? 'b' : 'n') +
+      (fixedField != null ? '\u0000' + fixedField + '\u0000' + fixedSource : "");
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private final String pointName;
+  private final String units;
+  private final boolean isBoolean;
+  private String fixedField;
+  private int fixedConfidence;
+  private String fixedSource;
+}
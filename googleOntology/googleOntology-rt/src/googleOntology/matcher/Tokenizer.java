@@ -0,0 +1,153 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+/**
+ * Tokenizer splits point names into lowercase tokens in a single pass.
+ *
+ * Token boundaries are:
+ *   - any char that is not a letter or digit ("SA_Temp", "SA Temp")
+ *   - lower to upper case ("supplyTemp" -> supply, temp)
+ *   - letter to digit and digit to letter ("AHU1SAT" -> ahu, 1, sat)
+ *   - the end of an acronym run ("CHWSTemp" -> chws, temp)
+ *
+ * Tokens are written as lowercase slices into an internal char buffer
+ * which is reused between calls, so one instance should be used per
+ * thread.  Use token(i) to get a token as a String.
+ */
+public final class Tokenizer
+{
+  /** Constructor. */
+  public Tokenizer()
+  {
+    this.buf = new char[64];
+    this.starts = new int[16];
+    this.ends = new int[16];
+  }
+
+  /**
+   * Tokenize given name, replacing any previous result.
+   * Returns number of tokens.
+   */
+  public int tokenize(String name)
+  {
+    int len = name.length();
+    if (buf.length < len) buf = new char[Math.max(len, buf.length * 2)];
+
+    size = 0;
+    int pos = 0;         // write position in buf
+    int start = -1;      // start of current token in buf or -1
+    int prevClass = C_OTHER;
+
+    for (int i = 0; i < len; i++)
+    {
+      char ch = name.charAt(i);
+      int cls = charClass(ch);
+
+      if (cls == C_OTHER)
+      {
+        if (start >= 0) { add(start, pos); start = -1; }
+        prevClass = C_OTHER;
+        continue;
+      }
+
+      if (start >= 0 && isBoundary(prevClass, cls, name, i, len))
+      {
+        add(start, pos);
+        start = -1;
+      }
+
+      if (start < 0) start = pos;
+      buf[pos++] = cls == C_UPPER ? Character.toLowerCase(ch) : ch;
+      prevClass = cls;
+    }
+
+    if (start >= 0) add(start, pos);
+    return size;
+  }
+
+  /** Get number of tokens from last tokenize call. */
+  public int size() { return size; }
+
+  /** Get token i as a lowercase String. */
+  public String token(int i)
+  {
+    return new String(buf, starts[i], ends[i] - starts[i]);
+  }
+
+  /** Get start offset of token i in buffer(). */
+  public int start(int i) { return starts[i]; }
+
+  /** Get end offset (exclusive) of token i in buffer(). */
+  public int end(int i) { return ends[i]; }
+
+  /** Get the lowercase char buffer backing the tokens. */
+  public char[] buffer() { return buf; }
+
+////////////////////////////////////////////////////////////////
+// Implementation
+////////////////////////////////////////////////////////////////
+
+  private static int charClass(char ch)
+  {
+    if (ch >= 'a' && ch <= 'z') return C_LOWER;
+    if (ch >= 'A' && ch <= 'Z') return C_UPPER;
+    if (ch >= '0' && ch <= '9') return C_DIGIT;
+    if (ch < 128) return C_OTHER;
+
+    // non-ascii
+    if (Character.isUpperCase(ch)) return C_UPPER;
+    if (Character.isLetter(ch)) return C_LOWER;
+    if (Character.isDigit(ch)) return C_DIGIT;
+    return C_OTHER;
+  }
+
+  private static boolean isBoundary(int prev, int cls, String name, int i, int len)
+  {
+    // letter <-> digit
+    if ((prev == C_DIGIT) != (cls == C_DIGIT)) return true;
+
+    // camelCase: lower -> Upper
+    if (prev == C_LOWER && cls == C_UPPER) return true;
+
+    // acronym run: the last upper of a run followed by a lower starts a
+    // new word, e.g. "CHWSTemp" splits before 'T'
+    if (prev == C_UPPER && cls == C_UPPER && i + 1 < len && charClass(name.charAt(i + 1)) == C_LOWER)
+      return true;
+
+    return false;
+  }
+
+  private void add(int start, int end)
+  {
+    if (size == starts.length)
+    {
+      int[] ns = new int[size * 2];
+      int[] ne = new int[size * 2];
+      System.arraycopy(starts, 0, ns, 0, size);
+      System.arraycopy(ends, 0, ne, 0, size);
+      starts = ns;
+      ends = ne;
+    }
+    starts[size] = start;
+    ends[size] = end;
+    size++;
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private static final int C_OTHER = 0;
+  private static final int C_LOWER = 1;
+  private static final int C_UPPER = 2;
+  private static final int C_DIGIT = 3;
+
+  private char[] buf;
+  private int[] starts;
+  private int[] ends;
+  private int size;
+}
@@ -0,0 +1,123 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * TokenizerBenchmark compares the single-pass Tokenizer against the old
+ * two-regex split on a corpus of point names.
+ *
+ * Usage: TokenizerBenchmark [names.txt]
+ *
+ * names.txt holds one point name per line (e.g. exported from a station).
+ * Without a file, a 100k name corpus is generated from common naming
+ * patterns.  No Niagara needed to run this.
+ */
+public class TokenizerBenchmark
+{
+  public static void main(String[] args) throws Exception
+  {
+    String[] names = args.length > 0 ? load(args[0]) : generate(100000);
+    System.out.println("=== Tokenizer Benchmark (" + names.length + " names) ===\n");
+
+    // warm up both paths
+    for (int i = 0; i < 5; i++)
+    {
+      runRegex(names);
+      runTokenizer(names);
+    }
+
+    long regexNs = Long.MAX_VALUE;
+    long tokNs = Long.MAX_VALUE;
+    long sink = 0;
+    for (int i = 0; i < 10; i++)
+    {
+      long t0 = System.nanoTime();
+      sink += runRegex(names);
+      long t1 = System.nanoTime();
+      sink += runTokenizer(names);
+      long t2 = System.nanoTime();
+
+      regexNs = Math.min(regexNs, t1 - t0);
+      tokNs = Math.min(tokNs, t2 - t1);
+    }
+
+    System.out.println("regex split : " + (regexNs / names.length) + " ns/name");
+    System.out.println("Tokenizer   : " + (tokNs / names.length) + " ns/name");
+    System.out.println("speedup     : " + ((double)regexNs / tokNs) + "x");
+    System.out.println("(tokens: " + sink + ")");
+  }
+
+  /** Old FuzzyMatcher.tokenize + per-token toLowerCase */
+  private static long runRegex(String[] names)
+  {
+    long n = 0;
+    for (int i = 0; i < names.length; i++)
+    {
+      String[] parts = names[i].split("[\\s_\\-\\.]+");
+      for (int j = 0; j < parts.length; j++)
+      {
+        if (parts[j].length() == 0) continue;
+        String[] camel = parts[j].split("(?<=[a-z])(?=[A-Z])");
+        for (int k = 0; k < camel.length; k++)
+          n += camel[k].toLowerCase().length() > 0 ? 1 : 0;
+      }
+    }
+    return n;
+  }
+
+  private static long runTokenizer(String[] names)
+  {
+    Tokenizer t = new Tokenizer();
+    long n = 0;
+    for (int i = 0; i < names.length; i++)
+    {
+      int size = t.tokenize(names[i]);
+      for (int j = 0; j < size; j++)
+        n += t.token(j).length() > 0 ? 1 : 0;
+    }
+    return n;
+  }
+
+  private static String[] load(String file) throws IOException
+  {
+    ArrayList acc = new ArrayList();
+    BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try
+    {
+      String line;
+      while ((line = in.readLine()) != null)
+        if (line.trim().length() > 0) acc.add(line.trim());
+    }
+    finally
+    {
+      in.close();
+    }
+    return (String[])acc.toArray(new String[acc.size()]);
+  }
+
+  private static String[] generate(int n)
+  {
+    String[] prefixes = { "AHU", "VAV", "FCU", "RTU", "CH", "BLR", "CT", "EF" };
+    String[] stems = {
+      "SupplyAirTemp", "SA_Temp_SP", "DAT", "RAT", "MAT", "OAT", "ZnTmpSp", "SATSP",
+      "CHWSTemp", "chwst", "Discharge Air Temp", "SF-Speed-Cmd", "Damper.Position",
+      "Zone Temp", "RetFanSts", "HW_Valve_Cmd", "StaticPressure", "Filter DP Alarm",
+      "OccMode", "EconEnable", "CoolingValveCmd", "MinOAFlowSP" };
+
+    Random rnd = new Random(42);
+    String[] acc = new String[n];
+    for (int i = 0; i < n; i++)
+    {
+      String prefix = prefixes[rnd.nextInt(prefixes.length)] + (1 + rnd.nextInt(200));
+      String stem = stems[rnd.nextInt(stems.length)];
+      acc[i] = rnd.nextBoolean() ? prefix + "_" + stem : prefix + stem;
+    }
+    return acc;
+  }
+}
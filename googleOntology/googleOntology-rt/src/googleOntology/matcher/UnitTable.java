@@ -0,0 +1,246 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * UnitTable maps unit strings to DBO measurements.
+ *
+ * Each distinct unit string is resolved once and the result kept in a
+ * lookup table, so the matcher's unit checks are a single hash lookup.
+ * Units read from point facets are registered with their resolved
+ * measurement by the service (from the Niagara BUnit dimension, see
+ * GoogleOntologyUtil.resolveUnit); any other string is resolved against
+ * a table of common unit names and symbols using whole-string matches
+ * only, so "ft" or "count" no longer read as temperature.
+ *
+ * The name table is built once at class load and never changes; the
+ * memo of resolved strings is a ConcurrentHashMap, so lookups from the
+ * matcher's worker threads take no lock.
+ */
+public final class UnitTable
+{
+////////////////////////////////////////////////////////////////
+// Measurements
+////////////////////////////////////////////////////////////////
+
+  public static final int UNKNOWN       = 0;
+  public static final int TEMPERATURE   = 1;
+  public static final int PRESSURE      = 2;
+  public static final int FLOWRATE      = 3;
+  public static final int FLOWVOLUME    = 4;
+  public static final int POWER         = 5;
+  public static final int CURRENT       = 6;
+  public static final int VOLTAGE       = 7;
+  public static final int SPEED         = 8;
+  public static final int FREQUENCY     = 9;
+  public static final int PERCENTAGE    = 10;
+  public static final int CONCENTRATION = 11;
+
+  /** Get DBO measurement word for given id, or null for UNKNOWN. */
+  public static String name(int measurement) { return NAMES[measurement]; }
+
+  /** Get id for a DBO measurement word, or UNKNOWN. */
+  public static int forName(String word)
+  {
+    for (int i = 1; i < NAMES.length; i++)
+      if (NAMES[i].equals(word)) return i;
+    return UNKNOWN;
+  }
+
+////////////////////////////////////////////////////////////////
+// Lookup
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Get the measurement for given unit string (UNKNOWN if it cannot be
+   * resolved).  The first call for a string resolves it; later calls
+   * are a table lookup.
+   */
+  public static int measurementOf(String units)
+  {
+    if (units == null) return UNKNOWN;
+
+    Integer m = (Integer)registered.get(units);
+    if (m == null) m = (Integer)table.get(units);
+    if (m != null) return m.intValue();
+
+    int id = resolveName(units);
+    cache(units, id);
+    return id;
+  }
+
+  /**
+   * Return true if given units are consistent with a DBO measurement.
+   * Units that cannot be resolved are accepted since they cannot be
+   * checked.
+   */
+  public static boolean isCompatible(String units, String measurement)
+  {
+    int m = measurementOf(units);
+    if (m == UNKNOWN) return true;
+
+    int expected = forName(measurement);
+    if (expected == UNKNOWN || expected == m) return true;
+
+    // fan and pump speeds are commonly reported as % or Hz
+    if (expected == SPEED) return m == PERCENTAGE || m == FREQUENCY;
+    return false;
+  }
+
+  /**
+   * Register the measurement for a unit string, typically resolved from
+   * the structured unit (see resolve).  Overrides any name based result.
+   */
+  public static void register(String units, int measurement)
+  {
+    if (units == null) return;
+    registered.put(units.intern(), MEASUREMENTS[measurement]);
+  }
+
+  /** Get number of unit strings currently in the table. */
+  public static int size()
+  {
+    return registered.size() + table.size();
+  }
+
+////////////////////////////////////////////////////////////////
+// Resolution
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Resolve a structured unit to a measurement from its SI dimension
+   * exponents, using the unit name to tell apart units that share a
+   * dimension (rpm vs Hz, percent vs ppm).
+   *
+   * @param unitName  unit name, e.g. "fahrenheit", "percent"
+   * @param m kg s a k mol cd  dimension exponents
+   */
+  public static int resolve(String unitName, int m, int kg, int s, int a, int k, int mol, int cd)
+  {
+    String name = unitName != null ? unitName.toLowerCase() : "";
+    if (mol != 0 || cd != 0) return UNKNOWN;
+
+    // temperature (absolute and delta)
+    if (k == 1 && m == 0 && kg == 0 && s == 0 && a == 0) return TEMPERATURE;
+    if (k != 0) return UNKNOWN;
+
+    // electrical
+    if (a == 1 && m == 0 && kg == 0 && s == 0) return CURRENT;
+    if (a == -1 && m == 2 && kg == 1 && s == -3) return VOLTAGE;
+    if (a != 0) return UNKNOWN;
+
+    // mechanical
+    if (kg == 1 && m == -1 && s == -2) return PRESSURE;
+    if (kg == 1 && m == 2 && s == -3) return POWER;
+    if (kg == 0 && m == 3 && s == -1) return FLOWRATE;
+    if (kg == 1 && m == 0 && s == -1) return FLOWRATE;   // mass flow
+    if (kg == 0 && m == 3 && s == 0) return FLOWVOLUME;
+    if (kg == 0 && m == 1 && s == -1) return SPEED;      // velocity
+
+    // 1/s: rotational speed or frequency
+    if (kg == 0 && m == 0 && s == -1)
+      return name.indexOf("revolution") >= 0 || name.indexOf("rpm") >= 0 ? SPEED : FREQUENCY;
+
+    // dimensionless
+    if (kg == 0 && m == 0 && s == 0)
+    {
+      if (name.indexOf("percent") >= 0) return PERCENTAGE;
+      if (name.indexOf("parts per") >= 0 || name.startsWith("ppm") || name.startsWith("ppb")) return CONCENTRATION;
+    }
+    return UNKNOWN;
+  }
+
+  /** Resolve a bare unit string by whole-string name/symbol lookup. */
+  private static int resolveName(String units)
+  {
+    String key = units.trim().toLowerCase();
+    Integer m = (Integer)names.get(key);
+    if (m != null) return m.intValue();
+
+    // "° F", "deg. F", "degrees F" -> "f" etc.
+    key = stripDegree(key);
+    m = (Integer)names.get(key);
+    return m != null ? m.intValue() : UNKNOWN;
+  }
+
+  private static String stripDegree(String s)
+  {
+    StringBuffer sb = new StringBuffer(s.length());
+    for (int i = 0; i < s.length(); i++)
+    {
+      char ch = s.charAt(i);
+      if (ch == ' ' || ch == '.' || ch == '°') continue;
+      sb.append(ch);
+    }
+    String t = sb.toString();
+    if (t.startsWith("degrees")) t = t.substring(7);
+    else if (t.startsWith("deg")) t = t.substring(3);
+    return t;
+  }
+
+  private static void cache(String units, int id)
+  {
+    // racing threads may both clear, which only costs a re-resolve
+    if (table.size() >= MAX_ENTRIES) table.clear();
+    table.put(units.intern(), MEASUREMENTS[id]);
+  }
+
+////////////////////////////////////////////////////////////////
+// Name table
+////////////////////////////////////////////////////////////////
+
+  private static void names(int measurement, String list)
+  {
+    StringTokenizer st = new StringTokenizer(list, "|");
+    while (st.hasMoreTokens()) names.put(st.nextToken(), MEASUREMENTS[measurement]);
+  }
+
+  private static final String[] NAMES = {
+    null, "temperature", "pressure", "flowrate", "flowvolume", "power", "current",
+    "voltage", "speed", "frequency", "percentage", "concentration" };
+
+  /** Shared boxed ids so the tables hold no duplicate Integers */
+  private static final Integer[] MEASUREMENTS = new Integer[NAMES.length];
+
+  /** Lowercase unit name/symbol : Integer measurement, read only after class init */
+  private static final HashMap names = new HashMap();
+
+  static
+  {
+    for (int i = 0; i < MEASUREMENTS.length; i++) MEASUREMENTS[i] = Integer.valueOf(i);
+
+    // names and symbols after stripDegree() where applicable
+    names(TEMPERATURE, "f|c|k|fahrenheit|celsius|kelvin|rankine|r|degf|degc|degk|delta f|delta c|delta k");
+    names(PRESSURE, "pa|kpa|hpa|mpa|psi|psig|psia|bar|mbar|inh2o|in h2o|inwc|in wc|\"wc|iwc|inhg|in hg|mmhg|mmh2o|" +
+      "cmh2o|atm|torr|pascal|kilopascal|hectopascal|inches of water|inches of mercury|pounds per square inch");
+    names(FLOWRATE, "cfm|cfh|l/s|lps|l/min|lpm|l/h|m3/h|m³/h|m3/s|m³/s|m3/min|gpm|gph|kg/s|kg/h|lb/h|lb/hr|" +
+      "cubic feet per minute|liters per second|gallons per minute|cubic meters per hour|cubic meters per second");
+    names(FLOWVOLUME, "gal|gallon|gallons|l|liter|liters|litre|litres|m3|m³|ft3|ft³|cf|ccf|mcf|cubic meters|cubic feet");
+    names(POWER, "w|kw|mw|watt|watts|kilowatt|kilowatts|megawatt|hp|horsepower|btu/h|btu/hr|btuh|mbh|kbtu/h|ton|tons|tr|va|kva");
+    names(CURRENT, "a|ma|ka|amp|amps|ampere|amperes|milliampere|milliamperes");
+    names(VOLTAGE, "v|mv|kv|volt|volts|millivolt|millivolts|kilovolt|kilovolts|vac|vdc");
+    names(SPEED, "rpm|revolutions per minute|m/s|fpm|ft/min|feet per minute|meters per second|mph|km/h");
+    names(FREQUENCY, "hz|khz|hertz|kilohertz");
+    names(PERCENTAGE, "%|pct|percent|%rh|% rh|percent relative humidity|%open|% open");
+    names(CONCENTRATION, "ppm|ppb|parts per million|parts per billion|mg/m3|ug/m3|µg/m³");
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  /** Bound on distinct name-resolved unit strings kept in the table */
+  private static final int MAX_ENTRIES = 4096;
+
+  /** Interned unit string : Integer measurement, from structured units */
+  private static final ConcurrentHashMap registered = new ConcurrentHashMap();
+
+  /** Interned unit string : Integer measurement, from resolveName */
+  private static final ConcurrentHashMap table = new ConcurrentHashMap();
+}
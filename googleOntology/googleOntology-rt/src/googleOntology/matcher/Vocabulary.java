@@ -0,0 +1,473 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+
+/**
+ * Vocabulary is the compiled, immutable matching vocabulary: DBO words
+ * with their categories, entity type keywords, abbreviations, in-name
+ * short forms and the catalog of known fields.
+ *
+ * Every word gets a dense id and a category bitmask, so classifying a
+ * token is one hash probe plus an array read.  Instances are built once
+ * with a Builder, never change afterwards, and are safe to share between
+ * matching threads once published (see DboFieldLibrary.get).
+ */
+public final class Vocabulary
+{
+////////////////////////////////////////////////////////////////
+// Categories
+////////////////////////////////////////////////////////////////
+
+  public static final int POINT_TYPE             = 0x01;
+  public static final int MEASUREMENT            = 0x02;
+  public static final int DESCRIPTOR             = 0x04;
+  public static final int COMPONENT              = 0x08;
+  public static final int MEASUREMENT_DESCRIPTOR = 0x10;
+  public static final int AGGREGATION            = 0x20;
+
+  /** Number of category bits */
+  static final int NUM_CATEGORIES = 6;
+
+  /** Category names by bit, as used in subfields.yaml and vocabulary files */
+  static final String[] CATEGORY_NAMES =
+  {
+    "point_type", "measurement", "descriptor", "component", "measurement_descriptor", "aggregation"
+  };
+
+////////////////////////////////////////////////////////////////
+// Builder
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Builder collects vocabulary entries; build() compiles them.  Words
+   * are lower cased.  A builder is not thread safe.
+   */
+  public static final class Builder
+  {
+    /** Add a word to given categories (bitmask). */
+    public Builder word(String word, int categories)
+    {
+      word = word.toLowerCase();
+      Integer prev = (Integer)masks.get(word);
+      masks.put(word, Integer.valueOf(categories | (prev != null ? prev.intValue() : 0)));
+      return this;
+    }
+
+    /** Add space separated words to given categories. */
+    public Builder words(int categories, String list)
+    {
+      StringTokenizer st = new StringTokenizer(list, " ");
+      while (st.hasMoreTokens()) word(st.nextToken(), categories);
+      return this;
+    }
+
+    /**
+     * Map a keyword found in entity names to an entity type.  Keywords
+     * added first win ties; a keyword may be a phrase ("cooling tower").
+     */
+    public Builder entityType(String keyword, String entityType)
+    {
+      entityTypes.put(keyword.toLowerCase(), entityType);
+      return this;
+    }
+
+    /** Add an abbreviation matching a whole point name. */
+    public Builder abbreviation(String abbr, String expansion)
+    {
+      abbreviations.put(abbr.toLowerCase(), expansion);
+      return this;
+    }
+
+    /** Add a short form found inside concatenated names. */
+    public Builder shortForm(String shortForm, String expansion)
+    {
+      shortForms.put(shortForm.toLowerCase(), expansion);
+      return this;
+    }
+
+    /** Add a known DBO field. */
+    public Builder field(String field)
+    {
+      fields.add(field.toLowerCase());
+      return this;
+    }
+
+    /**
+     * Add a prototype for EntityClassifier: space separated fields
+     * typical for an entity type.
+     */
+    public Builder prototype(String entityType, String fieldList)
+    {
+      StringTokenizer st = new StringTokenizer(fieldList, " ");
+      String[] acc = new String[st.countTokens()];
+      for (int i = 0; i < acc.length; i++) acc[i] = st.nextToken().toLowerCase();
+      prototypes.add(new Object[] { entityType, acc });
+      return this;
+    }
+
+    /**
+     * Add every word (with its categories) and field of a compiled DBO
+     * catalog; the catalog stays available from getDboCatalog().  Each
+     * concrete catalog entity type with at least three fields becomes a
+     * prototype of its general type ("HVAC/AHU_SFSS" of AHU).
+     */
+    public Builder catalog(DboCatalog catalog)
+    {
+      for (int i = 0; i < catalog.numWords(); i++) word(catalog.word(i), catalog.wordCategories(i));
+      for (int i = 0; i < catalog.numFields(); i++) field(catalog.field(i));
+      for (int i = 0; i < catalog.numEntityTypes(); i++)
+      {
+        int[] uses = catalog.entityTypeUses(i);
+        if (catalog.isAbstract(i) || uses.length < 3) continue;
+        String name = catalog.entityTypeName(i);
+        name = name.substring(name.lastIndexOf('/') + 1);
+        int us = name.indexOf('_');
+        String[] acc = new String[uses.length];
+        for (int k = 0; k < uses.length; k++) acc[k] = catalog.field(uses[k]);
+        prototypes.add(new Object[] { us > 0 ? name.substring(0, us) : name, acc });
+      }
+      this.dbo = catalog;
+      return this;
+    }
+
+    /**
+     * Add entries from vocabulary file text, one per line ("#" starts a
+     * comment):
+     *
+     *   word <category>[,<category>] <word> ...
+     *   entityType <keyword>[_<keyword>] <TYPE>
+     *   abbreviation <abbreviation> <expansion>
+     *   shortForm <short form> <expansion>
+     *   prototype <TYPE> <field> ...
+     *   field <field> ...
+     *
+     * Categories are the subfields.yaml names (point_type, measurement,
+     * descriptor, component, measurement_descriptor, aggregation).
+     * Words are letters and digits, expansions and fields are words
+     * joined by "_".
+     * @throws IllegalArgumentException if a line is invalid
+     */
+    public Builder parse(String text)
+    {
+      String[] lines = text.split("\n", -1);
+      for (int lineNum = 1; lineNum <= lines.length; lineNum++)
+      {
+        String line = lines[lineNum - 1];
+        int hash = line.indexOf('#');
+        if (hash >= 0) line = line.substring(0, hash);
+        String[] toks = line.trim().toLowerCase().split("\\s+");
+        if (toks.length == 1 && toks[0].length() == 0) continue;
+
+        String kind = toks[0];
+        boolean ok = true;
+        if (kind.equals("word") && toks.length >= 3)
+        {
+          int mask = parseCategories(toks[1]);
+          ok = mask != 0;
+          for (int i = 2; i < toks.length && ok; i++) ok = isWord(toks[i]);
+          for (int i = 2; i < toks.length && ok; i++) word(toks[i], mask);
+        }
+        else if (kind.equals("entitytype") && toks.length == 3 && isName(toks[1]) && isName(toks[2]))
+          entityType(toks[1], toks[2].toUpperCase());
+        else if (kind.equals("abbreviation") && toks.length == 3 && isWord(toks[1]) && isName(toks[2]))
+          abbreviation(toks[1], toks[2]);
+        else if (kind.equals("shortform") && toks.length == 3 && isWord(toks[1]) && isName(toks[2]))
+          shortForm(toks[1], toks[2]);
+        else if (kind.equals("prototype") && toks.length >= 3 && isName(toks[1]))
+        {
+          StringBuffer list = new StringBuffer();
+          for (int i = 2; i < toks.length && ok; i++)
+          {
+            ok = isName(toks[i]);
+            list.append(toks[i]).append(' ');
+          }
+          if (ok) prototype(toks[1].toUpperCase(), list.toString());
+        }
+        else if (kind.equals("field") && toks.length >= 2)
+        {
+          for (int i = 1; i < toks.length && ok; i++) ok = isName(toks[i]);
+          for (int i = 1; i < toks.length && ok; i++) field(toks[i]);
+        }
+        else ok = false;
+
+        if (!ok) throw new IllegalArgumentException("Invalid vocabulary on line " + lineNum + ": " + line.trim());
+      }
+      return this;
+    }
+
+    /** Compile the vocabulary. */
+    public Vocabulary build() { return new Vocabulary(this); }
+
+    private final LinkedHashMap masks = new LinkedHashMap();          // word : Integer categories
+    private final LinkedHashMap entityTypes = new LinkedHashMap();    // keyword : entity type
+    private final HashMap abbreviations = new HashMap();              // abbreviation : expansion
+    private final HashMap shortForms = new HashMap();                 // short form : expansion
+    private final LinkedHashSet fields = new LinkedHashSet();         // DBO field names
+    private final ArrayList prototypes = new ArrayList();             // Object[] { entity type, String[] fields }
+    private DboCatalog dbo;
+  }
+
+  /** Parse comma separated category names to a bitmask, 0 if any is unknown. */
+  static int parseCategories(String list)
+  {
+    int mask = 0;
+    StringTokenizer st = new StringTokenizer(list, ",");
+    while (st.hasMoreTokens())
+    {
+      String name = st.nextToken();
+      int bit = 0;
+      for (int c = 0; c < NUM_CATEGORIES; c++)
+        if (CATEGORY_NAMES[c].equals(name)) bit = 1 << c;
+      if (bit == 0) return 0;
+      mask |= bit;
+    }
+    return mask;
+  }
+
+  /** Letters and digits only. */
+  private static boolean isWord(String s)
+  {
+    for (int i = 0; i < s.length(); i++)
+      if (!Character.isLetterOrDigit(s.charAt(i))) return false;
+    return s.length() > 0;
+  }
+
+  /** Words joined by single underscores. */
+  private static boolean isName(String s)
+  {
+    StringTokenizer st = new StringTokenizer(s, "_", true);
+    boolean word = false;
+    while (st.hasMoreTokens())
+    {
+      String t = st.nextToken();
+      if (t.equals("_")) { if (!word) return false; word = false; }
+      else if (word || !isWord(t)) return false;
+      else word = true;
+    }
+    return word;
+  }
+
+  private Vocabulary(Builder b)
+  {
+    // dense ids in insertion order
+    int n = b.masks.size();
+    this.tokens = new String[n];
+    this.masks = new int[n];
+    this.ids = new HashMap(n * 2);
+    HashSet[] byCategory = new HashSet[NUM_CATEGORIES];
+    for (int c = 0; c < NUM_CATEGORIES; c++) byCategory[c] = new HashSet();
+
+    int id = 0;
+    Iterator it = b.masks.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      String w = ((String)e.getKey()).intern();
+      int mask = ((Integer)e.getValue()).intValue();
+      tokens[id] = w;
+      masks[id] = mask;
+      ids.put(w, Integer.valueOf(id));
+      for (int c = 0; c < NUM_CATEGORIES; c++)
+        if ((mask & (1 << c)) != 0) byCategory[c].add(w);
+      id++;
+    }
+
+    this.categorySets = new Set[NUM_CATEGORIES];
+    for (int c = 0; c < NUM_CATEGORIES; c++)
+      categorySets[c] = Collections.unmodifiableSet(byCategory[c]);
+
+    this.entityTypes = new LinkedHashMap(b.entityTypes);
+    this.entityMatcher = new EntityTypeMatcher(entityTypes);
+    this.classifier = new EntityClassifier(b.prototypes);
+    this.abbreviations = new HashMap(b.abbreviations);
+    this.shortForms = new HashMap(b.shortForms);
+    this.fields = Collections.unmodifiableSet(new LinkedHashSet(b.fields));
+    this.dbo = b.dbo;
+
+    // catalog for typo-tolerant word correction and field snapping
+    this.catalog = new FieldCatalog(fields, Arrays.asList(tokens));
+
+    // every word, short form and abbreviation in one automaton for
+    // segmenting concatenated names
+    HashMap patterns = new HashMap();
+    for (int i = 0; i < n; i++) patterns.put(tokens[i], tokens[i]);
+    patterns.putAll(shortForms);
+    patterns.putAll(abbreviations);
+    this.segmenter = VocabularyMatcher.compile(patterns);
+  }
+
+////////////////////////////////////////////////////////////////
+// Words
+////////////////////////////////////////////////////////////////
+
+  /** Get number of words. */
+  public int size() { return tokens.length; }
+
+  /** Get id of an already lowercase word, or -1 if not a vocabulary word. */
+  public int id(String lower)
+  {
+    Integer id = (Integer)ids.get(lower);
+    return id != null ? id.intValue() : -1;
+  }
+
+  /** Get word for id. */
+  public String token(int id) { return tokens[id]; }
+
+  /** Get category bitmask for id. */
+  public int categories(int id) { return masks[id]; }
+
+  /**
+   * Classify an already lowercase token: bitmask of its categories, or
+   * 0 if it is not a vocabulary word.
+   */
+  public int classify(String lower)
+  {
+    Integer id = (Integer)ids.get(lower);
+    return id != null ? masks[id.intValue()] : 0;
+  }
+
+  /** Return true if already lowercase word is in any of given categories. */
+  public boolean is(String lower, int categories)
+  {
+    return (classify(lower) & categories) != 0;
+  }
+
+  /** Get the unmodifiable set of words in one category. */
+  public Set words(int category)
+  {
+    return categorySets[Integer.numberOfTrailingZeros(category)];
+  }
+
+////////////////////////////////////////////////////////////////
+// Names
+////////////////////////////////////////////////////////////////
+
+  /** Get expansion of a whole name abbreviation, or null. */
+  public String expandAbbreviation(String lower)
+  {
+    return (String)abbreviations.get(lower);
+  }
+
+  /** Get expansion of an in-name short form, or null. */
+  public String expandShortForm(String lower)
+  {
+    return (String)shortForms.get(lower);
+  }
+
+  /**
+   * Infer entity type from an entity name: the best ranked type (see
+   * EntityTypeMatcher), or null if no keyword matches.
+   */
+  public String inferEntityType(String name)
+  {
+    List ranked = entityMatcher.rank(name, null);
+    return ranked.isEmpty() ? null : ((EntityTypeMatcher.Result)ranked.get(0)).entityType;
+  }
+
+  /** Get matcher inferring entity types from names. */
+  public EntityTypeMatcher getEntityTypeMatcher() { return entityMatcher; }
+
+  /** Get classifier inferring entity types from point fields. */
+  public EntityClassifier getEntityClassifier() { return classifier; }
+
+  /** Get entity type keywords map (keyword : type), in definition order. */
+  public Map getEntityTypes() { return Collections.unmodifiableMap(entityTypes); }
+
+  /** Get known DBO fields. */
+  public Set getFields() { return fields; }
+
+  /** Get compiled DBO catalog, or null if the vocabulary has none. */
+  public DboCatalog getDboCatalog() { return dbo; }
+
+  /** Get catalog of known DBO fields. */
+  public FieldCatalog getCatalog() { return catalog; }
+
+  /** Get automaton segmenting concatenated names. */
+  public VocabularyMatcher getSegmenter() { return segmenter; }
+
+////////////////////////////////////////////////////////////////
+// Diff
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Get the terms that match differently in other: words whose
+   * categories differ, abbreviations, short forms and entity keywords
+   * that were added, removed or changed, and the words of fields that
+   * were added or removed.  A point name containing none of these terms
+   * matches the same way under both vocabularies.
+   */
+  public Set diff(Vocabulary other)
+  {
+    HashSet acc = new HashSet();
+    for (int i = 0; i < tokens.length; i++)
+      if (other.classify(tokens[i]) != masks[i]) acc.add(tokens[i]);
+    for (int i = 0; i < other.tokens.length; i++)
+      if (classify(other.tokens[i]) != other.masks[i]) acc.add(other.tokens[i]);
+
+    diffKeys(abbreviations, other.abbreviations, acc);
+    diffKeys(shortForms, other.shortForms, acc);
+    diffKeys(entityTypes, other.entityTypes, acc);
+
+    diffFields(fields, other.fields, acc);
+    diffFields(other.fields, fields, acc);
+    return acc;
+  }
+
+  /** Return true if entity type keywords differ in other. */
+  public boolean entityTypesDiffer(Vocabulary other)
+  {
+    return !entityTypes.equals(other.entityTypes);
+  }
+
+  private static void diffKeys(Map a, Map b, Set acc)
+  {
+    Iterator it = a.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      if (!e.getValue().equals(b.get(e.getKey()))) acc.add(e.getKey());
+    }
+    it = b.keySet().iterator();
+    while (it.hasNext())
+    {
+      Object key = it.next();
+      if (!a.containsKey(key)) acc.add(key);
+    }
+  }
+
+  /** Add words of fields in a but not in b. */
+  private static void diffFields(Set a, Set b, Set acc)
+  {
+    Iterator it = a.iterator();
+    while (it.hasNext())
+    {
+      String f = (String)it.next();
+      if (b.contains(f)) continue;
+      StringTokenizer st = new StringTokenizer(f, "_");
+      while (st.hasMoreTokens()) acc.add(st.nextToken());
+    }
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private final String[] tokens;        // id : word
+  private final int[] masks;            // id : categories
+  private final HashMap ids;            // word : Integer id
+  private final Set[] categorySets;     // category bit : Set<String>
+  private final LinkedHashMap entityTypes;
+  private final EntityTypeMatcher entityMatcher;
+  private final EntityClassifier classifier;
+  private final HashMap abbreviations;
+  private final HashMap shortForms;
+  private final Set fields;
+  private final DboCatalog dbo;
+  private final FieldCatalog catalog;
+  private final VocabularyMatcher segmenter;
+}
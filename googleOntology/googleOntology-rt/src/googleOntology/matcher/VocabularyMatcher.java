@@ -0,0 +1,252 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.matcher;
+
+import java.util.*;
+
+/**
+ * VocabularyMatcher is an Aho-Corasick automaton compiled over all
+ * vocabulary words and abbreviations.  It finds every vocabulary hit
+ * inside a concatenated name ("znTmpSp", "satsp", "chwstemp") in one
+ * left-to-right pass and picks the best non-overlapping segmentation
+ * on the fly, so cost is linear in name length regardless of the
+ * vocabulary size.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+public final class VocabularyMatcher
+{
+  /**
+   * Compile a matcher.
+   * @param patterns  map of lowercase pattern : expansion, where the
+   *                  expansion is an underscore separated list of words
+   *                  (e.g. "sat" : "supply_air_temperature")
+   */
+  public static VocabularyMatcher compile(Map patterns)
+  {
+    return new VocabularyMatcher(patterns);
+  }
+
+  private VocabularyMatcher(Map patterns)
+  {
+    // pattern tables
+    int n = patterns.size();
+    this.patternLen = new int[n];
+    this.expansions = new String[n][];
+
+    // trie construction; state 0 is root
+    int maxStates = 1;
+    Iterator it = patterns.keySet().iterator();
+    while (it.hasNext()) maxStates += ((String)it.next()).length();
+
+    int[] go = new int[maxStates * ALPHA];
+    Arrays.fill(go, -1);
+    int[] out = new int[maxStates];
+    Arrays.fill(out, -1);
+    int numStates = 1;
+
+    int id = 0;
+    it = patterns.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      String pat = (String)e.getKey();
+
+      int s = 0;
+      boolean valid = pat.length() > 0;
+      for (int i = 0; i < pat.length() && valid; i++)
+      {
+        int c = index(pat.charAt(i));
+        if (c < 0) { valid = false; break; }
+        if (go[s * ALPHA + c] < 0) go[s * ALPHA + c] = numStates++;
+        s = go[s * ALPHA + c];
+      }
+      if (!valid) continue;
+
+      out[s] = id;
+      patternLen[id] = pat.length();
+      expansions[id] = split((String)e.getValue());
+      id++;
+    }
+
+    // BFS to build failure links, complete goto into a DFA, and
+    // link each state to the nearest suffix state with an output
+    int[] fail = new int[numStates];
+    int[] dict = new int[numStates];
+    Arrays.fill(dict, -1);
+    int[] queue = new int[numStates];
+    int qh = 0, qt = 0;
+
+    for (int c = 0; c < ALPHA; c++)
+    {
+      int t = go[c];
+      if (t < 0) { go[c] = 0; continue; }
+      fail[t] = 0;
+      queue[qt++] = t;
+    }
+
+    while (qh < qt)
+    {
+      int s = queue[qh++];
+      int f = fail[s];
+      dict[s] = out[f] >= 0 ? f : dict[f];
+
+      for (int c = 0; c < ALPHA; c++)
+      {
+        int t = go[s * ALPHA + c];
+        if (t < 0) { go[s * ALPHA + c] = go[f * ALPHA + c]; continue; }
+        fail[t] = go[f * ALPHA + c];
+        queue[qt++] = t;
+      }
+    }
+
+    this.go = go;
+    this.out = out;
+    this.dict = dict;
+    this.numStates = numStates;
+    this.numPatterns = id;
+  }
+
+////////////////////////////////////////////////////////////////
+// Matching
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Segment a lowercase word into vocabulary hits and return the
+   * expanded words of the best segmentation, in order.  The best
+   * segmentation covers the most characters; ties prefer fewer
+   * segments.  Characters not covered by any hit are dropped.
+   * Returns an empty list if nothing matches.
+   */
+  public List segment(String word)
+  {
+    ArrayList acc = new ArrayList();
+    segment(word, acc);
+    return acc;
+  }
+
+  /**
+   * Segment word as above, appending the expanded words to acc.
+   * Returns the number of chars of word covered by the segmentation,
+   * so callers can tell a full segmentation from a partial one.
+   */
+  public int segment(String word, List acc)
+  {
+    int n = word.length();
+
+    // DP over prefix lengths: cover[i], segs[i] best score for word[0,i)
+    // and back[i] the pattern ending at i that achieved it (-1 = skip)
+    int[] cover = new int[n + 1];
+    int[] segs = new int[n + 1];
+    int[] back = new int[n + 1];
+
+    int s = 0;
+    for (int i = 0; i < n; i++)
+    {
+      int end = i + 1;
+
+      // default: skip this char
+      cover[end] = cover[i];
+      segs[end] = segs[i];
+      back[end] = -1;
+
+      int c = index(word.charAt(i));
+      if (c < 0) { s = 0; continue; }
+      s = go[s * ALPHA + c];
+
+      // every pattern ending here: longest at s, then dictionary links
+      for (int t = out[s] >= 0 ? s : dict[s]; t >= 0; t = dict[t])
+      {
+        int pid = out[t];
+        int start = end - patternLen[pid];
+        int cv = cover[start] + patternLen[pid];
+        int sg = segs[start] + 1;
+        if (cv > cover[end] || (cv == cover[end] && sg < segs[end]))
+        {
+          cover[end] = cv;
+          segs[end] = sg;
+          back[end] = pid;
+        }
+      }
+    }
+
+    if (cover[n] == 0) return 0;
+
+    // walk back pointers, collecting segments in reverse
+    ArrayList pids = new ArrayList();
+    for (int i = n; i > 0; )
+    {
+      int pid = back[i];
+      if (pid < 0) { i--; continue; }
+      pids.add(Integer.valueOf(pid));
+      i -= patternLen[pid];
+    }
+
+    for (int i = pids.size() - 1; i >= 0; i--)
+    {
+      String[] words = expansions[((Integer)pids.get(i)).intValue()];
+      for (int k = 0; k < words.length; k++) acc.add(words[k]);
+    }
+    return cover[n];
+  }
+
+  /**
+   * Return true if any pattern occurs in a lowercase string; characters
+   * other than letters and digits break words as in segment.
+   */
+  public boolean containsAny(String s)
+  {
+    int state = 0;
+    for (int i = 0; i < s.length(); i++)
+    {
+      int c = index(s.charAt(i));
+      if (c < 0) { state = 0; continue; }
+      state = go[state * ALPHA + c];
+      if (out[state] >= 0 || dict[state] >= 0) return true;
+    }
+    return false;
+  }
+
+  /** Get number of automaton states. */
+  public int numStates() { return numStates; }
+
+  /** Get number of compiled patterns. */
+  public int numPatterns() { return numPatterns; }
+
+////////////////////////////////////////////////////////////////
+// Utils
+////////////////////////////////////////////////////////////////
+
+  /** Map a lowercase letter or digit to 0..35, else -1. */
+  private static int index(char ch)
+  {
+    if (ch >= 'a' && ch <= 'z') return ch - 'a';
+    if (ch >= '0' && ch <= '9') return 26 + (ch - '0');
+    return -1;
+  }
+
+  private static String[] split(String expansion)
+  {
+    ArrayList acc = new ArrayList();
+    StringTokenizer st = new StringTokenizer(expansion, "_");
+    while (st.hasMoreTokens()) acc.add(st.nextToken().intern());
+    return (String[])acc.toArray(new String[acc.size()]);
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private static final int ALPHA = 36;
+
+  private final int[] go;            // DFA transitions [state * ALPHA + c]
+  private final int[] out;           // pattern id ending at state or -1
+  private final int[] dict;          // next suffix state with an output or -1
+  private final int[] patternLen;    // pattern id : length
+  private final String[][] expansions;  // pattern id : expanded words
+  private final int numStates;
+  private final int numPatterns;
+}
@@ -37,6 +37,32 @@ public final class GoogleOntologyEntity
   /** Get DBO entity type (AHU, VAV, CHWS, etc.) */
   public String getEntityType() { return entityType; }
 
+  /** Get confidence 0..100 of the inferred entity type */
+  public int getEntityTypeConfidence() { return entityTypeConfidence; }
+
+  /** Set confidence of the inferred entity type */
+  public void setEntityTypeConfidence(int confidence) { this.entityTypeConfidence = confidence; }
+
+  /** Change entity type; use OntologyIndex.setEntityType for indexed entities */
+  void setEntityType(String entityType) { this.entityType = entityType; }
+
+  /**
+   * Get id of the structural template this entity shares with other
+   * entities (same entity type and point signatures), or null if it
+   * has none.  See BGoogleOntologyService.getTemplateMembers.
+   */
+  public String getTemplateId() { return templateId; }
+
+  /** Get number of entities in this entity's template, 1 if none */
+  public int getTemplateSize() { return templateSize; }
+
+  /** Set template membership, as found by reindex */
+  public void setTemplate(String templateId, int templateSize)
+  {
+    this.templateId = templateId;
+    this.templateSize = templateSize;
+  }
+
   /** Get point for given address or null if not found */
   public GoogleOntologyPoint getPoint(String addr)
   {
@@ -62,8 +88,26 @@ public final class GoogleOntologyEntity
   public void addPoint(GoogleOntologyPoint point)
   {
     points.add(point);
+    if (point.getConfidence() > maxConfidence)
+      maxConfidence = point.getConfidence();
+  }
+
+  /** Remove all points from this entity */
+  public void clearPoints()
+  {
+    points.clear();
+    maxConfidence = -1;
   }
 
+  /** Get highest confidence of any point on this entity (-1 if no points) */
+  public int getMaxConfidence() { return maxConfidence; }
+
+  /** Set field conflicts resolved while matching (list of FuzzyMatcher.Conflict) */
+  public void setConflicts(List conflicts) { this.conflicts = conflicts; }
+
+  /** Get field conflicts resolved while matching (never null) */
+  public List getConflicts() { return conflicts != null ? conflicts : Collections.EMPTY_LIST; }
+
   /** Reference to actual Niagara component */
   public BComponent comp;
 
@@ -74,6 +118,11 @@ public final class GoogleOntologyEntity
   private final String id;
   private final String name;
   private final String path;
-  private final String entityType;
+  private String entityType;
+  private int entityTypeConfidence;
+  private String templateId;
+  private int templateSize = 1;
   private final ArrayList points;
+  private int maxConfidence = -1;
+  private List conflicts;
 }
@@ -5,6 +5,7 @@
 
 package googleOntology.model;
 
+import java.util.*;
 import javax.baja.sys.*;
 
 /**
@@ -67,6 +68,12 @@ public final class GoogleOntologyPoint
   /** Get precision */
   public Integer getPrecision() { return precision; }
 
+  /** Set ranked alternative fields (list of CandidateRanker.Candidate) */
+  public void setCandidates(List candidates) { this.candidates = candidates; }
+
+  /** Get ranked alternative fields, best first (never null) */
+  public List getCandidates() { return candidates != null ? candidates : Collections.EMPTY_LIST; }
+
 ////////////////////////////////////////////////////////////////
 // Public
 ////////////////////////////////////////////////////////////////
@@ -74,6 +81,9 @@ public final class GoogleOntologyPoint
   /** Reference to actual Niagara component */
   public BComponent comp;
 
+  /** Reference to owning entity (set by OntologyIndex.addPoint) */
+  public GoogleOntologyEntity entity;
+
 ////////////////////////////////////////////////////////////////
 // Attributes
 ////////////////////////////////////////////////////////////////
@@ -87,4 +97,5 @@ public final class GoogleOntologyPoint
   private Double minValue;
   private Double maxValue;
   private Integer precision;
+  private List candidates;
 }
@@ -0,0 +1,91 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.model;
+
+import java.util.*;
+
+/**
+ * MappingQuery holds the server-side filters applied to mapping queries.
+ * A null or empty filter matches everything.
+ */
+public final class MappingQuery
+{
+  /** Constructor (matches all mappings) */
+  public MappingQuery() {}
+
+  /** Only points with confidence >= min */
+  public MappingQuery setMinConfidence(int min) { this.minConfidence = min; return this; }
+
+  /** Only entities of given type(s); comma separated list allowed */
+  public MappingQuery setEntityTypes(String types)
+  {
+    this.entityTypes = null;
+    if (types == null || types.length() == 0) return this;
+
+    String[] parts = types.split(",");
+    HashSet acc = new HashSet();
+    for (int i = 0; i < parts.length; i++)
+    {
+      String t = parts[i].trim();
+      if (t.length() > 0) acc.add(t);
+    }
+    if (acc.size() > 0) this.entityTypes = acc;
+    return this;
+  }
+
+  /** Only points whose dboField starts with prefix */
+  public MappingQuery setDboFieldPrefix(String prefix) { this.dboFieldPrefix = emptyToNull(prefix); return this; }
+
+  /** Only entities whose path starts with prefix */
+  public MappingQuery setPathPrefix(String prefix) { this.pathPrefix = emptyToNull(prefix); return this; }
+
+  /** Get min confidence */
+  public int getMinConfidence() { return minConfidence; }
+
+  /** Get entity types or null if not filtered */
+  public Set getEntityTypes() { return entityTypes; }
+
+  /** Get dboField prefix or null */
+  public String getDboFieldPrefix() { return dboFieldPrefix; }
+
+  /** Get path prefix or null */
+  public String getPathPrefix() { return pathPrefix; }
+
+////////////////////////////////////////////////////////////////
+// Matching
+////////////////////////////////////////////////////////////////
+
+  /** Return true if entity-level filters accept given entity */
+  public boolean acceptEntity(GoogleOntologyEntity e)
+  {
+    if (e.getMaxConfidence() < minConfidence) return false;
+    if (entityTypes != null && !entityTypes.contains(e.getEntityType())) return false;
+    if (pathPrefix != null && !e.getPath().startsWith(pathPrefix)) return false;
+    return true;
+  }
+
+  /** Return true if point-level filters accept given point */
+  public boolean acceptPoint(GoogleOntologyPoint p)
+  {
+    if (p.getConfidence() < minConfidence) return false;
+    if (dboFieldPrefix != null && !p.getDboField().startsWith(dboFieldPrefix)) return false;
+    return true;
+  }
+
+  private static String emptyToNull(String s)
+  {
+    return (s == null || s.length() == 0) ? null : s;
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private int minConfidence = 0;
+  private Set entityTypes;
+  private String dboFieldPrefix;
+  private String pathPrefix;
+}
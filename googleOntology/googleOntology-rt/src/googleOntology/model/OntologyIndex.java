@@ -5,17 +5,65 @@
 
 package googleOntology.model;
 
+import java.io.*;
 import java.util.*;
 
 /**
  * OntologyIndex stores all matched entities and their DBO-mapped points.
+ *
+ * Besides the primary id map, the index keeps secondary structures
+ * (entities by type, entities by path, points by dboField) so that
+ * filtered queries only visit candidate rows.
+ *
+ * An index is built by one thread and not changed once it is handed to
+ * readers, so readers need no lock.  To change a published index, copy
+ * it, replace the entities to change in the copy (see replaceEntity)
+ * and publish the copy in its place.
  */
 public final class OntologyIndex
 {
+  /**
+   * Callback for streaming query results.
+   */
+  public static interface MappingVisitor
+  {
+    public void visit(GoogleOntologyEntity entity, GoogleOntologyPoint point) throws IOException;
+  }
+
   /** Constructor */
   public OntologyIndex()
   {
     this.entityMap = new HashMap();
+    this.entitiesByType = new HashMap();
+    this.entitiesByPath = new TreeMap();
+    this.pointsByField = new TreeMap();
+  }
+
+  /**
+   * Get a copy of this index.  Entities and points are shared with this
+   * index and must not be changed through the copy; replace an entity
+   * with replaceEntity to give it new points.
+   */
+  public OntologyIndex copy()
+  {
+    OntologyIndex acc = new OntologyIndex();
+    acc.entityMap.putAll(entityMap);
+    acc.entitiesByPath.putAll(entitiesByPath);
+    copyLists(entitiesByType, acc.entitiesByType);
+    copyLists(pointsByField, acc.pointsByField);
+    acc.pool.putAll(pool);
+    acc.bytesSaved = bytesSaved;
+    return acc;
+  }
+
+  private static void copyLists(Map from, Map to)
+  {
+    Iterator it = from.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      to.put(e.getKey(), new ArrayList((ArrayList)e.getValue()));
+    }
   }
 
   /** Return number of entities in index */
@@ -40,17 +88,204 @@ public final class OntologyIndex
   public void clear()
   {
     entityMap.clear();
+    entitiesByType.clear();
+    entitiesByPath.clear();
+    pointsByField.clear();
+    pool.clear();
+    bytesSaved = 0;
+  }
+
+  /**
+   * Get the shared instance of a string held by this index.  Units,
+   * enum mappings, fields and entity types repeat across thousands of
+   * points, so each distinct value is kept once.  Returns null for null.
+   */
+  public String intern(String s)
+  {
+    if (s == null) return null;
+    String shared = (String)pool.get(s);
+    if (shared == null)
+    {
+      pool.put(s, s);
+      return s;
+    }
+    if (shared != s) bytesSaved += STRING_OVERHEAD + 2 * s.length();
+    return shared;
   }
 
+  /** Get number of distinct strings shared by intern. */
+  public int poolSize() { return pool.size(); }
+
+  /**
+   * Get approximate heap bytes saved by intern since the last clear:
+   * the size of every duplicate string replaced by a shared one.
+   */
+  public long bytesSaved() { return bytesSaved; }
+
   /** Add a new entity to index */
   public void addEntity(GoogleOntologyEntity entity)
   {
     entityMap.put(entity.getId(), entity);
+    entitiesByPath.put(entity.getPath(), entity);
+
+    ArrayList list = (ArrayList)entitiesByType.get(entity.getEntityType());
+    if (list == null) entitiesByType.put(entity.getEntityType(), list = new ArrayList());
+    list.add(entity);
+  }
+
+  /** Change the type of an indexed entity and update secondary indexes */
+  public void setEntityType(GoogleOntologyEntity entity, String entityType, int confidence)
+  {
+    ArrayList list = (ArrayList)entitiesByType.get(entity.getEntityType());
+    if (list != null)
+    {
+      list.remove(entity);
+      if (list.isEmpty()) entitiesByType.remove(entity.getEntityType());
+    }
+
+    entityType = intern(entityType);
+    entity.setEntityType(entityType);
+    entity.setEntityTypeConfidence(confidence);
+    list = (ArrayList)entitiesByType.get(entityType);
+    if (list == null) entitiesByType.put(entityType, list = new ArrayList());
+    list.add(entity);
+  }
+
+  /** Add a point to given entity and update secondary indexes */
+  public void addPoint(GoogleOntologyEntity entity, GoogleOntologyPoint point)
+  {
+    point.entity = entity;
+    entity.addPoint(point);
+
+    ArrayList list = (ArrayList)pointsByField.get(point.getDboField());
+    if (list == null) pointsByField.put(point.getDboField(), list = new ArrayList());
+    list.add(point);
+  }
+
+  /** Remove all points of given entity, e.g. before it is rematched */
+  public void clearPoints(GoogleOntologyEntity entity)
+  {
+    removePoints(entity);
+    entity.clearPoints();
+  }
+
+  /**
+   * Replace an entity by a copy of it without points, e.g. to rematch
+   * it in a copy of a published index while readers of the published
+   * index still see the entity unchanged.  Returns the copy.
+   */
+  public GoogleOntologyEntity replaceEntity(GoogleOntologyEntity entity)
+  {
+    removePoints(entity);
+
+    GoogleOntologyEntity acc = new GoogleOntologyEntity(entity.getId(), entity.getName(), entity.getPath(), entity.getEntityType());
+    acc.setEntityTypeConfidence(entity.getEntityTypeConfidence());
+    acc.setTemplate(entity.getTemplateId(), entity.getTemplateSize());
+    acc.comp = entity.comp;
+
+    entityMap.put(acc.getId(), acc);
+    entitiesByPath.put(acc.getPath(), acc);
+    ArrayList list = (ArrayList)entitiesByType.get(acc.getEntityType());
+    int i = list != null ? list.indexOf(entity) : -1;
+    if (i >= 0) list.set(i, acc);
+    return acc;
+  }
+
+  /** Remove the points of given entity from the field index */
+  private void removePoints(GoogleOntologyEntity entity)
+  {
+    List points = entity.getPoints();
+    for (int i = 0; i < points.size(); i++)
+    {
+      GoogleOntologyPoint p = (GoogleOntologyPoint)points.get(i);
+      ArrayList list = (ArrayList)pointsByField.get(p.getDboField());
+      if (list == null) continue;
+      list.remove(p);
+      if (list.isEmpty()) pointsByField.remove(p.getDboField());
+    }
+  }
+
+////////////////////////////////////////////////////////////////
+// Query
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Visit every (entity, point) pair accepted by query.  The most
+   * selective secondary structure is used to drive the scan, remaining
+   * filters are checked per row, so rejected rows are never visited.
+   */
+  public void query(MappingQuery q, MappingVisitor v) throws IOException
+  {
+    // dboField prefix: range scan on sorted field map
+    if (q.getDboFieldPrefix() != null)
+    {
+      String prefix = q.getDboFieldPrefix();
+      Iterator it = prefixRange(pointsByField, prefix).values().iterator();
+      while (it.hasNext())
+      {
+        ArrayList points = (ArrayList)it.next();
+        for (int i = 0; i < points.size(); i++)
+        {
+          GoogleOntologyPoint p = (GoogleOntologyPoint)points.get(i);
+          if (q.acceptPoint(p) && q.acceptEntity(p.entity)) v.visit(p.entity, p);
+        }
+      }
+      return;
+    }
+
+    // pick entity source
+    Iterator entities;
+    if (q.getPathPrefix() != null)
+    {
+      entities = prefixRange(entitiesByPath, q.getPathPrefix()).values().iterator();
+    }
+    else if (q.getEntityTypes() != null)
+    {
+      ArrayList acc = new ArrayList();
+      Iterator types = q.getEntityTypes().iterator();
+      while (types.hasNext())
+      {
+        ArrayList list = (ArrayList)entitiesByType.get(types.next());
+        if (list != null) acc.addAll(list);
+      }
+      entities = acc.iterator();
+    }
+    else
+    {
+      entities = entityMap.values().iterator();
+    }
+
+    while (entities.hasNext())
+    {
+      GoogleOntologyEntity e = (GoogleOntologyEntity)entities.next();
+      if (!q.acceptEntity(e)) continue;
+
+      List points = e.getPoints();
+      for (int i = 0; i < points.size(); i++)
+      {
+        GoogleOntologyPoint p = (GoogleOntologyPoint)points.get(i);
+        if (q.acceptPoint(p)) v.visit(e, p);
+      }
+    }
+  }
+
+  /** Get sub map of keys starting with prefix */
+  private static SortedMap prefixRange(TreeMap map, String prefix)
+  {
+    return map.subMap(prefix, prefix + Character.MAX_VALUE);
   }
 
 ////////////////////////////////////////////////////////////////
 // Attributes
 ////////////////////////////////////////////////////////////////
 
-  private final HashMap entityMap;  // entity.id : GoogleOntologyEntity
+  private final HashMap entityMap;       // entity.id : GoogleOntologyEntity
+  private final HashMap entitiesByType;  // entityType : ArrayList<GoogleOntologyEntity>
+  private final TreeMap entitiesByPath;  // entity.path : GoogleOntologyEntity
+  private final TreeMap pointsByField;   // dboField : ArrayList<GoogleOntologyPoint>
+  private final HashMap pool = new HashMap();  // String : shared String
+  private long bytesSaved;
+
+  /** Approximate bytes of a String and its char array besides the chars */
+  private static final int STRING_OVERHEAD = 40;
 }
@@ -0,0 +1,148 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.model;
+
+import java.util.*;
+
+/**
+ * RecentValueStore keeps the last N samples of each mapped point in
+ * fixed-size primitive ring buffers (timestamps + doubles, no boxing).
+ *
+ * The per-point capacity is derived from a total memory cap, so the
+ * store never grows past its budget no matter how many points are mapped.
+ */
+public final class RecentValueStore
+{
+  /** Bytes used per sample (one long + one double) */
+  public static final int BYTES_PER_SAMPLE = 16;
+
+  /**
+   * Fixed-size ring buffer of (timestamp, value) samples.
+   */
+  public static final class Ring
+  {
+    Ring(int capacity)
+    {
+      this.ts = new long[capacity];
+      this.vals = new double[capacity];
+    }
+
+    /** Append a sample, overwriting the oldest when full. */
+    public synchronized void add(long t, double v)
+    {
+      ts[head] = t;
+      vals[head] = v;
+      head = (head + 1) % ts.length;
+      if (size < ts.length) size++;
+    }
+
+    /** Get number of samples held. */
+    public synchronized int size() { return size; }
+
+    /** Get capacity. */
+    public int capacity() { return ts.length; }
+
+    /**
+     * Copy samples at or after since (millis) into given arrays in
+     * ascending time order; returns number copied.  Arrays must be at
+     * least capacity() long.
+     */
+    public synchronized int copy(long since, long[] outTs, double[] outVals)
+    {
+      int n = 0;
+      int start = (head - size + ts.length) % ts.length;
+      for (int i = 0; i < size; i++)
+      {
+        int idx = (start + i) % ts.length;
+        if (ts[idx] < since) continue;
+        outTs[n] = ts[idx];
+        outVals[n] = vals[idx];
+        n++;
+      }
+      return n;
+    }
+
+    private final long[] ts;
+    private final double[] vals;
+    private int head;
+    private int size;
+  }
+
+  /**
+   * Constructor.
+   * @param samplesPerPoint  desired samples to keep per point
+   * @param maxBytes         total memory cap for all sample buffers
+   */
+  public RecentValueStore(int samplesPerPoint, long maxBytes)
+  {
+    this.samplesPerPoint = Math.max(2, samplesPerPoint);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Set the keys (point ids) to track.  Rings of keys still present are
+   * kept, others are dropped.  If the memory cap cannot hold the desired
+   * samples for every key, the capacity per point is reduced; if it
+   * cannot hold even two samples each, only the first keys are tracked.
+   * Returns number of keys actually tracked.
+   */
+  public synchronized int retain(List keys)
+  {
+    int n = keys.size();
+    int capacity = samplesPerPoint;
+    if (n > 0 && (long)capacity * BYTES_PER_SAMPLE * n > maxBytes)
+      capacity = (int)Math.max(2, maxBytes / ((long)BYTES_PER_SAMPLE * n));
+
+    int maxKeys = (int)Math.min(n, maxBytes / ((long)BYTES_PER_SAMPLE * capacity));
+
+    HashMap acc = new HashMap();
+    for (int i = 0; i < maxKeys; i++)
+    {
+      Object key = keys.get(i);
+      Ring r = (Ring)rings.get(key);
+      if (r == null || r.capacity() != capacity) r = new Ring(capacity);
+      acc.put(key, r);
+    }
+
+    this.rings = acc;
+    this.capacity = capacity;
+    return acc.size();
+  }
+
+  /** Record a sample for given key; ignored if key is not tracked. */
+  public void record(String key, long ts, double val)
+  {
+    Ring r = get(key);
+    if (r != null) r.add(ts, val);
+  }
+
+  /** Get ring for given key or null if not tracked. */
+  public synchronized Ring get(String key)
+  {
+    return (Ring)rings.get(key);
+  }
+
+  /** Get current per-point capacity. */
+  public synchronized int capacity() { return capacity; }
+
+  /** Get number of tracked points. */
+  public synchronized int size() { return rings.size(); }
+
+  /** Get bytes allocated for sample buffers. */
+  public synchronized long memoryUsed()
+  {
+    return (long)rings.size() * capacity * BYTES_PER_SAMPLE;
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private final int samplesPerPoint;
+  private final long maxBytes;
+  private HashMap rings = new HashMap();   // point key : Ring
+  private int capacity;
+}
@@ -5,10 +5,14 @@
 
 package googleOntology.service;
 
+import java.io.*;
+import java.util.*;
 import javax.baja.control.*;
+import javax.baja.driver.*;
 import javax.baja.log.*;
 import javax.baja.status.*;
 import javax.baja.sys.*;
+import javax.baja.tag.*;
 import javax.baja.util.*;
 import googleOntology.matcher.*;
 import googleOntology.model.*;
@@ -34,6 +38,9 @@ public final class BGoogleOntologyService extends BAbstractService
         default {[ 50 ]}
         flags { summary }
 
+      shortCircuitConfidence: int
+        default {[ 90 ]}
+
       kodeBaseUrl: String
         default {[ "https://api.kodelabs.com/kodeos/api/v1" ]}
         flags { summary }
@@ -49,12 +56,50 @@ public final class BGoogleOntologyService extends BAbstractService
       kodeDatasourceId: String
         default {[ "" ]}
         flags { summary }
+
+      recentEnabled: boolean
+        default {[ false ]}
+
+      recentInterval: BRelTime
+        default {[ BRelTime.makeMinutes(1) ]}
+
+      recentSamples: int
+        default {[ 60 ]}
+
+      recentMemoryLimit: int
+        default {[ 4096 ]}
+
+      mappingRules: String
+        default {[ "" ]}
+        slotfacets {[ BFacets.make(BFacets.MULTI_LINE, true) ]}
+
+      mappingOverrides: String
+        default {[ "" ]}
+        flags { hidden }
+
+      vocabularyFile: String
+        default {[ "googleOntology/vocabulary.txt" ]}
+
+      vocabularyVersion: int
+        default {[ 1 ]}
+        flags { readonly, transient }
+
+      vocabularyStatus: String
+        default {[ "" ]}
+        flags { readonly, transient }
+
+      entityResolution: String
+        default {[ "parent" ]}
     }
 
     actions
     {
       rebuildIndex()
       syncToKodeLabs()
+      sampleRecent()
+        flags { hidden }
+      checkVocabulary()
+        flags { hidden }
     }
   }
   -*/
@@ -108,6 +153,30 @@ public final class BGoogleOntologyService extends BAbstractService
    */
   public void setMinConfidence(int v) { setInt(minConfidence, v, null); }
 
+////////////////////////////////////////////////////////////////
+// Property "shortCircuitConfidence"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>shortCircuitConfidence</code> property.
+   * Match confidence at which the ML stage of the match pipeline is skipped.
+   * @see googleOntology.service.BGoogleOntologyService#getShortCircuitConfidence
+   * @see googleOntology.service.BGoogleOntologyService#setShortCircuitConfidence
+   */
+  public static final Property shortCircuitConfidence = newProperty(0, 90, null);
+
+  /**
+   * Get the <code>shortCircuitConfidence</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#shortCircuitConfidence
+   */
+  public int getShortCircuitConfidence() { return getInt(shortCircuitConfidence); }
+
+  /**
+   * Set the <code>shortCircuitConfidence</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#shortCircuitConfidence
+   */
+  public void setShortCircuitConfidence(int v) { setInt(shortCircuitConfidence, v, null); }
+
 ////////////////////////////////////////////////////////////////
 // Property "kodeBaseUrl"
 ////////////////////////////////////////////////////////////////
@@ -200,6 +269,246 @@ public final class BGoogleOntologyService extends BAbstractService
    */
   public void setKodeDatasourceId(String v) { setString(kodeDatasourceId, v, null); }
 
+////////////////////////////////////////////////////////////////
+// Property "recentEnabled"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>recentEnabled</code> property.
+   * Record mapped point values into in-memory ring buffers.
+   * @see googleOntology.service.BGoogleOntologyService#getRecentEnabled
+   * @see googleOntology.service.BGoogleOntologyService#setRecentEnabled
+   */
+  public static final Property recentEnabled = newProperty(0, false, null);
+
+  /**
+   * Get the <code>recentEnabled</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#recentEnabled
+   */
+  public boolean getRecentEnabled() { return getBoolean(recentEnabled); }
+
+  /**
+   * Set the <code>recentEnabled</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#recentEnabled
+   */
+  public void setRecentEnabled(boolean v) { setBoolean(recentEnabled, v, null); }
+
+////////////////////////////////////////////////////////////////
+// Property "recentInterval"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>recentInterval</code> property.
+   * Sample interval for recent values.
+   * @see googleOntology.service.BGoogleOntologyService#getRecentInterval
+   * @see googleOntology.service.BGoogleOntologyService#setRecentInterval
+   */
+  public static final Property recentInterval = newProperty(0, BRelTime.makeMinutes(1), null);
+
+  /**
+   * Get the <code>recentInterval</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#recentInterval
+   */
+  public BRelTime getRecentInterval() { return (BRelTime)get(recentInterval); }
+
+  /**
+   * Set the <code>recentInterval</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#recentInterval
+   */
+  public void setRecentInterval(BRelTime v) { set(recentInterval, v, null); }
+
+////////////////////////////////////////////////////////////////
+// Property "recentSamples"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>recentSamples</code> property.
+   * Number of samples to keep per point.
+   * @see googleOntology.service.BGoogleOntologyService#getRecentSamples
+   * @see googleOntology.service.BGoogleOntologyService#setRecentSamples
+   */
+  public static final Property recentSamples = newProperty(0, 60, null);
+
+  /**
+   * Get the <code>recentSamples</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#recentSamples
+   */
+  public int getRecentSamples() { return getInt(recentSamples); }
+
+  /**
+   * Set the <code>recentSamples</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#recentSamples
+   */
+  public void setRecentSamples(int v) { setInt(recentSamples, v, null); }
+
+////////////////////////////////////////////////////////////////
+// Property "recentMemoryLimit"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>recentMemoryLimit</code> property.
+   * Total memory cap for recent value buffers in KB.
+   * @see googleOntology.service.BGoogleOntologyService#getRecentMemoryLimit
+   * @see googleOntology.service.BGoogleOntologyService#setRecentMemoryLimit
+   */
+  public static final Property recentMemoryLimit = newProperty(0, 4096, null);
+
+  /**
+   * Get the <code>recentMemoryLimit</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#recentMemoryLimit
+   */
+  public int getRecentMemoryLimit() { return getInt(recentMemoryLimit); }
+
+  /**
+   * Set the <code>recentMemoryLimit</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#recentMemoryLimit
+   */
+  public void setRecentMemoryLimit(int v) { setInt(recentMemoryLimit, v, null); }
+
+////////////////////////////////////////////////////////////////
+// Property "mappingRules"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>mappingRules</code> property.
+   * Site specific mapping rules, one per line (see MappingRules).
+   * @see googleOntology.service.BGoogleOntologyService#getMappingRules
+   * @see googleOntology.service.BGoogleOntologyService#setMappingRules
+   */
+  public static final Property mappingRules = newProperty(0, "", BFacets.make(BFacets.MULTI_LINE, true));
+
+  /**
+   * Get the <code>mappingRules</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#mappingRules
+   */
+  public String getMappingRules() { return getString(mappingRules); }
+
+  /**
+   * Set the <code>mappingRules</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#mappingRules
+   */
+  public void setMappingRules(String v) { setString(mappingRules, v, null); }
+
+////////////////////////////////////////////////////////////////
+// Property "mappingOverrides"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>mappingOverrides</code> property.
+   * Operator fixed fields per point, edited through /v1/overrides (see MappingOverrides).
+   * @see googleOntology.service.BGoogleOntologyService#getMappingOverrides
+   * @see googleOntology.service.BGoogleOntologyService#setMappingOverrides
+   */
+  public static final Property mappingOverrides = newProperty(Flags.HIDDEN, "", null);
+
+  /**
+   * Get the <code>mappingOverrides</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#mappingOverrides
+   */
+  public String getMappingOverrides() { return getString(mappingOverrides); }
+
+  /**
+   * Set the <code>mappingOverrides</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#mappingOverrides
+   */
+  public void setMappingOverrides(String v) { setString(mappingOverrides, v, null); }
+
+////////////////////////////////////////////////////////////////
+// Property "vocabularyFile"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>vocabularyFile</code> property.
+   * Site vocabulary file, relative to the station home; reloaded when it changes.
+   * @see googleOntology.service.BGoogleOntologyService#getVocabularyFile
+   * @see googleOntology.service.BGoogleOntologyService#setVocabularyFile
+   */
+  public static final Property vocabularyFile = newProperty(0, "googleOntology/vocabulary.txt", null);
+
+  /**
+   * Get the <code>vocabularyFile</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#vocabularyFile
+   */
+  public String getVocabularyFile() { return getString(vocabularyFile); }
+
+  /**
+   * Set the <code>vocabularyFile</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#vocabularyFile
+   */
+  public void setVocabularyFile(String v) { setString(vocabularyFile, v, null); }
+
+////////////////////////////////////////////////////////////////
+// Property "vocabularyVersion"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>vocabularyVersion</code> property.
+   * Version of the vocabulary in use (see DboFieldLibrary.getVersion).
+   * @see googleOntology.service.BGoogleOntologyService#getVocabularyVersion
+   * @see googleOntology.service.BGoogleOntologyService#setVocabularyVersion
+   */
+  public static final Property vocabularyVersion = newProperty(Flags.READONLY | Flags.TRANSIENT, 1, null);
+
+  /**
+   * Get the <code>vocabularyVersion</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#vocabularyVersion
+   */
+  public int getVocabularyVersion() { return getInt(vocabularyVersion); }
+
+  /**
+   * Set the <code>vocabularyVersion</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#vocabularyVersion
+   */
+  public void setVocabularyVersion(int v) { setInt(vocabularyVersion, v, null); }
+
+////////////////////////////////////////////////////////////////
+// Property "vocabularyStatus"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>vocabularyStatus</code> property.
+   * Result of the last vocabulary file load.
+   * @see googleOntology.service.BGoogleOntologyService#getVocabularyStatus
+   * @see googleOntology.service.BGoogleOntologyService#setVocabularyStatus
+   */
+  public static final Property vocabularyStatus = newProperty(Flags.READONLY | Flags.TRANSIENT, "", null);
+
+  /**
+   * Get the <code>vocabularyStatus</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#vocabularyStatus
+   */
+  public String getVocabularyStatus() { return getString(vocabularyStatus); }
+
+  /**
+   * Set the <code>vocabularyStatus</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#vocabularyStatus
+   */
+  public void setVocabularyStatus(String v) { setString(vocabularyStatus, v, null); }
+
+////////////////////////////////////////////////////////////////
+// Property "entityResolution"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>entityResolution</code> property.
+   * Which ancestor of a point is its entity: parent, device, tag [id] or depth N.
+   * @see googleOntology.service.BGoogleOntologyService#getEntityResolution
+   * @see googleOntology.service.BGoogleOntologyService#setEntityResolution
+   */
+  public static final Property entityResolution = newProperty(0, "parent", null);
+
+  /**
+   * Get the <code>entityResolution</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#entityResolution
+   */
+  public String getEntityResolution() { return getString(entityResolution); }
+
+  /**
+   * Set the <code>entityResolution</code> property.
+   * @see googleOntology.service.BGoogleOntologyService#entityResolution
+   */
+  public void setEntityResolution(String v) { setString(entityResolution, v, null); }
+
 ////////////////////////////////////////////////////////////////
 // Action "rebuildIndex"
 ////////////////////////////////////////////////////////////////
@@ -232,6 +541,38 @@ public final class BGoogleOntologyService extends BAbstractService
    */
   public void syncToKodeLabs() { invoke(syncToKodeLabs, null, null); }
 
+////////////////////////////////////////////////////////////////
+// Action "sampleRecent"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>sampleRecent</code> action.
+   * @see googleOntology.service.BGoogleOntologyService#sampleRecent()
+   */
+  public static final Action sampleRecent = newAction(Flags.HIDDEN, null);
+
+  /**
+   * Invoke the <code>sampleRecent</code> action.
+   * @see googleOntology.service.BGoogleOntologyService#sampleRecent
+   */
+  public void sampleRecent() { invoke(sampleRecent, null, null); }
+
+////////////////////////////////////////////////////////////////
+// Action "checkVocabulary"
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Slot for the <code>checkVocabulary</code> action.
+   * @see googleOntology.service.BGoogleOntologyService#checkVocabulary()
+   */
+  public static final Action checkVocabulary = newAction(Flags.HIDDEN, null);
+
+  /**
+   * Invoke the <code>checkVocabulary</code> action.
+   * @see googleOntology.service.BGoogleOntologyService#checkVocabulary
+   */
+  public void checkVocabulary() { invoke(checkVocabulary, null, null); }
+
 ////////////////////////////////////////////////////////////////
 // Type
 ////////////////////////////////////////////////////////////////
@@ -254,15 +595,46 @@ public final class BGoogleOntologyService extends BAbstractService
   public void serviceStarted() throws Exception
   {
     DboFieldLibrary.init();
+    String err = DboFieldLibrary.getLoadError();
+    if (err != null)
+    {
+      LOG.error("GoogleOntology DBO catalog not loaded, matching with built in fields only: " + err);
+      setVocabularyStatus(statusOf("standard"));
+    }
+  }
+
+  public void serviceStopped() throws Exception
+  {
+    FuzzyMatcher.shutdown();
+    if (recentTicket != null) recentTicket.cancel();
+    recentTicket = null;
+    if (vocabTicket != null) vocabTicket.cancel();
+    vocabTicket = null;
   }
 
   public void atSteadyState()
   {
+    configureVocabulary(false);
     doRebuildIndex();
     LOG.message("GoogleOntologyService ready [version=" + moduleVer() + "]");
   }
 
-  public void doRebuildIndex()
+  public void changed(Property p, Context cx)
+  {
+    super.changed(p, cx);
+    if (!isRunning()) return;
+
+    if (p == recentEnabled || p == recentInterval || p == recentSamples || p == recentMemoryLimit)
+      configureRecent();
+    else if (p == mappingRules)
+      rematchRules();
+    else if (p == mappingOverrides)
+      reloadOverrides();
+    else if (p == vocabularyFile)
+      configureVocabulary(true);
+  }
+
+  public synchronized void doRebuildIndex()
   {
     try
     {
@@ -271,14 +643,32 @@ public final class BGoogleOntologyService extends BAbstractService
       BAbsTime t1 = BAbsTime.now();
       int numPoints = 0;
       int numMatched = 0;
+      numConflicts = 0;
+      numClassified = 0;
+      int numStamped = 0;
 
-      // clear index
-      index.clear();
+      // build a new index off to the side; readers keep the published
+      // one until this one is complete
+      staging = new OntologyIndex();
 
       // scan station for points
       BStation station = Sys.getStation();
       BComponent[] comps = station.getComponentSpace().getAllComponents();
 
+      // entity of each point's parent, resolved once per parent; paths
+      // are recomputed since components may have moved
+      configureEntityResolution();
+      slotPaths.clear();
+      enumMappings.clear();
+      facetCache.clear();
+
+      // points grouped by entity for batch matching
+      pending = new LinkedHashMap();
+      rules = compileRules(rules);
+      overrides = loadOverrides(overrides);
+      if (pipeline == null || pipeline.getShortCircuit() != getShortCircuitConfidence())
+        pipeline = MatchPipeline.makeDefault(new MlStage(), getShortCircuitConfidence());
+
       for (int i = 0; i < comps.length; i++)
       {
         BComponent c = comps[i];
@@ -297,145 +687,150 @@ public final class BGoogleOntologyService extends BAbstractService
               continue;
             }
 
-            // Extract facet information
-            String units = null;
-            String enumMapping = null;
-            Double minValue = null;
-            Double maxValue = null;
-            Integer precision = null;
-            boolean isBoolean = false;
-
-            BFacets f = (BFacets)c.get("facets");
-            if (f != null)
-            {
-              // Get units
-              units = f.gets("units", null);
-              if (units != null && units.equals("null")) units = null;
-
-              // Get enum range for enum/boolean points
-              if (c instanceof BEnumPoint)
-              {
-                BEnumRange r = (BEnumRange)f.get("range");
-                if (r != null)
-                  enumMapping = GoogleOntologyUtil.parseEnumRange(r);
-              }
-              else if (c instanceof BBooleanPoint)
-              {
-                isBoolean = true;
-                enumMapping = GoogleOntologyUtil.parseBooleanRange();
-              }
-
-              // Get numeric range
-              if (c instanceof BNumericPoint)
-              {
-                // TODO: Get min/max from numeric point facets
-                // Need to find correct Niagara 4.14 API for numeric ranges
-                // BNumericRange doesn't exist - need to find the right class
-
-                // For now, skip range extraction
-                // BNumericRange range = (BNumericRange)f.get("range");
-                // if (range != null)
-                // {
-                //   minValue = new Double(range.getMin());
-                //   maxValue = new Double(range.getMax());
-                // }
-
-                // Get precision (if available)
-                try
-                {
-                  Object precObj = f.get("precision");
-                  if (precObj != null)
-                  {
-                    // Precision might be an Integer or BInteger
-                    int prec = -1;
-                    if (precObj instanceof Integer)
-                      prec = ((Integer)precObj).intValue();
-                    else if (precObj instanceof Number)
-                      prec = ((Number)precObj).intValue();
-
-                    if (prec >= 0)
-                      precision = new Integer(prec);
-                  }
-                }
-                catch (Exception ex) { /* ignore - precision not critical */ }
-              }
-            }
+            // Describe point for batch matching with its siblings; only
+            // what a rematch needs is kept, facets are read when indexed
+            boolean isBoolean = c instanceof BBooleanPoint;
+            String units = pointFacets((BFacets)c.get("facets")).units;
+            PendingPoint pp = new PendingPoint();
+            pp.handle = GoogleOntologyUtil.getEntityId(c);
+            pp.addr = slotPaths.getPointAddr(entity.comp, c);
+            pp.desc = new PointDescriptor(c.getDisplayName(null), units, isBoolean);
+            pp.kind = isBoolean ? "boolean" : c instanceof BEnumPoint ? "enum" : "numeric";
+
+            // operator overrides, then site mapping rules, fix the field
+            // before any matching; overridden points skip the ML model
+            applyFixed(pp, entity);
+
+            ArrayList list = (ArrayList)pending.get(entity);
+            if (list == null) pending.put(entity, list = new ArrayList());
+            list.add(pp);
+          }
+        }
+        catch (Exception e)
+        {
+          // do not fail reindex for one component; log error and continue
+          LOG.error("FAILED to index: " + c.getName(), e);
+        }
+      }
 
-            // Perform fuzzy matching
-            String pointName = c.getDisplayName(null);
-            FuzzyMatcher.MatchResult fuzzyMatch = FuzzyMatcher.matchToDboField(
-              pointName, units, isBoolean);
+      entityComps.clear();
+
+      // all points of each entity are known now: settle the type of
+      // entities whose name alone was ambiguous
+      settleEntityTypes();
+
+      // match each entity's points as one batch; entities with the same
+      // structure (a template) are matched once and the representative's
+      // result is stamped onto the rest
+      int numEntities = pending.size();
+      PendingPoint[][] sorted = new PendingPoint[numEntities][];
+      String[] keys = new String[numEntities];
+      HashSet seen = new HashSet();
+      ArrayList reps = new ArrayList();  // first entity of each template
+      Iterator it = pending.keySet().iterator();
+      for (int k = 0; it.hasNext(); k++)
+      {
+        GoogleOntologyEntity entity = (GoogleOntologyEntity)it.next();
+        try
+        {
+          sorted[k] = sortedPoints((ArrayList)pending.get(entity));
+          keys[k] = templateKey(entity, sorted[k]);
+          if (seen.add(keys[k])) reps.add(entity);
+        }
+        catch (Exception ex)
+        {
+          LOG.error("FAILED to match: " + entity.getName(), ex);
+        }
+      }
 
-            FuzzyMatcher.MatchResult match = fuzzyMatch;  // default to fuzzy
+      // the representatives are matched in parallel, one entity per task;
+      // their results are added to the index in entity order below
+      Vocabulary vocab = DboFieldLibrary.get();
+      Batch batch = new Batch(vocab, reps);
 
-            // Try ML prediction if model is trained
-            if (mlLearner != null && mlLearner.isReady())
-            {
-              String entityType = entity.getEntityType();
-              MLOntologyLearner.Prediction mlPred = mlLearner.predict(pointName, entityType);
-
-              if (mlPred.dboField != null && mlPred.confidence > fuzzyMatch.confidence)
-              {
-                // ML has better prediction!
-                match = new FuzzyMatcher.MatchResult(mlPred.dboField, mlPred.confidence);
-                if (LOG.isTraceOn())
-                  LOG.trace("ML prediction wins: " + pointName + " -> " + mlPred.dboField +
-                           " (ML:" + mlPred.confidence + "% vs Fuzzy:" + fuzzyMatch.confidence + "%)");
-              }
-            }
+      templates = new LinkedHashMap();
+      HashMap byKey = new HashMap();
+      it = pending.entrySet().iterator();
+      for (int k = 0; it.hasNext(); k++)
+      {
+        Map.Entry e = (Map.Entry)it.next();
+        GoogleOntologyEntity entity = (GoogleOntologyEntity)e.getKey();
+        ArrayList list = (ArrayList)e.getValue();
+        String key = keys[k];
+        if (key == null) continue;
+        try
+        {
+          Template t = (Template)byKey.get(key);
+          if (t != null)
+          {
+            numMatched += stampTemplate(t, entity, list, sorted[k]);
+            t.members.add(entity);
+            numStamped++;
+            continue;
+          }
 
-            // Check if confidence meets threshold
-            if (match.confidence < getMinConfidence())
-            {
-              if (LOG.isTraceOn())
-                LOG.trace("Low confidence match (" + match.confidence + "%) for: " + pointName);
-              continue;
-            }
+          int n = batch.apply(entity, list);
 
-            // Create point with DBO mapping
-            String addr = GoogleOntologyUtil.getPointAddr(entity.comp, c);
-            GoogleOntologyPoint point = new GoogleOntologyPoint(
-              match.dboField,
-              pointName,
-              addr,
-              units,
-              enumMapping,
-              match.confidence
-            );
-
-            // Set additional facet info
-            point.setMinValue(minValue);
-            point.setMaxValue(maxValue);
-            point.setPrecision(precision);
-            point.comp = c;
-
-            entity.addPoint(point);
-            numMatched++;
+          // nameless equipment: classify by its matched fields and
+          // rematch with the new type
+          if (classifyEntity(entity))
+          {
+            rematch(entity, list);
+            n = entity.getPoints().size();
           }
+          numMatched += n;
+
+          t = new Template(templateId(key), entity, sorted[k]);
+          byKey.put(key, t);
+          templates.put(t.id, t);
         }
-        catch (Exception e)
+        catch (Exception ex)
         {
-          // do not fail reindex for one component; log error and continue
-          LOG.error("FAILED to index: " + c.getName(), e);
+          // do not fail reindex for one entity; log error and continue
+          LOG.error("FAILED to match: " + entity.getName(), ex);
         }
       }
 
-      // Update servlet references (internal property)
-      getServlet().setIndex(index);
-      getServlet().setService(this);
+      enumMappings.clear();
+      facetCache.clear();
+      clearMatches();
 
-      // Also update ANY servlet instances in the station (e.g., in WebService)
+      // publish membership of templates with more than one entity
+      int numTemplates = 0;
+      it = templates.values().iterator();
+      while (it.hasNext())
+      {
+        Template t = (Template)it.next();
+        if (t.members.size() < 2) { it.remove(); continue; }
+        for (int i = 0; i < t.members.size(); i++)
+          ((GoogleOntologyEntity)t.members.get(i)).setTemplate(t.id, t.members.size());
+        numTemplates++;
+      }
+
+      // forget entity types of components that are gone
+      HashSet ids = new HashSet();
+      Iterator ei = staging.getEntities().iterator();
+      while (ei.hasNext()) ids.add(((GoogleOntologyEntity)ei.next()).getId());
+      entityTypeCache.keySet().retainAll(ids);
+
+      // Find ANY servlet instances in the station (e.g., in WebService)
+      // besides the internal property, then publish the new index to them
+      ArrayList found = new ArrayList();
+      found.add(getServlet());
       for (int j = 0; j < comps.length; j++)
       {
-        if (comps[j] instanceof BGoogleOntologyServlet)
+        if (comps[j] instanceof BGoogleOntologyServlet && comps[j] != getServlet())
         {
-          BGoogleOntologyServlet servlet = (BGoogleOntologyServlet)comps[j];
-          servlet.setIndex(index);
-          servlet.setService(this);
+          found.add(comps[j]);
           if (LOG.isTraceOn())
             LOG.trace("Updated servlet: " + comps[j].getSlotPath());
         }
       }
+      servlets = (BGoogleOntologyServlet[])found.toArray(new BGoogleOntologyServlet[found.size()]);
+      publishIndex();
+
+      // resize recent value buffers for the new point set
+      configureRecent();
 
       if (LOG.isTraceOn())
         LOG.trace("Total BComponents searched: " + comps.length);
@@ -446,91 +841,1415 @@ public final class BGoogleOntologyService extends BAbstractService
         t1.delta(t2) + ", " +
         index.numEntities() + " entities, " +
         numPoints + " points scanned, " +
-        numMatched + " points matched]");
+        numMatched + " points matched, " +
+        numClassified + " entities classified by fields, " +
+        numStamped + " entities stamped from " + numTemplates + " templates, " +
+        numConflicts + " field conflicts resolved, " +
+        index.poolSize() + " shared strings saving ~" + (index.bytesSaved() / 1024) + " KB]");
     }
     catch (Exception e)
     {
       LOG.error("GoogleOntology reindex FAILED", e);
     }
+    finally
+    {
+      staging = null;
+    }
   }
 
-////////////////////////////////////////////////////////////////
-// Entities
-////////////////////////////////////////////////////////////////
-
   /**
-   * Get or create entity for given point.
+   * Publish the index built by a reindex or rematch to the servlets in
+   * one step.  It is not changed after this.
    */
-  private GoogleOntologyEntity getOrCreateEntity(BComponent point)
+  private void publishIndex()
   {
-    // sanity check
-    BComponent parent = (BComponent)point.getParent();
-    if (parent == null) return null;
-
-    // Use parent as entity (equipment folder, device, etc.)
-    BComponent entityComp = findEntityComp(parent);
-    if (entityComp == null) return null;
-
-    // check cache
-    String id = GoogleOntologyUtil.getEntityId(entityComp);
-    GoogleOntologyEntity entity = index.getEntity(id);
-
-    // add to cache if not found
-    if (entity == null)
+    index = staging;
+    staging = null;
+    for (int i = 0; i < servlets.length; i++)
     {
-      String name = entityComp.getDisplayName(null);
-      String path = GoogleOntologyUtil.unescapeSlotPath(
-        entityComp.getSlotPath().toString().substring(5));
-
-      // filter out common stuff we likely never want
-      if (path.startsWith("/Services/")) return null;
-
-      // Infer entity type from name
-      String entityType = DboFieldLibrary.inferEntityType(name);
-
-      // index entity
-      entity = new GoogleOntologyEntity(id, name, path, entityType);
-      entity.comp = entityComp;
-      index.addEntity(entity);
+      servlets[i].setIndex(index);
+      servlets[i].setService(this);
     }
-
-    return entity;
   }
 
   /**
-   * Find best component to use as entity.
+   * Match the pending points of one entity as a batch and add the
+   * matched points to the index.  Returns number of points matched.
    */
-  private BComponent findEntityComp(BComponent orig)
+  private int matchEntity(GoogleOntologyEntity entity, ArrayList points)
   {
-    // never walk if no parent
-    BComplex p = orig.getParent();
-    if (p == null) return orig;
-
-    // For now, use parent directly
-    // TODO: Add logic to walk up to proxy device if needed
-    return orig;
+    Vocabulary vocab = DboFieldLibrary.get();
+    ArrayList conflicts = new ArrayList();
+    FuzzyMatcher.MatchResult[] matches = FuzzyMatcher.matchAll(vocab, pipeline, entity.getEntityType(), descriptors(points), conflicts);
+    return indexBatch(vocab, entity, points, matches, conflicts);
   }
 
-  /** Get module version string */
-  private String moduleVer()
+  /** Get the point descriptors of a list of pending points. */
+  private static ArrayList descriptors(ArrayList points)
   {
-    return "1.0.0";  // TODO: Read from module
+    ArrayList descs = new ArrayList(points.size());
+    for (int i = 0; i < points.size(); i++)
+      descs.add(((PendingPoint)points.get(i)).desc);
+    return descs;
   }
 
-////////////////////////////////////////////////////////////////
-// ML Learning
-////////////////////////////////////////////////////////////////
-
-  /** Add a correction for ML training */
-  public void addCorrection(String pointName, String correctMatch, String equipmentType)
+  /**
+   * Entities matched together by FuzzyMatcher.matchEntities during a
+   * reindex.  Matching holds no service state, so it runs in parallel;
+   * apply() then adds each entity's matches to the index one at a time.
+   */
+  private final class Batch
+  {
+    Batch(Vocabulary vocab, ArrayList entities)
+    {
+      this.vocab = vocab;
+      int n = entities.size();
+      String[] types = new String[n];
+      List[] points = new List[n];
+      conflicts = new List[n];
+      errors = new RuntimeException[n];
+      for (int i = 0; i < n; i++)
+      {
+        GoogleOntologyEntity entity = (GoogleOntologyEntity)entities.get(i);
+        types[i] = entity.getEntityType();
+        points[i] = descriptors((ArrayList)pending.get(entity));
+        conflicts[i] = new ArrayList();
+        slots.put(entity, Integer.valueOf(i));
+      }
+      matches = FuzzyMatcher.matchEntities(vocab, pipeline, types, points, conflicts, errors);
+    }
+
+    /**
+     * Add the matches of an entity to the index, or throw the exception
+     * that matching it failed with.  An entity not in the batch (the
+     * representative of its template failed) is matched now.  Returns
+     * number of points matched.
+     */
+    int apply(GoogleOntologyEntity entity, ArrayList points)
+    {
+      Integer slot = (Integer)slots.get(entity);
+      if (slot == null) return matchEntity(entity, points);
+      int i = slot.intValue();
+      if (errors[i] != null) throw errors[i];
+      return indexBatch(vocab, entity, points, matches[i], conflicts[i]);
+    }
+
+    private final Vocabulary vocab;
+    private final IdentityHashMap slots = new IdentityHashMap();  // entity : Integer
+    private final FuzzyMatcher.MatchResult[][] matches;
+    private final List[] conflicts;
+    private final RuntimeException[] errors;
+  }
+
+  /**
+   * Add the batch matches of an entity's pending points to the index,
+   * ranking candidates with the vocabulary they were matched with.
+   * Returns number of points matched.
+   */
+  private int indexBatch(Vocabulary vocab, GoogleOntologyEntity entity, ArrayList points,
+    FuzzyMatcher.MatchResult[] matches, List conflicts)
+  {
+    if (conflicts.size() > 0)
+    {
+      entity.setConflicts(conflicts);
+      numConflicts += conflicts.size();
+    }
+
+    for (int i = 0; i < matches.length; i++)
+    {
+      PendingPoint pp = (PendingPoint)points.get(i);
+      FuzzyMatcher.MatchResult match = matches[i];
+      pp.match = match;
+      pp.candidates = null;
+
+      if (match == null)
+      {
+        if (LOG.isTraceOn())
+          LOG.trace("No free field for: " + pp.desc.getPointName() + " on " + entity.getName());
+        continue;
+      }
+
+      // Check if confidence meets threshold
+      if (match.confidence < getMinConfidence())
+      {
+        if (LOG.isTraceOn())
+          LOG.trace("Low confidence match (" + match.confidence + "%) for: " + pp.desc.getPointName());
+        continue;
+      }
+
+      if (!pp.overridden)
+        pp.candidates = CandidateRanker.rank(vocab, rankInput(pp, entity, match), MAX_CANDIDATES);
+    }
+    return indexMatches(entity, points);
+  }
+
+  /** Get the candidate ranker inputs of a matched pending point. */
+  private CandidateRanker.Input rankInput(PendingPoint pp, GoogleOntologyEntity entity, FuzzyMatcher.MatchResult match)
+  {
+    CandidateRanker.Input in = new CandidateRanker.Input();
+    in.pointName = pp.desc.getPointName();
+    in.units = pp.desc.getUnits();
+    in.isBoolean = pp.desc.isBoolean();
+    in.entityType = entity.getEntityType();
+    MLOntologyLearner learner = mlLearner;
+    if (learner != null) in.overrideField = learner.learnedField(in.pointName, in.entityType);
+    in.fuzzyField = match.dboField;
+    in.mlField = match.mlField;
+    return in;
+  }
+
+  /**
+   * Add the matched points of an entity to the index from the match
+   * results kept on its pending points.  Returns number of points added.
+   */
+  private int indexMatches(GoogleOntologyEntity entity, ArrayList points)
+  {
+    int numMatched = 0;
+    for (int i = 0; i < points.size(); i++)
+    {
+      PendingPoint pp = (PendingPoint)points.get(i);
+      FuzzyMatcher.MatchResult match = pp.match;
+      pp.field = null;
+      if (match == null || match.confidence < getMinConfidence()) continue;
+
+      BComponent comp = pointComp(pp);
+      if (comp == null)
+      {
+        if (LOG.isTraceOn())
+          LOG.trace("Point is gone: " + pp.desc.getPointName() + " on " + entity.getName());
+        continue;
+      }
+
+      // Extract facet information; facets are usually shared by many
+      // points, so each instance is read once per reindex
+      PointFacets pf = pointFacets((BFacets)comp.get("facets"));
+      String enumMapping = null;
+      if (pp.kind.equals("enum")) enumMapping = pf.enumMapping;
+      else if (pp.kind.equals("boolean")) enumMapping = GoogleOntologyUtil.parseBooleanRange();
+
+      // Create point with DBO mapping
+      GoogleOntologyPoint point = new GoogleOntologyPoint(
+        staging.intern(match.dboField),
+        pp.desc.getPointName(),
+        pp.addr,
+        pp.desc.getUnits(),
+        enumMapping,
+        match.confidence
+      );
+
+      // Set additional facet info
+      if (pp.kind.equals("numeric"))
+      {
+        point.setMinValue(pf.minValue);
+        point.setMaxValue(pf.maxValue);
+        point.setPrecision(pf.precision);
+      }
+      point.setCandidates(pp.candidates);
+      point.comp = comp;
+      pp.field = match.dboField;
+
+      staging.addPoint(entity, point);
+      numMatched++;
+    }
+    return numMatched;
+  }
+
+  /** Get the component of a pending point, or null if it is gone. */
+  private static BComponent pointComp(PendingPoint pp)
+  {
+    BStation station = Sys.getStation();
+    return station != null ? station.getComponentSpace().findByHandle(pp.handle) : null;
+  }
+
+  /**
+   * Forget the match results kept on pending points once they are
+   * indexed; only the indexed field is kept for rematches.
+   */
+  private void clearMatches()
+  {
+    Iterator it = pending.values().iterator();
+    while (it.hasNext())
+    {
+      ArrayList list = (ArrayList)it.next();
+      for (int i = 0; i < list.size(); i++)
+      {
+        PendingPoint pp = (PendingPoint)list.get(i);
+        pp.match = null;
+        pp.candidates = null;
+      }
+    }
+  }
+
+  /** Get match pipeline, or null before the first reindex. */
+  public MatchPipeline getPipeline() { return pipeline; }
+
+////////////////////////////////////////////////////////////////
+// Mapping rules
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Parse the mappingRules property.  If it is invalid the error is
+   * logged and given previous rules are kept.
+   */
+  private MappingRules compileRules(MappingRules prev)
+  {
+    try
+    {
+      return MappingRules.parse(getMappingRules());
+    }
+    catch (IllegalArgumentException e)
+    {
+      LOG.error("Invalid mapping rules, keeping previous rules: " + e.getMessage());
+      return prev;
+    }
+  }
+
+  /**
+   * Fix the field of a pending point if an override or a mapping rule
+   * matches it.  Overrides take precedence over rules.
+   */
+  private void applyFixed(PendingPoint pp, GoogleOntologyEntity entity)
+  {
+    PointDescriptor d = pp.desc;
+    String field = overrides.lookup(pp.handle, entity.getEntityType(), d.getPointName());
+    pp.overridden = field != null;
+    if (pp.overridden)
+    {
+      pp.ruleSource = null;
+      d.setFixed(field, OVERRIDE_CONFIDENCE, MatchPipeline.OVERRIDE);
+      return;
+    }
+
+    MappingRules.Rule rule = rules.match(d.getPointName(), entity.getEntityType(), d.getUnits(), pp.kind);
+    pp.ruleSource = rule != null ? rule.source : null;
+    d.setFixed(rule != null ? rule.dboField : null, RULE_CONFIDENCE, MatchPipeline.RULE);
+  }
+
+  /**
+   * Apply an edit of the mappingRules property.  Only entities with a
+   * point that matched a removed rule, or that matches an added rule,
+   * are rematched, into a copy of the index published in one step;
+   * the rest of the index is left alone.
+   */
+  private synchronized void rematchRules()
+  {
+    MappingRules old = rules;
+    MappingRules next = compileRules(null);
+    if (next == null) return;
+
+    // rules removed or added by this edit (an edited rule is both)
+    Set oldSources = old.sources();
+    Set newSources = next.sources();
+    HashSet removed = new HashSet(oldSources);
+    removed.removeAll(newSources);
+    HashSet added = new HashSet(newSources);
+    added.removeAll(oldSources);
+
+    rules = next;
+    if (removed.isEmpty() && added.isEmpty()) return;
+    MappingRules addedRules = next.subset(added);
+
+    int numEntities = 0;
+    int numRematched = 0;
+    Iterator it = pending.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      GoogleOntologyEntity entity = (GoogleOntologyEntity)e.getKey();
+      ArrayList list = (ArrayList)e.getValue();
+
+      boolean affected = false;
+      for (int i = 0; i < list.size() && !affected; i++)
+      {
+        PendingPoint pp = (PendingPoint)list.get(i);
+        PointDescriptor d = pp.desc;
+        affected = (pp.ruleSource != null && removed.contains(pp.ruleSource)) ||
+          addedRules.match(d.getPointName(), entity.getEntityType(), d.getUnits(), pp.kind) != null;
+      }
+      if (!affected) continue;
+
+      rematchPublished(entity, list);
+      numEntities++;
+      numRematched += list.size();
+    }
+
+    rematchDone();
+    LOG.message("GoogleOntology mapping rules changed [" +
+      added.size() + " added, " + removed.size() + " removed, " +
+      numRematched + " points on " + numEntities + " entities rematched]");
+  }
+
+  /**
+   * Refix and rematch all points of an entity of the index being built;
+   * siblings are matched together, so one changed point rematches the
+   * whole entity.  Returns false if matching failed.
+   */
+  private boolean rematch(GoogleOntologyEntity entity, ArrayList list)
+  {
+    for (int i = 0; i < list.size(); i++)
+      applyFixed((PendingPoint)list.get(i), entity);
+    staging.clearPoints(entity);
+    entity.setConflicts(null);
+    try
+    {
+      matchEntity(entity, list);
+      return true;
+    }
+    catch (Exception ex)
+    {
+      LOG.error("FAILED to match: " + entity.getName(), ex);
+      return false;
+    }
+  }
+
+  /**
+   * Rematch an entity of the published index outside a reindex.  The
+   * first call copies the index; the entity is replaced in the copy by
+   * a copy of its own and rematched there, so readers of the published
+   * index never see it half matched.  rematchDone publishes the copy.
+   * Returns false if matching failed.
+   */
+  private boolean rematchPublished(GoogleOntologyEntity entity, ArrayList list)
+  {
+    if (staging == null) staging = index.copy();
+    GoogleOntologyEntity copy = staging.replaceEntity(entity);
+    replaced.put(entity, copy);
+    return rematch(copy, list);
+  }
+
+  /**
+   * Finish rematching entities outside a reindex: point pending points
+   * and templates at the rematched copies, publish the index, drop what
+   * was only needed while matching and resize recent value buffers.
+   */
+  private void rematchDone()
+  {
+    enumMappings.clear();
+    facetCache.clear();
+    if (staging == null) return;
+
+    LinkedHashMap acc = new LinkedHashMap();
+    Iterator it = pending.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      Object copy = replaced.get(e.getKey());
+      acc.put(copy != null ? copy : e.getKey(), e.getValue());
+    }
+    pending = acc;
+
+    it = templates.values().iterator();
+    while (it.hasNext())
+    {
+      ArrayList members = ((Template)it.next()).members;
+      for (int i = 0; i < members.size(); i++)
+      {
+        Object copy = replaced.get(members.get(i));
+        if (copy != null) members.set(i, copy);
+      }
+    }
+    replaced.clear();
+
+    clearMatches();
+    publishIndex();
+    configureRecent();
+  }
+
+////////////////////////////////////////////////////////////////
+// Overrides
+////////////////////////////////////////////////////////////////
+
+  /** Get current overrides; the returned instance must not be modified. */
+  public MappingOverrides getOverrides() { return overrides; }
+
+  /**
+   * Edit overrides: given editor is applied to a copy of the current
+   * overrides, which is then persisted and applied to the index.
+   * Only entities with a point whose override changed are rematched.
+   * Returns the new overrides.
+   */
+  public synchronized MappingOverrides editOverrides(OverrideEditor editor)
+  {
+    MappingOverrides old = overrides;
+    MappingOverrides next = old.copy();
+    editor.edit(next);
+
+    overrides = next;
+    overridesText = next.encode();
+    setMappingOverrides(overridesText);
+    rematchOverrides(old, next);
+    return next;
+  }
+
+  /**
+   * Edit to apply to overrides (see editOverrides).
+   */
+  public static interface OverrideEditor
+  {
+    public void edit(MappingOverrides overrides);
+  }
+
+  /**
+   * Find the handle of a scanned point by entity id and point addr, or
+   * null if there is no such point.
+   */
+  public synchronized String findPointHandle(String entityId, String addr)
+  {
+    GoogleOntologyEntity entity = index.getEntity(entityId);
+    ArrayList list = entity != null ? (ArrayList)pending.get(entity) : null;
+    if (list == null) return null;
+
+    for (int i = 0; i < list.size(); i++)
+    {
+      PendingPoint pp = (PendingPoint)list.get(i);
+      if (addr.equals(pp.addr)) return pp.handle;
+    }
+    return null;
+  }
+
+  /**
+   * Decode the mappingOverrides property.  If it is invalid the error is
+   * logged and given previous overrides are kept.
+   */
+  private MappingOverrides loadOverrides(MappingOverrides prev)
+  {
+    String text = getMappingOverrides();
+    if (text.equals(overridesText)) return prev;
+    try
+    {
+      MappingOverrides acc = MappingOverrides.decode(text);
+      overridesText = text;
+      return acc;
+    }
+    catch (IllegalArgumentException e)
+    {
+      LOG.error("Invalid mapping overrides, keeping previous overrides: " + e.getMessage());
+      return prev;
+    }
+  }
+
+  /** Apply an edit of the mappingOverrides property not made by editOverrides. */
+  private synchronized void reloadOverrides()
+  {
+    MappingOverrides old = overrides;
+    MappingOverrides next = loadOverrides(old);
+    if (next == old) return;
+
+    overrides = next;
+    rematchOverrides(old, next);
+  }
+
+  /**
+   * Rematch entities with a point whose override differs between given
+   * overrides; the rest of the index is left alone.  Runs on the
+   * servlet thread for editOverrides, so the rematched entities are
+   * published in one step (see rematchPublished).
+   */
+  private void rematchOverrides(MappingOverrides old, MappingOverrides next)
+  {
+    int numEntities = 0;
+    int numRematched = 0;
+    Iterator it = pending.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      GoogleOntologyEntity entity = (GoogleOntologyEntity)e.getKey();
+      ArrayList list = (ArrayList)e.getValue();
+
+      boolean affected = false;
+      for (int i = 0; i < list.size() && !affected; i++)
+      {
+        PendingPoint pp = (PendingPoint)list.get(i);
+        String name = pp.desc.getPointName();
+        String a = old.lookup(pp.handle, entity.getEntityType(), name);
+        String b = next.lookup(pp.handle, entity.getEntityType(), name);
+        affected = a == null ? b != null : !a.equals(b);
+      }
+      if (!affected) continue;
+
+      rematchPublished(entity, list);
+      numEntities++;
+      numRematched += list.size();
+    }
+
+    rematchDone();
+    LOG.message("GoogleOntology mapping overrides changed [" +
+      next.size() + " overrides, " +
+      numRematched + " points on " + numEntities + " entities rematched]");
+  }
+
+  /**
+   * Point waiting to be matched with its siblings, kept between
+   * reindexes for rematches.  It holds only what matching needs; the
+   * component is looked up by handle when the point is indexed.
+   */
+  private static final class PendingPoint
+  {
+    String handle;      // component handle without "h:"
+    String addr;        // address relative to its entity
+    PointDescriptor desc;  // name, units and fixed field
+    String kind;        // numeric, boolean or enum
+    String ruleSource;  // source of the mapping rule that fixed the field, or null
+    boolean overridden; // field fixed by an operator override
+    String field;       // indexed field, or null if not matched
+    String templateSig; // structural signature, see sortedPoints
+    FuzzyMatcher.MatchResult match;  // during a match only, else null
+    List candidates;    // ranked candidates, during a match only
+  }
+
+////////////////////////////////////////////////////////////////
+// Templates
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Get the pending points of an entity sorted by their structural
+   * signature (kind, name, units and fixed field), which is kept on
+   * each point.  Points with equal signatures keep their scan order.
+   */
+  private static PendingPoint[] sortedPoints(ArrayList list)
+  {
+    PendingPoint[] acc = new PendingPoint[list.size()];
+    for (int i = 0; i < acc.length; i++)
+    {
+      PendingPoint pp = (PendingPoint)list.get(i);
+      pp.templateSig = pp.kind + '\u0000' + pp.desc.signature();
+      acc[i] = pp;
+    }
+    Arrays.sort(acc, new Comparator()
+    {
+      public int compare(Object a, Object b)
+      {
+        return ((PendingPoint)a).templateSig.compareTo(((PendingPoint)b).templateSig);
+      }
+    });
+    return acc;
+  }
+
+  /**
+   * Get the template key of an entity: its inferred type and the sorted
+   * signatures of its points.  Entities with equal keys get equal match
+   * results, since matching only looks at these inputs.
+   */
+  private static String templateKey(GoogleOntologyEntity entity, PendingPoint[] sorted)
+  {
+    StringBuffer sb = new StringBuffer(sorted.length * 48);
+    sb.append(entity.getEntityType()).append('\u0001').append(entity.getEntityTypeConfidence());
+    for (int i = 0; i < sorted.length; i++)
+      sb.append('\u0001').append(sorted[i].templateSig);
+    return sb.toString();
+  }
+
+  /** Get a short id for a template key, unique in this reindex. */
+  private String templateId(String key)
+  {
+    String id = "t" + Integer.toHexString(key.hashCode());
+    String acc = id;
+    for (int n = 2; templates.containsKey(acc); n++) acc = id + "_" + n;
+    return acc;
+  }
+
+  /**
+   * Give an entity the match results of its template's representative,
+   * aligned by sorted signature, and add its points to the index.
+   * Returns number of points matched.
+   */
+  private int stampTemplate(Template t, GoogleOntologyEntity entity, ArrayList list, PendingPoint[] sorted)
+  {
+    GoogleOntologyEntity rep = t.rep;
+    if (!rep.getEntityType().equals(entity.getEntityType()))
+    {
+      // the representative was classified by its fields; refix for the new type
+      staging.setEntityType(entity, rep.getEntityType(), rep.getEntityTypeConfidence());
+      numClassified++;
+      for (int i = 0; i < sorted.length; i++)
+        applyFixed(sorted[i], entity);
+    }
+
+    List conflicts = rep.getConflicts();
+    if (conflicts.size() > 0)
+    {
+      entity.setConflicts(conflicts);
+      numConflicts += conflicts.size();
+    }
+
+    for (int i = 0; i < sorted.length; i++)
+    {
+      PendingPoint from = t.points[i];
+      PendingPoint to = sorted[i];
+      to.match = from.match;
+      to.candidates = from.candidates;
+    }
+    return indexMatches(entity, list);
+  }
+
+  /** Get ids of the templates with more than one entity, from last reindex. */
+  public synchronized List getTemplateIds()
+  {
+    return new ArrayList(templates.keySet());
+  }
+
+  /**
+   * Get the entities of a template in scan order, the representative
+   * first, or null if there is no such template.
+   */
+  public synchronized List getTemplateMembers(String templateId)
+  {
+    Template t = (Template)templates.get(templateId);
+    return t != null ? new ArrayList(t.members) : null;
+  }
+
+  /**
+   * Find the handles of a point and of the same point on every other
+   * entity of its template (matched by signature), or null if there is
+   * no such point.  Used to apply a correction to a whole template.
+   */
+  public synchronized List findTemplateHandles(String entityId, String addr)
+  {
+    GoogleOntologyEntity entity = index.getEntity(entityId);
+    ArrayList list = entity != null ? (ArrayList)pending.get(entity) : null;
+    if (list == null) return null;
+
+    // the point, and which of the points with its signature it is
+    PendingPoint target = null;
+    int nth = 0;
+    for (int i = 0; i < list.size() && target == null; i++)
+    {
+      PendingPoint pp = (PendingPoint)list.get(i);
+      if (addr.equals(pp.addr)) target = pp;
+    }
+    if (target == null) return null;
+    for (int i = 0; list.get(i) != target; i++)
+      if (((PendingPoint)list.get(i)).templateSig.equals(target.templateSig)) nth++;
+
+    ArrayList acc = new ArrayList();
+    Template t = entity.getTemplateId() != null ? (Template)templates.get(entity.getTemplateId()) : null;
+    if (t == null)
+    {
+      acc.add(target.handle);
+      return acc;
+    }
+
+    for (int m = 0; m < t.members.size(); m++)
+    {
+      ArrayList points = (ArrayList)pending.get(t.members.get(m));
+      if (points == null) continue;
+      for (int i = 0, n = 0; i < points.size(); i++)
+      {
+        PendingPoint pp = (PendingPoint)points.get(i);
+        if (!pp.templateSig.equals(target.templateSig) || n++ != nth) continue;
+        acc.add(pp.handle);
+        break;
+      }
+    }
+    return acc;
+  }
+
+  /**
+   * Entities with the same structure, matched once.
+   */
+  private static final class Template
+  {
+    Template(String id, GoogleOntologyEntity rep, PendingPoint[] points)
+    {
+      this.id = id;
+      this.rep = rep;
+      this.points = points;
+      members.add(rep);
+    }
+
+    final String id;
+    final GoogleOntologyEntity rep;        // matched entity
+    final PendingPoint[] points;           // rep's points by signature
+    final ArrayList members = new ArrayList();  // GoogleOntologyEntity, rep first
+  }
+
+////////////////////////////////////////////////////////////////
+// Vocabulary
+////////////////////////////////////////////////////////////////
+
+  /** Get the vocabulary file, or null if vocabularyFile is empty. */
+  public File getVocabularyPath()
+  {
+    String name = getVocabularyFile().trim();
+    if (name.length() == 0) return null;
+    File f = new File(name);
+    return f.isAbsolute() ? f : new File(Sys.getStationHome(), name);
+  }
+
+  /**
+   * Load the vocabulary file now and schedule polling it for changes.
+   * @param background  compile on a background thread
+   */
+  private void configureVocabulary(boolean background)
+  {
+    if (vocabTicket != null) vocabTicket.cancel();
+    vocabTicket = null;
+
+    vocabStamp = null;
+    checkVocabulary(background);
+    vocabTicket = Clock.schedulePeriodically(this, VOCABULARY_POLL, checkVocabulary, null);
+  }
+
+  /** Check the vocabulary file for changes. */
+  public void doCheckVocabulary()
+  {
+    checkVocabulary(true);
+  }
+
+  /**
+   * If the vocabulary file changed (or was removed), compile it on top
+   * of the standard vocabulary and swap it in.  A file that fails to
+   * compile is logged and the current vocabulary is kept; it is not
+   * retried until it changes again.
+   */
+  private void checkVocabulary(boolean background)
+  {
+    final File f = getVocabularyPath();
+    final String stamp = f == null || !f.isFile() ? "" : f.lastModified() + ":" + f.length();
+    if (stamp.equals(vocabStamp) || vocabCompiling) return;
+    vocabStamp = stamp;
+
+    // no file: back to the standard vocabulary
+    if (stamp.length() == 0)
+    {
+      if (DboFieldLibrary.get() != DboFieldLibrary.getStandard())
+        swapVocabulary(DboFieldLibrary.getStandard(), "standard");
+      return;
+    }
+
+    Runnable r = new Runnable()
+    {
+      public void run()
+      {
+        try
+        {
+          compileVocabulary(f);
+        }
+        finally
+        {
+          vocabCompiling = false;
+        }
+      }
+    };
+
+    vocabCompiling = true;
+    if (!background) { r.run(); return; }
+    Thread t = new Thread(r, "GoogleOntology:Vocabulary");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  private void compileVocabulary(File f)
   {
-    if (mlLearner == null)
-      mlLearner = new MLOntologyLearner();
+    Vocabulary next;
+    try
+    {
+      long t0 = System.currentTimeMillis();
+      next = DboFieldLibrary.compile(f);
+      LOG.message("GoogleOntology vocabulary compiled [" + f + ", " +
+        next.size() + " words, " + next.getFields().size() + " fields, " +
+        (System.currentTimeMillis() - t0) + "ms]");
+    }
+    catch (Exception e)
+    {
+      LOG.error("Invalid vocabulary file " + f + ", keeping version " + DboFieldLibrary.getVersion() + ": " + e.getMessage());
+      setVocabularyStatus("Error: " + e.getMessage() + " (keeping version " + DboFieldLibrary.getVersion() + ")");
+      return;
+    }
+    swapVocabulary(next, f.toString());
+  }
+
+  /**
+   * Install a compiled vocabulary and rematch the entities with a point
+   * whose name or field touches a term that changed.  A change to the
+   * entity type keywords rebuilds the whole index.  If rematching fails,
+   * the previous vocabulary is installed again and the same entities
+   * are rematched with it.
+   */
+  private synchronized void swapVocabulary(Vocabulary next, String source)
+  {
+    Vocabulary old = DboFieldLibrary.get();
+    Set terms = old.diff(next);
+    int version = DboFieldLibrary.install(next);
+
+    if (old.entityTypesDiffer(next) && !pending.isEmpty())
+    {
+      doRebuildIndex();
+      vocabularyInstalled(version, source + ", index rebuilt");
+      return;
+    }
+
+    int[] counts = new int[3];  // entities, points, failures
+    rematchVocabulary(terms, counts);
+    if (counts[2] == 0)
+    {
+      vocabularyInstalled(version, source + ", " + terms.size() + " terms changed, " +
+        counts[1] + " points on " + counts[0] + " entities rematched");
+      return;
+    }
+
+    // roll back
+    int rollback = DboFieldLibrary.install(old);
+    rematchVocabulary(terms, new int[3]);
+    LOG.error("GoogleOntology vocabulary version " + version + " failed to match " + counts[2] +
+      " entities, rolled back as version " + rollback);
+    setVocabularyVersion(rollback);
+    setVocabularyStatus("Error: " + source + " failed to match " + counts[2] +
+      " entities (rolled back to previous vocabulary)");
+  }
+
+  private void vocabularyInstalled(int version, String detail)
+  {
+    LOG.message("GoogleOntology vocabulary version " + version + " installed [" + detail + "]");
+    setVocabularyVersion(version);
+    setVocabularyStatus(statusOf(detail));
+  }
+
+  /** Get vocabularyStatus for an installed vocabulary: OK unless the DBO catalog failed to load. */
+  private static String statusOf(String detail)
+  {
+    String err = DboFieldLibrary.getLoadError();
+    if (err != null) return "Error: DBO catalog not loaded: " + err + " (" + detail + ")";
+    return "OK: " + detail;
+  }
+
+  /**
+   * Rematch entities with a point whose name contains one of given
+   * terms or has a token that spell corrects to one, or whose field has
+   * one as a word.
+   * @param counts  incremented: entities rematched, points rematched, entities that failed
+   */
+  private void rematchVocabulary(Set terms, int[] counts)
+  {
+    if (terms.isEmpty()) return;
+
+    HashMap patterns = new HashMap();
+    for (Iterator it = terms.iterator(); it.hasNext();)
+    {
+      Object term = it.next();
+      patterns.put(term, term);
+    }
+    VocabularyMatcher touched = VocabularyMatcher.compile(patterns);
+    FieldCatalog near = new FieldCatalog(Collections.EMPTY_LIST, terms);
+    Tokenizer tokens = new Tokenizer();
+
+    Iterator it = pending.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      GoogleOntologyEntity entity = (GoogleOntologyEntity)e.getKey();
+      ArrayList list = (ArrayList)e.getValue();
+
+      boolean affected = false;
+      for (int i = 0; i < list.size() && !affected; i++)
+      {
+        PendingPoint pp = (PendingPoint)list.get(i);
+        String name = pp.desc.getPointName();
+        affected = touched.containsAny(name.toLowerCase()) ||
+          (pp.field != null && touched.containsAny(pp.field)) ||
+          isCorrectable(tokens, name, near);
+      }
+      if (!affected) continue;
+
+      if (!rematchPublished(entity, list)) counts[2]++;
+      counts[0]++;
+      counts[1] += list.size();
+    }
+
+    rematchDone();
+  }
+
+  /**
+   * Return true if a token of name could be spell corrected to one of
+   * the changed terms ("Zone Humidty" to an added "humidity"), so its
+   * match may change although the name does not contain the term.
+   * Each token is one lookup in the delete index of the terms.
+   */
+  private static boolean isCorrectable(Tokenizer tokens, String name, FieldCatalog terms)
+  {
+    int n = tokens.tokenize(name);
+    for (int i = 0; i < n; i++)
+      if (terms.correctWord(tokens.token(i)) != null) return true;
+    return false;
+  }
+
+////////////////////////////////////////////////////////////////
+// Entities
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Get or create entity for given point.
+   */
+  private GoogleOntologyEntity getOrCreateEntity(BComponent point)
+  {
+    // sanity check
+    BComponent parent = (BComponent)point.getParent();
+    if (parent == null) return null;
+
+    // Use parent as entity (equipment folder, device, etc.)
+    BComponent entityComp = findEntityComp(parent);
+    if (entityComp == null) return null;
+
+    // check cache
+    String id = GoogleOntologyUtil.getEntityId(entityComp);
+    GoogleOntologyEntity entity = staging.getEntity(id);
+
+    // add to cache if not found
+    if (entity == null)
+    {
+      String name = entityComp.getDisplayName(null);
+      String path = slotPaths.getPath(entityComp);
+
+      // filter out common stuff we likely never want
+      if (path.startsWith("/Services/")) return null;
+
+      // Infer entity type from name; an ambiguous one is settled by
+      // its points once the scan is done (see settleEntityTypes)
+      EntityTypeMatcher.Result type = inferEntityType(id, name, null);
+
+      // index entity
+      entity = new GoogleOntologyEntity(id, name, path, staging.intern(type.entityType));
+      entity.setEntityTypeConfidence(type.confidence);
+      entity.comp = entityComp;
+      staging.addEntity(entity);
+    }
+
+    return entity;
+  }
+
+  /**
+   * Get the facet values of a point from its facets, read once per
+   * facets instance in a reindex.
+   */
+  private PointFacets pointFacets(BFacets f)
+  {
+    if (f == null) return PointFacets.NONE;
+    PointFacets pf = (PointFacets)facetCache.get(f);
+    if (pf != null) return pf;
+
+    pf = new PointFacets();
+    pf.units = staging.intern(GoogleOntologyUtil.getUnits(f));
+    BObject range = f.get(BFacets.RANGE);
+    if (range instanceof BEnumRange) pf.enumMapping = enumMapping((BEnumRange)range);
+    pf.minValue = GoogleOntologyUtil.getNumericFacet(f, BFacets.MIN);
+    pf.maxValue = GoogleOntologyUtil.getNumericFacet(f, BFacets.MAX);
+    pf.precision = GoogleOntologyUtil.getPrecision(f);
+    facetCache.put(f, pf);
+    return pf;
+  }
+
+  /**
+   * Values read from one facets instance.
+   */
+  private static final class PointFacets
+  {
+    static final PointFacets NONE = new PointFacets();
+
+    String units;
+    String enumMapping;  // of the range facet, or null
+    Double minValue;     // finite min, or null
+    Double maxValue;     // finite max, or null
+    Integer precision;
+  }
+
+  /**
+   * Get the enum mapping of a range.  Points of one type usually share
+   * their facets, so the mapping is parsed once per range instance in
+   * a reindex.
+   */
+  private String enumMapping(BEnumRange r)
+  {
+    if (enumMappings.containsKey(r)) return (String)enumMappings.get(r);
+    String mapping = staging.intern(GoogleOntologyUtil.parseEnumRange(r));
+    enumMappings.put(r, mapping);
+    return mapping;
+  }
+
+  /**
+   * Infer the entity type of an entity from its name, and if the name
+   * is ambiguous from the names of its points (null while they are not
+   * all known yet).  Results are cached per entity and reused while its
+   * name, the vocabulary and (if they were needed) its point names are
+   * unchanged.
+   */
+  private EntityTypeMatcher.Result inferEntityType(String id, String name, List points)
+  {
+    Vocabulary vocab = DboFieldLibrary.get();
+    CachedEntityType cached = (CachedEntityType)entityTypeCache.get(id);
+    if (cached != null && cached.vocab == vocab && cached.name.equals(name) &&
+        (cached.pointNames == null || cached.pointNames.equals(points)))
+      return cached.result;
+
+    EntityTypeMatcher matcher = vocab.getEntityTypeMatcher();
+    EntityTypeMatcher.Result r = matcher.infer(name, null);
+    if (r.ambiguous)
+    {
+      if (points == null) return r;  // settled once the points are known
+      r = matcher.infer(name, points);
+    }
+    else points = null;
+
+    cached = new CachedEntityType();
+    cached.vocab = vocab;
+    cached.name = name;
+    cached.pointNames = points;
+    cached.result = r;
+    entityTypeCache.put(id, cached);
+    return r;
+  }
+
+  /**
+   * Infer the type of each pending entity again now that all of its
+   * points are known, which an ambiguous name needs.  Points of an
+   * entity whose type changed have their fixed fields looked up again.
+   */
+  private void settleEntityTypes()
+  {
+    Iterator it = pending.entrySet().iterator();
+    while (it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      GoogleOntologyEntity entity = (GoogleOntologyEntity)e.getKey();
+      ArrayList list = (ArrayList)e.getValue();
+
+      EntityTypeMatcher.Result r = inferEntityType(entity.getId(), entity.getName(), pointNames(list));
+      if (r.entityType.equals(entity.getEntityType()))
+      {
+        entity.setEntityTypeConfidence(r.confidence);
+        continue;
+      }
+
+      staging.setEntityType(entity, r.entityType, r.confidence);
+      for (int i = 0; i < list.size(); i++)
+        applyFixed((PendingPoint)list.get(i), entity);
+    }
+  }
+
+  /**
+   * Classify an entity whose name did not settle its type by the fields
+   * of its matched points (see EntityClassifier).  Returns true if the
+   * type changed.
+   */
+  private boolean classifyEntity(GoogleOntologyEntity entity)
+  {
+    if (entity.getEntityTypeConfidence() >= CLASSIFY_BELOW) return false;
+
+    List points = entity.getPoints();
+    if (points.isEmpty()) return false;
+    ArrayList fields = new ArrayList(points.size());
+    for (int i = 0; i < points.size(); i++)
+      fields.add(((GoogleOntologyPoint)points.get(i)).getDboField());
+
+    EntityClassifier.Result r = DboFieldLibrary.get().getEntityClassifier().classify(fields);
+    if (r == null || r.confidence <= entity.getEntityTypeConfidence() || r.entityType.equals(entity.getEntityType()))
+      return false;
+
+    if (LOG.isTraceOn())
+      LOG.trace("Classified " + entity.getName() + " as " + r + " (was " + entity.getEntityType() + ")");
+    staging.setEntityType(entity, r.entityType, r.confidence);
+    numClassified++;
+    return true;
+  }
+
+  /** Get the names of an entity's pending points. */
+  private static List pointNames(ArrayList list)
+  {
+    ArrayList acc = new ArrayList(list.size());
+    for (int i = 0; i < list.size(); i++)
+      acc.add(((PendingPoint)list.get(i)).desc.getPointName());
+    return acc;
+  }
+
+  /**
+   * Entity type inferred for an entity, with the inputs it came from.
+   */
+  private static final class CachedEntityType
+  {
+    Vocabulary vocab;
+    String name;
+    List pointNames;  // null if the name alone decided
+    EntityTypeMatcher.Result result;
+  }
+
+  /**
+   * Parse the entityResolution property for the next reindex and clear
+   * resolutions of the last one.  An invalid value is logged and
+   * resolves entities to the point's parent.
+   */
+  private void configureEntityResolution()
+  {
+    entityComps.clear();
+    resolveMode = RESOLVE_PARENT;
+    resolveTag = null;
+    resolveDepth = 0;
+
+    String spec = getEntityResolution().trim();
+    StringTokenizer st = new StringTokenizer(spec);
+    String mode = st.hasMoreTokens() ? st.nextToken() : "parent";
+    String arg = st.hasMoreTokens() ? st.nextToken() : null;
+    try
+    {
+      if (mode.equals("parent") && arg == null)
+        return;
+      if (mode.equals("device") && arg == null)
+      {
+        resolveMode = RESOLVE_DEVICE;
+        return;
+      }
+      if (mode.equals("tag"))
+      {
+        resolveTag = Id.newId(arg != null ? arg : "hs:equip");
+        resolveMode = RESOLVE_TAG;
+        return;
+      }
+      if (mode.equals("depth") && arg != null)
+      {
+        resolveDepth = Integer.parseInt(arg);
+        if (resolveDepth > 0)
+        {
+          resolveMode = RESOLVE_DEPTH;
+          return;
+        }
+      }
+    }
+    catch (Exception e)
+    {
+      // fall through to report
+    }
+    LOG.error("Invalid entityResolution, using parent: " + spec);
+  }
+
+  /**
+   * Find best component to use as entity for the points under given
+   * parent, as configured by entityResolution.  If no ancestor qualifies
+   * the parent itself is used.  Results are memoized per component for
+   * the current reindex, and every component walked past shares the
+   * ancestor found, so each chain is walked once.
+   */
+  private BComponent findEntityComp(BComponent orig)
+  {
+    Object memo = entityComps.get(orig);
+    if (memo != null) return memo == NO_ENTITY ? orig : (BComponent)memo;
+
+    // never walk if no parent
+    if (resolveMode == RESOLVE_PARENT || orig.getParent() == null)
+    {
+      entityComps.put(orig, NO_ENTITY);
+      return orig;
+    }
+
+    if (resolveMode == RESOLVE_DEPTH)
+    {
+      // ancestor resolveDepth names below the station root
+      BComponent c = orig;
+      for (int n = orig.getSlotPath().getNames().length - resolveDepth; n > 0 && c.getParent() instanceof BComponent; n--)
+        c = (BComponent)c.getParent();
+      entityComps.put(orig, c == orig ? NO_ENTITY : (Object)c);
+      return c;
+    }
+
+    // nearest qualifying ancestor (or orig itself), stopping early at a
+    // component whose answer is already known
+    ArrayList walked = new ArrayList();
+    Object found = NO_ENTITY;
+    for (BComplex c = orig; c instanceof BComponent; c = c.getParent())
+    {
+      BComponent comp = (BComponent)c;
+      Object known = entityComps.get(comp);
+      if (known != null)
+      {
+        found = known;
+        break;
+      }
+      if (isEntityComp(comp))
+      {
+        found = comp;
+        break;
+      }
+      walked.add(comp);
+    }
+    for (int i = 0; i < walked.size(); i++) entityComps.put(walked.get(i), found);
+    if (found instanceof BComponent) entityComps.put(found, found);
+    return found == NO_ENTITY ? orig : (BComponent)found;
+  }
+
+  /** Is given component an entity root for the device or tag modes. */
+  private boolean isEntityComp(BComponent c)
+  {
+    if (resolveMode == RESOLVE_DEVICE) return c instanceof BDevice;
+    return c.tags().contains(resolveTag);
+  }
+
+  /** Get module version string */
+  private String moduleVer()
+  {
+    return "1.0.0";  // TODO: Read from module
+  }
+
+////////////////////////////////////////////////////////////////
+// Recent Values
+////////////////////////////////////////////////////////////////
+
+  /** Get recent value store or null if sampling is disabled */
+  public RecentValueStore getRecentValues() { return recentValues; }
+
+  /**
+   * (Re)build recent value store for the current index and
+   * (re)schedule the sampler based on the recent* properties.
+   */
+  private void configureRecent()
+  {
+    if (recentTicket != null) recentTicket.cancel();
+    recentTicket = null;
+
+    if (!getRecentEnabled())
+    {
+      recentValues = null;
+      recentPoints = new RecentPoint[0];
+      return;
+    }
+
+    // collect point keys, and the points the sampler reads so that it
+    // never walks the index while a reindex or rematch changes it
+    ArrayList keys = new ArrayList();
+    ArrayList sampled = new ArrayList();
+    Iterator ei = index.getEntities().iterator();
+    while (ei.hasNext())
+    {
+      List points = ((GoogleOntologyEntity)ei.next()).getPoints();
+      for (int i = 0; i < points.size(); i++)
+      {
+        GoogleOntologyPoint p = (GoogleOntologyPoint)points.get(i);
+        String key = recentKey(p);
+        keys.add(key);
+        if (p.comp != null) sampled.add(new RecentPoint(p.comp, key));
+      }
+    }
+
+    RecentValueStore store = recentValues;
+    long maxBytes = getRecentMemoryLimit() * 1024L;
+    if (store == null || store.capacity() == 0 || lastRecentSamples != getRecentSamples() || lastRecentMemory != maxBytes)
+      store = new RecentValueStore(getRecentSamples(), maxBytes);
+    lastRecentSamples = getRecentSamples();
+    lastRecentMemory = maxBytes;
+
+    int tracked = store.retain(keys);
+    if (tracked < keys.size())
+      LOG.warning("Recent values memory limit reached: tracking " + tracked + " of " + keys.size() + " points");
+
+    recentValues = store;
+    recentPoints = (RecentPoint[])sampled.toArray(new RecentPoint[sampled.size()]);
+    recentTicket = Clock.schedulePeriodically(this, getRecentInterval(), sampleRecent, null);
+
+    LOG.message("Recent values sampling " + tracked + " points [" +
+      store.capacity() + " samples/point, " + (store.memoryUsed() / 1024) + "KB]");
+  }
+
+  /**
+   * Sample all mapped points into the recent value store.  Reads the
+   * points published by the last configureRecent, not the index.
+   */
+  public void doSampleRecent()
+  {
+    RecentValueStore store = recentValues;
+    if (store == null) return;
+
+    long now = System.currentTimeMillis();
+    RecentPoint[] points = recentPoints;
+    for (int i = 0; i < points.length; i++)
+    {
+      BStatusValue sv = GoogleOntologyUtil.getPointValue(points[i].comp);
+      if (sv == null) continue;
+
+      double val = GoogleOntologyUtil.toDouble(sv);
+      if (!Double.isNaN(val)) store.record(points[i].key, now, val);
+    }
+  }
+
+  /**
+   * Point sampled into the recent value store, with its key.
+   */
+  private static final class RecentPoint
+  {
+    RecentPoint(BComponent comp, String key)
+    {
+      this.comp = comp;
+      this.key = key;
+    }
+
+    final BComponent comp;
+    final String key;
+  }
 
-    mlLearner.addExample(pointName, equipmentType, correctMatch);
+  /** Key used for a point in the recent value store */
+  public static String recentKey(GoogleOntologyPoint p)
+  {
+    return GoogleOntologyUtil.getEntityId(p.comp);
+  }
+
+////////////////////////////////////////////////////////////////
+// ML Learning
+////////////////////////////////////////////////////////////////
+
+  /** Add a correction for ML training */
+  public void addCorrection(String pointName, String correctMatch, String equipmentType)
+  {
+    learner().addExample(pointName, equipmentType, correctMatch);
     LOG.message("ML correction added: " + pointName + " -> " + correctMatch);
   }
 
+  /**
+   * Add a batch of corrections (list of MLOntologyLearner.TrainingExample)
+   * for ML training.  Returns number of new examples added.
+   */
+  public int addCorrections(List batch)
+  {
+    int added = learner().addExamples(batch);
+    LOG.message("ML bulk corrections added: " + added + " of " + batch.size());
+    return added;
+  }
+
+  /** Get the ML learner, creating it on first use. */
+  private synchronized MLOntologyLearner learner()
+  {
+    if (mlLearner == null) mlLearner = new MLOntologyLearner();
+    return mlLearner;
+  }
+
+  /**
+   * Match pipeline stage voting with the ML model, if trained.  Its vote
+   * replaces the match so far when it is more confident, and is kept on
+   * the result as mlField either way for the candidate ranker.
+   */
+  private final class MlStage extends MatchPipeline.Stage
+  {
+    MlStage() { super("ml", true); }
+
+    public boolean applies(PointDescriptor d, FuzzyMatcher.MatchResult best)
+    {
+      MLOntologyLearner learner = mlLearner;
+      return learner != null && learner.isReady();
+    }
+
+    public FuzzyMatcher.MatchResult apply(Vocabulary vocab, String entityType, PointDescriptor d, FuzzyMatcher.MatchResult best)
+    {
+      MLOntologyLearner learner = mlLearner;
+      if (learner == null) return best;
+      MLOntologyLearner.Prediction p = learner.predict(d.getPointName(), entityType);
+      if (p.dboField == null) return best;
+      if (best != null && p.confidence <= best.confidence)
+      {
+        best.mlField = p.dboField;
+        return best;
+      }
+
+      FuzzyMatcher.MatchResult r = new FuzzyMatcher.MatchResult(p.dboField, p.confidence);
+      r.catalogDistance = vocab.getCatalog().contains(r.dboField) ? 0 : -1;
+      r.mlField = p.dboField;
+      return r;
+    }
+  }
+
   /** Train the ML model */
   public boolean trainMLModel()
   {
@@ -615,6 +2334,61 @@ public final class BGoogleOntologyService extends BAbstractService
 
   static final Log LOG = Log.getLog("googleOntology");
 
-  private OntologyIndex index = new OntologyIndex();
-  private MLOntologyLearner mlLearner;
+  /** Number of ranked candidates kept per point */
+  public static final int MAX_CANDIDATES = 10;
+
+  private volatile OntologyIndex index = new OntologyIndex();  // published, never changed
+  private OntologyIndex staging;  // index being built by a reindex or rematch, see publishIndex
+  private BGoogleOntologyServlet[] servlets = new BGoogleOntologyServlet[0];  // found by last reindex
+  private final IdentityHashMap replaced = new IdentityHashMap();  // published GoogleOntologyEntity : rematched copy, during rematch
+  private volatile MLOntologyLearner mlLearner;
+  private MatchPipeline pipeline;
+  private int numConflicts;  // during reindex
+  private int numClassified; // during reindex
+
+  /** Entities typed by name with less confidence are classified by their fields */
+  private static final int CLASSIFY_BELOW = 60;
+
+  /** Confidence given to fields fixed by a mapping rule */
+  private static final int RULE_CONFIDENCE = 95;
+
+  /** Confidence given to fields fixed by an operator override */
+  private static final int OVERRIDE_CONFIDENCE = 100;
+
+  private MappingRules rules = MappingRules.EMPTY;
+  private volatile MappingOverrides overrides = new MappingOverrides();
+  private String overridesText = "";  // property text overrides were decoded from
+  private LinkedHashMap pending = new LinkedHashMap();  // GoogleOntologyEntity : ArrayList<PendingPoint>, from last reindex
+  private HashMap entityTypeCache = new HashMap();      // entity id : CachedEntityType
+  private LinkedHashMap templates = new LinkedHashMap(); // template id : Template, from last reindex
+
+  /** Entity resolution modes, see entityResolution */
+  private static final int RESOLVE_PARENT = 0;
+  private static final int RESOLVE_DEVICE = 1;
+  private static final int RESOLVE_TAG    = 2;
+  private static final int RESOLVE_DEPTH  = 3;
+
+  /** Memoized resolution of a component with no qualifying ancestor */
+  private static final Object NO_ENTITY = new Object();
+
+  private int resolveMode;
+  private Id resolveTag;
+  private int resolveDepth;
+  private HashMap entityComps = new HashMap();  // BComponent : entity BComponent or NO_ENTITY, during reindex
+  private final SlotPathCache slotPaths = new SlotPathCache();  // from last reindex
+  private IdentityHashMap enumMappings = new IdentityHashMap();  // BEnumRange : String mapping, during reindex
+  private IdentityHashMap facetCache = new IdentityHashMap();    // BFacets : PointFacets, during reindex
+
+  private volatile RecentValueStore recentValues;
+  private volatile RecentPoint[] recentPoints = new RecentPoint[0];  // sampled points, from last configureRecent
+  private Clock.Ticket recentTicket;
+  private int lastRecentSamples;
+  private long lastRecentMemory;
+
+  /** How often the vocabulary file is checked for changes */
+  private static final BRelTime VOCABULARY_POLL = BRelTime.makeSeconds(10);
+
+  private Clock.Ticket vocabTicket;
+  private volatile String vocabStamp;        // modified time and size of the last vocabulary file checked
+  private volatile boolean vocabCompiling;
 }
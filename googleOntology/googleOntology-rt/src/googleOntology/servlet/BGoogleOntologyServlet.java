@@ -7,14 +7,17 @@ package googleOntology.servlet;
 
 import java.io.*;
 import java.util.*;
+import javax.baja.history.*;
 import javax.baja.status.*;
 import javax.baja.sys.*;
 import javax.baja.web.*;
 import javax.servlet.http.*;
+import googleOntology.matcher.*;
 import googleOntology.model.*;
 import googleOntology.service.*;
 import googleOntology.util.*;
 import googleOntology.integration.*;
+import googleOntology.learning.*;
 
 /**
  * BGoogleOntologyServlet provides REST API for DBO-mapped points.
@@ -50,7 +53,11 @@ public final class BGoogleOntologyServlet extends BWebServlet
     super.setFlags(getSlot("servletName"), Flags.READONLY | Flags.SUMMARY);
   }
 
-  /** Set backing index */
+  /**
+   * Set backing index.  The service publishes a new index rather than
+   * change this one, so each request reads the index once and needs
+   * no lock.
+   */
   public void setIndex(OntologyIndex index) { this.index = index; }
 
   /** Set backing service (for ML learner access) */
@@ -111,14 +118,53 @@ public final class BGoogleOntologyServlet extends BWebServlet
             endRes(w);
             return;
           }
+          if (action.equals("history"))
+          {
+            doEntityHistory(op, entityId);
+            return;
+          }
+          if (action.equals("recent"))
+          {
+            doEntityRecent(op, entityId);
+            return;
+          }
+          if (action.equals("candidates"))
+          {
+            doEntityCandidates(op, entityId);
+            return;
+          }
         }
         if (path[1].equals("mappings"))
+        {
+          doMappings(op);
+          return;
+        }
+        if (path[1].equals("templates"))
+        {
+          JsonWriter w = startRes(op);
+          doTemplates(w);
+          endRes(w);
+          return;
+        }
+        if (path[1].equals("conflicts"))
         {
           JsonWriter w = startRes(op);
-          doMappings(w);
+          doConflicts(w);
           endRes(w);
           return;
         }
+        if (path[1].equals("pipeline"))
+        {
+          if (path.length >= 3 && path[2].equals("stats")) doPipelineReset(op);
+          else doPipeline(op, false);
+          return;
+        }
+        if (path[1].equals("overrides"))
+        {
+          if ("POST".equals(op.getRequest().getMethod())) doOverridesEdit(op);
+          else doOverrides(op);
+          return;
+        }
         if (path[1].equals("learning"))
         {
           if (path.length >= 3)
@@ -129,6 +175,11 @@ public final class BGoogleOntologyServlet extends BWebServlet
               doLearningCorrect(op);
               return;
             }
+            if (action.equals("bulk"))
+            {
+              doLearningBulk(op);
+              return;
+            }
             if (action.equals("train"))
             {
               JsonWriter w = startRes(op);
@@ -175,6 +226,12 @@ public final class BGoogleOntologyServlet extends BWebServlet
     doPost(op);
   }
 
+  public void doDelete(WebOp op) throws IOException
+  {
+    // DELETE /v1/pipeline/stats
+    doPost(op);
+  }
+
   private JsonWriter startRes(WebOp op) throws IOException
   {
     HttpServletResponse res = op.getResponse();
@@ -197,6 +254,7 @@ public final class BGoogleOntologyServlet extends BWebServlet
   /** Service /v1/about request. */
   private void doAbout(JsonWriter json) throws IOException
   {
+    OntologyIndex index = this.index;
     json.write('{');
 
     // required fields
@@ -223,6 +281,7 @@ public final class BGoogleOntologyServlet extends BWebServlet
   /** Service /v1/entities request. */
   private void doEntities(JsonWriter json) throws IOException
   {
+    OntologyIndex index = this.index;
     if (index == null)
     {
       json.write('{');
@@ -249,6 +308,12 @@ public final class BGoogleOntologyServlet extends BWebServlet
       json.writeKey("name").writeVal(e.getName()).write(',');
       json.writeKey("path").writeVal(e.getPath()).write(',');
       json.writeKey("entityType").writeVal(e.getEntityType()).write(',');
+      json.writeKey("entityTypeConfidence").writeVal(e.getEntityTypeConfidence()).write(',');
+      if (e.getTemplateId() != null)
+      {
+        json.writeKey("templateId").writeVal(e.getTemplateId()).write(',');
+        json.writeKey("templateSize").writeVal(e.getTemplateSize()).write(',');
+      }
       json.writeKey("numPoints").writeVal(e.getPoints().size());
       json.write('}');
       num++;
@@ -264,6 +329,7 @@ public final class BGoogleOntologyServlet extends BWebServlet
   /** Service /v1/entity/{id}/fields request. */
   private void doEntityFields(String entityId, JsonWriter json) throws IOException
   {
+    OntologyIndex index = this.index;
     if (index == null)
       throw new IOException("Index not initialized");
 
@@ -275,6 +341,12 @@ public final class BGoogleOntologyServlet extends BWebServlet
     json.writeKey("entityId").writeVal(entity.getId()).write(',');
     json.writeKey("entityName").writeVal(entity.getName()).write(',');
     json.writeKey("entityType").writeVal(entity.getEntityType()).write(',');
+    json.writeKey("entityTypeConfidence").writeVal(entity.getEntityTypeConfidence()).write(',');
+    if (entity.getTemplateId() != null)
+    {
+      json.writeKey("templateId").writeVal(entity.getTemplateId()).write(',');
+      json.writeKey("templateSize").writeVal(entity.getTemplateSize()).write(',');
+    }
     json.writeKey("fields").write('[');
 
     Iterator iter = entity.getPoints().iterator();
@@ -351,6 +423,7 @@ public final class BGoogleOntologyServlet extends BWebServlet
   /** Service /v1/entity/{id}/values request. */
   private void doEntityValues(String entityId, JsonWriter json) throws IOException
   {
+    OntologyIndex index = this.index;
     if (index == null)
       throw new IOException("Index not initialized");
 
@@ -408,46 +481,438 @@ public final class BGoogleOntologyServlet extends BWebServlet
   }
 
 ////////////////////////////////////////////////////////////////
-// Endpoint /v1/mappings
+// Endpoint /v1/entity/{id}/history
 ////////////////////////////////////////////////////////////////
 
-  /** Service /v1/mappings request - returns all mappings with confidence scores. */
-  private void doMappings(JsonWriter json) throws IOException
+  /**
+   * Service /v1/entity/{id}/history?field=&start=&end=&rollup= request.
+   *
+   * Reads the history of the point mapped to given dboField and rolls
+   * it up on the server into min/max/avg/last buckets.  Records are
+   * streamed off a history cursor, so only the current bucket is held
+   * in memory regardless of the time range.
+   *
+   *   field   dboField to query (required)
+   *   start   epoch millis or ISO timestamp (default end - 24h)
+   *   end     epoch millis or ISO timestamp (default now)
+   *   rollup  bucket interval, e.g. 5min, 1h, 1d (default 1h)
+   */
+  private void doEntityHistory(WebOp op, String entityId) throws IOException
   {
+    OntologyIndex index = this.index;
+    HttpServletRequest req = op.getRequest();
+
     if (index == null)
     {
+      GoogleOntologyUtil.sendErr(op, 503, "Index not initialized");
+      return;
+    }
+
+    GoogleOntologyEntity entity = index.getEntity(entityId);
+    if (entity == null)
+    {
+      GoogleOntologyUtil.sendErr(op, 404, "Entity not found: " + entityId);
+      return;
+    }
+
+    String field = req.getParameter("field");
+    if (field == null || field.length() == 0)
+    {
+      GoogleOntologyUtil.sendErr(op, 400, "Missing required param: field");
+      return;
+    }
+
+    GoogleOntologyPoint point = null;
+    List points = entity.getPoints();
+    for (int i = 0; i < points.size(); i++)
+    {
+      GoogleOntologyPoint p = (GoogleOntologyPoint)points.get(i);
+      if (p.getDboField().equals(field)) { point = p; break; }
+    }
+    if (point == null)
+    {
+      GoogleOntologyUtil.sendErr(op, 404, "Field not found on entity: " + field);
+      return;
+    }
+
+    // time range and bucket size
+    long start, end, interval;
+    try
+    {
+      end = GoogleOntologyUtil.parseTime(req.getParameter("end"), System.currentTimeMillis());
+      start = GoogleOntologyUtil.parseTime(req.getParameter("start"), end - 86400000L);
+      String rollup = req.getParameter("rollup");
+      interval = HistoryRollup.parseInterval(rollup != null && rollup.length() > 0 ? rollup : "1h");
+    }
+    catch (Exception ex)
+    {
+      GoogleOntologyUtil.sendErr(op, 400, "Invalid query: " + ex.getMessage());
+      return;
+    }
+
+    if (end <= start || interval <= 0)
+    {
+      GoogleOntologyUtil.sendErr(op, 400, "Invalid time range");
+      return;
+    }
+    if ((end - start) / interval > MAX_HISTORY_BUCKETS)
+    {
+      GoogleOntologyUtil.sendErr(op, 400, "Too many buckets; use a larger rollup (max " + MAX_HISTORY_BUCKETS + ")");
+      return;
+    }
+
+    BHistoryId historyId = GoogleOntologyUtil.getHistoryId(point.comp);
+    if (historyId == null)
+    {
+      GoogleOntologyUtil.sendErr(op, 404, "No history configured for field: " + field);
+      return;
+    }
+
+    BHistoryService historyService = (BHistoryService)Sys.getService(BHistoryService.TYPE);
+    HistorySpaceConnection conn = historyService.getDatabase().getConnection(null);
+    try
+    {
+      BIHistory history = conn.getHistory(historyId);
+      if (history == null)
+      {
+        GoogleOntologyUtil.sendErr(op, 404, "History not found: " + historyId);
+        return;
+      }
+
+      final JsonWriter json = startRes(op);
       json.write('{');
-      json.writeKey("mappings").write('[').write(']');
+      json.writeKey("entityId").writeVal(entity.getId()).write(',');
+      json.writeKey("entityName").writeVal(entity.getName()).write(',');
+      json.writeKey("dboField").writeVal(point.getDboField()).write(',');
+      json.writeKey("addr").writeVal(point.getAddr()).write(',');
+      if (point.getUnits() != null)
+        json.writeKey("units").writeVal(point.getUnits()).write(',');
+      json.writeKey("start").writeVal(BAbsTime.make(start).encodeToString()).write(',');
+      json.writeKey("end").writeVal(BAbsTime.make(end).encodeToString()).write(',');
+      json.writeKey("rollupMillis").writeVal(interval).write(',');
+      json.writeKey("buckets").write('[');
+
+      HistoryRollup rollup = new HistoryRollup(start, interval, new HistoryRollup.Sink()
+      {
+        public void bucket(long ts, double min, double max, double avg, double last, int count) throws IOException
+        {
+          if (num++ > 0) json.write(',');
+          json.write('{');
+          json.writeKey("ts").writeVal(BAbsTime.make(ts).encodeToString()).write(',');
+          json.writeKey("min").writeVal(min).write(',');
+          json.writeKey("max").writeVal(max).write(',');
+          json.writeKey("avg").writeVal(avg).write(',');
+          json.writeKey("last").writeVal(last).write(',');
+          json.writeKey("count").writeVal(count);
+          json.write('}');
+        }
+        private int num;
+      });
+
+      Cursor cursor = conn.timeQuery(history, BAbsTime.make(start), BAbsTime.make(end));
+      try
+      {
+        while (cursor.next())
+        {
+          BHistoryRecord rec = (BHistoryRecord)cursor.get();
+          rollup.add(rec.getTimestamp().getMillis(), GoogleOntologyUtil.getRecordValue(rec));
+        }
+      }
+      finally
+      {
+        cursor.close();
+      }
+      rollup.finish();
+
+      json.write(']');
       json.write('}');
+      endRes(json);
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+////////////////////////////////////////////////////////////////
+// Endpoint /v1/entity/{id}/recent
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Service /v1/entity/{id}/recent?field=&window= request.
+   *
+   * Returns samples from the in-memory recent value buffers (see the
+   * service recentEnabled property).  Optional field limits output to
+   * one dboField and window (e.g. 15min) limits how far back to go.
+   */
+  private void doEntityRecent(WebOp op, String entityId) throws IOException
+  {
+    OntologyIndex index = this.index;
+    HttpServletRequest req = op.getRequest();
+
+    RecentValueStore store = service != null ? service.getRecentValues() : null;
+    if (index == null || store == null)
+    {
+      GoogleOntologyUtil.sendErr(op, 503, "Recent value sampling not enabled");
       return;
     }
 
+    GoogleOntologyEntity entity = index.getEntity(entityId);
+    if (entity == null)
+    {
+      GoogleOntologyUtil.sendErr(op, 404, "Entity not found: " + entityId);
+      return;
+    }
+
+    String field = req.getParameter("field");
+    long since = 0;
+    try
+    {
+      String window = req.getParameter("window");
+      if (window != null && window.length() > 0)
+        since = System.currentTimeMillis() - HistoryRollup.parseInterval(window);
+    }
+    catch (Exception ex)
+    {
+      GoogleOntologyUtil.sendErr(op, 400, "Invalid query: " + ex.getMessage());
+      return;
+    }
+
+    JsonWriter json = startRes(op);
     json.write('{');
-    json.writeKey("mappings").write('[');
+    json.writeKey("entityId").writeVal(entity.getId()).write(',');
+    json.writeKey("entityName").writeVal(entity.getName()).write(',');
+    json.writeKey("values").write('[');
+
+    // scratch arrays reused across points
+    long[] ts = new long[store.capacity()];
+    double[] vals = new double[store.capacity()];
+
+    List points = entity.getPoints();
+    int num = 0;
+    for (int i = 0; i < points.size(); i++)
+    {
+      GoogleOntologyPoint p = (GoogleOntologyPoint)points.get(i);
+      if (field != null && !field.equals(p.getDboField())) continue;
+
+      RecentValueStore.Ring ring = store.get(BGoogleOntologyService.recentKey(p));
+      if (ring == null) continue;
 
-    Iterator entityIter = index.getEntities().iterator();
-    int totalNum = 0;
+      if (ring.capacity() > ts.length)
+      {
+        ts = new long[ring.capacity()];
+        vals = new double[ring.capacity()];
+      }
+      int n = ring.copy(since, ts, vals);
+
+      // prefix trailing commas
+      if (num > 0) json.write(',');
+
+      json.write('{');
+      json.writeKey("dboField").writeVal(p.getDboField()).write(',');
+      json.writeKey("addr").writeVal(p.getAddr()).write(',');
+      if (p.getUnits() != null)
+        json.writeKey("units").writeVal(p.getUnits()).write(',');
+      json.writeKey("samples").write('[');
+      for (int k = 0; k < n; k++)
+      {
+        if (k > 0) json.write(',');
+        json.write('[').writeVal(ts[k]).write(',').writeVal(vals[k]).write(']');
+      }
+      json.write(']');
+      json.write('}');
+      num++;
+    }
+
+    json.write(']');
+    json.write('}');
+    endRes(json);
+  }
+
+////////////////////////////////////////////////////////////////
+// Endpoint /v1/entity/{id}/candidates
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Service /v1/entity/{id}/candidates request - returns the top K ranked
+   * DBO field candidates for each point, with score breakdown.
+   *
+   * Optional query params:
+   *   k=N       number of candidates per point (default 3, max 10)
+   *   addr=a    only the point with given address
+   */
+  private void doEntityCandidates(WebOp op, String entityId) throws IOException
+  {
+    OntologyIndex index = this.index;
+    HttpServletRequest req = op.getRequest();
+
+    GoogleOntologyEntity entity = index != null ? index.getEntity(entityId) : null;
+    if (entity == null)
+    {
+      GoogleOntologyUtil.sendErr(op, 404, "Entity not found: " + entityId);
+      return;
+    }
+
+    int k = 3;
+    try
+    {
+      String s = req.getParameter("k");
+      if (s != null && s.length() > 0) k = Integer.parseInt(s);
+      if (k < 1) throw new IllegalArgumentException("k must be >= 1");
+      k = Math.min(k, BGoogleOntologyService.MAX_CANDIDATES);
+    }
+    catch (Exception ex)
+    {
+      GoogleOntologyUtil.sendErr(op, 400, "Invalid query: " + ex.getMessage());
+      return;
+    }
+    String addr = req.getParameter("addr");
+
+    JsonWriter json = startRes(op);
+    json.write('{');
+    json.writeKey("entityId").writeVal(entity.getId()).write(',');
+    json.writeKey("entityName").writeVal(entity.getName()).write(',');
+    json.writeKey("entityType").writeVal(entity.getEntityType()).write(',');
+    json.writeKey("points").write('[');
+
+    List points = entity.getPoints();
+    int num = 0;
+    for (int i = 0; i < points.size(); i++)
+    {
+      GoogleOntologyPoint p = (GoogleOntologyPoint)points.get(i);
+      if (addr != null && !addr.equals(p.getAddr())) continue;
+
+      // prefix trailing commas
+      if (num > 0) json.write(',');
+
+      json.write('{');
+      json.writeKey("originalName").writeVal(p.getOriginalName()).write(',');
+      json.writeKey("addr").writeVal(p.getAddr()).write(',');
+      json.writeKey("dboField").writeVal(p.getDboField()).write(',');
+      json.writeKey("candidates").write('[');
+
+      List cands = p.getCandidates();
+      int n = Math.min(k, cands.size());
+      for (int j = 0; j < n; j++)
+      {
+        CandidateRanker.Candidate c = (CandidateRanker.Candidate)cands.get(j);
+        if (j > 0) json.write(',');
+        json.write('{');
+        json.writeKey("dboField").writeVal(c.dboField).write(',');
+        json.writeKey("score").writeVal(c.score).write(',');
+        json.writeKey("inCatalog").writeVal(c.inCatalog).write(',');
+        json.writeKey("breakdown").write('{');
+        json.writeKey("token").writeVal(c.tokenScore).write(',');
+        json.writeKey("units").writeVal(c.unitScore).write(',');
+        json.writeKey("context").writeVal(c.contextScore).write(',');
+        json.writeKey("ml").writeVal(c.mlScore).write(',');
+        json.writeKey("override").writeVal(c.overrideScore);
+        json.write('}');
+        json.write('}');
+      }
+
+      json.write(']');
+      json.write('}');
+      num++;
+    }
 
-    while (entityIter.hasNext())
+    json.write(']');
+    json.write('}');
+    endRes(json);
+  }
+
+////////////////////////////////////////////////////////////////
+// Endpoint /v1/templates
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Service /v1/templates request - returns every group of entities with
+   * the same entity type and point signatures, as found by the last
+   * reindex.  The first member is the one that was matched; the rest
+   * share its result.
+   */
+  private void doTemplates(JsonWriter json) throws IOException
+  {
+    json.write('{');
+    json.writeKey("templates").write('[');
+
+    List ids = service != null ? service.getTemplateIds() : Collections.EMPTY_LIST;
+    int num = 0;
+    for (int i = 0; i < ids.size(); i++)
     {
-      GoogleOntologyEntity entity = (GoogleOntologyEntity)entityIter.next();
-      Iterator pointIter = entity.getPoints().iterator();
+      String id = (String)ids.get(i);
+      List members = service.getTemplateMembers(id);
+      if (members == null || members.isEmpty()) continue;
+      GoogleOntologyEntity rep = (GoogleOntologyEntity)members.get(0);
+
+      // prefix trailing commas
+      if (num > 0) json.write(',');
 
-      while (pointIter.hasNext())
+      json.write('{');
+      json.writeKey("templateId").writeVal(id).write(',');
+      json.writeKey("entityType").writeVal(rep.getEntityType()).write(',');
+      json.writeKey("numPoints").writeVal(rep.getPoints().size()).write(',');
+      json.writeKey("size").writeVal(members.size()).write(',');
+      json.writeKey("entityIds").write('[');
+      for (int k = 0; k < members.size(); k++)
       {
-        GoogleOntologyPoint p = (GoogleOntologyPoint)pointIter.next();
+        if (k > 0) json.write(',');
+        json.writeVal(((GoogleOntologyEntity)members.get(k)).getId());
+      }
+      json.write(']');
+      json.write('}');
+      num++;
+    }
+
+    json.write(']');
+    json.write('}');
+  }
+
+////////////////////////////////////////////////////////////////
+// Endpoint /v1/conflicts
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Service /v1/conflicts request - returns every field that more than one
+   * point of an entity claimed, and which field each claimant ended up
+   * with (null if it was left unmapped).
+   */
+  private void doConflicts(JsonWriter json) throws IOException
+  {
+    OntologyIndex index = this.index;
+    json.write('{');
+    json.writeKey("conflicts").write('[');
+
+    int num = 0;
+    Iterator iter = index != null ? index.getEntities().iterator() : Collections.EMPTY_LIST.iterator();
+    while (iter.hasNext())
+    {
+      GoogleOntologyEntity e = (GoogleOntologyEntity)iter.next();
+      List conflicts = e.getConflicts();
+      for (int i = 0; i < conflicts.size(); i++)
+      {
+        FuzzyMatcher.Conflict c = (FuzzyMatcher.Conflict)conflicts.get(i);
 
         // prefix trailing commas
-        if (totalNum > 0) json.write(',');
+        if (num > 0) json.write(',');
 
         json.write('{');
-        json.writeKey("entityId").writeVal(entity.getId()).write(',');
-        json.writeKey("entityName").writeVal(entity.getName()).write(',');
-        json.writeKey("originalName").writeVal(p.getOriginalName()).write(',');
-        json.writeKey("dboField").writeVal(p.getDboField()).write(',');
-        json.writeKey("confidence").writeVal(p.getConfidence());
+        json.writeKey("entityId").writeVal(e.getId()).write(',');
+        json.writeKey("entityName").writeVal(e.getName()).write(',');
+        json.writeKey("dboField").writeVal(c.dboField).write(',');
+        json.writeKey("claimants").write('[');
+        for (int k = 0; k < c.names.length; k++)
+        {
+          if (k > 0) json.write(',');
+          json.write('{');
+          json.writeKey("originalName").writeVal(c.names[k]).write(',');
+          json.writeKey("kept").writeVal(c.claimants[k] == c.winner).write(',');
+          json.writeKey("dboField").writeVal(c.resolved[k]);
+          json.write('}');
+        }
+        json.write(']');
         json.write('}');
-        totalNum++;
+        num++;
       }
     }
 
@@ -455,6 +920,443 @@ public final class BGoogleOntologyServlet extends BWebServlet
     json.write('}');
   }
 
+////////////////////////////////////////////////////////////////
+// Endpoint /v1/pipeline
+////////////////////////////////////////////////////////////////
+
+  /**
+   * GET /v1/pipeline - Match pipeline stages with their invocation
+   * counts, hit rates and latency histograms.
+   * @param reset  clear the counters after writing them
+   */
+  private void doPipeline(WebOp op, boolean reset) throws IOException
+  {
+    MatchPipeline pipeline = service != null ? service.getPipeline() : null;
+    if (pipeline == null)
+    {
+      GoogleOntologyUtil.sendErr(op, 503, "Service not available", null);
+      return;
+    }
+
+    JsonWriter json = startRes(op);
+    json.write('{');
+    json.writeKey("vocabularyVersion").writeVal(DboFieldLibrary.getVersion()).write(',');
+    json.writeKey("shortCircuit").writeVal(pipeline.getShortCircuit()).write(',');
+    json.writeKey("numPoints").writeVal(pipeline.getNumPoints()).write(',');
+    json.writeKey("numShortCircuits").writeVal(pipeline.getNumShortCircuits()).write(',');
+    json.writeKey("stages").write('[');
+    MatchPipeline.Stage[] stages = pipeline.getStages();
+    for (int i = 0; i < stages.length; i++)
+    {
+      MatchPipeline.Stage st = stages[i];
+      long calls = st.getInvocations();
+      if (i > 0) json.write(',');
+      json.write('{');
+      json.writeKey("name").writeVal(st.name).write(',');
+      json.writeKey("invocations").writeVal(calls).write(',');
+      json.writeKey("hits").writeVal(st.getHits()).write(',');
+      json.writeKey("hitRate").writeVal(calls > 0 ? (double)st.getHits() / calls : 0d).write(',');
+      json.writeKey("skipped").writeVal(st.getSkipped()).write(',');
+      json.writeKey("meanMicros").writeVal(calls > 0 ? st.getTotalNanos() / 1000d / calls : 0d).write(',');
+
+      // histogram as upper bound (us, null = slower) : count, empty buckets omitted
+      long[] hist = st.getHistogram();
+      json.writeKey("latency").write('[');
+      int n = 0;
+      for (int b = 0; b < hist.length; b++)
+      {
+        if (hist[b] == 0) continue;
+        if (n++ > 0) json.write(',');
+        json.write('{');
+        json.writeKey("ltMicros");
+        if (b < hist.length - 1) json.writeVal(1L << b); else json.writeVal((Object)null);
+        json.write(',');
+        json.writeKey("count").writeVal(hist[b]);
+        json.write('}');
+      }
+      json.write(']');
+      json.write('}');
+    }
+    json.write(']');
+    json.write('}');
+    endRes(json);
+
+    if (reset) pipeline.resetStats();
+  }
+
+  /**
+   * POST or DELETE /v1/pipeline/stats - Write the pipeline stats as
+   * GET /v1/pipeline does, then clear the counters.
+   */
+  private void doPipelineReset(WebOp op) throws IOException
+  {
+    String method = op.getRequest().getMethod();
+    if (!"POST".equals(method) && !"DELETE".equals(method))
+    {
+      op.getResponse().setHeader("Allow", "POST, DELETE");
+      GoogleOntologyUtil.sendErr(op, 405, "Use POST or DELETE to reset pipeline stats", null);
+      return;
+    }
+    doPipeline(op, true);
+  }
+
+////////////////////////////////////////////////////////////////
+// Endpoint /v1/overrides
+////////////////////////////////////////////////////////////////
+
+  /**
+   * GET /v1/overrides - List operator overrides.
+   */
+  private void doOverrides(WebOp op) throws IOException
+  {
+    if (service == null)
+    {
+      GoogleOntologyUtil.sendErr(op, 503, "Service not available", null);
+      return;
+    }
+
+    List entries = service.getOverrides().entries();
+
+    JsonWriter json = startRes(op);
+    json.write('{');
+    json.writeKey("size").writeVal(entries.size()).write(',');
+    json.writeKey("overrides").write('[');
+    for (int i = 0; i < entries.size(); i++)
+    {
+      MappingOverrides.Entry e = (MappingOverrides.Entry)entries.get(i);
+      if (i > 0) json.write(',');
+      json.write('{');
+      if (e.handle != null)
+      {
+        json.writeKey("handle").writeVal(e.handle).write(',');
+      }
+      else
+      {
+        json.writeKey("entityType").writeVal(e.entityType).write(',');
+        json.writeKey("pointName").writeVal(e.name).write(',');
+      }
+      json.writeKey("dboField").writeVal(e.dboField);
+      json.write('}');
+    }
+    json.write(']');
+    json.write('}');
+    endRes(json);
+  }
+
+  /**
+   * POST /v1/overrides - Set or remove many overrides in one request.
+   *
+   * Body is a JSON array or NDJSON of objects, each naming one point by
+   * handle or by entityId + addr, or every point of a name on entities of
+   * a type by entityType + pointName.  A null or empty dboField removes
+   * the override.  With "template": true an entityId + addr row applies
+   * to the same point on every entity of the entity's template.  Use
+   * ?replace=true to drop all existing overrides first.  All rows are
+   * applied as one edit, so affected entities are rematched once.
+   *
+   * A malformed or truncated body is rejected with 400 and nothing is
+   * applied, as is an empty body with replace=true.  Rows naming a
+   * dboField that is not a known DBO field are reported in errors.
+   */
+  private void doOverridesEdit(WebOp op) throws IOException
+  {
+    if (service == null)
+    {
+      GoogleOntologyUtil.sendErr(op, 503, "Service not available", null);
+      return;
+    }
+
+    HttpServletRequest req = op.getRequest();
+    final boolean replace = "true".equals(req.getParameter("replace"));
+
+    final ArrayList rows = new ArrayList();  // String[] { handle, entityType, pointName, dboField }
+    ArrayList errors = new ArrayList();      // String[] { row, message }
+    int numErrors = 0;
+    int received = 0;
+
+    JsonReader r;
+    try
+    {
+      r = GoogleOntologyUtil.openJsonBody(req, MAX_BULK_BODY_BYTES);
+    }
+    catch (IOException ex)
+    {
+      GoogleOntologyUtil.sendErr(op, 413, ex.getMessage());
+      return;
+    }
+
+    try
+    {
+      // JSON array or NDJSON stream of objects
+      boolean isArray = r.peek() == JsonReader.BEGIN_ARRAY;
+      if (isArray) r.beginArray();
+
+      while (isArray ? r.hasNext() : r.peek() != JsonReader.END_DOCUMENT)
+      {
+        int row = received++;
+        String handle = null;
+        String entityId = null;
+        String addr = null;
+        String entityType = null;
+        String pointName = null;
+        String dboField = null;
+        boolean template = false;
+
+        if (r.peek() != JsonReader.BEGIN_OBJECT)
+        {
+          r.skipValue();
+          numErrors = addRowError(errors, numErrors, row, "Expected object");
+          continue;
+        }
+
+        r.beginObject();
+        while (r.hasNext())
+        {
+          String name = r.nextName();
+          if (r.peek() == JsonReader.NULL) r.nextNull();
+          else if (name.equals("handle")) handle = r.nextString();
+          else if (name.equals("entityId")) entityId = r.nextString();
+          else if (name.equals("addr")) addr = r.nextString();
+          else if (name.equals("entityType")) entityType = r.nextString();
+          else if (name.equals("pointName")) pointName = r.nextString();
+          else if (name.equals("dboField")) dboField = r.nextString();
+          else if (name.equals("template")) template = r.nextBoolean();
+          else r.skipValue();
+        }
+        r.endObject();
+
+        if (dboField != null && dboField.length() == 0) dboField = null;
+        if (dboField != null && !DboFieldLibrary.isValidField(dboField))
+        {
+          numErrors = addRowError(errors, numErrors, row, "Unknown DBO field: " + dboField);
+          continue;
+        }
+
+        if (template)
+        {
+          if (entityId == null || addr == null)
+          {
+            numErrors = addRowError(errors, numErrors, row, "Template rows require entityId + addr");
+            continue;
+          }
+          List handles = service.findTemplateHandles(entityId, addr);
+          if (handles == null)
+          {
+            numErrors = addRowError(errors, numErrors, row, "Point not found: " + entityId + " " + addr);
+            continue;
+          }
+          for (int i = 0; i < handles.size(); i++)
+            rows.add(new String[] { (String)handles.get(i), null, null, dboField });
+          continue;
+        }
+
+        if (handle == null && entityId != null && addr != null)
+        {
+          handle = service.findPointHandle(entityId, addr);
+          if (handle == null)
+          {
+            numErrors = addRowError(errors, numErrors, row, "Point not found: " + entityId + " " + addr);
+            continue;
+          }
+        }
+
+        if (handle == null && (entityType == null || pointName == null || pointName.length() == 0))
+        {
+          numErrors = addRowError(errors, numErrors, row, "Missing required fields: handle, entityId + addr, or entityType + pointName");
+          continue;
+        }
+
+        rows.add(new String[] { handle, entityType, pointName, dboField });
+      }
+
+      if (isArray) r.endArray();
+    }
+    catch (JsonReader.TooLargeException ex)
+    {
+      GoogleOntologyUtil.sendErr(op, 413, ex.getMessage());
+      return;
+    }
+    catch (IOException ex)
+    {
+      // malformed or truncated JSON: apply nothing, least of all replace
+      GoogleOntologyUtil.sendErr(op, 400, "Invalid request body: " + ex.getMessage());
+      return;
+    }
+
+    if (replace && received == 0)
+    {
+      GoogleOntologyUtil.sendErr(op, 400, "Empty body; replace=true requires at least one row");
+      return;
+    }
+
+    final int[] changed = new int[1];
+    MappingOverrides result;
+    try
+    {
+      result = service.editOverrides(new BGoogleOntologyService.OverrideEditor()
+      {
+        public void edit(MappingOverrides o)
+        {
+          if (replace && o.size() > 0)
+          {
+            changed[0] += o.size();
+            o.clear();
+          }
+          for (int i = 0; i < rows.size(); i++)
+          {
+            String[] row = (String[])rows.get(i);
+            boolean c = row[0] != null ?
+              o.setByHandle(row[0], row[3]) :
+              o.setByName(row[1], row[2], row[3]);
+            if (c) changed[0]++;
+          }
+        }
+      });
+    }
+    catch (Exception ex)
+    {
+      GoogleOntologyUtil.sendErr(op, 500, "Failed to apply overrides", ex);
+      return;
+    }
+
+    JsonWriter json = startRes(op);
+    json.write('{');
+    json.writeKey("success").writeVal(true).write(',');
+    json.writeKey("received").writeVal(received).write(',');
+    json.writeKey("changed").writeVal(changed[0]).write(',');
+    json.writeKey("size").writeVal(result.size()).write(',');
+    json.writeKey("numErrors").writeVal(numErrors).write(',');
+    json.writeKey("errors").write('[');
+    for (int i = 0; i < errors.size(); i++)
+    {
+      String[] e = (String[])errors.get(i);
+      if (i > 0) json.write(',');
+      json.write('{');
+      json.writeKey("row").writeVal(Integer.parseInt(e[0])).write(',');
+      json.writeKey("error").writeVal(e[1]);
+      json.write('}');
+    }
+    json.write(']');
+    json.write('}');
+    endRes(json);
+  }
+
+////////////////////////////////////////////////////////////////
+// Endpoint /v1/mappings
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Service /v1/mappings request - returns all mappings with confidence scores.
+   *
+   * Optional query params:
+   *   minConfidence=N      only points with confidence >= N
+   *   entityType=A,B       only entities of given type(s)
+   *   dboField=prefix      only points whose dboField starts with prefix
+   *   pathPrefix=/a/b      only entities whose path starts with prefix
+   *   fields=k1,k2         only write the given keys for each mapping
+   */
+  private void doMappings(WebOp op) throws IOException
+  {
+    OntologyIndex index = this.index;
+    HttpServletRequest req = op.getRequest();
+
+    // parse filters up front so bad params never start a 200 response
+    MappingQuery query = new MappingQuery();
+    boolean[] proj;
+    try
+    {
+      String minConf = req.getParameter("minConfidence");
+      if (minConf != null && minConf.length() > 0)
+        query.setMinConfidence(Integer.parseInt(minConf.trim()));
+
+      query.setEntityTypes(req.getParameter("entityType"));
+      query.setDboFieldPrefix(req.getParameter("dboField"));
+      query.setPathPrefix(req.getParameter("pathPrefix"));
+      proj = parseProjection(req.getParameter("fields"));
+    }
+    catch (Exception ex)
+    {
+      GoogleOntologyUtil.sendErr(op, 400, "Invalid query: " + ex.getMessage());
+      return;
+    }
+
+    final JsonWriter json = startRes(op);
+    json.write('{');
+    json.writeKey("mappings").write('[');
+
+    if (index != null)
+    {
+      final boolean[] keys = proj;
+      final int[] totalNum = new int[1];
+      index.query(query, new OntologyIndex.MappingVisitor()
+      {
+        public void visit(GoogleOntologyEntity entity, GoogleOntologyPoint p) throws IOException
+        {
+          // prefix trailing commas
+          if (totalNum[0] > 0) json.write(',');
+          writeMapping(json, entity, p, keys);
+          totalNum[0]++;
+        }
+      });
+    }
+
+    json.write(']');
+    json.write('}');
+    endRes(json);
+  }
+
+  /** Write one mapping object with only the projected keys. */
+  private static void writeMapping(JsonWriter json, GoogleOntologyEntity entity, GoogleOntologyPoint p, boolean[] keys)
+    throws IOException
+  {
+    json.write('{');
+    boolean first = true;
+    for (int i = 0; i < MAPPING_KEYS.length; i++)
+    {
+      if (!keys[i]) continue;
+      if (!first) json.write(',');
+      first = false;
+
+      json.writeKey(MAPPING_KEYS[i]);
+      switch (i)
+      {
+        case 0: json.writeVal(entity.getId()); break;
+        case 1: json.writeVal(entity.getName()); break;
+        case 2: json.writeVal(entity.getEntityType()); break;
+        case 3: json.writeVal(entity.getPath()); break;
+        case 4: json.writeVal(p.getOriginalName()); break;
+        case 5: json.writeVal(p.getDboField()); break;
+        case 6: json.writeVal(p.getAddr()); break;
+        case 7: json.writeVal(p.getUnits()); break;
+        case 8: json.writeVal(p.getConfidence()); break;
+      }
+    }
+    json.write('}');
+  }
+
+  /** Parse fields= projection into flags over MAPPING_KEYS. */
+  private static boolean[] parseProjection(String fields)
+  {
+    if (fields == null || fields.trim().length() == 0)
+      return DEFAULT_MAPPING_KEYS;
+
+    boolean[] acc = new boolean[MAPPING_KEYS.length];
+    String[] parts = fields.split(",");
+    for (int i = 0; i < parts.length; i++)
+    {
+      String name = parts[i].trim();
+      if (name.length() == 0) continue;
+
+      int idx = -1;
+      for (int k = 0; k < MAPPING_KEYS.length; k++)
+        if (MAPPING_KEYS[k].equals(name)) { idx = k; break; }
+
+      if (idx < 0) throw new IllegalArgumentException("unknown field '" + name + "'");
+      acc[idx] = true;
+    }
+    return acc;
+  }
+
 ////////////////////////////////////////////////////////////////
 // ML Learning Endpoints
 ////////////////////////////////////////////////////////////////
@@ -468,23 +1370,39 @@ public final class BGoogleOntologyServlet extends BWebServlet
       return;
     }
 
+    String pointName = null;
+    String correctMatch = null;
+    String equipmentType = null;
+
+    // Parse JSON body
     try
     {
-      // Parse JSON body
-      HttpServletRequest req = op.getRequest();
-      String body = GoogleOntologyUtil.readBody(req);
-
-      // Simple JSON parsing (no external libraries needed)
-      String pointName = extractJsonValue(body, "pointName");
-      String correctMatch = extractJsonValue(body, "correctMatch");
-      String equipmentType = extractJsonValue(body, "equipmentType");
-
-      if (pointName == null || correctMatch == null)
+      JsonReader r = GoogleOntologyUtil.openJsonBody(op.getRequest(), GoogleOntologyUtil.MAX_BODY_BYTES);
+      r.beginObject();
+      while (r.hasNext())
       {
-        GoogleOntologyUtil.sendErr(op, 400, "Missing required fields: pointName, correctMatch", null);
-        return;
+        String name = r.nextName();
+        if (name.equals("pointName")) pointName = r.nextString();
+        else if (name.equals("correctMatch")) correctMatch = r.nextString();
+        else if (name.equals("equipmentType")) equipmentType = r.nextString();
+        else r.skipValue();
       }
+      r.endObject();
+    }
+    catch (IOException ex)
+    {
+      GoogleOntologyUtil.sendErr(op, 400, "Invalid request body: " + ex.getMessage());
+      return;
+    }
+
+    if (pointName == null || correctMatch == null)
+    {
+      GoogleOntologyUtil.sendErr(op, 400, "Missing required fields: pointName, correctMatch", null);
+      return;
+    }
 
+    try
+    {
       // Add correction to ML learner
       service.addCorrection(pointName, correctMatch, equipmentType);
 
@@ -502,6 +1420,168 @@ public final class BGoogleOntologyServlet extends BWebServlet
     }
   }
 
+  /**
+   * POST /v1/learning/bulk - Submit many corrections in one request.
+   *
+   * Body is either a JSON array of correction objects or NDJSON (one
+   * object per line).  Rows are parsed as a stream, deduplicated and
+   * handed to the learner in one batch; bad rows, including rows with
+   * an object or array value, are reported without aborting the batch.
+   * A malformed or truncated body is rejected with 400 (413 past the
+   * size limit) and no row is added.  Use ?retrain=true to train when
+   * done.
+   */
+  private void doLearningBulk(WebOp op) throws IOException
+  {
+    if (service == null)
+    {
+      GoogleOntologyUtil.sendErr(op, 503, "Service not available", null);
+      return;
+    }
+
+    HttpServletRequest req = op.getRequest();
+    boolean retrain = "true".equals(req.getParameter("retrain"));
+
+    ArrayList batch = new ArrayList();
+    HashSet seen = new HashSet();
+    ArrayList errors = new ArrayList();   // String[] { row, message }
+    int numErrors = 0;
+    int received = 0;
+    int duplicates = 0;
+
+    JsonReader r;
+    try
+    {
+      r = GoogleOntologyUtil.openJsonBody(req, MAX_BULK_BODY_BYTES);
+    }
+    catch (IOException ex)
+    {
+      GoogleOntologyUtil.sendErr(op, 413, ex.getMessage());
+      return;
+    }
+
+    try
+    {
+      // JSON array or NDJSON stream of objects
+      boolean isArray = r.peek() == JsonReader.BEGIN_ARRAY;
+      if (isArray) r.beginArray();
+
+      while (isArray ? r.hasNext() : r.peek() != JsonReader.END_DOCUMENT)
+      {
+        int row = received++;
+        String pointName = null;
+        String correctMatch = null;
+        String equipmentType = null;
+
+        if (r.peek() != JsonReader.BEGIN_OBJECT)
+        {
+          r.skipValue();
+          numErrors = addRowError(errors, numErrors, row, "Expected object");
+          continue;
+        }
+
+        String notScalar = null;
+        r.beginObject();
+        while (r.hasNext())
+        {
+          String name = r.nextName();
+          int t = r.peek();
+          if (t == JsonReader.BEGIN_OBJECT || t == JsonReader.BEGIN_ARRAY)
+          {
+            r.skipValue();
+            if (notScalar == null) notScalar = name;
+          }
+          else if (name.equals("pointName")) pointName = r.nextString();
+          else if (name.equals("correctMatch")) correctMatch = r.nextString();
+          else if (name.equals("equipmentType")) equipmentType = r.nextString();
+          else r.skipValue();
+        }
+        r.endObject();
+
+        if (notScalar != null)
+        {
+          numErrors = addRowError(errors, numErrors, row, "Expected string value: " + notScalar);
+          continue;
+        }
+
+        if (pointName == null || pointName.length() == 0 || correctMatch == null || correctMatch.length() == 0)
+        {
+          numErrors = addRowError(errors, numErrors, row, "Missing required fields: pointName, correctMatch");
+          continue;
+        }
+
+        if (!seen.add(MLOntologyLearner.exampleKey(pointName, equipmentType, correctMatch)))
+        {
+          duplicates++;
+          continue;
+        }
+
+        batch.add(new MLOntologyLearner.TrainingExample(pointName, equipmentType, correctMatch));
+      }
+
+      if (isArray) r.endArray();
+    }
+    catch (JsonReader.TooLargeException ex)
+    {
+      GoogleOntologyUtil.sendErr(op, 413, ex.getMessage());
+      return;
+    }
+    catch (IOException ex)
+    {
+      // malformed or truncated JSON: reject the whole batch so that a
+      // retry does not have to work out which rows were taken
+      GoogleOntologyUtil.sendErr(op, 400, "Invalid request body: " + ex.getMessage());
+      return;
+    }
+
+    int added = 0;
+    boolean trained = false;
+    try
+    {
+      if (batch.size() > 0) added = service.addCorrections(batch);
+      if (retrain) trained = service.trainMLModel();
+    }
+    catch (Exception ex)
+    {
+      GoogleOntologyUtil.sendErr(op, 500, "Failed to add corrections", ex);
+      return;
+    }
+
+    JsonWriter json = startRes(op);
+    json.write('{');
+    json.writeKey("success").writeVal(true).write(',');
+    json.writeKey("received").writeVal(received).write(',');
+    json.writeKey("added").writeVal(added).write(',');
+    json.writeKey("duplicates").writeVal(duplicates + (batch.size() - added)).write(',');
+    json.writeKey("numErrors").writeVal(numErrors).write(',');
+    json.writeKey("errors").write('[');
+    for (int i = 0; i < errors.size(); i++)
+    {
+      String[] e = (String[])errors.get(i);
+      if (i > 0) json.write(',');
+      json.write('{');
+      json.writeKey("row").writeVal(Integer.parseInt(e[0])).write(',');
+      json.writeKey("error").writeVal(e[1]);
+      json.write('}');
+    }
+    json.write(']');
+    if (retrain)
+    {
+      json.write(',');
+      json.writeKey("trained").writeVal(trained);
+    }
+    json.write('}');
+    endRes(json);
+  }
+
+  /** Record a bulk row error; only the first MAX_ROW_ERRORS are kept. */
+  private static int addRowError(ArrayList errors, int numErrors, int row, String msg)
+  {
+    if (errors.size() < MAX_ROW_ERRORS)
+      errors.add(new String[] { String.valueOf(row), msg });
+    return numErrors + 1;
+  }
+
   /** POST /v1/learning/train - Trigger ML model training */
   private void doLearningTrain(JsonWriter json) throws IOException
   {
@@ -541,25 +1621,6 @@ public final class BGoogleOntologyServlet extends BWebServlet
     json.write('}');
   }
 
-  /** Extract JSON value (simple parser, no external deps) */
-  private String extractJsonValue(String json, String key)
-  {
-    String search = "\"" + key + "\"";
-    int idx = json.indexOf(search);
-    if (idx == -1) return null;
-
-    // Find opening quote after key
-    int start = json.indexOf("\"", idx + search.length() + 1);
-    if (start == -1) return null;
-    start++; // skip quote
-
-    // Find closing quote
-    int end = json.indexOf("\"", start);
-    if (end == -1) return null;
-
-    return json.substring(start, end);
-  }
-
 ////////////////////////////////////////////////////////////////
 // KODE OS Integration Endpoints
 ////////////////////////////////////////////////////////////////
@@ -567,6 +1628,7 @@ public final class BGoogleOntologyServlet extends BWebServlet
   /** GET /v1/kodeos/discover - Get data in KODE OS DISCOVER format */
   private void doKodeOsDiscover(WebOp op) throws IOException
   {
+    OntologyIndex index = this.index;
     if (index == null)
     {
       GoogleOntologyUtil.sendErr(op, 503, "Index not initialized", null);
@@ -597,7 +1659,25 @@ public final class BGoogleOntologyServlet extends BWebServlet
 // Attributes
 ////////////////////////////////////////////////////////////////
 
-  private OntologyIndex index;
+  /** Keys available for /v1/mappings projection (order is output order) */
+  private static final String[] MAPPING_KEYS = {
+    "entityId", "entityName", "entityType", "path", "originalName",
+    "dboField", "addr", "units", "confidence" };
+
+  /** Keys written when no fields= projection is given */
+  private static final boolean[] DEFAULT_MAPPING_KEYS = {
+    true, true, false, false, true, true, false, false, true };
+
+  /** Max number of buckets returned by /history */
+  private static final long MAX_HISTORY_BUCKETS = 10000;
+
+  /** Max size of a bulk corrections body (64MB) */
+  private static final long MAX_BULK_BODY_BYTES = 64L * 1024L * 1024L;
+
+  /** Max number of per-row errors echoed back from bulk requests */
+  private static final int MAX_ROW_ERRORS = 1000;
+
+  private volatile OntologyIndex index;
   private BGoogleOntologyService service;
   private final long leaseTime = 120000;   // 2min in millis
 }
@@ -6,12 +6,18 @@
 package googleOntology.util;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 import javax.baja.control.*;
+import javax.baja.history.*;
+import javax.baja.history.ext.*;
 import javax.baja.status.*;
 import javax.baja.sys.*;
+import javax.baja.units.*;
 import javax.baja.util.*;
 import javax.baja.web.*;
 import javax.servlet.http.*;
+import googleOntology.matcher.*;
 
 /**
  * GoogleOntologyUtil provides common utility methods.
@@ -34,7 +40,8 @@ public final class GoogleOntologyUtil
   }
 
   /**
-   * Get point address relative to entity.
+   * Get point address relative to entity.  Use SlotPathCache when
+   * addressing many points of the same entities.
    */
   public static String getPointAddr(BComponent entity, BComponent point)
   {
@@ -77,24 +84,27 @@ public final class GoogleOntologyUtil
    */
   public static String unescapeSlotPath(String orig)
   {
-    StringBuffer buf = new StringBuffer();
-    StringBuffer temp = new StringBuffer();
+    int len = orig.length();
+    if (orig.indexOf('$') < 0) return orig;
 
-    for (int i = 0; i < orig.length(); i++)
+    char[] src = orig.toCharArray();
+    char[] buf = new char[len];
+    int n = 0;
+    for (int i = 0; i < len; i++)
     {
-      int ch = orig.charAt(i);
-      if (ch == '$' && (i + 2 < orig.length()))
+      char ch = src[i];
+      if (ch == '$' && (i + 2 < len))
       {
-        // clear out temp buffer for reuse
-        temp.setLength(0);
-        temp.append(orig.charAt(++i));
-        temp.append(orig.charAt(++i));
-        ch = (char)Integer.parseInt(temp.toString(), 16);
+        int hi = Character.digit(src[++i], 16);
+        int lo = Character.digit(src[++i], 16);
+        if (hi < 0 || lo < 0)
+          throw new NumberFormatException("Invalid escape in slot path: " + orig);
+        ch = (char)((hi << 4) | lo);
       }
-      buf.append((char)ch);
+      buf[n++] = ch;
     }
 
-    return buf.toString();
+    return new String(buf, 0, n);
   }
 
   /**
@@ -107,6 +117,78 @@ public final class GoogleOntologyUtil
     return null;
   }
 
+////////////////////////////////////////////////////////////////
+// History
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Get the history id of the first history extension on given
+   * point or null if the point is not trended.
+   */
+  public static BHistoryId getHistoryId(BComponent point)
+  {
+    BHistoryExt[] exts = (BHistoryExt[])point.getChildren(BHistoryExt.class);
+    for (int i = 0; i < exts.length; i++)
+    {
+      BHistoryId id = exts[i].getHistoryConfig().getId();
+      if (id != null && !id.isNull()) return id;
+    }
+    return null;
+  }
+
+  /**
+   * Get numeric value of a trend record, or NaN if the record is not
+   * valid.  Booleans map to 0/1 and enums to their ordinal.
+   */
+  public static double getRecordValue(BHistoryRecord rec)
+  {
+    if (rec instanceof BTrendRecord && !((BTrendRecord)rec).getStatus().isValid())
+      return Double.NaN;
+
+    if (rec instanceof BNumericTrendRecord)
+      return ((BNumericTrendRecord)rec).getValue();
+    if (rec instanceof BBooleanTrendRecord)
+      return ((BBooleanTrendRecord)rec).getValue() ? 1 : 0;
+    if (rec instanceof BEnumTrendRecord)
+      return ((BEnumTrendRecord)rec).getValue().getOrdinal();
+
+    return Double.NaN;
+  }
+
+  /**
+   * Parse a time query param as epoch millis or an ISO 8601 timestamp
+   * (BAbsTime encoding).  Returns def if s is null or empty.
+   */
+  public static long parseTime(String s, long def) throws IOException
+  {
+    if (s == null || s.length() == 0) return def;
+
+    boolean digits = true;
+    for (int i = 0; i < s.length(); i++)
+      if (!Character.isDigit(s.charAt(i))) { digits = false; break; }
+
+    if (digits) return Long.parseLong(s);
+    return ((BAbsTime)BAbsTime.DEFAULT.decodeFromString(s)).getMillis();
+  }
+
+  /**
+   * Get numeric value of a status value, or NaN if the status is not
+   * valid.  Booleans map to 0/1 and enums to their ordinal.
+   */
+  public static double toDouble(BStatusValue sv)
+  {
+    if (!sv.getStatus().isValid()) return Double.NaN;
+
+    if (sv instanceof BStatusNumeric)
+      return ((BStatusNumeric)sv).getValue();
+    if (sv instanceof BStatusBoolean)
+      return ((BStatusBoolean)sv).getValue() ? 1 : 0;
+    if (sv instanceof BStatusEnum)
+      return ((BStatusEnum)sv).getValue().getOrdinal();
+
+    return Double.NaN;
+  }
+
   /**
    * Parse a BFacet enum range into a string mapping.
    * Example: "false=Off,true=On" or "0=Off,1=Low,2=High"
@@ -140,6 +222,69 @@ public final class GoogleOntologyUtil
     return "false=false,true=true";
   }
 
+////////////////////////////////////////////////////////////////
+// Facets
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Get the units string from point facets and make sure its DBO
+   * measurement is in the UnitTable.  Each distinct BUnit is resolved
+   * from its name and dimension only once.  Returns null if no units.
+   */
+  public static String getUnits(BFacets f)
+  {
+    BObject obj = f.get("units");
+    if (obj == null) return null;
+
+    String units = f.gets("units", null);
+    if (units == null || units.equals("null")) return null;
+
+    if (obj instanceof BUnit)
+    {
+      BUnit unit = (BUnit)obj;
+      if (resolvedUnits.putIfAbsent(unit, unit) == null)
+        UnitTable.register(units, resolveUnit(unit));
+    }
+    return units;
+  }
+
+  /**
+   * Get a numeric facet such as BFacets.MIN or BFacets.MAX, or null if
+   * it is missing or not finite (the unbounded default).
+   */
+  public static Double getNumericFacet(BFacets f, String key)
+  {
+    BObject obj = f.get(key);
+    if (!(obj instanceof BNumber)) return null;
+    double d = ((BNumber)obj).getDouble();
+    if (Double.isNaN(d) || Double.isInfinite(d)) return null;
+    return Double.valueOf(d);
+  }
+
+  /**
+   * Get the BFacets.PRECISION facet (decimal places), or null if it is
+   * missing or negative.
+   */
+  public static Integer getPrecision(BFacets f)
+  {
+    BObject obj = f.get(BFacets.PRECISION);
+    if (!(obj instanceof BNumber)) return null;
+    int prec = ((BNumber)obj).getInt();
+    return prec >= 0 ? Integer.valueOf(prec) : null;
+  }
+
+  /**
+   * Resolve a BUnit to a UnitTable measurement id from its dimension.
+   */
+  public static int resolveUnit(BUnit unit)
+  {
+    if (unit == null || unit.isNull()) return UnitTable.UNKNOWN;
+    BDimension d = unit.getDimension();
+    return UnitTable.resolve(unit.getUnitName(),
+      d.getMeter(), d.getKilogram(), d.getSecond(), d.getAmpere(),
+      d.getKelvin(), d.getMole(), d.getCandela());
+  }
+
 ////////////////////////////////////////////////////////////////
 // Servlet
 ////////////////////////////////////////////////////////////////
@@ -194,19 +339,20 @@ public final class GoogleOntologyUtil
     return acc;
   }
 
-  /** Read HTTP request body as string. */
-  public static String readBody(HttpServletRequest req) throws IOException
-  {
-    BufferedReader reader = req.getReader();
-    StringBuffer sb = new StringBuffer();
-    String line;
+  /** Default max size of a JSON request body (1MB). */
+  public static final long MAX_BODY_BYTES = 1024L * 1024L;
 
-    while ((line = reader.readLine()) != null)
-    {
-      sb.append(line);
-    }
+  /**
+   * Open request body as a streaming JsonReader.  Requests that declare
+   * or stream more than maxBytes fail with an IOException.
+   */
+  public static JsonReader openJsonBody(HttpServletRequest req, long maxBytes) throws IOException
+  {
+    long len = req.getContentLength();
+    if (maxBytes >= 0 && len > maxBytes)
+      throw new IOException("Request body exceeds " + maxBytes + " bytes");
 
-    return sb.toString();
+    return new JsonReader(req.getInputStream(), maxBytes);
   }
 
 ////////////////////////////////////////////////////////////////
@@ -221,4 +367,11 @@ public final class GoogleOntologyUtil
     ex.printStackTrace(pw);
     return sw.toString();
   }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  /** BUnits already registered with the UnitTable */
+  private static final ConcurrentHashMap resolvedUnits = new ConcurrentHashMap();
 }
@@ -0,0 +1,122 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.util;
+
+import java.io.*;
+
+/**
+ * HistoryRollup downsamples a time-ordered stream of samples into
+ * fixed-width buckets (min/max/avg/last per bucket) in a single pass.
+ *
+ * Only the running aggregate of the current bucket is kept, so memory
+ * use is constant no matter how many samples are fed in.  Each bucket
+ * is handed to the Sink as soon as a sample for a later bucket arrives.
+ */
+public final class HistoryRollup
+{
+  /**
+   * Receives completed buckets in time order.
+   */
+  public static interface Sink
+  {
+    public void bucket(long start, double min, double max, double avg, double last, int count) throws IOException;
+  }
+
+  /**
+   * Constructor.
+   * @param start    start of first bucket (millis)
+   * @param interval bucket width (millis, > 0)
+   */
+  public HistoryRollup(long start, long interval, Sink sink)
+  {
+    if (interval <= 0) throw new IllegalArgumentException("interval must be > 0");
+    this.start = start;
+    this.interval = interval;
+    this.sink = sink;
+  }
+
+  /** Add sample; samples must arrive in ascending time order. */
+  public void add(long ts, double val) throws IOException
+  {
+    if (ts < start || Double.isNaN(val)) return;
+
+    long b = start + ((ts - start) / interval) * interval;
+    if (count > 0 && b != bucket) flush();
+
+    if (count == 0)
+    {
+      bucket = b;
+      min = max = sum = last = val;
+      count = 1;
+      return;
+    }
+
+    if (val < min) min = val;
+    if (val > max) max = val;
+    sum += val;
+    last = val;
+    count++;
+  }
+
+  /** Emit the last partial bucket. */
+  public void finish() throws IOException
+  {
+    if (count > 0) flush();
+  }
+
+  /** Get number of buckets emitted so far. */
+  public int numBuckets() { return numBuckets; }
+
+  private void flush() throws IOException
+  {
+    sink.bucket(bucket, min, max, sum / count, last, count);
+    numBuckets++;
+    count = 0;
+  }
+
+////////////////////////////////////////////////////////////////
+// Interval parsing
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Parse an interval like "500", "30s", "15min", "1h" or "1d" into
+   * millis.  A bare number is taken as millis.
+   */
+  public static long parseInterval(String s)
+  {
+    s = s.trim();
+    int i = 0;
+    while (i < s.length() && Character.isDigit(s.charAt(i))) i++;
+    if (i == 0) throw new IllegalArgumentException("Invalid interval '" + s + "'");
+
+    long n = Long.parseLong(s.substring(0, i));
+    String unit = s.substring(i).trim().toLowerCase();
+
+    if (unit.length() == 0 || unit.equals("ms")) return n;
+    if (unit.equals("s") || unit.equals("sec")) return n * 1000L;
+    if (unit.equals("m") || unit.equals("min")) return n * 60000L;
+    if (unit.equals("h") || unit.equals("hr") || unit.equals("hour")) return n * 3600000L;
+    if (unit.equals("d") || unit.equals("day")) return n * 86400000L;
+
+    throw new IllegalArgumentException("Invalid interval unit '" + unit + "'");
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private final long start;
+  private final long interval;
+  private final Sink sink;
+
+  private long bucket;
+  private double min;
+  private double max;
+  private double sum;
+  private double last;
+  private int count;
+  private int numBuckets;
+}
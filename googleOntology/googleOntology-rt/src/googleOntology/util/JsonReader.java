@@ -0,0 +1,525 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.util;
+
+import java.io.*;
+
+/**
+ * JsonReader is a small streaming, pull-style JSON reader.
+ *
+ * Values are read one token at a time straight off the underlying
+ * stream, so arbitrarily long arrays can be processed in constant
+ * memory.  Multiple top-level values separated by whitespace are
+ * allowed, which makes the reader usable for NDJSON input as well.
+ *
+ * Example:
+ * <pre>
+ *   r.beginObject();
+ *   while (r.hasNext())
+ *   {
+ *     String name = r.nextName();
+ *     if (name.equals("pointName")) pointName = r.nextString();
+ *     else r.skipValue();
+ *   }
+ *   r.endObject();
+ * </pre>
+ */
+public final class JsonReader
+{
+  // token types returned by peek()
+  public static final int BEGIN_OBJECT = 1;
+  public static final int END_OBJECT   = 2;
+  public static final int BEGIN_ARRAY  = 3;
+  public static final int END_ARRAY    = 4;
+  public static final int NAME         = 5;
+  public static final int STRING       = 6;
+  public static final int NUMBER       = 7;
+  public static final int BOOLEAN      = 8;
+  public static final int NULL         = 9;
+  public static final int END_DOCUMENT = 10;
+
+  /** Constructor with no size limit. */
+  public JsonReader(InputStream in) throws IOException
+  {
+    this(in, -1);
+  }
+
+  /**
+   * Constructor.  If maxBytes is >= 0 reading more than maxBytes from
+   * the stream fails with a TooLargeException.
+   */
+  public JsonReader(InputStream in, long maxBytes) throws IOException
+  {
+    if (maxBytes >= 0) in = new LimitedInputStream(in, maxBytes);
+    this.in = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+  }
+
+  /** Close underlying stream. */
+  public void close() throws IOException
+  {
+    in.close();
+  }
+
+////////////////////////////////////////////////////////////////
+// Structure
+////////////////////////////////////////////////////////////////
+
+  /** Return type of next token without consuming it. */
+  public int peek() throws IOException
+  {
+    if (peeked != 0) return peeked;
+
+    int ch = skipWs();
+
+    // separators and closers depend on current scope
+    if (depth > 0)
+    {
+      int scope = stack[depth - 1];
+      if (ch == '}' && (scope == SCOPE_OBJ_FIRST || scope == SCOPE_OBJ_NEXT)) return peeked = END_OBJECT;
+      if (ch == ']' && (scope == SCOPE_ARR_FIRST || scope == SCOPE_ARR_NEXT)) return peeked = END_ARRAY;
+
+      if (scope == SCOPE_OBJ_NEXT || scope == SCOPE_ARR_NEXT)
+      {
+        if (ch != ',') throw err("Expected ',' but found " + describe(ch));
+        read();
+        ch = skipWs();
+      }
+
+      if (scope == SCOPE_OBJ_FIRST || scope == SCOPE_OBJ_NEXT)
+      {
+        if (ch != '"') throw err("Expected name but found " + describe(ch));
+        return peeked = NAME;
+      }
+
+      if (scope == SCOPE_OBJ_NAME)
+      {
+        if (ch != ':') throw err("Expected ':' but found " + describe(ch));
+        read();
+        ch = skipWs();
+      }
+    }
+
+    switch (ch)
+    {
+      case -1:  if (depth > 0) throw err("Unexpected end of input"); return peeked = END_DOCUMENT;
+      case '{': return peeked = BEGIN_OBJECT;
+      case '[': return peeked = BEGIN_ARRAY;
+      case '"': return peeked = STRING;
+      case 't':
+      case 'f': return peeked = BOOLEAN;
+      case 'n': return peeked = NULL;
+      default:
+        if (ch == '-' || (ch >= '0' && ch <= '9')) return peeked = NUMBER;
+        throw err("Unexpected " + describe(ch));
+    }
+  }
+
+  /** Return true if current object or array has another element. */
+  public boolean hasNext() throws IOException
+  {
+    int t = peek();
+    return t != END_OBJECT && t != END_ARRAY && t != END_DOCUMENT;
+  }
+
+  /** Consume '{'. */
+  public void beginObject() throws IOException
+  {
+    expect(BEGIN_OBJECT);
+    read();
+    push(SCOPE_OBJ_FIRST);
+  }
+
+  /** Consume '}'. */
+  public void endObject() throws IOException
+  {
+    expect(END_OBJECT);
+    read();
+    pop();
+  }
+
+  /** Consume '['. */
+  public void beginArray() throws IOException
+  {
+    expect(BEGIN_ARRAY);
+    read();
+    push(SCOPE_ARR_FIRST);
+  }
+
+  /** Consume ']'. */
+  public void endArray() throws IOException
+  {
+    expect(END_ARRAY);
+    read();
+    pop();
+  }
+
+////////////////////////////////////////////////////////////////
+// Values
+////////////////////////////////////////////////////////////////
+
+  /** Consume next object member name. */
+  public String nextName() throws IOException
+  {
+    expect(NAME);
+    String name = readString();
+    stack[depth - 1] = SCOPE_OBJ_NAME;
+    return name;
+  }
+
+  /**
+   * Consume next value as a string.  Numbers and booleans are
+   * returned in their literal form; null returns null.
+   */
+  public String nextString() throws IOException
+  {
+    int t = peek();
+    String val;
+    switch (t)
+    {
+      case STRING:  val = readString(); break;
+      case NUMBER:  val = readNumber(); break;
+      case BOOLEAN: val = readLiteral(); checkBoolean(val); break;
+      case NULL:    nextNull(); return null;
+      default: throw err("Expected string but found " + tokenName(t));
+    }
+    valueDone();
+    return val;
+  }
+
+  /** Consume next number value. */
+  public double nextDouble() throws IOException
+  {
+    int t = peek();
+    String lit;
+    if (t == NUMBER) lit = readNumber();
+    else if (t == STRING) lit = readString();
+    else throw err("Expected number but found " + tokenName(t));
+
+    try
+    {
+      double d = Double.parseDouble(lit);
+      valueDone();
+      return d;
+    }
+    catch (NumberFormatException ex)
+    {
+      throw err("Invalid number '" + lit + "'");
+    }
+  }
+
+  /** Consume next boolean value. */
+  public boolean nextBoolean() throws IOException
+  {
+    expect(BOOLEAN);
+    String lit = readLiteral();
+    checkBoolean(lit);
+    valueDone();
+    return lit.equals("true");
+  }
+
+  /** Consume next null value. */
+  public void nextNull() throws IOException
+  {
+    expect(NULL);
+    String lit = readLiteral();
+    if (!lit.equals("null")) throw err("Invalid literal '" + lit + "'");
+    valueDone();
+  }
+
+  /** Skip next value, including any nested objects or arrays. */
+  public void skipValue() throws IOException
+  {
+    int t = peek();
+    switch (t)
+    {
+      case BEGIN_OBJECT:
+        beginObject();
+        while (hasNext()) { nextName(); skipValue(); }
+        endObject();
+        break;
+      case BEGIN_ARRAY:
+        beginArray();
+        while (hasNext()) skipValue();
+        endArray();
+        break;
+      case NAME:
+        nextName();
+        skipValue();
+        break;
+      case STRING:
+      case NUMBER:
+      case BOOLEAN:
+        nextString();
+        break;
+      case NULL:
+        nextNull();
+        break;
+      default:
+        throw err("Cannot skip " + tokenName(t));
+    }
+  }
+
+  /** Get 1-based line number of the current read position. */
+  public int getLine() { return line; }
+
+////////////////////////////////////////////////////////////////
+// Lexing
+////////////////////////////////////////////////////////////////
+
+  private String readString() throws IOException
+  {
+    peeked = 0;
+    read(); // opening quote
+
+    buf.setLength(0);
+    while (true)
+    {
+      int ch = read();
+      if (ch == -1) throw err("Unterminated string");
+      if (ch == '"') break;
+      if (ch == '\\')
+      {
+        ch = read();
+        switch (ch)
+        {
+          case '"':  buf.append('"');  break;
+          case '\\': buf.append('\\'); break;
+          case '/':  buf.append('/');  break;
+          case 'b':  buf.append('\b'); break;
+          case 'f':  buf.append('\f'); break;
+          case 'n':  buf.append('\n'); break;
+          case 'r':  buf.append('\r'); break;
+          case 't':  buf.append('\t'); break;
+          case 'u':
+            int code = 0;
+            for (int i = 0; i < 4; i++)
+            {
+              int d = Character.digit(read(), 16);
+              if (d < 0) throw err("Invalid unicode escape");
+              code = (code << 4) | d;
+            }
+            buf.append((char)code);
+            break;
+          default: throw err("Invalid escape " + describe(ch));
+        }
+        continue;
+      }
+      if (ch < ' ') throw err("Unescaped control char in string");
+      buf.append((char)ch);
+    }
+    return buf.toString();
+  }
+
+  private String readLiteral() throws IOException
+  {
+    peeked = 0;
+    buf.setLength(0);
+    while (true)
+    {
+      int ch = peekChar();
+      if (ch == -1 || ch == ',' || ch == '}' || ch == ']' || ch == ':' || isWs(ch)) break;
+      buf.append((char)read());
+    }
+    return buf.toString();
+  }
+
+  /** Read a number literal, checking it against the JSON number grammar. */
+  private String readNumber() throws IOException
+  {
+    String lit = readLiteral();
+    int n = lit.length();
+    int i = 0;
+    if (i < n && lit.charAt(i) == '-') i++;
+    if (i < n && lit.charAt(i) == '0') i++;
+    else if (i < n && lit.charAt(i) >= '1' && lit.charAt(i) <= '9') i = digits(lit, i);
+    else throw err("Invalid number '" + lit + "'");
+    if (i < n && lit.charAt(i) == '.')
+    {
+      int frac = digits(lit, i + 1);
+      if (frac == i + 1) throw err("Invalid number '" + lit + "'");
+      i = frac;
+    }
+    if (i < n && (lit.charAt(i) == 'e' || lit.charAt(i) == 'E'))
+    {
+      i++;
+      if (i < n && (lit.charAt(i) == '+' || lit.charAt(i) == '-')) i++;
+      int exp = digits(lit, i);
+      if (exp == i) throw err("Invalid number '" + lit + "'");
+      i = exp;
+    }
+    if (i < n) throw err("Invalid number '" + lit + "'");
+    return lit;
+  }
+
+  /** Get the index past the run of digits starting at i. */
+  private static int digits(String s, int i)
+  {
+    while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') i++;
+    return i;
+  }
+
+  private void checkBoolean(String lit) throws IOException
+  {
+    if (!lit.equals("true") && !lit.equals("false"))
+      throw err("Invalid literal '" + lit + "'");
+  }
+
+  private int skipWs() throws IOException
+  {
+    while (true)
+    {
+      int ch = peekChar();
+      if (!isWs(ch)) return ch;
+      read();
+    }
+  }
+
+  private static boolean isWs(int ch)
+  {
+    return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+  }
+
+  private int peekChar() throws IOException
+  {
+    if (pushback == NONE) pushback = in.read();
+    return pushback;
+  }
+
+  private int read() throws IOException
+  {
+    int ch;
+    if (pushback != NONE) { ch = pushback; pushback = NONE; }
+    else ch = in.read();
+    if (ch == '\n') line++;
+    return ch;
+  }
+
+////////////////////////////////////////////////////////////////
+// Scope
+////////////////////////////////////////////////////////////////
+
+  private void expect(int type) throws IOException
+  {
+    int t = peek();
+    if (t != type) throw err("Expected " + tokenName(type) + " but found " + tokenName(t));
+    peeked = 0;
+  }
+
+  private void valueDone()
+  {
+    if (depth == 0) return;
+    int scope = stack[depth - 1];
+    if (scope == SCOPE_OBJ_NAME) stack[depth - 1] = SCOPE_OBJ_NEXT;
+    else if (scope == SCOPE_ARR_FIRST) stack[depth - 1] = SCOPE_ARR_NEXT;
+  }
+
+  private void push(int scope) throws IOException
+  {
+    if (depth == stack.length) throw err("Nesting too deep");
+    stack[depth++] = scope;
+  }
+
+  private void pop()
+  {
+    depth--;
+    valueDone();
+  }
+
+  private IOException err(String msg)
+  {
+    return new IOException(msg + " [line " + line + "]");
+  }
+
+  private static String describe(int ch)
+  {
+    return ch == -1 ? "end of input" : "'" + (char)ch + "'";
+  }
+
+  private static String tokenName(int t)
+  {
+    switch (t)
+    {
+      case BEGIN_OBJECT: return "'{'";
+      case END_OBJECT:   return "'}'";
+      case BEGIN_ARRAY:  return "'['";
+      case END_ARRAY:    return "']'";
+      case NAME:         return "name";
+      case STRING:       return "string";
+      case NUMBER:       return "number";
+      case BOOLEAN:      return "boolean";
+      case NULL:         return "null";
+      case END_DOCUMENT: return "end of input";
+      default:           return "token " + t;
+    }
+  }
+
+////////////////////////////////////////////////////////////////
+// LimitedInputStream
+////////////////////////////////////////////////////////////////
+
+  /**
+   * Thrown when a reader with a size limit reads past it.
+   */
+  public static final class TooLargeException extends IOException
+  {
+    public TooLargeException(String msg) { super(msg); }
+  }
+
+  /**
+   * InputStream wrapper that fails once more than max bytes are read.
+   */
+  static final class LimitedInputStream extends FilterInputStream
+  {
+    LimitedInputStream(InputStream in, long max)
+    {
+      super(in);
+      this.max = max;
+    }
+
+    public int read() throws IOException
+    {
+      int b = super.read();
+      if (b >= 0) count(1);
+      return b;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      int n = super.read(b, off, len);
+      if (n > 0) count(n);
+      return n;
+    }
+
+    private void count(int n) throws IOException
+    {
+      total += n;
+      if (total > max) throw new TooLargeException("Request body exceeds " + max + " bytes");
+    }
+
+    private final long max;
+    private long total;
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private static final int NONE = -2;
+
+  private static final int SCOPE_OBJ_FIRST = 1;  // after '{'
+  private static final int SCOPE_OBJ_NAME  = 2;  // after name, expecting ':' value
+  private static final int SCOPE_OBJ_NEXT  = 3;  // after value, expecting ',' or '}'
+  private static final int SCOPE_ARR_FIRST = 4;  // after '['
+  private static final int SCOPE_ARR_NEXT  = 5;  // after value, expecting ',' or ']'
+
+  private final Reader in;
+  private final StringBuffer buf = new StringBuffer();
+  private final int[] stack = new int[64];
+  private int depth;
+  private int peeked;
+  private int pushback = NONE;
+  private int line = 1;
+}
@@ -58,6 +58,20 @@ public final class JsonWriter
     return this;
   }
 
+  /** Write given long to output stream. */
+  public JsonWriter writeVal(long val) throws IOException
+  {
+    out.print(val);
+    return this;
+  }
+
+  /** Write given boolean to output stream. */
+  public JsonWriter writeVal(boolean val) throws IOException
+  {
+    out.print(val ? "true" : "false");
+    return this;
+  }
+
   /** Write given double to output stream. */
   public JsonWriter writeVal(double val) throws IOException
   {
@@ -95,6 +109,14 @@ public final class JsonWriter
       return this;
     }
 
+    // Boolean
+    if (val instanceof Boolean)
+    {
+      boolean b = ((Boolean)val).booleanValue();
+      this.writeVal(b);
+      return this;
+    }
+
     // Double
     if (val instanceof Double)
     {
@@ -0,0 +1,96 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.util;
+
+import java.util.*;
+import javax.baja.sys.*;
+
+/**
+ * SlotPathCache computes entity paths and point addresses once per
+ * component instead of formatting a slot path for every point.
+ *
+ * The address of a point relative to its entity is the address prefix
+ * of the point's parent (cached per component, built from its own
+ * parent's prefix) plus the point's own slot name, so a folder with a
+ * thousand points is walked once.  Results are identical to
+ * GoogleOntologyUtil.getPointAddr and unescapeSlotPath.
+ *
+ * Components renamed or moved keep their cached path until clear() is
+ * called, which the service does at every reindex.  Instances are not
+ * thread safe.
+ */
+public final class SlotPathCache
+{
+  /** Forget all cached paths. */
+  public void clear()
+  {
+    paths.clear();
+    prefixes.clear();
+  }
+
+  /**
+   * Get the unescaped slot path of a component without the "slot:"
+   * scheme, e.g. "/Drivers/BacnetNetwork/AHU 1".
+   */
+  public String getPath(BComponent c)
+  {
+    String path = (String)paths.get(c);
+    if (path == null)
+    {
+      path = GoogleOntologyUtil.unescapeSlotPath(c.getSlotPath().toString().substring(5));
+      paths.put(c, path);
+    }
+    return path;
+  }
+
+  /**
+   * Get the address of a point relative to its entity, the same as
+   * GoogleOntologyUtil.getPointAddr(entity, point).
+   */
+  public String getPointAddr(BComponent entity, BComponent point)
+  {
+    BComplex parent = point.getParent();
+    String prefix = parent instanceof BComponent ? prefix(entity, (BComponent)parent) : null;
+    if (prefix == null) return point.getName();  // not under entity
+
+    String name = GoogleOntologyUtil.slotPathToSuffix(point.getName());
+    return prefix.length() == 0 ? name : prefix + '.' + name;
+  }
+
+  /**
+   * Get the address prefix of a component under an entity: "" for the
+   * entity itself, or null if the component is not under the entity.
+   */
+  private String prefix(BComponent entity, BComponent c)
+  {
+    if (c == entity) return "";
+
+    HashMap byComp = (HashMap)prefixes.get(entity);
+    if (byComp == null) prefixes.put(entity, byComp = new HashMap());
+    Object cached = byComp.get(c);
+    if (cached != null) return cached == NOT_UNDER ? null : (String)cached;
+
+    BComplex parent = c.getParent();
+    String p = parent instanceof BComponent ? prefix(entity, (BComponent)parent) : null;
+    String acc = null;
+    if (p != null)
+    {
+      String name = GoogleOntologyUtil.slotPathToSuffix(c.getName());
+      acc = p.length() == 0 ? name : p + '.' + name;
+    }
+    byComp.put(c, acc != null ? (Object)acc : NOT_UNDER);
+    return acc;
+  }
+
+////////////////////////////////////////////////////////////////
+// Attributes
+////////////////////////////////////////////////////////////////
+
+  private static final Object NOT_UNDER = new Object();
+
+  private final HashMap paths = new HashMap();     // BComponent : String path
+  private final HashMap prefixes = new HashMap();  // entity BComponent : HashMap<BComponent, String prefix or NOT_UNDER>
+}
@@ -0,0 +1,109 @@
+//
+// Copyright (c) 2025
+// Licensed under the MIT License
+//
+
+package googleOntology.util;
+
+import java.util.*;
+import javax.baja.units.*;
+import googleOntology.matcher.*;
+
+/**
+ * UnitTableCheck resolves every BUnit in the Niagara unit database with
+ * GoogleOntologyUtil.resolveUnit and compares the result with the
+ * measurement expected from the unit's quantity ("temperature",
+ * "volumetric flow", ...).  Quantities whose units differ in measurement
+ * ("angular velocity", "dimensionless") are listed unit by unit in
+ * UNITS instead.  Every other unit, and every unit of a quantity with no
+ * DBO measurement, must resolve to UNKNOWN.
+ *
+ * Usage: UnitTableCheck
+ *
+ * Needs a Niagara runtime for the unit database.  Prints each mismatch
+ * and exits with status 1 if there is any.
+ */
+public class UnitTableCheck
+{
+  public static void main(String[] args)
+  {
+    System.out.println("=== UnitTable Check ===\n");
+
+    UnitDatabase.Quantity[] quantities = UnitDatabase.getDefault().getQuantities();
+    int numUnits = 0;
+    int numMeasured = 0;
+    int numFailed = 0;
+    HashSet seen = new HashSet();  // names of listed units found
+    for (int i = 0; i < quantities.length; i++)
+    {
+      String quantity = quantities[i].getName();
+      BUnit[] units = quantities[i].getUnits();
+      for (int j = 0; j < units.length; j++)
+      {
+        BUnit unit = units[j];
+        Integer listed = (Integer)UNITS.get(unit.getUnitName());
+        int expected = listed != null ? listed.intValue() : expected(quantity);
+        if (listed != null) seen.add(unit.getUnitName());
+        int actual = GoogleOntologyUtil.resolveUnit(unit);
+        numUnits++;
+        if (actual != UnitTable.UNKNOWN) numMeasured++;
+        if (actual == expected) continue;
+
+        numFailed++;
+        System.out.println("FAIL " + quantity + " / " + unit.getUnitName() + " (" + unit.getSymbol() + "): " +
+          UnitTable.name(actual) + ", expected " + UnitTable.name(expected));
+      }
+    }
+
+    // a listed unit missing from the database is a typo or a rename
+    Iterator it = UNITS.keySet().iterator();
+    while (it.hasNext())
+    {
+      String name = (String)it.next();
+      if (seen.contains(name)) continue;
+      numFailed++;
+      System.out.println("FAIL " + name + ": listed in UNITS but not in the unit database");
+    }
+
+    System.out.println("\n" + numUnits + " units in " + quantities.length + " quantities, " +
+      numMeasured + " with a measurement, " + numFailed + " failed");
+    if (numFailed > 0) System.exit(1);
+  }
+
+  /** Get the measurement expected for a unit of given quantity not listed in UNITS. */
+  private static int expected(String quantity)
+  {
+    String q = quantity.toLowerCase();
+
+    if (q.indexOf("temperature") >= 0) return UnitTable.TEMPERATURE;
+    if (q.indexOf("pressure") >= 0) return UnitTable.PRESSURE;
+    if (q.indexOf("volumetric flow") >= 0 || q.indexOf("mass flow") >= 0) return UnitTable.FLOWRATE;
+    if (q.equals("volume")) return UnitTable.FLOWVOLUME;
+    if (q.indexOf("power") >= 0) return UnitTable.POWER;
+    if (q.equals("electric current")) return UnitTable.CURRENT;
+    if (q.equals("electric potential")) return UnitTable.VOLTAGE;
+    if (q.equals("velocity")) return UnitTable.SPEED;
+    if (q.equals("frequency")) return UnitTable.FREQUENCY;
+    return UnitTable.UNKNOWN;
+  }
+
+  private static void unit(String unitName, int measurement)
+  {
+    UNITS.put(unitName, Integer.valueOf(measurement));
+  }
+
+  /** Expected measurement by unit name, for units their quantity does not decide */
+  private static final LinkedHashMap UNITS = new LinkedHashMap();  // unit name : Integer
+  static
+  {
+    // angular velocity: rotation speed vs angular frequency
+    unit("revolutions per minute", UnitTable.SPEED);
+    unit("radians per second", UnitTable.FREQUENCY);
+
+    // dimensionless: fractions vs concentrations
+    unit("percent", UnitTable.PERCENTAGE);
+    unit("percent relative humidity", UnitTable.PERCENTAGE);
+    unit("parts per million", UnitTable.CONCENTRATION);
+    unit("parts per billion", UnitTable.CONCENTRATION);
+  }
+}